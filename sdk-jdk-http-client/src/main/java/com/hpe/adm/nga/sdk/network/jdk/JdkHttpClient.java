@@ -0,0 +1,804 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.jdk;
+
+import com.hpe.adm.nga.sdk.authentication.Authentication;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.network.cache.CachedResponse;
+import com.hpe.adm.nga.sdk.network.cache.LruResponseCache;
+import com.hpe.adm.nga.sdk.network.cache.ResponseCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HTTP Client using the JDK's {@link HttpClient}.
+ * <p>
+ * Requests are sent using HTTP/2 when the server supports it, otherwise the client falls back to HTTP/1.1.
+ * With HTTP/2 concurrent requests are multiplexed over a small number of connections and
+ * {@link #executeAsync(OctaneHttpRequest)} does not block a thread while the request is in flight.
+ * </p>
+ * <p>
+ * Request content that is written by a {@link OctaneHttpRequest.ContentWriter} is piped into the request body while it
+ * is sent, and {@link #executeStreaming(OctaneHttpRequest)} returns the response content as it is received.  The content
+ * of a streamed response is read by the caller, when {@link #executeStreamingAsync(OctaneHttpRequest)} is used the
+ * continuations run on the executor of the {@link HttpClient}, which should therefore not be a small bounded pool
+ * </p>
+ * <p>
+ * The session handling (LWSSO cookie, re-authentication on session timeout) and the ETag support behave the same
+ * as in {@link com.hpe.adm.nga.sdk.network.google.GoogleHttpClient}
+ * </p>
+ */
+public class JdkHttpClient implements OctaneHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdkHttpClient.class.getName());
+
+    private static final String LOGGER_REQUEST_FORMAT = "Request: {} - {} - {}";
+    private static final String LOGGER_RESPONSE_FORMAT = "Response: {} - {} - {}";
+
+    private static final String SET_COOKIE = "set-cookie";
+    private static final String COOKIE = "Cookie";
+    private static final String ACCEPT = "Accept";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String ETAG = "ETag";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String CHARSET_PARAMETER = "charset=";
+    private static final String HTTP_MULTIPART_BOUNDARY_VALUE = "---------------------------92348603315617859231724135434";
+    private static final String HTTP_MULTIPART_CONTENT_TYPE = "multipart/form-data; boundary=" + HTTP_MULTIPART_BOUNDARY_VALUE;
+    private static final String HTTP_MULTIPART_PART1_FORMAT = "--%s\r\nContent-Disposition: form-data; name=\"entity\"; filename=\"blob\"\r\nContent-Type: %s\r\n\r\n%s\r\n";
+    private static final String HTTP_MULTIPART_PART2_FORMAT = "--%s\r\nContent-Disposition: form-data; name=\"content\"; filename=\"%s\"\r\nContent-Type: %s\r\n\r\n";
+    private static final String HTTP_MULTIPART_END_FORMAT = "\r\n--%s--\r\n";
+
+    private static final int HTTP_REQUEST_RETRY_COUNT = 1;
+    private static final int HTTP_STATUS_NOT_MODIFIED = 304;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final int CONTENT_PIPE_SIZE = 64 * 1024;
+    private static final AtomicInteger contentWriterThreadCount = new AtomicInteger();
+    // writes the content of requests into the pipe that the HttpClient reads the request body from
+    private static final ExecutorService CONTENT_WRITER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "octane-content-writer-" + contentWriterThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    protected final HttpClient httpClient;
+    protected final String urlDomain;
+    protected volatile String lwssoValue = "";
+    protected volatile String octaneUserValue;
+    protected volatile Authentication lastUsedAuthentication;
+    protected volatile Date lastSuccessfulAuthTimestamp = new Date(0);
+    private final ResponseCache responseCache;
+    private final Object authenticationLock = new Object();
+    // the last authentication request sent, explicit or re-authentication, the next one is only sent after it completed
+    private CompletableFuture<Boolean> pendingAuthentication;
+    // incremented on every successful authentication, a request that expired with an older session can be retried directly
+    private final AtomicLong sessionGeneration = new AtomicLong();
+
+    /**
+     * Creates a client using the default JDK {@link HttpClient} settings
+     *
+     * @param urlDomain base url of the octane server
+     */
+    public JdkHttpClient(final String urlDomain) {
+        this(urlDomain, HttpClient.newBuilder());
+    }
+
+    /**
+     * Creates a client from a pre-configured builder.  This can be used to set a proxy, an {@link javax.net.ssl.SSLContext}
+     * or the {@link java.util.concurrent.Executor} that runs the response handlers.
+     * The HTTP version is always set to HTTP/2 and cookies are handled by this class
+     *
+     * @param urlDomain         base url of the octane server
+     * @param httpClientBuilder builder used to create the underlying {@link HttpClient}
+     */
+    public JdkHttpClient(final String urlDomain, final HttpClient.Builder httpClientBuilder) {
+        this(urlDomain, httpClientBuilder, new LruResponseCache());
+    }
+
+    /**
+     * Creates a client from a pre-configured builder that caches GET responses that have an ETag in the given cache
+     *
+     * @param urlDomain         base url of the octane server
+     * @param httpClientBuilder builder used to create the underlying {@link HttpClient}
+     * @param responseCache     cache used for conditional GET requests, null to disable caching
+     */
+    public JdkHttpClient(final String urlDomain, final HttpClient.Builder httpClientBuilder, final ResponseCache responseCache) {
+        this.urlDomain = urlDomain;
+        this.responseCache = responseCache;
+        this.httpClient = httpClientBuilder
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * @return - Returns true if the authentication succeeded, false otherwise.
+     */
+    @Override
+    public boolean authenticate(Authentication authentication) {
+        final CompletableFuture<Boolean> authenticationFuture;
+        synchronized (authenticationLock) {
+            authenticationFuture = queueAuthentication(authentication);
+        }
+        try {
+            return authenticationFuture.join();
+        } catch (CompletionException e) {
+            throw toRuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends the authentication request once the pending one completed, so that an explicit authentication and a
+     * re-authentication are never in flight at the same time.  Has to be called while holding the authentication lock
+     *
+     * @param authentication the authentication to use
+     * @return future that completes once the session cookie was updated
+     */
+    private CompletableFuture<Boolean> queueAuthentication(Authentication authentication) {
+        final CompletableFuture<Boolean> previous = pendingAuthentication;
+        pendingAuthentication = previous == null || previous.isDone()
+                ? authenticateAsync(authentication)
+                : previous.handle((authenticated, throwable) -> null).thenCompose(ignored -> authenticateAsync(authentication));
+        return pendingAuthentication;
+    }
+
+    /**
+     * Sends the authentication request without blocking the calling thread
+     *
+     * @param authentication the authentication to use
+     * @return future that completes once the session cookie was updated
+     */
+    private CompletableFuture<Boolean> authenticateAsync(Authentication authentication) {
+        lastUsedAuthentication = authentication;
+        final HttpRequest httpRequest;
+        try {
+            // The session cookies are not sent to the auth request, server might return 304.  They are not reset either so
+            // that the requests sent meanwhile still fail as expired and wait for this authentication to be retried.
+            // Authenticate request should never set the api mode header.
+            // Newer versions of the Octane server will not accept a private access level HPE_CLIENT_TYPE on the authentication request.
+            httpRequest = HttpRequest.newBuilder(URI.create(urlDomain + OAUTH_AUTH_URL))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header(CONTENT_TYPE, OctaneHttpRequest.JSON_CONTENT_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofString(authentication.getAuthenticationString(), StandardCharsets.UTF_8))
+                    .build();
+        } catch (RuntimeException e) {
+            lastUsedAuthentication = null; //not reusable
+            return CompletableFuture.failedFuture(e);
+        }
+
+        logRequest(httpRequest, null);
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).handle((response, throwable) -> {
+            if (throwable == null) {
+                logger.debug(LOGGER_RESPONSE_FORMAT, response.statusCode(), response.version(), response.headers().map());
+                if (isSuccessStatusCode(response.statusCode())) {
+                    octaneUserValue = null;
+                    updateLWSSOCookieValue(response.headers());
+                    lastSuccessfulAuthTimestamp = new Date();
+                    sessionGeneration.incrementAndGet();
+                    return true;
+                }
+            }
+            lastUsedAuthentication = null; //not reusable
+            throw throwable != null ? toRuntimeException(throwable) : toException(httpRequest, response);
+        });
+    }
+
+    @Override
+    public synchronized void signOut() {
+        final HttpRequest httpRequest = newRequestBuilder(urlDomain + OAUTH_SIGNOUT_URL, true)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        final HttpResponse<byte[]> response = send(httpRequest);
+        if (isSuccessStatusCode(response.statusCode())) {
+            lastUsedAuthentication = null;
+        } else {
+            throw toException(httpRequest, response);
+        }
+    }
+
+    @Override
+    public OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest) {
+        try {
+            return executeAsync(octaneHttpRequest).join();
+        } catch (CompletionException e) {
+            throw toRuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest) {
+        return executeAsync(octaneHttpRequest, HTTP_REQUEST_RETRY_COUNT, false);
+    }
+
+    /**
+     * The content is streamed unless the response has an ETag and has to be stored in the response cache
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return the response
+     */
+    @Override
+    public OctaneHttpResponse executeStreaming(OctaneHttpRequest octaneHttpRequest) {
+        try {
+            return executeStreamingAsync(octaneHttpRequest).join();
+        } catch (CompletionException e) {
+            throw toRuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest) {
+        return executeAsync(octaneHttpRequest, HTTP_REQUEST_RETRY_COUNT, true);
+    }
+
+    /**
+     * The request is sent without blocking any thread so the executor is not needed, see
+     * {@link #executeAsync(OctaneHttpRequest, Executor)}
+     */
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return executeStreamingAsync(octaneHttpRequest);
+    }
+
+    /**
+     * The request is sent without blocking any thread so the executor is not needed; callers that want their
+     * continuations to run on it should use the async variants of {@link CompletableFuture}
+     */
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return executeAsync(octaneHttpRequest);
+    }
+
+    /**
+     * Executes the request and retries it in case of auth token timeout
+     * Careful, this method calls itself recursively to retry the request
+     *
+     * @param octaneHttpRequest abstract request, has to be converted into a specific implementation of http request
+     * @param retryCount        number of times the method should retry the request if the session expired
+     * @param streaming         whether the content of a successful response is streamed instead of read into memory
+     * @return future of the OctaneHttpResponse
+     */
+    private CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest, int retryCount, boolean streaming) {
+        final CompletableFuture<OctaneHttpResponse> result = new CompletableFuture<>();
+        final long requestSessionGeneration = sessionGeneration.get();
+        final String cacheKey = responseCache == null ? null : ResponseCache.keyOf(octaneHttpRequest);
+        final CachedResponse cachedResponse = cacheKey == null ? null : responseCache.get(cacheKey);
+        final HttpRequest httpRequest;
+        try {
+            httpRequest = convertOctaneRequestToJdkHttpRequest(octaneHttpRequest, cachedResponse);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        logRequest(httpRequest, octaneHttpRequest);
+
+        final CompletableFuture<OctaneHttpResponse> response = streaming
+                ? httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(httpResponse -> convertStreamedHttpResponseToOctaneHttpResponse(octaneHttpRequest, cachedResponse, httpRequest, httpResponse))
+                : httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(httpResponse -> convertHttpResponseToOctaneHttpResponse(octaneHttpRequest, cachedResponse, httpRequest, httpResponse));
+
+        response.whenComplete((octaneHttpResponse, throwable) -> {
+            try {
+                if (throwable != null) {
+                    throw toRuntimeException(throwable);
+                }
+                result.complete(octaneHttpResponse);
+            } catch (RuntimeException exception) {
+
+                //Handle session timeout exception
+                if (retryCount > 0 && OctaneExceptionFactory.isSessionExpired(exception) && lastUsedAuthentication != null) {
+                    reauthenticateAsync(requestSessionGeneration).thenCompose(ignored -> {
+                        logger.debug("Retrying request, retries left: {}", retryCount);
+                        return executeAsync(octaneHttpRequest, retryCount - 1, streaming);
+                    }).whenComplete((retryResponse, retryThrowable) -> {
+                        if (retryThrowable != null) {
+                            result.completeExceptionally(toRuntimeException(retryThrowable));
+                        } else {
+                            result.complete(retryResponse);
+                        }
+                    });
+                } else {
+                    result.completeExceptionally(exception);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Re-authenticates using the last used authentication unless another request already did so since the failed
+     * request was sent.  The authentication request is sent asynchronously so the thread that handles the
+     * expired response is not blocked, and requests that expire while a re-authentication is in flight wait for the
+     * same one
+     *
+     * @param requestSessionGeneration the session generation when the failed request was sent
+     * @return future that completes when the request can be retried
+     */
+    private CompletableFuture<Void> reauthenticateAsync(long requestSessionGeneration) {
+        final CompletableFuture<Boolean> authenticationFuture;
+        synchronized (authenticationLock) {
+            final Authentication authentication = lastUsedAuthentication;
+            // If another thread already handled session timeout, skip the re-auth and just retry the request
+            if (authentication == null || sessionGeneration.get() != requestSessionGeneration) {
+                logger.debug("Auth token expired, but re-authentication was handled by another thread, will not re-authenticate");
+                return CompletableFuture.completedFuture(null);
+            }
+            if (pendingAuthentication != null && !pendingAuthentication.isDone()) {
+                logger.debug("Auth token expired, waiting for the pending authentication");
+                authenticationFuture = pendingAuthentication;
+            } else {
+                logger.debug("Auth token expired, trying to re-authenticate");
+                authenticationFuture = queueAuthentication(authentication);
+            }
+        }
+        return authenticationFuture.handle((authenticated, throwable) -> {
+            final Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof OctaneException) {
+                logger.debug("Exception while retrying authentication: {}", cause.getMessage());
+            } else if (cause != null) {
+                throw toRuntimeException(cause);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Convert the abstract {@link OctaneHttpRequest} object to a specific {@link HttpRequest} for the JDK http client
+     *
+     * @param octaneHttpRequest input {@link OctaneHttpRequest}
+     * @param cachedResponse    the cached response to revalidate, can be null
+     * @return {@link HttpRequest}
+     */
+    protected HttpRequest convertOctaneRequestToJdkHttpRequest(OctaneHttpRequest octaneHttpRequest, CachedResponse cachedResponse) {
+        final HttpRequest.Builder builder = newRequestBuilder(octaneHttpRequest.getRequestUrl(), true);
+        switch (octaneHttpRequest.getOctaneRequestMethod()) {
+            case GET: {
+                setHeaderIfPresent(builder, ACCEPT, ((OctaneHttpRequest.GetOctaneHttpRequest) octaneHttpRequest).getAcceptType());
+                if (cachedResponse != null) {
+                    builder.header(ETAG, cachedResponse.getETag());
+                    builder.header(IF_NONE_MATCH, cachedResponse.getETag());
+                }
+                builder.GET();
+                break;
+            }
+            case POST: {
+                final OctaneHttpRequest.PostOctaneHttpRequest postOctaneHttpRequest = (OctaneHttpRequest.PostOctaneHttpRequest) octaneHttpRequest;
+                setHeaderIfPresent(builder, ACCEPT, postOctaneHttpRequest.getAcceptType());
+                setHeaderIfPresent(builder, CONTENT_TYPE, postOctaneHttpRequest.getContentType());
+                builder.POST(postOctaneHttpRequest.hasContentWriter()
+                        ? ofContent(postOctaneHttpRequest::writeContent)
+                        : ofString(postOctaneHttpRequest.getContent()));
+                break;
+            }
+            case POST_BINARY: {
+                final OctaneHttpRequest.PostBinaryOctaneHttpRequest postBinaryOctaneHttpRequest = (OctaneHttpRequest.PostBinaryOctaneHttpRequest) octaneHttpRequest;
+                setHeaderIfPresent(builder, ACCEPT, postBinaryOctaneHttpRequest.getAcceptType());
+                builder.header(CONTENT_TYPE, HTTP_MULTIPART_CONTENT_TYPE);
+                builder.POST(HttpRequest.BodyPublishers.ofInputStream(() -> generateMultiPartContent(postBinaryOctaneHttpRequest)));
+                break;
+            }
+            case PUT: {
+                final OctaneHttpRequest.PutOctaneHttpRequest putOctaneHttpRequest = (OctaneHttpRequest.PutOctaneHttpRequest) octaneHttpRequest;
+                setHeaderIfPresent(builder, ACCEPT, putOctaneHttpRequest.getAcceptType());
+                setHeaderIfPresent(builder, CONTENT_TYPE, putOctaneHttpRequest.getContentType());
+                builder.PUT(putOctaneHttpRequest.hasContentWriter()
+                        ? ofContent(putOctaneHttpRequest::writeContent)
+                        : ofString(putOctaneHttpRequest.getContent()));
+                break;
+            }
+            case DELETE: {
+                builder.DELETE();
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Request method not known!");
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Convert the JDK {@link HttpResponse} to an {@link OctaneHttpResponse}.  Unsuccessful responses are converted
+     * to the matching exception
+     *
+     * @param octaneHttpRequest the request that was sent
+     * @param cachedResponse    the cached response that was revalidated, can be null
+     * @param httpRequest       the JDK request that was sent
+     * @param httpResponse      JDK response
+     * @return {@link OctaneHttpResponse} created from the JDK response
+     */
+    protected OctaneHttpResponse convertHttpResponseToOctaneHttpResponse(OctaneHttpRequest octaneHttpRequest, CachedResponse cachedResponse, HttpRequest httpRequest, HttpResponse<byte[]> httpResponse) {
+        logger.debug(LOGGER_RESPONSE_FORMAT, httpResponse.statusCode(), httpResponse.version(), httpResponse.headers().map());
+
+        // retrieve new LWSSO in response if any
+        updateLWSSOCookieValue(httpResponse.headers());
+
+        final int statusCode = httpResponse.statusCode();
+        final String cacheKey = responseCache == null ? null : ResponseCache.keyOf(octaneHttpRequest);
+        if (statusCode == HTTP_STATUS_NOT_MODIFIED && cachedResponse != null) {
+            //Return cached response
+            responseCache.put(cacheKey, cachedResponse.revalidated());
+            return cachedResponse.toOctaneHttpResponse();
+        }
+
+        if (!isSuccessStatusCode(statusCode)) {
+            throw toException(httpRequest, httpResponse);
+        }
+
+        final OctaneHttpResponse octaneHttpResponse = new OctaneHttpResponse(statusCode, httpResponse.body(), getContentCharset(httpResponse.headers()));
+        if (cacheKey != null) {
+            httpResponse.headers().firstValue(ETAG).ifPresent(eTag -> responseCache.put(cacheKey, CachedResponse.of(eTag, octaneHttpResponse)));
+        }
+        return octaneHttpResponse;
+    }
+
+    /**
+     * Same as {@link #convertHttpResponseToOctaneHttpResponse(OctaneHttpRequest, CachedResponse, HttpRequest, HttpResponse)}
+     * for a response whose content has not been read yet.  The content of a successful response is returned as a stream,
+     * unless the response has to be stored in the response cache.  The content of other responses is read to convert
+     * them
+     *
+     * @param octaneHttpRequest the request that was sent
+     * @param cachedResponse    the cached response that was revalidated, can be null
+     * @param httpRequest       the JDK request that was sent
+     * @param httpResponse      JDK response with the unread content
+     * @return {@link OctaneHttpResponse} created from the JDK response
+     */
+    protected OctaneHttpResponse convertStreamedHttpResponseToOctaneHttpResponse(OctaneHttpRequest octaneHttpRequest, CachedResponse cachedResponse, HttpRequest httpRequest, HttpResponse<InputStream> httpResponse) {
+        final int statusCode = httpResponse.statusCode();
+        final boolean cacheable = responseCache != null && ResponseCache.keyOf(octaneHttpRequest) != null && httpResponse.headers().firstValue(ETAG).isPresent();
+        if (!isSuccessStatusCode(statusCode) || cacheable) {
+            final byte[] content;
+            try (InputStream inputStream = httpResponse.body()) {
+                content = inputStream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return convertHttpResponseToOctaneHttpResponse(octaneHttpRequest, cachedResponse, httpRequest, new BufferedHttpResponse(httpResponse, content));
+        }
+
+        logger.debug(LOGGER_RESPONSE_FORMAT, statusCode, httpResponse.version(), httpResponse.headers().map());
+        updateLWSSOCookieValue(httpResponse.headers());
+        return OctaneHttpResponse.streamed(statusCode, httpResponse.body(), getContentCharset(httpResponse.headers()));
+    }
+
+    private HttpRequest.Builder newRequestBuilder(String url, boolean setApiMode) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT);
+
+        final StringBuilder cookieBuilder = new StringBuilder();
+        final String lwsso = lwssoValue;
+        final String octaneUser = octaneUserValue;
+        if (lwsso != null && !lwsso.isEmpty()) {
+            cookieBuilder.append(LWSSO_COOKIE_KEY).append("=").append(lwsso);
+        }
+        if (octaneUser != null && !octaneUser.isEmpty()) {
+            if (cookieBuilder.length() > 0) {
+                cookieBuilder.append(";");
+            }
+            cookieBuilder.append(OCTANE_USER_COOKIE_KEY).append("=").append(octaneUser);
+        }
+        if (cookieBuilder.length() > 0) {
+            builder.header(COOKIE, cookieBuilder.toString());
+        }
+
+        final Authentication authentication = lastUsedAuthentication;
+        if (setApiMode && authentication != null) {
+            authentication.getAPIMode().ifPresent(apiMode -> builder.header(apiMode.getHeaderKey(), apiMode.getHeaderValue()));
+        }
+        return builder;
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest httpRequest) {
+        logRequest(httpRequest, null);
+        final HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        logger.debug(LOGGER_RESPONSE_FORMAT, response.statusCode(), response.version(), response.headers().map());
+        updateLWSSOCookieValue(response.headers());
+        return response;
+    }
+
+    private static RuntimeException toRuntimeException(Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+    }
+
+    private static RuntimeException toException(HttpRequest httpRequest, HttpResponse<byte[]> httpResponse) {
+        final String content = httpResponse.body() == null ? null : new String(httpResponse.body(), getContentCharset(httpResponse.headers()));
+        final RuntimeException octaneException = OctaneExceptionFactory.fromResponse(
+                httpResponse.statusCode(),
+                null,
+                content,
+                httpRequest.headers().firstValue(COOKIE).orElse(null),
+                httpResponse.headers().firstValue(RETRY_AFTER).orElse(null));
+
+        //In case nothing in the response is parsable
+        return octaneException != null ? octaneException : new RuntimeException(httpResponse.statusCode() + " " + content);
+    }
+
+    private static HttpRequest.BodyPublisher ofString(String content) {
+        return content == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pipes the content of a request into its body while it is sent, so that the content is never held in memory as a
+     * whole.  The content is written on a separate thread since the {@link HttpClient} pulls the body from a stream
+     */
+    private static HttpRequest.BodyPublisher ofContent(OctaneHttpRequest.ContentWriter contentWriter) {
+        return HttpRequest.BodyPublishers.ofInputStream(() -> pipe(contentWriter));
+    }
+
+    /**
+     * Starts writing the content into a pipe.  A failure of the writer is thrown by the returned stream once it has read
+     * everything that was written before the failure, so that a truncated body is never sent as if it was complete
+     */
+    private static InputStream pipe(OctaneHttpRequest.ContentWriter contentWriter) {
+        final PipedInputStream pipedInputStream = new PipedInputStream(CONTENT_PIPE_SIZE);
+        final PipedOutputStream pipedOutputStream;
+        try {
+            pipedOutputStream = new PipedOutputStream(pipedInputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        CONTENT_WRITER_EXECUTOR.execute(() -> {
+            try {
+                contentWriter.writeTo(pipedOutputStream);
+            } catch (IOException e) {
+                failure.set(e);
+            } catch (RuntimeException e) {
+                failure.set(new IOException(e));
+            } finally {
+                try {
+                    pipedOutputStream.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close the request content pipe", e);
+                }
+            }
+        });
+
+        return new FilterInputStream(pipedInputStream) {
+            @Override
+            public int read() throws IOException {
+                return checkFailure(super.read());
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return checkFailure(super.read(buffer, offset, length));
+            }
+
+            private int checkFailure(int read) throws IOException {
+                if (read == -1 && failure.get() != null) {
+                    throw failure.get();
+                }
+                return read;
+            }
+        };
+    }
+
+    private static void logRequest(HttpRequest httpRequest, OctaneHttpRequest octaneHttpRequest) {
+        logger.debug(LOGGER_REQUEST_FORMAT, httpRequest.method(), httpRequest.uri(), httpRequest.headers().map());
+
+        // Make sure you don't log any http content send to the login rest api, since you don't want credentials in the logs
+        // Binary content is never logged since reading it would make it unusable for the actual request
+        if (logger.isDebugEnabled() && octaneHttpRequest != null) {
+            if (octaneHttpRequest instanceof OctaneHttpRequest.PostOctaneHttpRequest) {
+                final OctaneHttpRequest.PostOctaneHttpRequest postOctaneHttpRequest = (OctaneHttpRequest.PostOctaneHttpRequest) octaneHttpRequest;
+                logContent(httpRequest, postOctaneHttpRequest.getContentType(), postOctaneHttpRequest.hasContentWriter() ? null : postOctaneHttpRequest.getContent());
+            } else if (octaneHttpRequest instanceof OctaneHttpRequest.PutOctaneHttpRequest) {
+                final OctaneHttpRequest.PutOctaneHttpRequest putOctaneHttpRequest = (OctaneHttpRequest.PutOctaneHttpRequest) octaneHttpRequest;
+                logContent(httpRequest, putOctaneHttpRequest.getContentType(), putOctaneHttpRequest.hasContentWriter() ? null : putOctaneHttpRequest.getContent());
+            }
+        }
+    }
+
+    /**
+     * Content that is written by a content writer is only written when the request is sent, writing it for the log would
+     * serialize the entities a second time, so only its type and length are logged
+     *
+     * @param content the content, or null if it is written by a content writer
+     */
+    private static void logContent(HttpRequest httpRequest, String contentType, String content) {
+        if (content != null) {
+            logger.debug("Content: " + content);
+            return;
+        }
+        final long contentLength = httpRequest.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(-1L);
+        logger.debug("Content: type: " + contentType + ", length: " + (contentLength < 0 ? "streamed" : String.valueOf(contentLength)));
+    }
+
+    /**
+     * Generates the multipart content of a binary post, the binary stream is not copied
+     *
+     * @param octaneHttpRequest - the binary request
+     * @return - stream of the multipart content
+     */
+    private static InputStream generateMultiPartContent(OctaneHttpRequest.PostBinaryOctaneHttpRequest octaneHttpRequest) {
+        final String part1 = String.format(HTTP_MULTIPART_PART1_FORMAT, HTTP_MULTIPART_BOUNDARY_VALUE, OctaneHttpRequest.JSON_CONTENT_TYPE, octaneHttpRequest.getContent());
+        final String part2Header = String.format(HTTP_MULTIPART_PART2_FORMAT, HTTP_MULTIPART_BOUNDARY_VALUE, octaneHttpRequest.getBinaryContentName(), octaneHttpRequest.getBinaryContentType());
+        final String end = String.format(HTTP_MULTIPART_END_FORMAT, HTTP_MULTIPART_BOUNDARY_VALUE);
+
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream((part1 + part2Header).getBytes(StandardCharsets.UTF_8)),
+                octaneHttpRequest.getBinaryInputStream(),
+                new ByteArrayInputStream(end.getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    /**
+     * According to RFC 2616 section 3.7.1 the correct encoding should be returned.
+     * Currently Octane does not return UTF-8 for the REST API even though that is the encoding, so JSON is always read as UTF-8
+     *
+     * @param headers response headers
+     * @return the charset of the content
+     */
+    private static Charset getContentCharset(HttpHeaders headers) {
+        final String contentType = headers.firstValue(CONTENT_TYPE).orElse("");
+        if (contentType.startsWith(OctaneHttpRequest.JSON_CONTENT_TYPE)) {
+            return StandardCharsets.UTF_8;
+        }
+        final int charsetIndex = contentType.toLowerCase(Locale.ROOT).indexOf(CHARSET_PARAMETER);
+        if (charsetIndex >= 0) {
+            final String charsetName = contentType.substring(charsetIndex + CHARSET_PARAMETER.length()).split(";")[0].trim().replace("\"", "");
+            try {
+                return Charset.forName(charsetName);
+            } catch (IllegalArgumentException e) {
+                logger.debug("Unsupported response charset {}", charsetName);
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    private static void setHeaderIfPresent(HttpRequest.Builder builder, String name, String value) {
+        if (value != null) {
+            builder.header(name, value);
+        }
+    }
+
+    private static boolean isSuccessStatusCode(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Retrieve new cookie from set-cookie header
+     *
+     * @param headers The headers containing the cookie
+     * @return true if LWSSO cookie is renewed
+     */
+    private boolean updateLWSSOCookieValue(HttpHeaders headers) {
+        boolean renewed = false;
+        for (String strCookie : headers.allValues(SET_COOKIE)) {
+            List<HttpCookie> cookies;
+            try {
+                // Sadly the server seems to send back empty cookies for some reason
+                cookies = HttpCookie.parse(strCookie);
+            } catch (Exception ex) {
+                logger.error("Failed to parse SET_COOKIE header, issue with cookie: \"" + strCookie + "\", " + ex);
+                continue;
+            }
+            Optional<HttpCookie> lwssoCookie = cookies.stream().filter(a -> a.getName().equals(LWSSO_COOKIE_KEY)).findFirst();
+            if (lwssoCookie.isPresent()) {
+                lwssoValue = lwssoCookie.get().getValue();
+                renewed = true;
+            } else {
+                cookies.stream().filter(cookie -> cookie.getName().equals(OCTANE_USER_COOKIE_KEY)).findAny().ifPresent(cookie -> octaneUserValue = cookie.getValue());
+            }
+        }
+        return renewed;
+    }
+
+    /**
+     * A streamed response whose content has been read, so that it can be converted like a response received as bytes
+     */
+    private static final class BufferedHttpResponse implements HttpResponse<byte[]> {
+        private final HttpResponse<InputStream> httpResponse;
+        private final byte[] content;
+
+        private BufferedHttpResponse(HttpResponse<InputStream> httpResponse, byte[] content) {
+            this.httpResponse = httpResponse;
+            this.content = content;
+        }
+
+        @Override
+        public int statusCode() {
+            return httpResponse.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return httpResponse.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<byte[]>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return httpResponse.headers();
+        }
+
+        @Override
+        public byte[] body() {
+            return content;
+        }
+
+        @Override
+        public Optional<javax.net.ssl.SSLSession> sslSession() {
+            return httpResponse.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return httpResponse.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return httpResponse.version();
+        }
+    }
+
+    /**
+     * @return the cache used for conditional GET requests, null if caching is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public static int getHttpRequestRetryCount() {
+        return HTTP_REQUEST_RETRY_COUNT;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.jdk;
+
+import com.hpe.adm.nga.sdk.authentication.SimpleUserAuthentication;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestJdkHttpClient {
+
+    private static final String ENTITIES_JSON = "{\"total_count\":1,\"data\":[{\"type\":\"defect\",\"id\":\"1001\"}],\"exceeds_total_count\":false}";
+    private static final String ERROR_JSON = "{\"error_code\":\"platform.entity_not_found\",\"description\":\"not found\"}";
+    private static final String UNAUTHORIZED_JSON = "{\"error_code\":\"platform.unauthorized\",\"description\":\"session expired\"}";
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger signInCount = new AtomicInteger();
+    private volatile String validToken;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/authentication/sign_in", exchange -> {
+            // the body is read so that the server keeps the connection open for the next requests
+            exchange.getRequestBody().readAllBytes();
+            validToken = "token" + signInCount.incrementAndGet();
+            exchange.getResponseHeaders().add("Set-Cookie", "LWSSO_COOKIE_KEY=" + validToken + "; Path=/");
+            respond(exchange, 200, "");
+        });
+        server.createContext("/api/entities", exchange -> {
+            final String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            if (cookie == null || !cookie.contains("LWSSO_COOKIE_KEY=" + validToken)) {
+                // answered with a body like Octane does, the test server sometimes resets the connection after an empty
+                // response and the re-authentication may reuse it
+                respond(exchange, 401, UNAUTHORIZED_JSON);
+            } else if ("v1".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                exchange.getResponseHeaders().add("ETag", "v1");
+                respond(exchange, 200, ENTITIES_JSON);
+            }
+        });
+        server.createContext("/api/user", exchange -> {
+            exchange.getResponseHeaders().add("Set-Cookie", "OCTANE_USER=user1; Path=/");
+            respond(exchange, 200, "");
+        });
+        server.createContext("/api/cookie", exchange -> respond(exchange, 200, String.valueOf(exchange.getRequestHeaders().getFirst("Cookie"))));
+        server.createContext("/api/error", exchange -> respond(exchange, 404, ERROR_JSON));
+        server.createContext("/api/echo", exchange -> {
+            final byte[] body = exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, new String(body, StandardCharsets.UTF_8));
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testAuthenticateAndGet() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        assertTrue(client.authenticate(new SimpleUserAuthentication("user", "password")));
+
+        final OctaneHttpResponse response = client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities").setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE));
+        assertTrue(response.isSuccessStatusCode());
+        assertEquals(ENTITIES_JSON, response.getContent());
+    }
+
+    @Test
+    public void testReAuthenticateOnSessionTimeout() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+        validToken = "expired";
+
+        final OctaneHttpResponse response = client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities"));
+        assertEquals(ENTITIES_JSON, response.getContent());
+        assertEquals(2, signInCount.get());
+    }
+
+    @Test
+    public void testConcurrentSessionTimeoutsReAuthenticateOnce() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+        validToken = "expired";
+
+        final List<CompletableFuture<OctaneHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.executeAsync(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities?offset=" + i)));
+        }
+        futures.forEach(future -> assertEquals(ENTITIES_JSON, future.join().getContent()));
+        assertEquals(2, signInCount.get());
+    }
+
+    @Test
+    public void testOctaneUserCookieWithoutSessionCookie() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/user"));
+
+        final OctaneHttpResponse response = client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/cookie"));
+        assertEquals("OCTANE_USER=user1", response.getContent());
+    }
+
+    @Test
+    public void testNotModifiedReturnsCachedResponse() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+
+        final OctaneHttpRequest request = new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities");
+        final OctaneHttpResponse first = client.execute(request);
+        final OctaneHttpResponse second = client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities"));
+        assertEquals(200, second.getStatusCode());
+        assertEquals(first.getContent(), second.getContent());
+        assertEquals(1, client.getResponseCache().getStats().getHitCount());
+    }
+
+    @Test
+    public void testErrorIsParsed() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+
+        try {
+            client.execute(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/error"));
+            fail("Expected an OctaneException");
+        } catch (OctaneException e) {
+            assertEquals(404L, e.getError().getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME).getValue());
+            assertEquals("platform.entity_not_found", e.getError().getValue("error_code").getValue());
+        }
+    }
+
+    @Test
+    public void testExecuteAsync() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+
+        final List<CompletableFuture<OctaneHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(client.executeAsync(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities?offset=" + i)));
+        }
+        futures.forEach(future -> assertEquals(ENTITIES_JSON, future.join().getContent()));
+    }
+
+    @Test
+    public void testContentWriterIsPipedIntoRequest() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("{\"id\":\"").append(i).append("\"},");
+        }
+        final String expected = content.toString();
+
+        final OctaneHttpResponse response = client.execute(new OctaneHttpRequest.PostOctaneHttpRequest(url + "/api/echo", OctaneHttpRequest.JSON_CONTENT_TYPE,
+                outputStream -> outputStream.write(expected.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(expected, response.getContent());
+
+        final OctaneHttpResponse putResponse = client.execute(new OctaneHttpRequest.PutOctaneHttpRequest(url + "/api/echo", OctaneHttpRequest.JSON_CONTENT_TYPE, "{}"));
+        assertEquals("{}", putResponse.getContent());
+    }
+
+    @Test
+    public void testFailedContentWriterFailsRequest() {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        try {
+            client.execute(new OctaneHttpRequest.PostOctaneHttpRequest(url + "/api/echo", OctaneHttpRequest.JSON_CONTENT_TYPE, outputStream -> {
+                outputStream.write("{\"data\":[".getBytes(StandardCharsets.UTF_8));
+                throw new IOException("serialization failed");
+            }));
+            fail("The failure of the content writer should fail the request");
+        } catch (RuntimeException e) {
+            // expected, the truncated body must not be sent as complete
+        }
+    }
+
+    @Test
+    public void testExecuteStreaming() throws IOException {
+        final JdkHttpClient client = new JdkHttpClient(url);
+        final OctaneHttpResponse response = client.executeStreaming(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/cookie"));
+        assertEquals(200, response.getStatusCode());
+        try (InputStream inputStream = response.getInputStream()) {
+            assertEquals("null", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // a response with an ETag is read to store it in the cache
+        client.authenticate(new SimpleUserAuthentication("user", "password"));
+        assertEquals(ENTITIES_JSON, client.executeStreaming(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities")).getContent());
+        assertEquals(ENTITIES_JSON, client.executeStreamingAsync(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/entities")).join().getContent());
+        assertEquals(1, client.getResponseCache().getStats().getHitCount());
+
+        try {
+            client.executeStreaming(new OctaneHttpRequest.GetOctaneHttpRequest(url + "/api/error"));
+            fail("Expected an OctaneException");
+        } catch (OctaneException e) {
+            assertEquals("platform.entity_not_found", e.getError().getValue("error_code").getValue());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -15,11 +15,17 @@ package com.hpe.adm.nga.sdk;
 
 import com.hpe.adm.nga.sdk.attachments.AttachmentList;
 import com.hpe.adm.nga.sdk.authentication.Authentication;
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.entities.EntityList;
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
+import com.hpe.adm.nga.sdk.entities.get.ReferenceLoader;
 import com.hpe.adm.nga.sdk.metadata.Metadata;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.google.GoogleHttpClient;
+import com.hpe.adm.nga.sdk.sync.ChangeFeed;
+import com.hpe.adm.nga.sdk.sync.ChangeListener;
+import com.hpe.adm.nga.sdk.sync.EntityReplica;
+import com.hpe.adm.nga.sdk.sync.WatermarkStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,13 +69,15 @@ public class Octane {
     private final String idsharedSpaceId;
     private final long workSpaceId;
     private final OctaneHttpClient octaneHttpClient;
+    private final EntityCache entityCache;
 
     // functions
-    private Octane(OctaneHttpClient octaneHttpClient, String domain, String sharedSpaceId, long workId) {
+    private Octane(OctaneHttpClient octaneHttpClient, String domain, String sharedSpaceId, long workId, EntityCache entityCache) {
         this.octaneHttpClient = octaneHttpClient;
         urlDomain = domain;
         idsharedSpaceId = sharedSpaceId;
         workSpaceId = workId;
+        this.entityCache = entityCache;
     }
 
     /**
@@ -84,7 +92,8 @@ public class Octane {
      * @return A new EntityList object that list of entities
      */
     public EntityList entityList(String entityName) {
-        return OctaneClassFactory.getSystemParamImplementation().getEntityList(octaneHttpClient, getBaseDomainFormat(), entityName);
+        final EntityList entityList = OctaneClassFactory.getSystemParamImplementation().getEntityList(octaneHttpClient, getBaseDomainFormat(), entityName);
+        return entityCache == null ? entityList : entityList.cache(entityCache);
     }
 
     /**
@@ -113,6 +122,49 @@ public class Octane {
         return new Metadata(octaneHttpClient, getBaseDomainFormat());
     }
 
+    /**
+     * Creates a new {@link ReferenceLoader} that fills in the entities that are the values of reference fields with
+     * bulk requests.  The loader caches the entities it fetches for its lifetime, so use one loader per batch of work
+     *
+     * @return A new ReferenceLoader for this context
+     */
+    public ReferenceLoader referenceLoader() {
+        return new ReferenceLoader(this);
+    }
+
+    /**
+     * Creates a new {@link OctaneSession}, a unit of work that tracks the entities that are loaded, created, changed and
+     * deleted through it and sends all the changes with a few batched requests on {@link OctaneSession#flush()}
+     *
+     * @return A new OctaneSession for this context
+     */
+    public OctaneSession session() {
+        return new OctaneSession(this);
+    }
+
+    /**
+     * Creates a new {@link ChangeFeed} that emits the entities that were created, modified or deleted since its
+     * watermarks.  Add the collections of the feed with {@link ChangeFeed#collection(String, String...)}
+     *
+     * @param watermarkStore the store of the watermarks, for example a {@link com.hpe.adm.nga.sdk.sync.FileWatermarkStore}
+     * @param changeListener the listener of the changes
+     * @return A new ChangeFeed for this context
+     */
+    public ChangeFeed changeFeed(WatermarkStore watermarkStore, ChangeListener changeListener) {
+        return new ChangeFeed(this, watermarkStore, changeListener);
+    }
+
+    /**
+     * Creates a new {@link EntityReplica}, a local copy of the entities of some collections that is refreshed
+     * incrementally and answers the queries on the kept fields from memory.  Add the collections with
+     * {@link EntityReplica#collection(String, String...)}
+     *
+     * @return A new EntityReplica for this context
+     */
+    public EntityReplica replica() {
+        return new EntityReplica(this);
+    }
+
     /**
      * Creates a new attachmentList object.  This returns the context for attachments.  This is equivalent to
      * <br>
@@ -167,6 +219,7 @@ public class Octane {
         private long workSpaceId = 0;
         private OctaneHttpClient octaneHttpClient;
         private final Authentication authentication;
+        private EntityCache entityCache = null;
 
         //Functions
 
@@ -265,6 +318,20 @@ public class Octane {
             return this;
         }
 
+        /**
+         * Sets the cache that answers the gets of single entities of the entity lists, see {@link EntityCache}.  By
+         * default there is no cache
+         *
+         * @param entityCache - the cache, null for none
+         * @return this object
+         */
+        public Builder entityCache(EntityCache entityCache) {
+
+            this.entityCache = entityCache;
+
+            return this;
+        }
+
         /**
          * The main build procedure which creates the {@link Octane} object and authenticates against the server
          *
@@ -280,7 +347,7 @@ public class Octane {
             this.octaneHttpClient = this.octaneHttpClient == null ? new GoogleHttpClient(urlDomain) : this.octaneHttpClient;
 
             if (octaneHttpClient.authenticate(authentication)) {
-                objOctane = new Octane(octaneHttpClient, urlDomain, idsharedSpaceId, workSpaceId);
+                objOctane = new Octane(octaneHttpClient, urlDomain, idsharedSpaceId, workSpaceId, entityCache);
             }
 
             return objOctane;
@@ -0,0 +1,321 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk;
+
+import com.hpe.adm.nga.sdk.entities.EntityList;
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.entities.delete.DeleteResult;
+import com.hpe.adm.nga.sdk.entities.get.EntitiesById;
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctanePartialException;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.model.StringFieldModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
+import com.hpe.adm.nga.sdk.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A unit of work over the entities of an {@link Octane} context.  The session keeps the entities that it loads or that
+ * are {@link #attach(String, Collection) attached} to it, and the entities that are created and deleted through it.
+ * Changes to the fields of its entities are tracked by the entities themselves.
+ * <br>
+ * {@link #flush()} sends all the changes with the fewest requests: for each collection one POST of the created
+ * entities, one PUT of the changed fields of the changed entities and the DELETE of the deleted ids, see
+ * {@link EntityList#deleteByIds(Collection)}.  The creates of all the collections are sent in parallel, then the
+ * updates, so that a changed entity can reference an entity created in the same flush, then the deletes, so that an
+ * entity is not deleted before the references to it are changed.
+ * <br>
+ * The entities are identified by the collection name and the id, for example {@code defects} and {@code 1001}.  A
+ * session is not thread safe.  Create it with {@link Octane#session()}
+ */
+public class OctaneSession {
+
+    private final Octane octane;
+    private final Map<String, CollectionChanges> collections = new LinkedHashMap<>();
+
+    public OctaneSession(Octane octane) {
+        this.octane = octane;
+    }
+
+    /**
+     * Gets the entities that answer to the query and attaches them to the session
+     *
+     * @param collectionName the collection name of the entities
+     * @param query          the query, null for all the entities
+     * @param fields         the fields to get, all the default fields if none are given
+     * @return the entities
+     */
+    public OctaneCollection<EntityModel> load(String collectionName, Query query, String... fields) {
+        final GetEntities getEntities = octane.entityList(collectionName).get();
+        if (query != null) {
+            getEntities.query(query);
+        }
+        if (fields.length > 0) {
+            getEntities.addFields(fields);
+        }
+        final OctaneCollection<EntityModel> entities = getEntities.execute();
+        attach(collectionName, entities);
+        return entities;
+    }
+
+    /**
+     * Gets the entities with the given ids and attaches them to the session, see {@link EntityList#getByIds}
+     *
+     * @param collectionName the collection name of the entities
+     * @param ids            the ids of the entities
+     * @param fields         the fields to get, all the default fields if none are given
+     * @return the entities keyed by id and the ids that were not found
+     */
+    public EntitiesById<EntityModel> getByIds(String collectionName, Collection<String> ids, String... fields) {
+        final EntitiesById<EntityModel> entities = octane.entityList(collectionName).getByIds(ids, fields).execute();
+        attach(collectionName, entities.getEntities().values());
+        return entities;
+    }
+
+    /**
+     * Tracks the changes of entities that were read from the server.  An entity with the id of an entity that is
+     * already attached replaces it
+     *
+     * @param collectionName the collection name of the entities
+     * @param entities       the entities, each must have an id
+     * @return this session
+     */
+    public OctaneSession attach(String collectionName, Collection<EntityModel> entities) {
+        final CollectionChanges changes = changes(collectionName);
+        for (EntityModel entityModel : entities) {
+            if (entityModel.getId() == null) {
+                throw new IllegalArgumentException("Only entities with an id can be attached, use create for new entities");
+            }
+            changes.attached.put(entityModel.getId(), entityModel);
+        }
+        return this;
+    }
+
+    /**
+     * Creates the entity on the next flush.  Once created the id of the entity is set and the entity is attached
+     *
+     * @param collectionName the collection name of the entity
+     * @param entityModel    the new entity
+     * @return this session
+     */
+    public OctaneSession create(String collectionName, EntityModel entityModel) {
+        changes(collectionName).created.add(entityModel);
+        return this;
+    }
+
+    /**
+     * Deletes the entity on the next flush.  A change to the entity that has not been flushed is dropped
+     *
+     * @param collectionName the collection name of the entity
+     * @param id             the id of the entity
+     * @return this session
+     */
+    public OctaneSession delete(String collectionName, String id) {
+        final CollectionChanges changes = changes(collectionName);
+        changes.attached.remove(id);
+        changes.deleted.add(id);
+        return this;
+    }
+
+    /**
+     * @param collectionName the collection name of the entity
+     * @param id             the id of the entity
+     * @return the attached entity or null if it is not attached
+     */
+    public EntityModel get(String collectionName, String id) {
+        final CollectionChanges changes = collections.get(collectionName);
+        return changes == null ? null : changes.attached.get(id);
+    }
+
+    /**
+     * @return whether the session has changes that have not been flushed
+     */
+    public boolean hasChanges() {
+        return collections.values().stream().anyMatch(changes ->
+                !changes.created.isEmpty() || !changes.deleted.isEmpty() || !changes.changedEntities().isEmpty());
+    }
+
+    /**
+     * Sends the changes of the session.  The changes whose request succeeded are cleared, so a flush that failed can
+     * be retried to send the remaining changes.  When only some of the entities of a collection could be created, the
+     * created ones get their id and are attached, and only the failed ones are created again
+     *
+     * @throws RuntimeException the error of the first request that failed, with the errors of the other failed requests
+     *                          as suppressed exceptions
+     */
+    public void flush() {
+        final List<Throwable> failures = new ArrayList<>();
+
+        final List<CompletableFuture<Void>> creates = new ArrayList<>();
+        collections.forEach((collectionName, changes) -> {
+            if (!changes.created.isEmpty()) {
+                final List<EntityModel> created = new ArrayList<>(changes.created);
+                creates.add(send(failures, () -> octane.entityList(collectionName).create().entities(created).executeAsync()
+                        .<Void>handle((createdEntities, throwable) -> {
+                            if (throwable == null) {
+                                changes.onCreated(created, createdEntities, Collections.emptySet());
+                                return null;
+                            }
+                            final Throwable cause = FanOut.unwrap(throwable);
+                            if (cause instanceof OctanePartialException) {
+                                final OctanePartialException partialException = (OctanePartialException) cause;
+                                changes.onCreated(created, partialException.getEntitiesModels(), failedIndexes(partialException));
+                            }
+                            throw new CompletionException(cause);
+                        })));
+            }
+        });
+        join(creates);
+
+        // the created entities have their ids now, so the changed entities that reference them can be sent
+        final List<CompletableFuture<Void>> updates = new ArrayList<>();
+        collections.forEach((collectionName, changes) -> {
+            final List<EntityModel> changed = changes.changedEntities();
+            if (!changed.isEmpty()) {
+                updates.add(send(failures, () -> octane.entityList(collectionName).update().entities(changed).executeAsync()
+                        .thenAccept(ignored -> changed.forEach(EntityModel::clearChanges))));
+            }
+        });
+        join(updates);
+
+        final List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        collections.forEach((collectionName, changes) -> {
+            if (!changes.deleted.isEmpty()) {
+                final Set<String> deleted = new LinkedHashSet<>(changes.deleted);
+                deletes.add(send(failures, () -> octane.entityList(collectionName).deleteByIds(deleted).executeAsync()
+                        .thenAccept(result -> changes.onDeleted(deleted, result))));
+            }
+        });
+        join(deletes);
+
+        if (!failures.isEmpty()) {
+            final Throwable first = failures.get(0);
+            final RuntimeException exception = first instanceof RuntimeException ? (RuntimeException) first : new CompletionException(first);
+            failures.subList(1, failures.size()).forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    /**
+     * Forgets the entities and the changes of the session
+     */
+    public void clear() {
+        collections.clear();
+    }
+
+    private CollectionChanges changes(String collectionName) {
+        return collections.computeIfAbsent(collectionName, key -> new CollectionChanges());
+    }
+
+    private static CompletableFuture<Void> send(List<Throwable> failures, Supplier<CompletableFuture<Void>> request) {
+        CompletableFuture<Void> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.exceptionally(throwable -> {
+            synchronized (failures) {
+                failures.add(FanOut.unwrap(throwable));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return the indexes of the entities that failed, or null if an error does not say which entity it is about
+     */
+    private static Set<Integer> failedIndexes(OctanePartialException partialException) {
+        final Set<Integer> failedIndexes = new HashSet<>();
+        for (ErrorModel errorModel : partialException.getErrorModels()) {
+            final Integer index = errorModel.getIndex();
+            if (index == null) {
+                return null;
+            }
+            failedIndexes.add(index);
+        }
+        return failedIndexes;
+    }
+
+    private static void join(List<CompletableFuture<Void>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * The entities and the changes of a collection
+     */
+    private static final class CollectionChanges {
+        private final Map<String, EntityModel> attached = new LinkedHashMap<>();
+        private final List<EntityModel> created = new ArrayList<>();
+        private final Set<String> deleted = new LinkedHashSet<>();
+
+        private List<EntityModel> changedEntities() {
+            return attached.values().stream().filter(EntityModel::hasChanges).collect(Collectors.toList());
+        }
+
+        /**
+         * Sets the ids of the created entities, which the server returns in the order they were sent without the ones
+         * that failed, and attaches them.  The entities that failed or that the server did not return stay to be created
+         * on the next flush
+         *
+         * @param failedIndexes the indexes of the entities that failed, null if they are not known in which case no
+         *                      entity can be matched to its id and all of them stay
+         */
+        private synchronized void onCreated(List<EntityModel> created, Collection<EntityModel> createdEntities, Set<Integer> failedIndexes) {
+            if (failedIndexes == null) {
+                return;
+            }
+            this.created.removeAll(created);
+            final List<EntityModel> remaining = new ArrayList<>();
+            final Iterator<EntityModel> createdIterator = createdEntities == null ? Collections.emptyIterator() : createdEntities.iterator();
+            for (int i = 0; i < created.size(); i++) {
+                final EntityModel entityModel = created.get(i);
+                if (failedIndexes.contains(i) || !createdIterator.hasNext()) {
+                    remaining.add(entityModel);
+                } else {
+                    final String id = createdIterator.next().getId();
+                    entityModel.setValue(new StringFieldModel(EntityModel.ID_FIELD_NAME, id));
+                    entityModel.clearChanges();
+                    attached.put(id, entityModel);
+                }
+            }
+            this.created.addAll(0, remaining);
+        }
+
+        private synchronized void onDeleted(Set<String> deleted, DeleteResult result) {
+            this.deleted.removeAll(deleted);
+            if (!result.getFailedIds().isEmpty()) {
+                this.deleted.addAll(result.getFailedIds().keySet());
+                throw new OctaneException(result.getFailedIds().values().iterator().next());
+            }
+        }
+    }
+}
@@ -0,0 +1,580 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.model.BooleanFieldModel;
+import com.hpe.adm.nga.sdk.model.DateFieldModel;
+import com.hpe.adm.nga.sdk.model.EmptyFieldModel;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntitySchema;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.model.FloatFieldModel;
+import com.hpe.adm.nga.sdk.model.LongFieldModel;
+import com.hpe.adm.nga.sdk.model.MultiReferenceFieldModel;
+import com.hpe.adm.nga.sdk.model.ObjectFieldModel;
+import com.hpe.adm.nga.sdk.model.ReferenceFieldModel;
+import com.hpe.adm.nga.sdk.model.StringFieldModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A bounded read-through cache of the entities that are got by id with {@code EntityList.at(id).get()}.
+ * <br>
+ * The entities are kept by collection, id, requested fields and schema, for the given time to live, and the least
+ * recently used entities are evicted when the cache is full.  When an entity is missing only one request is sent for it
+ * however many threads ask for it, the others wait for the result of that request.
+ * <br>
+ * Reads do not take a lock: the entities are kept in a {@link ConcurrentHashMap} and a hit only marks the entry as
+ * referenced.  The recency is approximated with a clock: the entries are queued in the order they were cached, and the
+ * eviction takes the eldest entry of the queue, gives a referenced entry a second chance at the end of the queue and
+ * removes the first one that was not referenced since it was last seen, so an eviction does constant work on average.
+ * The changes of an entity are applied while the entity is computed in a second map, so they only wait for the
+ * changes of the same entity.
+ * <br>
+ * The updates and deletes of the entity lists of the same {@link com.hpe.adm.nga.sdk.Octane} context invalidate the
+ * entities they change, and an updated entity is replaced by the entity of the response when the response has all of
+ * its fields and the same type.  An entity can be read through several collections, such as {@code defects} and
+ * {@code work_items}, so a change invalidates the entity with the same id read through any collection of the
+ * workspace.  Changes made by other clients are seen once the cached entity expires.  An update or delete by query
+ * invalidates the entities of the workspace.
+ * <br>
+ * Every read returns its own copy of the cached entity.  Set the cache with
+ * {@link com.hpe.adm.nga.sdk.Octane.Builder#entityCache(EntityCache)}
+ */
+public class EntityCache {
+
+    /**
+     * The default maximum number of cached entities
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    /**
+     * The default time to live of a cached entity, in seconds
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_SECONDS = 300;
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<EntityId, CachedEntity> cachedEntities = new ConcurrentHashMap<>();
+    private final Map<Key, CompletableFuture<EntityModel>> loads = new ConcurrentHashMap<>();
+    // the entries in the order they were cached, including the ones that were removed or replaced since
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a cache with the default size and time to live
+     */
+    public EntityCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maximumSize the maximum number of cached entities
+     * @param timeToLive  the time an entity is kept after it was loaded
+     * @param unit        the unit of the time to live
+     */
+    public EntityCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    /**
+     * Gets an entity from the cache, or loads it if it is missing.  Only one load of an entity is in flight at a time
+     *
+     * @param collectionUrl the url of the entity list of the entity
+     * @param id            the id of the entity
+     * @param fields        the requested fields, empty for the default fields
+     * @param entitySchema  the schema that the entity is decoded with, can be null
+     * @param loader        loads the entity
+     * @return the entity
+     */
+    public EntityModel get(String collectionUrl, String id, Collection<String> fields, EntitySchema entitySchema, Supplier<EntityModel> loader) {
+        return FanOut.join(getAsync(collectionUrl, id, fields, entitySchema, () -> {
+            try {
+                return CompletableFuture.completedFuture(loader.get());
+            } catch (RuntimeException e) {
+                final CompletableFuture<EntityModel> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }));
+    }
+
+    /**
+     * Same as {@link #get(String, String, Collection, EntitySchema, Supplier)} but does not block the calling thread
+     *
+     * @param collectionUrl the url of the entity list of the entity
+     * @param id            the id of the entity
+     * @param fields        the requested fields, empty for the default fields
+     * @param entitySchema  the schema that the entity is decoded with, can be null
+     * @param loader        starts the load of the entity
+     * @return a future that is completed with the entity
+     */
+    public CompletableFuture<EntityModel> getAsync(String collectionUrl, String id, Collection<String> fields, EntitySchema entitySchema,
+                                                   Supplier<CompletableFuture<EntityModel>> loader) {
+        final Key key = new Key(collectionUrl, id, fields, entitySchema);
+        final Entry entry = entries.get(key);
+        if (entry != null) {
+            final long now = System.nanoTime();
+            if (entry.expiresAtNanos - now > 0) {
+                entry.referenced = true;
+                hitCount.increment();
+                return CompletableFuture.completedFuture(copy(entry.entityModel));
+            }
+            if (remove(key, entry)) {
+                evictionCount.increment();
+            }
+        }
+        missCount.increment();
+
+        final CompletableFuture<EntityModel> load = new CompletableFuture<>();
+        final CompletableFuture<EntityModel> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return inFlight.thenApply(EntityCache::copy);
+        }
+        loadCount.increment();
+        final long loadVersion = startLoad(key.entityId);
+        CompletableFuture<EntityModel> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            loaded = new CompletableFuture<>();
+            loaded.completeExceptionally(e);
+        }
+        loaded.whenComplete((entityModel, throwable) -> {
+            loaded(key, throwable == null ? entityModel : null, loadVersion);
+            loads.remove(key, load);
+            if (throwable != null) {
+                load.completeExceptionally(FanOut.unwrap(throwable));
+            } else {
+                load.complete(entityModel);
+            }
+        });
+        return load;
+    }
+
+    /**
+     * Removes all the cached versions of an entity, whatever the collection it was read through
+     *
+     * @param collectionUrl the url of an entity list of the entity
+     * @param id            the id of the entity
+     */
+    public void invalidate(String collectionUrl, String id) {
+        cachedEntities.computeIfPresent(EntityId.of(collectionUrl, id), this::invalidate);
+    }
+
+    /**
+     * Removes the cached entities of the workspace of a collection, since they can also be read through other
+     * collections
+     *
+     * @param collectionUrl the url of the entity list
+     */
+    public void invalidateAll(String collectionUrl) {
+        final String workspaceUrl = EntityId.workspaceUrlOf(collectionUrl);
+        for (EntityId entityId : cachedEntities.keySet()) {
+            if (entityId.workspaceUrl.equals(workspaceUrl)) {
+                cachedEntities.computeIfPresent(entityId, this::invalidate);
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached entities
+     */
+    public void invalidateAll() {
+        for (EntityId entityId : cachedEntities.keySet()) {
+            cachedEntities.computeIfPresent(entityId, this::invalidate);
+        }
+    }
+
+    /**
+     * Replaces the cached versions of an entity that was changed by the entity that the server returned.  A cached
+     * version of another type, such as the {@code work_item} of a {@code defect}, or with fields that the returned
+     * entity does not have is removed instead
+     *
+     * @param collectionUrl the url of the entity list of the entity
+     * @param entityModel   the entity returned by the server, it must have an id
+     */
+    public void refresh(String collectionUrl, EntityModel entityModel) {
+        final long expiresAtNanos = System.nanoTime() + timeToLiveNanos;
+        cachedEntities.computeIfPresent(EntityId.of(collectionUrl, entityModel.getId()), (entityId, cachedEntity) -> {
+            // the entities that are being loaded may be older than the change
+            cachedEntity.version++;
+            for (Iterator<Key> iterator = cachedEntity.keys.iterator(); iterator.hasNext(); ) {
+                final Key key = iterator.next();
+                final Entry entry = entries.get(key);
+                final boolean sameType = entityModel.getType() == null
+                        ? key.collectionUrl.equals(collectionUrl)
+                        : entry != null && entityModel.getType().equals(entry.entityModel.getType());
+                if (sameType && !key.fields.isEmpty() && key.fields.stream().allMatch(field -> "id".equals(field) || entityModel.getValue(field) != null)) {
+                    put(new Entry(key, copy(entityModel), expiresAtNanos));
+                } else {
+                    entries.remove(key);
+                    iterator.remove();
+                }
+            }
+            return cachedEntity.isUnused() ? null : cachedEntity;
+        });
+    }
+
+    /**
+     * @return the number of cached entities, including the expired ones that were not removed yet
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return a snapshot of the statistics of the cache
+     */
+    public Stats getStats() {
+        return new Stats(hitCount.sum(), missCount.sum(), loadCount.sum(), evictionCount.sum());
+    }
+
+    /**
+     * Starts a load of an entity
+     *
+     * @return the version of the entity when the load started
+     */
+    private long startLoad(EntityId entityId) {
+        final long[] loadVersion = new long[1];
+        cachedEntities.compute(entityId, (ignored, cachedEntity) -> {
+            final CachedEntity started = cachedEntity == null ? new CachedEntity() : cachedEntity;
+            started.loadsInFlight++;
+            loadVersion[0] = started.version;
+            return started;
+        });
+        return loadVersion[0];
+    }
+
+    /**
+     * Ends a load of an entity, the loaded entity is cached unless the entity was changed while it was being loaded
+     *
+     * @param entityModel the loaded entity, null if the load failed
+     * @param loadVersion the version of the entity when the load started
+     */
+    private void loaded(Key key, EntityModel entityModel, long loadVersion) {
+        final Entry entry = entityModel == null ? null : new Entry(key, copy(entityModel), System.nanoTime() + timeToLiveNanos);
+        cachedEntities.computeIfPresent(key.entityId, (entityId, cachedEntity) -> {
+            cachedEntity.loadsInFlight--;
+            if (entry != null && cachedEntity.version == loadVersion) {
+                put(entry);
+                cachedEntity.keys.add(key);
+            }
+            return cachedEntity.isUnused() ? null : cachedEntity;
+        });
+        if (entries.size() > maximumSize || clockSize.get() > 2 * maximumSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Caches the entry and queues it in the clock, the entry that it replaces stays in the clock until the eviction
+     * drops it
+     */
+    private void put(Entry entry) {
+        entries.put(entry.key, entry);
+        clock.add(entry);
+        clockSize.incrementAndGet();
+    }
+
+    /**
+     * Removes entries that were not referenced recently until the cache is within its maximum size again, and drops
+     * the entries of the clock that are no longer cached.  The clock is bounded to twice the maximum size, so that the
+     * entries removed by changes do not pile up in it.  Only one thread evicts at a time, the others keep reading and
+     * writing meanwhile
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            Entry entry;
+            while ((entries.size() > maximumSize || clockSize.get() > 2 * maximumSize) && (entry = clock.poll()) != null) {
+                clockSize.decrementAndGet();
+                if (entries.get(entry.key) != entry) {
+                    continue;
+                }
+                final boolean full = entries.size() > maximumSize;
+                if (!full || entry.referenced) {
+                    // a second chance, which is only used up when an entry has to be evicted
+                    entry.referenced = entry.referenced && !full;
+                    clock.add(entry);
+                    clockSize.incrementAndGet();
+                } else if (remove(entry.key, entry)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entry only if it has not been replaced meanwhile
+     */
+    private boolean remove(Key key, Entry entry) {
+        final boolean[] removed = new boolean[1];
+        cachedEntities.computeIfPresent(key.entityId, (entityId, cachedEntity) -> {
+            if (entries.remove(key, entry)) {
+                cachedEntity.keys.remove(key);
+                removed[0] = true;
+            }
+            return cachedEntity.isUnused() ? null : cachedEntity;
+        });
+        return removed[0];
+    }
+
+    private CachedEntity invalidate(EntityId entityId, CachedEntity cachedEntity) {
+        // the entities that are being loaded may be older than the change
+        cachedEntity.version++;
+        cachedEntity.keys.forEach(entries::remove);
+        cachedEntity.keys.clear();
+        return cachedEntity.isUnused() ? null : cachedEntity;
+    }
+
+    /**
+     * Copies the entity with its fields and referenced entities, so that a reader that changes the entity, or a
+     * {@link com.hpe.adm.nga.sdk.entities.get.ReferenceLoader} that fills its references, does not change the cached entity
+     */
+    private static EntityModel copy(EntityModel entityModel) {
+        final Set<FieldModel> values = new HashSet<>();
+        for (FieldModel fieldModel : entityModel.getValues()) {
+            values.add(copy(fieldModel));
+        }
+        return new EntityModel(values, EntityModel.EntityState.CLEAN);
+    }
+
+    private static FieldModel copy(FieldModel fieldModel) {
+        final String name = fieldModel.getName();
+        if (fieldModel instanceof ReferenceFieldModel) {
+            final EntityModel reference = ((ReferenceFieldModel) fieldModel).getValue();
+            return new ReferenceFieldModel(name, reference == null ? null : copy(reference));
+        } else if (fieldModel instanceof MultiReferenceFieldModel) {
+            final Collection<EntityModel> references = ((MultiReferenceFieldModel) fieldModel).getValue();
+            return new MultiReferenceFieldModel(name, references == null ? null
+                    : references.stream().map(EntityCache::copy).collect(Collectors.toList()));
+        } else if (fieldModel instanceof ObjectFieldModel) {
+            return new ObjectFieldModel(name, ((ObjectFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof StringFieldModel) {
+            return new StringFieldModel(name, ((StringFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof LongFieldModel) {
+            return new LongFieldModel(name, ((LongFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof FloatFieldModel) {
+            return new FloatFieldModel(name, ((FloatFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof BooleanFieldModel) {
+            return new BooleanFieldModel(name, ((BooleanFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof DateFieldModel) {
+            return new DateFieldModel(name, ((DateFieldModel) fieldModel).getValue());
+        } else if (fieldModel instanceof EmptyFieldModel) {
+            return new EmptyFieldModel(name);
+        }
+        // a field model of the application, its value is shared
+        return fieldModel;
+    }
+
+    /**
+     * The statistics of an {@link EntityCache}
+     */
+    public static final class Stats {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long evictionCount;
+
+        private Stats(long hitCount, long missCount, long loadCount, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.evictionCount = evictionCount;
+        }
+
+        /**
+         * @return the number of reads that were answered from the cache
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return the number of reads that did not find the entity, including those that waited for a load in flight
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return the number of requests that were sent to load missing entities
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * @return the number of entities that were removed because the cache was full or they expired
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hitCount + ", misses=" + missCount + ", loads=" + loadCount + ", evictions=" + evictionCount;
+        }
+    }
+
+    /**
+     * The workspace and the id of an entity.  The collections that an entity is read through have different urls and
+     * may return different types for it, such as {@code work_item} and {@code defect}, so the entity is known by the
+     * id in its workspace and its cached versions keep their type
+     */
+    private static final class EntityId {
+
+        private final String workspaceUrl;
+        private final String id;
+
+        private EntityId(String workspaceUrl, String id) {
+            this.workspaceUrl = workspaceUrl;
+            this.id = id;
+        }
+
+        private static EntityId of(String collectionUrl, String id) {
+            return new EntityId(workspaceUrlOf(collectionUrl), id);
+        }
+
+        /**
+         * @return the url of the workspace, which is the url of its entity lists without their name
+         */
+        private static String workspaceUrlOf(String collectionUrl) {
+            final int nameStart = collectionUrl.lastIndexOf('/');
+            return nameStart < 0 ? collectionUrl : collectionUrl.substring(0, nameStart);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EntityId)) {
+                return false;
+            }
+            final EntityId entityId = (EntityId) o;
+            return workspaceUrl.equals(entityId.workspaceUrl) && id.equals(entityId.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(workspaceUrl, id);
+        }
+    }
+
+    /**
+     * An entity read through a collection with its requested fields and schema
+     */
+    private static final class Key {
+
+        private final EntityId entityId;
+        private final String collectionUrl;
+        private final Set<String> fields;
+        private final EntitySchema entitySchema;
+
+        private Key(String collectionUrl, String id, Collection<String> fields, EntitySchema entitySchema) {
+            this.entityId = EntityId.of(collectionUrl, id);
+            this.collectionUrl = collectionUrl;
+            this.fields = fields == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(fields));
+            this.entitySchema = entitySchema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return entityId.equals(key.entityId) && collectionUrl.equals(key.collectionUrl) && fields.equals(key.fields)
+                    && entitySchema == key.entitySchema;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(collectionUrl, entityId.id, fields);
+        }
+    }
+
+    /**
+     * The cached versions of an entity and the loads in flight for it, only accessed while the entity is computed in
+     * the map of the cached entities.  The version is incremented when the entity is changed, so that a load that
+     * started before the change does not cache an entity older than the change while the loads of other entities are
+     * not affected
+     */
+    private static final class CachedEntity {
+
+        private final Set<Key> keys = new HashSet<>();
+        private long version = 0;
+        private int loadsInFlight = 0;
+
+        /**
+         * @return whether nothing is cached or being loaded for the entity, so that its version can be forgotten
+         */
+        private boolean isUnused() {
+            return keys.isEmpty() && loadsInFlight == 0;
+        }
+    }
+
+    /**
+     * A cached entity
+     */
+    private static final class Entry {
+
+        private final Key key;
+        private final EntityModel entityModel;
+        private final long expiresAtNanos;
+        private volatile boolean referenced = false;
+
+        private Entry(Key key, EntityModel entityModel, long expiresAtNanos) {
+            this.key = key;
+            this.entityModel = entityModel;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -15,13 +15,17 @@ package com.hpe.adm.nga.sdk.entities;
 
 import com.hpe.adm.nga.sdk.entities.create.CreateEntities;
 import com.hpe.adm.nga.sdk.entities.delete.DeleteEntities;
+import com.hpe.adm.nga.sdk.entities.delete.DeleteEntitiesByIds;
 import com.hpe.adm.nga.sdk.entities.delete.DeleteEntity;
 import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.entities.get.GetEntitiesByIds;
 import com.hpe.adm.nga.sdk.entities.get.GetEntity;
+import com.hpe.adm.nga.sdk.entities.update.UpdateBuffer;
 import com.hpe.adm.nga.sdk.entities.update.UpdateEntities;
 import com.hpe.adm.nga.sdk.entities.update.UpdateEntity;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 
+import java.util.Collection;
 
 /**
  * This class represents the entity context and carries out the actual server requests.  It builds the correct URL as
@@ -33,6 +37,7 @@ public class EntityList {
     // private members
     protected final String urlDomain;
     protected final OctaneHttpClient octaneHttpClient;
+    protected EntityCache entityCache;
 
     // **** public Functions ***
 
@@ -58,6 +63,19 @@ public class EntityList {
         return new Entities(entityId);
     }
 
+    /**
+     * Answer the gets of single entities from the cache, and keep the cache up to date with the updates and deletes of
+     * this entity list
+     *
+     * @param entityCache the cache, null for none
+     * @return this
+     * @see EntityCache
+     */
+    public EntityList cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
     /**
      * getter of an GetEntities object of EntityList ( EntityList object handle a
      * collection of entity models )
@@ -68,6 +86,19 @@ public class EntityList {
         return new GetEntities(octaneHttpClient, urlDomain);
     }
 
+    /**
+     * getter of a GetEntitiesByIds object of EntityList that gets known entities by their ids with a few requests
+     * instead of one request per entity
+     *
+     * @param ids    the ids of the entities
+     * @param fields the fields to retrieve, all the default fields if none are given
+     * @return a new GetEntitiesByIds object
+     */
+    public GetEntitiesByIds getByIds(Collection<String> ids, String... fields) {
+        final GetEntitiesByIds getEntitiesByIds = new GetEntitiesByIds(octaneHttpClient, urlDomain, ids);
+        return fields.length == 0 ? getEntitiesByIds : getEntitiesByIds.addFields(fields);
+    }
+
     /**
      * getter of an UpdateEntities object of EntityList ( EntityList object handle a
      * collection of entity models )
@@ -75,7 +106,32 @@ public class EntityList {
      * @return a new UpdateEntities object
      */
     public UpdateEntities update() {
-        return new UpdateEntities(octaneHttpClient, urlDomain);
+        return new UpdateEntities(octaneHttpClient, urlDomain).cache(entityCache);
+    }
+
+    /**
+     * Creates a write-behind buffer that merges the updates of the same entity and sends them as batched updates of
+     * this entity list.  The buffer must be closed to send the remaining updates
+     *
+     * @return a new UpdateBuffer object with the default settings
+     * @see UpdateBuffer
+     */
+    public UpdateBuffer updateBuffer() {
+        return new UpdateBuffer(octaneHttpClient, urlDomain).cache(entityCache);
+    }
+
+    /**
+     * Creates a write-behind buffer that merges the updates of the same entity and sends them as batched updates of
+     * this entity list.  The buffer must be closed to send the remaining updates
+     *
+     * @param maxBatchSize        the maximum number of entities in a request
+     * @param flushIntervalMillis the time after which the pending updates are sent even if the batch is not full
+     * @param maxBufferedEntities the maximum number of entities that are pending or in flight before updates block
+     * @return a new UpdateBuffer object
+     * @see UpdateBuffer
+     */
+    public UpdateBuffer updateBuffer(int maxBatchSize, long flushIntervalMillis, int maxBufferedEntities) {
+        return new UpdateBuffer(octaneHttpClient, urlDomain, maxBatchSize, flushIntervalMillis, maxBufferedEntities).cache(entityCache);
     }
 
     /**
@@ -95,7 +151,18 @@ public class EntityList {
      * @return a new DeleteEntities object
      */
     public DeleteEntities delete() {
-        return new DeleteEntities(octaneHttpClient, urlDomain);
+        return new DeleteEntities(octaneHttpClient, urlDomain).cache(entityCache);
+    }
+
+    /**
+     * getter of a DeleteEntitiesByIds object of EntityList that deletes entities by their ids with a few requests
+     * instead of one request per entity
+     *
+     * @param ids the ids of the entities
+     * @return a new DeleteEntitiesByIds object
+     */
+    public DeleteEntitiesByIds deleteByIds(Collection<String> ids) {
+        return new DeleteEntitiesByIds(octaneHttpClient, urlDomain, ids).cache(entityCache);
     }
 
 
@@ -123,7 +190,7 @@ public class EntityList {
          * @return The GetEntities object
          */
         public GetEntity get() {
-            return new GetEntity(octaneHttpClient, urlDomain, entityId);
+            return new GetEntity(octaneHttpClient, urlDomain, entityId).cache(entityCache);
         }
 
         /**
@@ -132,7 +199,7 @@ public class EntityList {
          * @return The UpdateEntities object
          */
         public UpdateEntity update() {
-            return new UpdateEntity(octaneHttpClient, urlDomain, entityId);
+            return new UpdateEntity(octaneHttpClient, urlDomain, entityId).cache(entityCache);
         }
 
         /**
@@ -141,7 +208,7 @@ public class EntityList {
          * @return The DeleteEntities object
          */
         public DeleteEntity delete() {
-            return new DeleteEntity(octaneHttpClient, urlDomain, entityId);
+            return new DeleteEntity(octaneHttpClient, urlDomain, entityId).cache(entityCache);
         }
 
     }
@@ -14,9 +14,12 @@
 package com.hpe.adm.nga.sdk.entities;
 
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 
+import java.util.stream.Collectors;
+
 /**
  * The abstract super class for getting entity lists for typed entities.  This does not inherit the {@link EntityList}
  * or share an interface due to the different ways that the context is created.  However the same functionality is available
@@ -66,5 +69,12 @@ public abstract class TypedEntityList {
                 throw new IllegalArgumentException("Cannot instantiate", e);
             }
         }
+
+        final protected OctaneCollection<T> getEntityInstances(final OctaneCollection<EntityModel> entityModels) {
+            return entityModels
+                    .stream()
+                    .map(this::getEntityInstance)
+                    .collect(Collectors.toCollection(new OctaneCollectionSupplier<>(entityModels)));
+        }
     }
 }
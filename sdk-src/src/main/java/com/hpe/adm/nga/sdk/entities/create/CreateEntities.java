@@ -15,10 +15,13 @@ package com.hpe.adm.nga.sdk.entities.create;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * This class hold the CreateEntities objects and serve all functions concern to
@@ -28,6 +31,10 @@ public class CreateEntities {
 
     private Collection<EntityModel> entityModels = null;
     private final OctaneRequest octaneRequest;
+    private int batchSize = 0;
+    private int batchParallelism = CreateHelper.DEFAULT_BATCH_PARALLELISM;
+    private int retries = 0;
+    private boolean retryGatewayErrors = false;
 
     public CreateEntities(OctaneHttpClient octaneHttpClient, String urlDomain) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
@@ -40,9 +47,33 @@ public class CreateEntities {
      * @return a collection of entities models that have been created
      */
     public OctaneCollection<EntityModel> execute()  {
+        if (batchSize > 0) {
+            return CreateHelper.getInstance().createEntities(entityModels, octaneRequest, batchSize, batchParallelism, retries, retryGatewayErrors);
+        }
         return CreateHelper.getInstance().createEntities(entityModels, octaneRequest);
     }
 
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the created entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the created entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync(Executor executor) {
+        if (batchSize > 0) {
+            return CreateHelper.getInstance().createEntitiesAsync(entityModels, octaneRequest, batchSize, batchParallelism, retries, retryGatewayErrors, executor);
+        }
+        return CreateHelper.getInstance().createEntitiesAsync(entityModels, octaneRequest, executor);
+    }
+
     /**
      * Set new entities collection
      *
@@ -54,4 +85,65 @@ public class CreateEntities {
         entityModels = entities;
         return this;
     }
+
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return create Object with the write mode
+     */
+    public CreateEntities referenceWriteMode(ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return this;
+    }
+
+    /**
+     * Send the entities in batches of at most {@code batchSize} entities, with at most {@code parallelism} batches in
+     * flight.  The created entities of all the batches are returned in the order of the input.  If any entity could
+     * not be created an {@link com.hpe.adm.nga.sdk.exception.OctaneBatchException} is thrown, which maps each error
+     * back to the index of its entity in the input
+     *
+     * @param batchSize   the maximum number of entities in a request, 0 to send all the entities in one request
+     * @param parallelism the maximum number of requests in flight
+     * @return create Object with the batch settings
+     */
+    public CreateEntities batches(int batchSize, int parallelism) {
+        if (batchSize < 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("batchSize must not be negative and parallelism must be positive");
+        }
+        this.batchSize = batchSize;
+        this.batchParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Send a batch again when it fails because the connection to the server could not be opened or the server was
+     * unavailable (status 429 or 503).  The first retry waits half a second and every further retry twice as long,
+     * unless the response has a Retry-After header.  Only used when the entities are sent in
+     * {@link #batches(int, int) batches}.  A batch that failed with a gateway error is only sent again with
+     * {@link #retryGatewayErrors()}
+     *
+     * @param retries the number of times a batch is sent again, 0 by default
+     * @return create Object with the number of retries
+     */
+    public CreateEntities retries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        this.retries = retries;
+        return this;
+    }
+
+    /**
+     * Also send a batch again when a gateway answers 502 or 504.  Creating entities is not idempotent: the gateway may
+     * have passed the batch on to the server, in which case the retry creates its entities a second time.  Only use it
+     * when duplicates can be detected or do not matter
+     *
+     * @return create Object that retries the gateway errors
+     */
+    public CreateEntities retryGatewayErrors() {
+        this.retryGatewayErrors = true;
+        return this;
+    }
 }
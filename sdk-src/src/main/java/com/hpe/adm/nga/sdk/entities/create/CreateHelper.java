@@ -14,19 +14,60 @@
 package com.hpe.adm.nga.sdk.entities.create;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.exception.OctaneBatchException;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
+import com.hpe.adm.nga.sdk.exception.OctanePartialException;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.model.FieldModel;
 import com.hpe.adm.nga.sdk.model.ModelParser;
+import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
+import com.hpe.adm.nga.sdk.network.FanOut;
 import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
-import org.json.JSONObject;
 
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * A helper for creating entities
  */
 final class CreateHelper {
 
+    /**
+     * The default number of batches that are in flight at the same time
+     */
+    static final int DEFAULT_BATCH_PARALLELISM = 4;
+
+    /**
+     * The delay before the first retry of a batch, doubled for every further retry
+     */
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 300_000;
+
+    private static final AtomicInteger retryThreadCount = new AtomicInteger();
+    // only completes the delays of the retries, the batches are sent by the http client
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "octane-create-retry-" + retryThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final CreateHelper INSTANCE = new CreateHelper();
 
     private CreateHelper() {
@@ -45,18 +86,174 @@ final class CreateHelper {
      */
     OctaneCollection<EntityModel> createEntities(Collection<EntityModel> entityModels, OctaneRequest octaneRequest)  {
 
-        OctaneCollection<EntityModel> newEntityModels;
-        JSONObject objBase = ModelParser.getInstance().getEntitiesJSONObject(entityModels);
-        String strJsonEntityModel = objBase.toString();
+        // a partial failure is thrown by the http client as an OctanePartialException
+        return octaneRequest.getEntitiesResponse(createPostRequest(entityModels, octaneRequest));
+    }
 
-        OctaneHttpRequest octaneHttpRequest =
-                new OctaneHttpRequest.PostOctaneHttpRequest(octaneRequest.getFinalRequestUrl(), OctaneHttpRequest.JSON_CONTENT_TYPE, strJsonEntityModel)
-                        .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
+    /**
+     * Same as {@link #createEntities(Collection, OctaneRequest)} but does not block the calling thread
+     * @param entityModels the collection of entitymodels
+     * @param octaneRequest the octane request
+     * @param executor the executor to use, can be null
+     */
+    CompletableFuture<OctaneCollection<EntityModel>> createEntitiesAsync(Collection<EntityModel> entityModels, OctaneRequest octaneRequest, Executor executor) {
+        return octaneRequest.getEntitiesResponseAsync(createPostRequest(entityModels, octaneRequest), executor);
+    }
 
-        newEntityModels = octaneRequest.getEntitiesResponse(octaneHttpRequest);
+    /**
+     * Creates the entities in batches of at most {@code batchSize} entities with at most {@code parallelism} batches in
+     * flight.  A batch that fails with a transient error is sent again up to {@code retries} times, see
+     * {@link #isTransient(Throwable, boolean)}
+     *
+     * @param entityModels the entities to create
+     * @param octaneRequest the octane request
+     * @param retryGatewayErrors whether a batch is also sent again when a gateway answers 502 or 504
+     * @param executor the executor to use, can be null
+     * @return a future that is completed with the created entities in the order of the input, or completed with an
+     * {@link OctaneBatchException} if any of the entities could not be created
+     */
+    CompletableFuture<OctaneCollection<EntityModel>> createEntitiesAsync(Collection<EntityModel> entityModels, OctaneRequest octaneRequest,
+                                                                        int batchSize, int parallelism, int retries, boolean retryGatewayErrors,
+                                                                        Executor executor) {
+        final List<EntityModel> inputEntities = new ArrayList<>(entityModels);
+        final List<List<EntityModel>> batches = new ArrayList<>();
+        for (int offset = 0; offset < inputEntities.size(); offset += batchSize) {
+            batches.add(inputEntities.subList(offset, Math.min(inputEntities.size(), offset + batchSize)));
+        }
+        // a batch never fails its future, its failure is kept in its result
+        return FanOut.inLanes(batches, parallelism, batch -> createBatchAsync(batch, octaneRequest, retries, retryGatewayErrors, 0, executor))
+                .thenApply(results -> merge(inputEntities, batchSize, results));
+    }
 
-        //TODO: partial support
+    /**
+     * Same as {@link #createEntitiesAsync(Collection, OctaneRequest, int, int, int, boolean, Executor)} but blocks the
+     * calling thread
+     */
+    OctaneCollection<EntityModel> createEntities(Collection<EntityModel> entityModels, OctaneRequest octaneRequest,
+                                                 int batchSize, int parallelism, int retries, boolean retryGatewayErrors) {
+        return FanOut.join(createEntitiesAsync(entityModels, octaneRequest, batchSize, parallelism, retries, retryGatewayErrors, null));
+    }
+
+    private CompletableFuture<BatchResult> createBatchAsync(List<EntityModel> batch, OctaneRequest octaneRequest, int retries,
+                                                           boolean retryGatewayErrors, int attempt, Executor executor) {
+        return createEntitiesAsync(batch, octaneRequest, executor)
+                .handle((createdEntities, throwable) -> {
+                    if (throwable == null) {
+                        return CompletableFuture.completedFuture(new BatchResult(createdEntities, null));
+                    }
+                    final Throwable cause = FanOut.unwrap(throwable);
+                    if (retries > 0 && isTransient(cause, retryGatewayErrors)) {
+                        return delay(retryDelayMillis(cause, attempt))
+                                .thenCompose(ignored -> createBatchAsync(batch, octaneRequest, retries - 1, retryGatewayErrors, attempt + 1, executor));
+                    }
+                    return CompletableFuture.completedFuture(new BatchResult(null, cause));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * A failure is transient if the connection to the server could not be opened, in which case nothing was sent, or
+     * if the server answered that it is overloaded or unavailable (status 429 or 503) without handling the request.
+     * Other failures, for example a read timeout, are not retried since the server may have created the entities.
+     * Errors about the entities themselves are never retried
+     * <br>
+     * Creating entities is not idempotent: a gateway that answers 502 or 504 may have passed the request on to a server
+     * that created the entities, in which case a retry creates them a second time.  These are only transient when the
+     * caller asked for it
+     */
+    private static boolean isTransient(Throwable cause, boolean retryGatewayErrors) {
+        if (cause instanceof OctanePartialException) {
+            return false;
+        }
+        if (cause instanceof OctaneException) {
+            final FieldModel statusCode = ((OctaneException) cause).getError().getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME);
+            if (statusCode == null || !(statusCode.getValue() instanceof Long)) {
+                return false;
+            }
+            final long status = (Long) statusCode.getValue();
+            return status == 429 || status == 503 || (retryGatewayErrors && (status == 502 || status == 504));
+        }
+        for (Throwable throwable = cause; throwable != null; throwable = throwable.getCause() == throwable ? null : throwable.getCause()) {
+            if (throwable instanceof ConnectException || throwable instanceof NoRouteToHostException || throwable instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The delay doubles with every attempt, unless the server asked to wait for a given time with a Retry-After header
+     */
+    private static long retryDelayMillis(Throwable cause, int attempt) {
+        if (cause instanceof OctaneException) {
+            final FieldModel retryAfter = ((OctaneException) cause).getError().getValue(ErrorModel.RETRY_AFTER_PROPERTY_NAME);
+            if (retryAfter != null && retryAfter.getValue() instanceof Long) {
+                return Math.min(MAX_RETRY_AFTER_MILLIS, TimeUnit.SECONDS.toMillis((Long) retryAfter.getValue()));
+            }
+        }
+        return Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << Math.min(attempt, 16));
+    }
+
+    private static CompletableFuture<Void> delay(long millis) {
+        final CompletableFuture<Void> delay = new CompletableFuture<>();
+        RETRY_SCHEDULER.schedule(() -> delay.complete(null), millis, TimeUnit.MILLISECONDS);
+        return delay;
+    }
+
+    private static OctaneCollection<EntityModel> merge(List<EntityModel> inputEntities, int batchSize, List<BatchResult> results) {
+        final List<EntityModel> createdEntities = new ArrayList<>();
+        final List<ErrorModel> errorModels = new ArrayList<>();
+        final SortedMap<Integer, ErrorModel> errorsByIndex = new TreeMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            final BatchResult result = results.get(i);
+            final int offset = i * batchSize;
+            final int size = Math.min(inputEntities.size(), offset + batchSize) - offset;
+            if (result.createdEntities != null) {
+                createdEntities.addAll(result.createdEntities);
+            } else if (result.failure instanceof OctanePartialException) {
+                final OctanePartialException partialException = (OctanePartialException) result.failure;
+                if (partialException.getEntitiesModels() != null) {
+                    createdEntities.addAll(partialException.getEntitiesModels());
+                }
+                for (ErrorModel errorModel : partialException.getErrorModels()) {
+                    errorModels.add(errorModel);
+                    final Integer index = errorModel.getIndex();
+                    if (index != null && index >= 0 && index < size) {
+                        errorsByIndex.put(offset + index, errorModel);
+                    }
+                }
+            } else {
+                final ErrorModel errorModel = OctaneExceptionFactory.toErrorModel(result.failure);
+                errorModels.add(errorModel);
+                for (int index = offset; index < offset + size; index++) {
+                    errorsByIndex.put(index, errorModel);
+                }
+            }
+        }
+        if (!errorModels.isEmpty()) {
+            throw new OctaneBatchException(errorModels, createdEntities, inputEntities, errorsByIndex);
+        }
+        final OctaneCollection<EntityModel> merged = new OctaneCollectionSupplier<EntityModel>(createdEntities.size(), false).get();
+        merged.addAll(createdEntities);
+        return merged;
+    }
+
+    /**
+     * The entities created by a batch or the failure of the batch
+     */
+    private static final class BatchResult {
+        private final OctaneCollection<EntityModel> createdEntities;
+        private final Throwable failure;
+
+        private BatchResult(OctaneCollection<EntityModel> createdEntities, Throwable failure) {
+            this.createdEntities = createdEntities;
+            this.failure = failure;
+        }
+    }
 
-        return newEntityModels;
+    private OctaneHttpRequest createPostRequest(Collection<EntityModel> entityModels, OctaneRequest octaneRequest) {
+        return new OctaneHttpRequest.PostOctaneHttpRequest(octaneRequest.getFinalRequestUrl(), OctaneHttpRequest.JSON_CONTENT_TYPE,
+                outputStream -> ModelParser.getInstance().writeEntities(entityModels, false, octaneRequest.getReferenceWriteMode(), outputStream))
+                .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
     }
 }
@@ -16,13 +16,15 @@ package com.hpe.adm.nga.sdk.entities.create;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
 import com.hpe.adm.nga.sdk.model.EntityModel;
-import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +37,10 @@ import java.util.stream.Collectors;
 public abstract class CreateTypedEntities<T extends TypedEntityModel, E extends CreateTypedEntities> extends TypedEntityList.TypedEntityRequest<T> {
     private Collection<T> entityModels = null;
     private final OctaneRequest octaneRequest;
+    private int batchSize = 0;
+    private int batchParallelism = CreateHelper.DEFAULT_BATCH_PARALLELISM;
+    private int retries = 0;
+    private boolean retryGatewayErrors = false;
 
     protected CreateTypedEntities(final Class<T> typedEntityModelClass, final OctaneHttpClient octaneHttpClient, final String urlDomain) {
         super(typedEntityModelClass);
@@ -48,11 +54,35 @@ public abstract class CreateTypedEntities<T extends TypedEntityModel, E extends
      */
     public final OctaneCollection<T> execute()  {
         final List<EntityModel> convertedEntityModels = entityModels.stream().map(T::getWrappedEntityModel).collect(Collectors.toList());
-        final OctaneCollection<EntityModel> createdEntities = CreateHelper.getInstance().createEntities(convertedEntityModels, octaneRequest);
-        return createdEntities
-                .stream()
-                .map(this::getEntityInstance)
-                .collect(Collectors.toCollection(new OctaneCollectionSupplier<>(createdEntities)));
+        if (batchSize > 0) {
+            return getEntityInstances(CreateHelper.getInstance().createEntities(convertedEntityModels, octaneRequest, batchSize, batchParallelism, retries, retryGatewayErrors));
+        }
+        return getEntityInstances(CreateHelper.getInstance().createEntities(convertedEntityModels, octaneRequest));
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the created entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the created entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync(final Executor executor) {
+        final List<EntityModel> convertedEntityModels = entityModels.stream().map(T::getWrappedEntityModel).collect(Collectors.toList());
+        if (batchSize > 0) {
+            return CreateHelper.getInstance().createEntitiesAsync(convertedEntityModels, octaneRequest, batchSize, batchParallelism, retries, retryGatewayErrors, executor)
+                    .thenApply(this::getEntityInstances);
+        }
+        return CreateHelper.getInstance().createEntitiesAsync(convertedEntityModels, octaneRequest, executor).thenApply(this::getEntityInstances);
     }
 
     /**
@@ -65,4 +95,69 @@ public abstract class CreateTypedEntities<T extends TypedEntityModel, E extends
         entityModels = entities;
         return (E) this;
     }
+
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E referenceWriteMode(final ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return (E) this;
+    }
+
+    /**
+     * Send the entities in batches of at most {@code batchSize} entities, with at most {@code parallelism} batches in
+     * flight.  The created entities of all the batches are returned in the order of the input.  If any entity could
+     * not be created an {@link com.hpe.adm.nga.sdk.exception.OctaneBatchException} is thrown, which maps each error
+     * back to the index of its entity in the input
+     *
+     * @param batchSize   the maximum number of entities in a request, 0 to send all the entities in one request
+     * @param parallelism the maximum number of requests in flight
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E batches(final int batchSize, final int parallelism) {
+        if (batchSize < 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("batchSize must not be negative and parallelism must be positive");
+        }
+        this.batchSize = batchSize;
+        this.batchParallelism = parallelism;
+        return (E) this;
+    }
+
+    /**
+     * Send a batch again when it fails because the connection to the server could not be opened or the server was
+     * unavailable (status 429 or 503).  The first retry waits half a second and every further retry twice as long,
+     * unless the response has a Retry-After header.  Only used when the entities are sent in
+     * {@link #batches(int, int) batches}.  A batch that failed with a gateway error is only sent again with
+     * {@link #retryGatewayErrors()}
+     *
+     * @param retries the number of times a batch is sent again, 0 by default
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E retries(final int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        this.retries = retries;
+        return (E) this;
+    }
+
+    /**
+     * Also send a batch again when a gateway answers 502 or 504.  Creating entities is not idempotent: the gateway may
+     * have passed the batch on to the server, in which case the retry creates its entities a second time.  Only use it
+     * when duplicates can be detected or do not matter
+     *
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E retryGatewayErrors() {
+        this.retryGatewayErrors = true;
+        return (E) this;
+    }
 }
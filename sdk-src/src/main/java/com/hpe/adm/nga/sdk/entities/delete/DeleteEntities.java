@@ -13,21 +13,28 @@
  */
 package com.hpe.adm.nga.sdk.entities.delete;
 
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 import com.hpe.adm.nga.sdk.query.Query;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * This class hold the DeleteEntities objects and serve all functions concern to
  * REST delete.
  */
 public class DeleteEntities {
     private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private EntityCache entityCache;
 
     public DeleteEntities(OctaneHttpClient octaneHttpClient, String urlDomain) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
+        this.urlDomain = urlDomain;
     }
 
     /**
@@ -36,7 +43,30 @@ public class DeleteEntities {
      * @return collection of deleted entities
      */
     public OctaneCollection<EntityModel> execute()  {
-        return DeleteHelper.getInstance().deleteEntityModels(octaneRequest);
+        try {
+            return DeleteHelper.getInstance().deleteEntityModels(octaneRequest);
+        } finally {
+            updateCache();
+        }
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the result of the delete
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the result of the delete
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync(Executor executor) {
+        return DeleteHelper.getInstance().deleteEntityModelsAsync(octaneRequest, executor)
+                .whenComplete((deletedEntities, throwable) -> updateCache());
     }
 
     /**
@@ -49,4 +79,21 @@ public class DeleteEntities {
         octaneRequest.getOctaneUrl().setDqlQueryParam(query);
         return this;
     }
+
+    /**
+     * Remove the cached entities of the collection once the entities are deleted
+     *
+     * @param entityCache The cache, null for none
+     * @return a DeleteEntities Object with the cache
+     */
+    public DeleteEntities cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    private void updateCache() {
+        if (entityCache != null) {
+            entityCache.invalidateAll(urlDomain);
+        }
+    }
 }
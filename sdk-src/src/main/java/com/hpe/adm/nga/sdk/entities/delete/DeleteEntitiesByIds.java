@@ -0,0 +1,124 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.delete;
+
+import com.hpe.adm.nga.sdk.entities.EntityCache;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Deletes entities by their ids.  The ids are sent in chunks as {@code id IN (...)} queries whose urls are kept short
+ * enough for the server, with a bounded number of requests in flight
+ */
+public class DeleteEntitiesByIds {
+
+    private final OctaneRequest octaneRequest;
+    private final Collection<String> ids;
+    private int chunkSize = IdQueries.DEFAULT_CHUNK_SIZE;
+    private int parallelism = DeleteHelper.DEFAULT_PARALLELISM;
+    private final String urlDomain;
+    private EntityCache entityCache;
+
+    public DeleteEntitiesByIds(OctaneHttpClient octaneHttpClient, String urlDomain, Collection<String> ids) {
+        octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
+        this.urlDomain = urlDomain;
+        this.ids = ids;
+    }
+
+    /**
+     * Execute the DeleteEntities requests of all the chunks of ids.  A chunk that fails does not stop the others
+     *
+     * @return the deleted, failed and missing ids
+     */
+    public DeleteResult execute() {
+        try {
+            return DeleteHelper.getInstance().deleteEntityModelsByIds(octaneRequest, ids, chunkSize, parallelism);
+        } finally {
+            updateCache();
+        }
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the result of the deletes
+     */
+    public CompletableFuture<DeleteResult> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the responses. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the result of the deletes
+     */
+    public CompletableFuture<DeleteResult> executeAsync(Executor executor) {
+        return DeleteHelper.getInstance().deleteEntityModelsByIdsAsync(octaneRequest, ids, chunkSize, parallelism, executor)
+                .whenComplete((deleteResult, throwable) -> updateCache());
+    }
+
+    /**
+     * Set the number of ids in a request, 100 by default
+     *
+     * @param chunkSize the maximum number of ids in a request
+     * @return DeleteEntitiesByIds Object with the chunk size
+     */
+    public DeleteEntitiesByIds chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Set the number of requests in flight, 4 by default
+     *
+     * @param parallelism the maximum number of requests in flight
+     * @return DeleteEntitiesByIds Object with the parallelism
+     */
+    public DeleteEntitiesByIds parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Remove the cached versions of the entities once they are deleted
+     *
+     * @param entityCache The cache, null for none
+     * @return DeleteEntitiesByIds Object with the cache
+     */
+    public DeleteEntitiesByIds cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    private void updateCache() {
+        if (entityCache != null) {
+            for (String id : ids) {
+                if (id != null) {
+                    entityCache.invalidate(urlDomain, id);
+                }
+            }
+        }
+    }
+}
@@ -13,18 +13,27 @@
  */
 package com.hpe.adm.nga.sdk.entities.delete;
 
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.model.EntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * This class hold the DeleteEntities object of one entity
  */
 public class DeleteEntity {
     private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private final String entityId;
+    private EntityCache entityCache;
 
     public DeleteEntity(OctaneHttpClient octaneHttpClient, String urlDomain, String entityId) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain, entityId);
+        this.urlDomain = urlDomain;
+        this.entityId = entityId;
     }
 
     /**
@@ -32,6 +41,46 @@ public class DeleteEntity {
      * @return new EntityModel object for the entity that's been deleted
      */
     public EntityModel execute()  {
-        return DeleteHelper.getInstance().deleteEntityModel(octaneRequest);
+        try {
+            return DeleteHelper.getInstance().deleteEntityModel(octaneRequest);
+        } finally {
+            updateCache();
+        }
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the result of the delete
+     */
+    public CompletableFuture<EntityModel> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the result of the delete
+     */
+    public CompletableFuture<EntityModel> executeAsync(Executor executor) {
+        return DeleteHelper.getInstance().deleteEntityModelAsync(octaneRequest, executor)
+                .whenComplete((deletedEntity, throwable) -> updateCache());
+    }
+
+    /**
+     * Remove the cached versions of the entity once it is deleted
+     *
+     * @param entityCache The cache, null for none
+     * @return this
+     */
+    public DeleteEntity cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    private void updateCache() {
+        if (entityCache != null) {
+            entityCache.invalidate(urlDomain, entityId);
+        }
     }
 }
@@ -14,15 +14,36 @@
 package com.hpe.adm.nga.sdk.entities.delete;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
 import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A helper for deleting entities
  */
 final class DeleteHelper {
 
+    /**
+     * The default number of requests that are in flight at the same time
+     */
+    static final int DEFAULT_PARALLELISM = 4;
+
     private static final DeleteHelper INSTANCE = new DeleteHelper();
 
     private DeleteHelper() {
@@ -43,6 +64,17 @@ final class DeleteHelper {
         return octaneRequest.getEntityResponse(octaneHttpRequest);
     }
 
+    /**
+     * Same as {@link #deleteEntityModel(OctaneRequest)} but does not block the calling thread
+     *
+     * @param octaneRequest the octane request
+     * @param executor the executor to use, can be null
+     */
+    CompletableFuture<EntityModel> deleteEntityModelAsync(OctaneRequest octaneRequest, Executor executor) {
+        OctaneHttpRequest octaneHttpRequest = new OctaneHttpRequest.DeleteOctaneHttpRequest(octaneRequest.getFinalRequestUrl());
+        return octaneRequest.getEntityResponseAsync(octaneHttpRequest, executor);
+    }
+
     /**
      * Execute a DeleteEntities request
      *
@@ -53,4 +85,68 @@ final class DeleteHelper {
         OctaneHttpRequest octaneHttpRequest = new OctaneHttpRequest.DeleteOctaneHttpRequest(octaneRequest.getFinalRequestUrl());
         return octaneRequest.getEntitiesResponse(octaneHttpRequest);
     }
+
+    /**
+     * Same as {@link #deleteEntityModels(OctaneRequest)} but does not block the calling thread
+     *
+     * @param octaneRequest the octane request
+     * @param executor the executor to use, can be null
+     */
+    CompletableFuture<OctaneCollection<EntityModel>> deleteEntityModelsAsync(OctaneRequest octaneRequest, Executor executor) {
+        OctaneHttpRequest octaneHttpRequest = new OctaneHttpRequest.DeleteOctaneHttpRequest(octaneRequest.getFinalRequestUrl());
+        return octaneRequest.getEntitiesResponseAsync(octaneHttpRequest, executor);
+    }
+
+    /**
+     * Deletes the entities with the given ids with one request per chunk of ids, with at most {@code parallelism}
+     * requests in flight.  A chunk whose url would be too long is split further.  A chunk that fails does not stop the
+     * other chunks, its ids are reported as failed
+     *
+     * @param ids         the ids of the entities, duplicates and nulls are ignored
+     * @param chunkSize   the maximum number of ids in a request
+     * @param parallelism the maximum number of requests in flight
+     * @param executor    the executor to use, can be null
+     */
+    CompletableFuture<DeleteResult> deleteEntityModelsByIdsAsync(OctaneRequest octaneRequest, Collection<String> ids,
+                                                                 int chunkSize, int parallelism, Executor executor) {
+        final Set<String> requestedIds = new LinkedHashSet<>(ids);
+        requestedIds.remove(null);
+        final int maxQueryLength = octaneRequest.getOctaneUrl().getMaxQueryLength(OctaneUrl.DEFAULT_MAX_LENGTH);
+        final List<List<String>> chunks = IdQueries.chunk(requestedIds, chunkSize, maxQueryLength, OctaneUrl::encodedLength);
+
+        final Set<String> deletedIds = Collections.synchronizedSet(new HashSet<>());
+        final Map<String, ErrorModel> failedIds = new HashMap<>();
+        // a chunk never fails its future, its ids are reported as failed instead
+        return FanOut.inLanes(chunks, parallelism, chunkIds -> {
+            final OctaneRequest chunkRequest = new OctaneRequest(octaneRequest);
+            chunkRequest.getOctaneUrl().setDqlQueryParam(IdQueries.in(chunkIds));
+            return deleteEntityModelsAsync(chunkRequest, executor).handle((deletedEntities, throwable) -> {
+                if (throwable == null) {
+                    if (deletedEntities == null) {
+                        // the server did not return the deleted entities
+                        deletedIds.addAll(chunkIds);
+                    } else {
+                        deletedEntities.forEach(deletedEntity -> deletedIds.add(deletedEntity.getId()));
+                    }
+                } else {
+                    final ErrorModel errorModel = OctaneExceptionFactory.toErrorModel(FanOut.unwrap(throwable));
+                    synchronized (failedIds) {
+                        chunkIds.forEach(id -> failedIds.put(id, errorModel));
+                    }
+                }
+                return null;
+            });
+        }).thenApply(ignored -> {
+            synchronized (failedIds) {
+                return new DeleteResult(requestedIds, deletedIds, failedIds);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #deleteEntityModelsByIdsAsync(OctaneRequest, Collection, int, int, Executor)} but blocks the calling thread
+     */
+    DeleteResult deleteEntityModelsByIds(OctaneRequest octaneRequest, Collection<String> ids, int chunkSize, int parallelism) {
+        return FanOut.join(deleteEntityModelsByIdsAsync(octaneRequest, ids, chunkSize, parallelism, null));
+    }
 }
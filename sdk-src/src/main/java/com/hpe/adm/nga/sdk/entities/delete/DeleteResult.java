@@ -0,0 +1,80 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.delete;
+
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of deleting entities by their ids, see {@link DeleteEntitiesByIds}.  Each requested id is either deleted,
+ * failed or missing.  The ids are kept in the order they were requested
+ */
+public final class DeleteResult {
+
+    private final Set<String> deletedIds;
+    private final Map<String, ErrorModel> failedIds;
+    private final Set<String> missingIds;
+
+    DeleteResult(Set<String> requestedIds, Set<String> deletedIds, Map<String, ErrorModel> failedIds) {
+        final Set<String> deleted = new LinkedHashSet<>();
+        final Map<String, ErrorModel> failed = new LinkedHashMap<>();
+        final Set<String> missing = new LinkedHashSet<>();
+        for (String id : requestedIds) {
+            if (failedIds.containsKey(id)) {
+                failed.put(id, failedIds.get(id));
+            } else if (deletedIds.contains(id)) {
+                deleted.add(id);
+            } else {
+                missing.add(id);
+            }
+        }
+        this.deletedIds = Collections.unmodifiableSet(deleted);
+        this.failedIds = Collections.unmodifiableMap(failed);
+        this.missingIds = Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * @return the ids of the entities that were deleted
+     */
+    public Set<String> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * @return the ids whose request failed, with the error of the request.  All the ids of a request share its error
+     */
+    public Map<String, ErrorModel> getFailedIds() {
+        return failedIds;
+    }
+
+    /**
+     * @return the ids whose request succeeded but that the server did not return as deleted, usually because the
+     * entity did not exist
+     */
+    public Set<String> getMissingIds() {
+        return missingIds;
+    }
+
+    /**
+     * @return whether every requested entity was deleted
+     */
+    public boolean isComplete() {
+        return failedIds.isEmpty() && missingIds.isEmpty();
+    }
+}
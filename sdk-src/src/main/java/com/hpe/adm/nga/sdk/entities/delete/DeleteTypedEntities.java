@@ -16,13 +16,13 @@ package com.hpe.adm.nga.sdk.entities.delete;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
 import com.hpe.adm.nga.sdk.model.EntityModel;
-import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 import com.hpe.adm.nga.sdk.query.Query;
 
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * The generic super class for the context of delete for typed entities.
@@ -46,11 +46,27 @@ public abstract class DeleteTypedEntities<T extends TypedEntityModel, E extends
 
      */
     public final OctaneCollection<T> execute()  {
-        final OctaneCollection<EntityModel> deletedEntities = DeleteHelper.getInstance().deleteEntityModels(octaneRequest);
-        return deletedEntities
-                .stream()
-                .map(this::getEntityInstance)
-                .collect(Collectors.toCollection(new OctaneCollectionSupplier<>(deletedEntities)));
+        return getEntityInstances(DeleteHelper.getInstance().deleteEntityModels(octaneRequest));
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the result of the delete
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the result of the delete
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync(final Executor executor) {
+        return DeleteHelper.getInstance().deleteEntityModelsAsync(octaneRequest, executor).thenApply(this::getEntityInstances);
     }
 
     /**
@@ -18,6 +18,9 @@ import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * The generic super class for the context of delete for typed entities.
  *
@@ -41,4 +44,24 @@ public abstract class DeleteTypedEntity<T extends TypedEntityModel> extends Type
     public final T execute()  {
         return getEntityInstance(DeleteHelper.getInstance().deleteEntityModel(octaneRequest));
     }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the result of the delete
+     */
+    public final CompletableFuture<T> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the result of the delete
+     */
+    public final CompletableFuture<T> executeAsync(final Executor executor) {
+        return DeleteHelper.getInstance().deleteEntityModelAsync(octaneRequest, executor).thenApply(this::getEntityInstance);
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The entities that were fetched by their ids, see {@link GetEntitiesByIds}.  The entities are kept in the order of the
+ * requested ids, and the ids that the server did not return are reported as missing
+ *
+ * @param <T> The type of the entity model
+ */
+public final class EntitiesById<T> {
+
+    private final Map<String, T> entities;
+    private final Set<String> missingIds;
+
+    EntitiesById(final Set<String> requestedIds, final Map<String, T> foundEntities) {
+        final Map<String, T> entities = new LinkedHashMap<>(foundEntities.size() * 2);
+        final Set<String> missingIds = new LinkedHashSet<>();
+        for (String id : requestedIds) {
+            final T entity = foundEntities.get(id);
+            if (entity == null) {
+                missingIds.add(id);
+            } else {
+                entities.put(id, entity);
+            }
+        }
+        this.entities = Collections.unmodifiableMap(entities);
+        this.missingIds = Collections.unmodifiableSet(missingIds);
+    }
+
+    private EntitiesById(final Map<String, T> entities, final Set<String> missingIds) {
+        this.entities = entities;
+        this.missingIds = missingIds;
+    }
+
+    /**
+     * @param id the id of the entity
+     * @return the entity with the id, or null if it was not requested or not found
+     */
+    public T get(final String id) {
+        return entities.get(id);
+    }
+
+    /**
+     * @return the entities that were found keyed by their id, in the order of the requested ids
+     */
+    public Map<String, T> getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return the requested ids that the server did not return, in the order they were requested.  The entity may have
+     * been deleted or the user may not have permission to see it
+     */
+    public Set<String> getMissingIds() {
+        return missingIds;
+    }
+
+    /**
+     * @return whether every requested entity was found
+     */
+    public boolean isComplete() {
+        return missingIds.isEmpty();
+    }
+
+    <U> EntitiesById<U> map(final Function<T, U> mapper) {
+        final Map<String, U> mapped = new LinkedHashMap<>(entities.size() * 2);
+        entities.forEach((id, entity) -> mapped.put(id, mapper.apply(entity)));
+        return new EntitiesById<>(Collections.unmodifiableMap(mapped), missingIds);
+    }
+}
@@ -15,10 +15,21 @@ package com.hpe.adm.nga.sdk.entities.get;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntitySchema;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
 import com.hpe.adm.nga.sdk.query.Query;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
 /**
  * This class hold the GetEntities objects and serve all functions concern to REST
  * GetEntities.
@@ -29,6 +40,9 @@ import com.hpe.adm.nga.sdk.query.Query;
 public class GetEntities {
 
     protected final OctaneRequest octaneRequest;
+    private Query query;
+    private int maxUrlLength = OctaneUrl.DEFAULT_MAX_LENGTH;
+    private int splitParallelism = GetHelper.DEFAULT_SPLIT_PARALLELISM;
 
     public GetEntities(OctaneHttpClient octaneHttpClient, String urlDomain) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
@@ -40,9 +54,139 @@ public class GetEntities {
      * @return a collection of entities models that have been retrieved
      */
     public OctaneCollection<EntityModel> execute()  {
+        final List<Query> queries = GetHelper.getInstance().splitQuery(octaneRequest, query, maxUrlLength);
+        if (!queries.isEmpty()) {
+            return GetHelper.getInstance().getEntityModels(octaneRequest, queries, splitParallelism);
+        }
         return GetHelper.getInstance().getEntityModels(octaneRequest);
     }
 
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the retrieved entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync(Executor executor) {
+        final List<Query> queries = GetHelper.getInstance().splitQuery(octaneRequest, query, maxUrlLength);
+        if (!queries.isEmpty()) {
+            return GetHelper.getInstance().getEntityModelsAsync(octaneRequest, queries, splitParallelism, executor);
+        }
+        return GetHelper.getInstance().getEntityModelsAsync(octaneRequest, executor);
+    }
+
+    /**
+     * Iterates over all of the entities that answer to this request, fetching them from the server page by page as the
+     * iteration advances.  The next page is fetched in the background while the current one is being iterated.
+     * <br>
+     * Uses a page size of 1000 and a prefetch depth of 1.  An {@link #offset(int)} that has been set is used as the
+     * starting point, {@link #limit(int)} is replaced by the page size
+     *
+     * @return lazy iterator over all entities
+     */
+    public Iterator<EntityModel> iterator() {
+        return iterator(PagedEntityIterator.DEFAULT_PAGE_SIZE, PagedEntityIterator.DEFAULT_PREFETCH_DEPTH);
+    }
+
+    /**
+     * Same as {@link #iterator()} with a custom page size and prefetch depth
+     *
+     * @param pageSize      number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @param prefetchDepth number of pages that are fetched in the background ahead of the page being iterated, 0 to
+     *                      only fetch a page once it is needed
+     * @return lazy iterator over all entities
+     */
+    public Iterator<EntityModel> iterator(int pageSize, int prefetchDepth) {
+        return new PagedEntityIterator(octaneRequest, pageSize, prefetchDepth, null);
+    }
+
+    /**
+     * Same as {@link #iterator()} but as a sequential {@link Stream}.  Closing the stream cancels pages that are still
+     * being fetched
+     *
+     * @return lazy stream over all entities
+     */
+    public Stream<EntityModel> stream() {
+        return stream(PagedEntityIterator.DEFAULT_PAGE_SIZE, PagedEntityIterator.DEFAULT_PREFETCH_DEPTH);
+    }
+
+    /**
+     * Same as {@link #stream()} with a custom page size and prefetch depth
+     *
+     * @param pageSize      number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @param prefetchDepth number of pages that are fetched in the background ahead of the page being iterated, 0 to
+     *                      only fetch a page once it is needed
+     * @return lazy stream over all entities
+     */
+    public Stream<EntityModel> stream(int pageSize, int prefetchDepth) {
+        return new PagedEntityIterator(octaneRequest, pageSize, prefetchDepth, null).stream();
+    }
+
+    /**
+     * Reads all of the entities that answer to this request with several requests in parallel.
+     * <br>
+     * The first page is requested alone to learn the total count, then a sliding window of {@code parallelism} pages
+     * is kept in flight.  The entities are returned in the same order as sequential paging would return them, so a slow
+     * page delays the requests for the pages behind it until it has been consumed.  The requests are run on a pool of {@code parallelism} daemon threads that is
+     * shut down when the stream is closed and whose threads otherwise stop once they are idle
+     *
+     * @param pageSize    number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @param parallelism maximum number of requests in flight
+     * @return lazy stream over all entities
+     */
+    public Stream<EntityModel> parallelScan(int pageSize, int parallelism) {
+        final ExecutorService executorService = PagedEntityIterator.newScanExecutor(parallelism);
+        return parallelScan(pageSize, parallelism, executorService).onClose(executorService::shutdown);
+    }
+
+    /**
+     * Same as {@link #parallelScan(int, int)} but runs the requests on the given executor
+     *
+     * @param pageSize    number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @param parallelism maximum number of requests in flight
+     * @param executor    executor used to send the requests and parse the responses
+     * @return lazy stream over all entities
+     */
+    public Stream<EntityModel> parallelScan(int pageSize, int parallelism, Executor executor) {
+        return PagedEntityIterator.parallelScan(octaneRequest, pageSize, parallelism, executor).stream();
+    }
+
+    /**
+     * Iterates over all of the entities that answer to this request using keyset (seek) pagination: each page is ordered
+     * by id and only contains entities with an id greater than the last one of the previous page.  Unlike offset paging
+     * the cost of a page does not grow with the depth of the scan and concurrent creates or deletes do not cause entities
+     * to be skipped or duplicated.
+     * <br>
+     * The order by of this request is replaced by the id and pages are fetched one after the other since each page
+     * depends on the previous one
+     *
+     * @param pageSize number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @return lazy iterator over all entities that exposes the cursor of the scan
+     */
+    public KeysetIterator<EntityModel> keysetIterator(int pageSize) {
+        return keysetIterator(pageSize, null);
+    }
+
+    /**
+     * Resumes a keyset scan after the entity with the given id
+     *
+     * @param pageSize number of entities per request, reduced to the maximum page size of the server if it is higher
+     * @param cursor   the {@link KeysetIterator#getCursor() cursor} of a previous scan, null to start from the beginning
+     * @return lazy iterator over the remaining entities that exposes the cursor of the scan
+     * @see #keysetIterator(int)
+     */
+    public KeysetIterator<EntityModel> keysetIterator(int pageSize, String cursor) {
+        return new KeysetIterator<>(octaneRequest, query, pageSize, cursor, Function.identity());
+    }
+
     /**
      * Add Fields parameters
      *
@@ -93,7 +237,52 @@ public class GetEntities {
      * @return The object
      */
     public GetEntities query(Query query) {
+        this.query = query;
         octaneRequest.getOctaneUrl().setDqlQueryParam(query);
         return this;
     }
+
+    /**
+     * Sets how a query that makes the url too long is split.  By default a url longer than 4096 characters once encoded
+     * is split into requests of at most that length, with at most 4 requests in flight.  The results of the requests
+     * are merged into one collection without duplicates, see {@link com.hpe.adm.nga.sdk.query.QuerySplitter} for the
+     * queries that can be split.  A request with an {@link #offset(int)} or an {@link #addOrderBy(String, boolean)} is
+     * not split, since the merged results would be neither in order nor the first ones of the order; the results of a
+     * request with a {@link #limit(int)} are cut to the limit
+     *
+     * @param maxUrlLength The maximum length of the encoded url, 0 to never split the query
+     * @param parallelism  The maximum number of requests in flight
+     * @return GetEntities Object with the split settings
+     */
+    public GetEntities splitQuery(int maxUrlLength, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.maxUrlLength = maxUrlLength;
+        this.splitParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Decode the fields of the entities with their declared types instead of guessing the types from the json values
+     *
+     * @param entitySchema The declared types of the fields, see {@link EntitySchema}
+     * @return GetEntities Object with the schema
+     */
+    public GetEntities schema(EntitySchema entitySchema) {
+        octaneRequest.setEntitySchema(entitySchema);
+        return this;
+    }
+
+    /**
+     * Store the fields of the returned entities as given by the storage mode.  Use {@link EntityStorageMode#COMPACT}
+     * to keep large result sets in memory and {@link EntityStorageMode#LAZY} when only a few of the fields are read
+     *
+     * @param entityStorageMode How the fields of the entities are stored, see {@link EntityStorageMode}
+     * @return GetEntities Object with the storage mode
+     */
+    public GetEntities storageMode(EntityStorageMode entityStorageMode) {
+        octaneRequest.setEntityStorageMode(entityStorageMode);
+        return this;
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntitySchema;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Gets known entities by their ids.  The ids are sent in chunks as {@code id IN (...)} queries, with a bounded number
+ * of requests in flight, so that N entities take about N / 100 requests instead of N
+ */
+public class GetEntitiesByIds {
+
+    private final OctaneRequest octaneRequest;
+    private final Collection<String> ids;
+    private int chunkSize = IdQueries.DEFAULT_CHUNK_SIZE;
+    private int parallelism = GetHelper.DEFAULT_SPLIT_PARALLELISM;
+
+    public GetEntitiesByIds(OctaneHttpClient octaneHttpClient, String urlDomain, Collection<String> ids) {
+        octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
+        this.ids = ids;
+    }
+
+    /**
+     * 1. Request the chunks of ids
+     * 2. Key the returned entities by their id
+     *
+     * @return the entities keyed by id and the ids that were not found
+     */
+    public EntitiesById<EntityModel> execute() {
+        return GetHelper.getInstance().getEntityModelsByIds(octaneRequest, ids, chunkSize, parallelism);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the retrieved entities
+     */
+    public CompletableFuture<EntitiesById<EntityModel>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the responses. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entities
+     */
+    public CompletableFuture<EntitiesById<EntityModel>> executeAsync(Executor executor) {
+        return GetHelper.getInstance().getEntityModelsByIdsAsync(octaneRequest, ids, chunkSize, parallelism, executor);
+    }
+
+    /**
+     * Get the given fields of the entities
+     *
+     * @param fields An array or comma separated list of fields to be retrieved
+     * @return GetEntitiesByIds Object with new Fields Parameters
+     */
+    public GetEntitiesByIds addFields(String... fields) {
+        octaneRequest.getOctaneUrl().addFieldsParam(fields);
+        return this;
+    }
+
+    /**
+     * Set the number of ids in a request, 100 by default.  It should not exceed the maximum page size of the server
+     *
+     * @param chunkSize the maximum number of ids in a request
+     * @return GetEntitiesByIds Object with the chunk size
+     */
+    public GetEntitiesByIds chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Set the number of requests in flight, 4 by default
+     *
+     * @param parallelism the maximum number of requests in flight
+     * @return GetEntitiesByIds Object with the parallelism
+     */
+    public GetEntitiesByIds parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set the schema used to parse the fields of the response, see {@link GetEntities#schema(EntitySchema)}
+     *
+     * @param entitySchema The schema of the entities
+     * @return GetEntitiesByIds Object with the schema
+     */
+    public GetEntitiesByIds schema(EntitySchema entitySchema) {
+        octaneRequest.setEntitySchema(entitySchema);
+        return this;
+    }
+
+    /**
+     * Set how the returned entities are stored in memory, see {@link EntityStorageMode}
+     *
+     * @param entityStorageMode The storage mode of the entities
+     * @return GetEntitiesByIds Object with the storage mode
+     */
+    public GetEntitiesByIds storageMode(EntityStorageMode entityStorageMode) {
+        octaneRequest.setEntityStorageMode(entityStorageMode);
+        return this;
+    }
+}
@@ -13,19 +13,32 @@
  */
 package com.hpe.adm.nga.sdk.entities.get;
 
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntitySchema;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * This class hold the GetEntities object of one entity
  */
 public class GetEntity {
 
     private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private final String entityId;
+    private final List<String> fields = new ArrayList<>();
+    private EntityCache entityCache;
 
     public GetEntity(OctaneHttpClient octaneHttpClient, String urlDomain, String entityId) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain, entityId);
+        this.urlDomain = urlDomain;
+        this.entityId = entityId;
     }
 
     /**
@@ -34,9 +47,35 @@ public class GetEntity {
      * @return EntityModel from the server
      */
     public EntityModel execute()  {
+        if (entityCache != null) {
+            return entityCache.get(urlDomain, entityId, fields, octaneRequest.getEntitySchema(),
+                    () -> GetHelper.getInstance().getEntityModel(octaneRequest));
+        }
         return GetHelper.getInstance().getEntityModel(octaneRequest);
     }
 
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the retrieved entity
+     */
+    public CompletableFuture<EntityModel> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entity
+     */
+    public CompletableFuture<EntityModel> executeAsync(Executor executor) {
+        if (entityCache != null) {
+            return entityCache.getAsync(urlDomain, entityId, fields, octaneRequest.getEntitySchema(),
+                    () -> GetHelper.getInstance().getEntityModelAsync(octaneRequest, executor));
+        }
+        return GetHelper.getInstance().getEntityModelAsync(octaneRequest, executor);
+    }
+
     /**
      * Set Fields Parameters
      *
@@ -45,6 +84,33 @@ public class GetEntity {
      */
     public GetEntity addFields(String... fields) {
         octaneRequest.getOctaneUrl().addFieldsParam(fields);
+        for (String field : fields) {
+            for (String fieldName : field.split(",")) {
+                this.fields.add(fieldName.trim());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Decode the fields of the entity with their declared types instead of guessing the types from the json values
+     *
+     * @param entitySchema The declared types of the fields, see {@link EntitySchema}
+     * @return GetEntity object with the schema
+     */
+    public GetEntity schema(EntitySchema entitySchema) {
+        octaneRequest.setEntitySchema(entitySchema);
+        return this;
+    }
+
+    /**
+     * Answer the request from the cache, and load the entity into the cache if it is missing
+     *
+     * @param entityCache The cache, null to always send the request
+     * @return GetEntity object with the cache
+     */
+    public GetEntity cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
         return this;
     }
 }
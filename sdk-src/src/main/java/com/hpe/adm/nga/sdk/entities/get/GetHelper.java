@@ -15,14 +15,42 @@ package com.hpe.adm.nga.sdk.entities.get;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
+import com.hpe.adm.nga.sdk.network.FanOut;
 import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QuerySplitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 /**
  * A helper for getting entities
  */
 final class GetHelper {
 
+    /**
+     * The default number of requests of a split query that are in flight at the same time
+     */
+    static final int DEFAULT_SPLIT_PARALLELISM = 4;
+
+    private static final String LIMIT_PARAM_NAME = "limit";
+    private static final String OFFSET_PARAM_NAME = "offset";
+    private static final String ORDER_BY_PARAM_NAME = "order_by";
+
     private static final GetHelper INSTANCE = new GetHelper();
 
     private GetHelper() {
@@ -37,8 +65,16 @@ final class GetHelper {
      * 2. Parse response to a new Collection object
      */
     final OctaneCollection<EntityModel> getEntityModels(final OctaneRequest octaneRequest)  {
-        OctaneHttpRequest octaneHttpRequest = new OctaneHttpRequest.GetOctaneHttpRequest(octaneRequest.getFinalRequestUrl()).setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
-        return octaneRequest.getEntitiesResponse(octaneHttpRequest);
+        return octaneRequest.getEntitiesResponse(createGetRequest(octaneRequest));
+    }
+
+    /**
+     * Same as {@link #getEntityModels(OctaneRequest)} but does not block the calling thread
+     *
+     * @param executor the executor to use, can be null
+     */
+    final CompletableFuture<OctaneCollection<EntityModel>> getEntityModelsAsync(final OctaneRequest octaneRequest, final Executor executor) {
+        return octaneRequest.getEntitiesResponseAsync(createGetRequest(octaneRequest), executor);
     }
 
     /**
@@ -46,10 +82,152 @@ final class GetHelper {
      * new EntityModel object
      */
     final EntityModel getEntityModel(final OctaneRequest octaneRequest)  {
-        OctaneHttpRequest octaneHttpRequest =
-                new OctaneHttpRequest.GetOctaneHttpRequest(octaneRequest.getFinalRequestUrl())
-                        .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
-        return octaneRequest.getEntityResponse(octaneHttpRequest);
+        return octaneRequest.getEntityResponse(createGetRequest(octaneRequest));
+    }
+
+    /**
+     * Same as {@link #getEntityModel(OctaneRequest)} but does not block the calling thread
+     *
+     * @param executor the executor to use, can be null
+     */
+    final CompletableFuture<EntityModel> getEntityModelAsync(final OctaneRequest octaneRequest, final Executor executor) {
+        return octaneRequest.getEntityResponseAsync(createGetRequest(octaneRequest), executor);
+    }
+
+    /**
+     * Splits the query of the request if its url is longer than the maximum length, see {@link QuerySplitter}.  A request
+     * with an offset or an order is not split since neither can be applied to the merged results: the chunks are sorted
+     * by the server one by one, so the merged results would not be in order and a limit would not keep the first ones
+     *
+     * @param query        the query of the request, can be null
+     * @param maxUrlLength the maximum length of the encoded url, 0 or less to never split
+     * @return the queries of the requests to send, or an empty list if the request is sent as it is
+     */
+    final List<Query> splitQuery(final OctaneRequest octaneRequest, final Query query, final int maxUrlLength) {
+        if (query == null || maxUrlLength <= 0 || octaneRequest.getOctaneUrl().hasParam(OFFSET_PARAM_NAME)
+                || octaneRequest.getOctaneUrl().hasParam(ORDER_BY_PARAM_NAME)) {
+            return Collections.emptyList();
+        }
+        final int urlLength = OctaneUrl.encodedLength(octaneRequest.getFinalRequestUrl());
+        if (urlLength <= maxUrlLength) {
+            return Collections.emptyList();
+        }
+        final int maxQueryLength = octaneRequest.getOctaneUrl().getMaxQueryLength(maxUrlLength);
+        final List<Query> queries = QuerySplitter.split(query, maxQueryLength, OctaneUrl::encodedLength);
+        return queries.size() > 1 ? queries : Collections.emptyList();
+    }
+
+    /**
+     * Sends a request for each query with at most {@code parallelism} requests in flight, and merges the results in the
+     * order of the queries.  An entity that is returned for several queries is kept once.  If the request has a limit
+     * the merged results are cut to the limit
+     *
+     * @param queries     the queries that replace the query of the request
+     * @param parallelism the maximum number of requests in flight
+     * @param executor    the executor to use, can be null
+     */
+    final CompletableFuture<OctaneCollection<EntityModel>> getEntityModelsAsync(final OctaneRequest octaneRequest, final List<Query> queries,
+                                                                               final int parallelism, final Executor executor) {
+        final String limit = octaneRequest.getOctaneUrl().getParam(LIMIT_PARAM_NAME);
+        return getAllEntityModelsAsync(octaneRequest, queries, parallelism, executor)
+                .thenApply(results -> merge(results, limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit)));
+    }
+
+    /**
+     * Same as {@link #getEntityModelsAsync(OctaneRequest, List, int, Executor)} but blocks the calling thread
+     */
+    final OctaneCollection<EntityModel> getEntityModels(final OctaneRequest octaneRequest, final List<Query> queries, final int parallelism) {
+        return FanOut.join(getEntityModelsAsync(octaneRequest, queries, parallelism, null));
+    }
+
+    /**
+     * Gets the entities with the given ids with one request per chunk of ids, with at most {@code parallelism} requests
+     * in flight.  A chunk whose url would be longer than the default maximum length is split further
+     *
+     * @param ids         the ids of the entities, duplicates and nulls are ignored
+     * @param chunkSize   the maximum number of ids in a request
+     * @param parallelism the maximum number of requests in flight
+     * @param executor    the executor to use, can be null
+     */
+    final CompletableFuture<EntitiesById<EntityModel>> getEntityModelsByIdsAsync(final OctaneRequest octaneRequest, final Collection<String> ids,
+                                                                                 final int chunkSize, final int parallelism, final Executor executor) {
+        final Set<String> requestedIds = new LinkedHashSet<>(ids);
+        requestedIds.remove(null);
+        if (requestedIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new EntitiesById<>(requestedIds, Collections.emptyMap()));
+        }
+        final OctaneRequest idsRequest = new OctaneRequest(octaneRequest);
+        idsRequest.getOctaneUrl().setLimitParam(chunkSize);
+        final int maxQueryLength = idsRequest.getOctaneUrl().getMaxQueryLength(OctaneUrl.DEFAULT_MAX_LENGTH);
+        final List<Query> queries = IdQueries.chunk(requestedIds, chunkSize, maxQueryLength, OctaneUrl::encodedLength).stream()
+                .map(IdQueries::in)
+                .collect(Collectors.toList());
+        return getAllEntityModelsAsync(idsRequest, queries, parallelism, executor).thenApply(results -> {
+            final Map<String, EntityModel> entityModels = new HashMap<>(requestedIds.size() * 2);
+            for (OctaneCollection<EntityModel> result : results) {
+                for (EntityModel entityModel : result) {
+                    entityModels.putIfAbsent(entityModel.getId(), entityModel);
+                }
+            }
+            return new EntitiesById<>(requestedIds, entityModels);
+        });
+    }
+
+    /**
+     * Same as {@link #getEntityModelsByIdsAsync(OctaneRequest, Collection, int, int, Executor)} but blocks the calling thread
+     */
+    final EntitiesById<EntityModel> getEntityModelsByIds(final OctaneRequest octaneRequest, final Collection<String> ids,
+                                                         final int chunkSize, final int parallelism) {
+        return FanOut.join(getEntityModelsByIdsAsync(octaneRequest, ids, chunkSize, parallelism, null));
+    }
+
+    /**
+     * Sends a request for each query with at most {@code parallelism} requests in flight, see {@link FanOut}
+     *
+     * @return the results in the order of the queries
+     */
+    private CompletableFuture<List<OctaneCollection<EntityModel>>> getAllEntityModelsAsync(final OctaneRequest octaneRequest, final List<Query> queries,
+                                                                                          final int parallelism, final Executor executor) {
+        return FanOut.inLanes(queries, parallelism, query -> {
+            final OctaneRequest chunkRequest = new OctaneRequest(octaneRequest);
+            chunkRequest.getOctaneUrl().setDqlQueryParam(query);
+            return getEntityModelsAsync(chunkRequest, executor);
+        });
+    }
+
+    /**
+     * The chunks are disjoint, so the total count of the query is the sum of the total counts of the chunks.  A chunk
+     * without a total count counts its entities
+     */
+    private static OctaneCollection<EntityModel> merge(final List<OctaneCollection<EntityModel>> results, final int limit) {
+        final Set<String> ids = new HashSet<>();
+        final List<EntityModel> entityModels = new ArrayList<>();
+        long totalCount = 0;
+        boolean exceedsTotalCount = false;
+        for (OctaneCollection<EntityModel> result : results) {
+            if (result == null) {
+                continue;
+            }
+            totalCount += result.getTotalCount() == OctaneCollection.NO_TOTAL_COUNT_SET ? result.size() : result.getTotalCount();
+            exceedsTotalCount |= result.exceedsTotalCount() || result.getTotalCount() > result.size();
+            for (EntityModel entityModel : result) {
+                if (entityModel.getId() == null || ids.add(entityModel.getId())) {
+                    entityModels.add(entityModel);
+                }
+            }
+        }
+        if (entityModels.size() > limit) {
+            exceedsTotalCount = true;
+        }
+        final List<EntityModel> limited = entityModels.size() > limit ? entityModels.subList(0, limit) : entityModels;
+        final OctaneCollection<EntityModel> merged = new OctaneCollectionSupplier<EntityModel>((int) Math.min(Integer.MAX_VALUE, totalCount), exceedsTotalCount).get();
+        merged.addAll(limited);
+        return merged;
+    }
+
+    private OctaneHttpRequest createGetRequest(final OctaneRequest octaneRequest) {
+        return new OctaneHttpRequest.GetOctaneHttpRequest(octaneRequest.getFinalRequestUrl())
+                .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
     }
 
-}
\ No newline at end of file
+}
@@ -16,13 +16,18 @@ package com.hpe.adm.nga.sdk.entities.get;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
 import com.hpe.adm.nga.sdk.model.EntityModel;
-import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
 import com.hpe.adm.nga.sdk.query.Query;
 
-import java.util.stream.Collectors;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 /**
  * The generic super class for the context of get for typed entities.
@@ -37,6 +42,9 @@ public abstract class GetTypedEntities<T extends TypedEntityModel, E extends Get
         extends TypedEntityList.TypedEntityRequest<T> {
 
     private final OctaneRequest octaneRequest;
+    private Query query;
+    private int maxUrlLength = OctaneUrl.DEFAULT_MAX_LENGTH;
+    private int splitParallelism = GetHelper.DEFAULT_SPLIT_PARALLELISM;
 
     protected GetTypedEntities(final Class<T> typedEntityModelClass, final OctaneHttpClient octaneHttpClient, final String baseDomain) {
         super(typedEntityModelClass);
@@ -50,11 +58,128 @@ public abstract class GetTypedEntities<T extends TypedEntityModel, E extends Get
 
      */
     public final OctaneCollection<T> execute()  {
-        final OctaneCollection<EntityModel> entityModels = GetHelper.getInstance().getEntityModels(octaneRequest);
-        return entityModels
-                .stream()
-                .map(this::getEntityInstance)
-                .collect(Collectors.toCollection(new OctaneCollectionSupplier<>(entityModels)));
+        final List<Query> queries = GetHelper.getInstance().splitQuery(octaneRequest, query, maxUrlLength);
+        if (!queries.isEmpty()) {
+            return getEntityInstances(GetHelper.getInstance().getEntityModels(octaneRequest, queries, splitParallelism));
+        }
+        return getEntityInstances(GetHelper.getInstance().getEntityModels(octaneRequest));
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the retrieved entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync(final Executor executor) {
+        final List<Query> queries = GetHelper.getInstance().splitQuery(octaneRequest, query, maxUrlLength);
+        if (!queries.isEmpty()) {
+            return GetHelper.getInstance().getEntityModelsAsync(octaneRequest, queries, splitParallelism, executor).thenApply(this::getEntityInstances);
+        }
+        return GetHelper.getInstance().getEntityModelsAsync(octaneRequest, executor).thenApply(this::getEntityInstances);
+    }
+
+    /**
+     * Iterates over all of the entities that answer to this request, fetching them page by page as the iteration advances
+     *
+     * @return lazy iterator over all entities
+     * @see GetEntities#iterator()
+     */
+    public final Iterator<T> iterator() {
+        return stream().iterator();
+    }
+
+    /**
+     * Iterates over all of the entities that answer to this request, fetching them page by page as the iteration advances
+     *
+     * @param pageSize      number of entities per request
+     * @param prefetchDepth number of pages that are fetched in the background ahead of the page being iterated
+     * @return lazy iterator over all entities
+     * @see GetEntities#iterator(int, int)
+     */
+    public final Iterator<T> iterator(final int pageSize, final int prefetchDepth) {
+        return stream(pageSize, prefetchDepth).iterator();
+    }
+
+    /**
+     * Streams all of the entities that answer to this request, fetching them page by page as the stream is consumed
+     *
+     * @return lazy stream over all entities
+     * @see GetEntities#stream()
+     */
+    public final Stream<T> stream() {
+        return stream(PagedEntityIterator.DEFAULT_PAGE_SIZE, PagedEntityIterator.DEFAULT_PREFETCH_DEPTH);
+    }
+
+    /**
+     * Streams all of the entities that answer to this request, fetching them page by page as the stream is consumed
+     *
+     * @param pageSize      number of entities per request
+     * @param prefetchDepth number of pages that are fetched in the background ahead of the page being iterated
+     * @return lazy stream over all entities
+     * @see GetEntities#stream(int, int)
+     */
+    public final Stream<T> stream(final int pageSize, final int prefetchDepth) {
+        return new PagedEntityIterator(octaneRequest, pageSize, prefetchDepth, null).stream().map(this::getEntityInstance);
+    }
+
+    /**
+     * Reads all of the entities that answer to this request with several requests in parallel, in a deterministic order
+     *
+     * @param pageSize    number of entities per request
+     * @param parallelism maximum number of requests in flight
+     * @return lazy stream over all entities
+     * @see GetEntities#parallelScan(int, int)
+     */
+    public final Stream<T> parallelScan(final int pageSize, final int parallelism) {
+        final ExecutorService executorService = PagedEntityIterator.newScanExecutor(parallelism);
+        return parallelScan(pageSize, parallelism, executorService).onClose(executorService::shutdown);
+    }
+
+    /**
+     * Reads all of the entities that answer to this request with several requests in parallel, in a deterministic order
+     *
+     * @param pageSize    number of entities per request
+     * @param parallelism maximum number of requests in flight
+     * @param executor    executor used to send the requests and parse the responses
+     * @return lazy stream over all entities
+     * @see GetEntities#parallelScan(int, int, Executor)
+     */
+    public final Stream<T> parallelScan(final int pageSize, final int parallelism, final Executor executor) {
+        return PagedEntityIterator.parallelScan(octaneRequest, pageSize, parallelism, executor).stream().map(this::getEntityInstance);
+    }
+
+    /**
+     * Iterates over all of the entities that answer to this request using keyset pagination on the id
+     *
+     * @param pageSize number of entities per request
+     * @return lazy iterator over all entities that exposes the cursor of the scan
+     * @see GetEntities#keysetIterator(int)
+     */
+    public final KeysetIterator<T> keysetIterator(final int pageSize) {
+        return keysetIterator(pageSize, null);
+    }
+
+    /**
+     * Resumes a keyset scan after the entity with the given id
+     *
+     * @param pageSize number of entities per request
+     * @param cursor   the {@link KeysetIterator#getCursor() cursor} of a previous scan, null to start from the beginning
+     * @return lazy iterator over the remaining entities that exposes the cursor of the scan
+     * @see GetEntities#keysetIterator(int, String)
+     */
+    public final KeysetIterator<T> keysetIterator(final int pageSize, final String cursor) {
+        return new KeysetIterator<>(octaneRequest, query, pageSize, cursor, this::getEntityInstance);
     }
 
     /**
@@ -106,12 +231,30 @@ public abstract class GetTypedEntities<T extends TypedEntityModel, E extends Get
         return (E) this;
     }
 
+    /**
+     * Sets how a query that makes the url too long is split, see {@link GetEntities#splitQuery(int, int)}
+     *
+     * @param maxUrlLength The maximum length of the encoded url, 0 to never split the query
+     * @param parallelism  The maximum number of requests in flight
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E splitQuery(final int maxUrlLength, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.maxUrlLength = maxUrlLength;
+        this.splitParallelism = parallelism;
+        return (E) this;
+    }
+
     /**
      * @param query The query to use
      * @return this instance
      */
     @SuppressWarnings("unchecked")
     public final E query(final Query query) {
+        this.query = query;
         octaneRequest.getOctaneUrl().setDqlQueryParam(query);
         return (E) this;
     }
@@ -0,0 +1,131 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import com.hpe.adm.nga.sdk.entities.TypedEntityList;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
+import com.hpe.adm.nga.sdk.model.TypedEntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Gets known typed entities by their ids with chunked {@code id IN (...)} queries.
+ *
+ * @param <T> The type of the entity model
+ * @param <F> The type of {@link com.hpe.adm.nga.sdk.entities.TypedEntityList.AvailableFields}
+ * @see GetEntitiesByIds for the non typed version
+ */
+public class GetTypedEntitiesByIds<T extends TypedEntityModel, F extends TypedEntityList.AvailableFields>
+        extends TypedEntityList.TypedEntityRequest<T> {
+
+    private final OctaneRequest octaneRequest;
+    private final Collection<String> ids;
+    private int chunkSize = IdQueries.DEFAULT_CHUNK_SIZE;
+    private int parallelism = GetHelper.DEFAULT_SPLIT_PARALLELISM;
+
+    public GetTypedEntitiesByIds(final Class<T> typedEntityModelClass, final OctaneHttpClient octaneHttpClient, final String baseDomain,
+                                 final Collection<String> ids) {
+        super(typedEntityModelClass);
+        octaneRequest = new OctaneRequest(octaneHttpClient, baseDomain);
+        this.ids = ids;
+    }
+
+    /**
+     * Carries out the execution and returns the entities
+     *
+     * @return the entities keyed by id and the ids that were not found
+     */
+    public final EntitiesById<T> execute() {
+        return GetHelper.getInstance().getEntityModelsByIds(octaneRequest, ids, chunkSize, parallelism).map(this::getEntityInstance);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the retrieved entities
+     */
+    public final CompletableFuture<EntitiesById<T>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the responses. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entities
+     */
+    public final CompletableFuture<EntitiesById<T>> executeAsync(final Executor executor) {
+        return GetHelper.getInstance().getEntityModelsByIdsAsync(octaneRequest, ids, chunkSize, parallelism, executor)
+                .thenApply(entityModels -> entityModels.map(this::getEntityInstance));
+    }
+
+    /**
+     * Adds fields of type F
+     *
+     * @param fields Array of fields
+     * @return this instance
+     */
+    @SafeVarargs
+    public final GetTypedEntitiesByIds<T, F> addFields(final F... fields) {
+        GetTypedHelper.addFields(octaneRequest, fields);
+        return this;
+    }
+
+    /**
+     * Set the number of ids in a request
+     *
+     * @param chunkSize the maximum number of ids in a request
+     * @return this instance
+     * @see GetEntitiesByIds#chunkSize(int)
+     */
+    public final GetTypedEntitiesByIds<T, F> chunkSize(final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Set the number of requests in flight
+     *
+     * @param parallelism the maximum number of requests in flight
+     * @return this instance
+     * @see GetEntitiesByIds#parallelism(int)
+     */
+    public final GetTypedEntitiesByIds<T, F> parallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set how the returned entities are stored in memory, see {@link EntityStorageMode}
+     *
+     * @param entityStorageMode The storage mode of the entities
+     * @return this instance
+     */
+    public final GetTypedEntitiesByIds<T, F> storageMode(final EntityStorageMode entityStorageMode) {
+        octaneRequest.setEntityStorageMode(entityStorageMode);
+        return this;
+    }
+}
@@ -18,6 +18,9 @@ import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * The generic super class for the context of get for typed entities.
  *
@@ -46,6 +49,26 @@ public abstract class GetTypedEntity<T extends TypedEntityModel, E extends GetTy
         return getEntityInstance(GetHelper.getInstance().getEntityModel(octaneRequest));
     }
 
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the retrieved entity
+     */
+    public final CompletableFuture<T> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the retrieved entity
+     */
+    public final CompletableFuture<T> executeAsync(final Executor executor) {
+        return GetHelper.getInstance().getEntityModelAsync(octaneRequest, executor).thenApply(this::getEntityInstance);
+    }
+
     /**
      * Set Fields Parameters
      *
@@ -0,0 +1,131 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over all of the entities that answer to a get request using keyset (seek) pagination.
+ * <br>
+ * Instead of an offset every page is requested ordered by id with an additional {@code id GT <last id>} clause.  The cost
+ * of a page on the server does not grow with the depth of the scan and entities created or deleted during the scan do not
+ * cause other entities to be skipped or returned twice.  Any order by of the original request is replaced by the id.
+ * <br>
+ * The id of the last returned entity is available as the {@link #getCursor() cursor}.  A scan that was interrupted can be
+ * resumed by passing the cursor to {@link GetEntities#keysetIterator(int, String)}.
+ * <br>
+ * The scan ends on an empty page or on a page that holds all of the remaining entities according to its total count.
+ * <br>
+ * The iterator is not thread safe
+ *
+ * @param <T> the type of the returned entities
+ */
+public final class KeysetIterator<T> implements Iterator<T> {
+
+    private static final String ID_FIELD_NAME = "id";
+
+    private final OctaneRequest octaneRequest;
+    private final Query query;
+    private final int pageSize;
+    private final Function<EntityModel, T> converter;
+
+    private String cursor;
+    private boolean lastPageReached = false;
+    private Iterator<EntityModel> currentPage = Collections.emptyIterator();
+
+    KeysetIterator(final OctaneRequest octaneRequest, final Query query, final int pageSize, final String cursor, final Function<EntityModel, T> converter) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.octaneRequest = new OctaneRequest(octaneRequest);
+        this.query = query;
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+        this.converter = converter;
+    }
+
+    /**
+     * The id of the last entity that was returned by {@link #next()}, or the id the scan was started after if no entity has
+     * been returned yet
+     *
+     * @return the cursor or null if the scan started from the beginning and no entity has been returned yet
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Wraps the iterator in a sequential stream
+     *
+     * @return stream of the remaining entities
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentPage.hasNext()) {
+            if (lastPageReached) {
+                return false;
+            }
+            final OctaneCollection<EntityModel> page = GetHelper.getInstance().getEntityModels(createPageRequest());
+            // A page shorter than the page size does not end the scan, the server caps the page size at its maximum.
+            // The total count is the number of entities left after the cursor
+            lastPageReached = page == null || page.isEmpty() ||
+                    (page.getTotalCount() != OctaneCollection.NO_TOTAL_COUNT_SET && page.size() >= page.getTotalCount());
+            currentPage = page == null ? Collections.emptyIterator() : page.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final EntityModel entityModel = currentPage.next();
+        cursor = entityModel.getId();
+        return converter.apply(entityModel);
+    }
+
+    private OctaneRequest createPageRequest() {
+        final OctaneRequest pageRequest = new OctaneRequest(octaneRequest);
+        pageRequest.getOctaneUrl().setLimitParam(pageSize);
+        pageRequest.getOctaneUrl().setOffsetParam(0);
+        pageRequest.getOctaneUrl().setOrderByParam(ID_FIELD_NAME, true);
+
+        if (cursor != null) {
+            final Query.QueryBuilder keysetQuery = Query.statement(ID_FIELD_NAME, QueryMethod.GreaterThan, IdQueries.toIdValue(cursor));
+            pageRequest.getOctaneUrl().setDqlQueryParam(query == null ? keysetQuery.build() : keysetQuery.and(query).build());
+        } else if (query != null) {
+            pageRequest.getOctaneUrl().setDqlQueryParam(query);
+        }
+        return pageRequest;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over all of the entities that answer to a get request by fetching them page by page using limit and offset.
+ * <br>
+ * Pages are requested lazily.  Once a page has been received up to {@code prefetchDepth} following pages are requested in
+ * the background so that the next page is usually already available when the caller has finished with the current one.
+ * With a prefetch depth higher than 1 this becomes a parallel scan: a sliding window of {@code prefetchDepth} pages is
+ * kept in flight and the pages are returned in offset order.  A new page is only requested once the oldest page of the
+ * window has been consumed, so a slow page holds back the requests for the pages behind it.
+ * <br>
+ * The scan ends on an empty page or once the total count has been reached, a page that is shorter than requested
+ * because the page size is higher than the maximum allowed by the server does not end it.
+ * <br>
+ * The iterator is not thread safe.  As with any offset based paging, entities that are created or deleted while iterating
+ * can cause entities to be skipped or returned twice.
+ */
+final class PagedEntityIterator implements Iterator<EntityModel>, AutoCloseable {
+
+    /**
+     * The page size that is used when none is given
+     */
+    static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * The number of pages that are fetched ahead when no prefetch depth is given
+     */
+    static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+    private static final long SCAN_THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final OctaneRequest octaneRequest;
+    private int pageSize;
+    private final int prefetchDepth;
+    private final Executor executor;
+    private final Deque<CompletableFuture<OctaneCollection<EntityModel>>> pendingPages = new ArrayDeque<>();
+
+    private int nextOffset;
+    private int totalCount = OctaneCollection.NO_TOTAL_COUNT_SET;
+    private boolean lastPageReached = false;
+    private Iterator<EntityModel> currentPage = Collections.emptyIterator();
+
+    /**
+     * @param octaneRequest the request to page over. The request is copied, its offset (if set) is the offset of the first
+     *                      page and its limit is replaced by the page size
+     * @param pageSize      number of entities per page.  If the server returns less entities than requested before the
+     *                      total count is reached the page size is reduced to the size of the returned page
+     * @param prefetchDepth number of pages that are fetched in the background ahead of the page being iterated
+     * @param executor      executor used to fetch and parse the pages, if null the http client decides where the work is done
+     */
+    PagedEntityIterator(final OctaneRequest octaneRequest, final int pageSize, final int prefetchDepth, final Executor executor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth cannot be negative");
+        }
+        this.octaneRequest = new OctaneRequest(octaneRequest);
+        this.pageSize = pageSize;
+        this.prefetchDepth = prefetchDepth;
+        this.executor = executor;
+        final String offset = octaneRequest.getOctaneUrl().getParam("offset");
+        this.nextOffset = offset == null ? 0 : Integer.parseInt(offset);
+    }
+
+    /**
+     * Creates the iterator of a parallel scan that keeps {@code parallelism} pages in flight
+     *
+     * @param octaneRequest the request to page over
+     * @param pageSize      number of entities per page
+     * @param parallelism   maximum number of requests in flight
+     * @param executor      executor used to fetch and parse the pages
+     * @return the iterator
+     */
+    static PagedEntityIterator parallelScan(final OctaneRequest octaneRequest, final int pageSize, final int parallelism, final Executor executor) {
+        checkParallelism(parallelism);
+        return new PagedEntityIterator(octaneRequest, pageSize, parallelism, executor);
+    }
+
+    /**
+     * Wraps the iterator in a sequential stream.  Closing the stream cancels any pages that are still being fetched
+     *
+     * @return stream of all entities
+     */
+    Stream<EntityModel> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentPage.hasNext()) {
+            if (pendingPages.isEmpty() && !requestNextPage()) {
+                return false;
+            }
+            final int pageOffset = nextOffset - pendingPages.size() * pageSize;
+            final OctaneCollection<EntityModel> page = FanOut.join(pendingPages.poll());
+            if (page == null) {
+                lastPageReached = true;
+            } else {
+                if (page.getTotalCount() != OctaneCollection.NO_TOTAL_COUNT_SET) {
+                    totalCount = page.getTotalCount();
+                }
+                final int pageEnd = pageOffset + page.size();
+                lastPageReached = page.isEmpty() || (totalCount != OctaneCollection.NO_TOTAL_COUNT_SET && pageEnd >= totalCount);
+                if (!lastPageReached && page.size() < pageSize) {
+                    // The server caps the page size, the pages that were requested after this one start at the wrong offset
+                    close();
+                    pageSize = page.size();
+                    nextOffset = pageEnd;
+                }
+                currentPage = page.iterator();
+            }
+
+            if (lastPageReached) {
+                close();
+            } else {
+                while (pendingPages.size() < prefetchDepth && requestNextPage()) {
+                    // keep requesting until the prefetch depth has been reached
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public EntityModel next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+
+    /**
+     * Cancels the pages that have been requested but not yet iterated
+     */
+    @Override
+    public void close() {
+        pendingPages.forEach(pendingPage -> pendingPage.cancel(false));
+        pendingPages.clear();
+    }
+
+    private boolean requestNextPage() {
+        if (lastPageReached || (totalCount != OctaneCollection.NO_TOTAL_COUNT_SET && nextOffset >= totalCount)) {
+            return false;
+        }
+        final OctaneRequest pageRequest = new OctaneRequest(octaneRequest);
+        pageRequest.getOctaneUrl().setLimitParam(pageSize);
+        pageRequest.getOctaneUrl().setOffsetParam(nextOffset);
+        pendingPages.add(GetHelper.getInstance().getEntityModelsAsync(pageRequest, executor));
+        nextOffset += pageSize;
+        return true;
+    }
+
+    /**
+     * Creates the bounded pool used by a parallel scan.  The threads are daemon threads that stop once they have been
+     * idle for a while so that a scan that is not closed does not keep the pool alive
+     *
+     * @param parallelism number of threads
+     * @return the pool
+     */
+    static ExecutorService newScanExecutor(final int parallelism) {
+        checkParallelism(parallelism);
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, SCAN_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "octane-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void checkParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+    }
+}
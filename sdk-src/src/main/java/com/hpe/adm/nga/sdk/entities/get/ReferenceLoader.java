@@ -0,0 +1,206 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.get;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.metadata.EntityMetadata;
+import com.hpe.adm.nga.sdk.metadata.features.RestFeature;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.model.MultiReferenceFieldModel;
+import com.hpe.adm.nga.sdk.model.ReferenceFieldModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fills in the entities that are the values of reference fields.  A reference read from the server usually only has
+ * its type and id; reading the referenced entities one at a time costs one request per reference.  The loader instead
+ * collects the references of a batch of entities, groups them by type and fetches each type with bulk
+ * {@code id IN (...)} requests, see {@link com.hpe.adm.nga.sdk.entities.EntityList#getByIds}.
+ * <br>
+ * The fetched entities are cached for the lifetime of the loader, so each referenced entity is fetched once.  The
+ * fields are added to the reference without being marked as changed, and fields that the reference already has are
+ * kept.  References to entities that the server does not return are left as they are.
+ * <br>
+ * The collection of each type is found in the metadata of the server the first time it is needed, or can be given
+ * with {@link #collectionName(String, String)}.  The references of a type that has no collection are left as they
+ * are.  Create the loader with {@link Octane#referenceLoader()}
+ */
+public final class ReferenceLoader {
+
+    private final Octane octane;
+    private final Map<String, String> collectionNames = new ConcurrentHashMap<>();
+    private final Map<String, String[]> fields = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, EntityModel>> loadedEntities = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> missingIds = new ConcurrentHashMap<>();
+    private volatile boolean metadataLoaded = false;
+
+    public ReferenceLoader(Octane octane) {
+        this.octane = octane;
+    }
+
+    /**
+     * Sets the collection of the entities of a type instead of finding it in the metadata
+     *
+     * @param type           the type of the referenced entities, for example {@code release}
+     * @param collectionName the collection name of the entities, for example {@code releases}
+     * @return this instance
+     */
+    public ReferenceLoader collectionName(String type, String collectionName) {
+        collectionNames.put(type, collectionName);
+        return this;
+    }
+
+    /**
+     * Sets the fields that are fetched for the entities of a type.  The default fields of the server are fetched
+     * otherwise
+     *
+     * @param type   the type of the referenced entities
+     * @param fields the fields to fetch
+     * @return this instance
+     */
+    public ReferenceLoader fields(String type, String... fields) {
+        this.fields.put(type, fields);
+        return this;
+    }
+
+    /**
+     * Fills in the references of the entities, fetching the referenced entities that have not been fetched yet with
+     * one bulk request per type and chunk of ids.  The types are fetched in parallel
+     *
+     * @param entities        the entities whose references are filled in
+     * @param referenceFields the names of the reference fields to fill in, all reference and multi reference fields if
+     *                        none are given
+     */
+    public void load(Collection<EntityModel> entities, String... referenceFields) {
+        final List<EntityModel> references = new ArrayList<>();
+        for (EntityModel entityModel : entities) {
+            if (referenceFields.length == 0) {
+                entityModel.getValues().forEach(field -> addReferences(field, references));
+            } else {
+                for (String referenceField : referenceFields) {
+                    addReferences(entityModel.getValue(referenceField), references);
+                }
+            }
+        }
+
+        final Map<String, Set<String>> idsToLoad = new LinkedHashMap<>();
+        for (EntityModel reference : references) {
+            final String type = reference.getType();
+            if (get(type, reference.getId()) == null && !missingIds.getOrDefault(type, Collections.emptySet()).contains(reference.getId())) {
+                idsToLoad.computeIfAbsent(type, key -> new LinkedHashSet<>()).add(reference.getId());
+            }
+        }
+        loadAll(idsToLoad);
+
+        for (EntityModel reference : references) {
+            final EntityModel loadedEntity = get(reference.getType(), reference.getId());
+            if (loadedEntity != null && loadedEntity != reference) {
+                reference.addLoadedValues(loadedEntity);
+            }
+        }
+    }
+
+    /**
+     * @param type the type of the entity
+     * @param id   the id of the entity
+     * @return the entity if it has been fetched by this loader, otherwise null
+     */
+    public EntityModel get(String type, String id) {
+        return loadedEntities.getOrDefault(type, Collections.emptyMap()).get(id);
+    }
+
+    /**
+     * Forgets the entities that have been fetched, so that they are fetched again by the next {@link #load}
+     */
+    public void clear() {
+        loadedEntities.clear();
+        missingIds.clear();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void addReferences(FieldModel field, List<EntityModel> references) {
+        if (field instanceof ReferenceFieldModel) {
+            addReference(((ReferenceFieldModel) field).getValue(), references);
+        } else if (field instanceof MultiReferenceFieldModel) {
+            final Collection<EntityModel> values = ((MultiReferenceFieldModel) field).getValue();
+            if (values != null) {
+                values.forEach(value -> addReference(value, references));
+            }
+        }
+    }
+
+    private static void addReference(EntityModel reference, List<EntityModel> references) {
+        if (reference != null && reference.getType() != null && reference.getId() != null) {
+            references.add(reference);
+        }
+    }
+
+    private void loadAll(Map<String, Set<String>> idsToLoad) {
+        final Map<String, CompletableFuture<EntitiesById<EntityModel>>> futures = new HashMap<>();
+        idsToLoad.forEach((type, ids) -> {
+            final String collectionName = getCollectionName(type);
+            if (collectionName != null) {
+                futures.put(type, octane.entityList(collectionName)
+                        .getByIds(ids, fields.getOrDefault(type, new String[0]))
+                        .executeAsync());
+            }
+        });
+        FanOut.join(CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])));
+        futures.forEach((type, future) -> {
+            final EntitiesById<EntityModel> entitiesById = future.join();
+            loadedEntities.computeIfAbsent(type, key -> new ConcurrentHashMap<>()).putAll(entitiesById.getEntities());
+            if (!entitiesById.isComplete()) {
+                missingIds.computeIfAbsent(type, key -> ConcurrentHashMap.newKeySet()).addAll(entitiesById.getMissingIds());
+            }
+        });
+    }
+
+    /**
+     * @return the collection name of the type, or null if the type has no collection that its entities can be fetched
+     * from
+     */
+    private String getCollectionName(String type) {
+        final String collectionName = collectionNames.get(type);
+        if (collectionName == null && !metadataLoaded) {
+            loadCollectionNames();
+            return collectionNames.get(type);
+        }
+        return collectionName;
+    }
+
+    private synchronized void loadCollectionNames() {
+        if (metadataLoaded) {
+            return;
+        }
+        for (EntityMetadata entityMetadata : octane.metadata().entities().execute()) {
+            entityMetadata.features().stream()
+                    .filter(feature -> feature instanceof RestFeature && ((RestFeature) feature).getUrl() != null)
+                    .findFirst()
+                    .ifPresent(feature -> collectionNames.putIfAbsent(entityMetadata.getName(), ((RestFeature) feature).getUrl()));
+        }
+        metadataLoaded = true;
+    }
+}
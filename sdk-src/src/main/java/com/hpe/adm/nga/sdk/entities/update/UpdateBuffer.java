@@ -0,0 +1,329 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities.update;
+
+import com.hpe.adm.nga.sdk.entities.EntityCache;
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctanePartialException;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.network.FanOut;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A write-behind buffer for the updates of the entities of an entity list.  Each {@link #update(EntityModel)} merges
+ * the changed fields of the entity into the pending update of the entity with the same id, and the pending updates are
+ * sent as batched PUTs of the collection once a batch is full or the flush interval has passed.
+ * <br>
+ * Each update returns a future that is completed with the updated entity once the batch that contains it has been
+ * sent.  An entity is never in two batches in flight at the same time, so the updates of an entity are applied in
+ * order.  When the buffer holds the maximum number of pending and in flight entities, an update of another entity
+ * blocks until a batch completes.
+ * <br>
+ * Close the buffer to send the remaining updates and to stop its timer thread
+ */
+public class UpdateBuffer implements AutoCloseable {
+
+    /**
+     * The default maximum number of entities in a PUT
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * The default time after which the pending updates are sent even if the batch is not full
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The default maximum number of entities that are pending or in flight
+     */
+    public static final int DEFAULT_MAX_BUFFERED_ENTITIES = 1000;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private final int maxBatchSize;
+    private final int maxBufferedEntities;
+    private final ScheduledExecutorService scheduler;
+
+    // the pending updates in the order of their first change, guarded by this
+    private final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+    private final Set<String> inFlightIds = new HashSet<>();
+    private int bufferedEntities = 0;
+    private boolean closed = false;
+    private EntityCache entityCache;
+
+    /**
+     * Creates a buffer with the default batch size, flush interval and maximum number of buffered entities
+     *
+     * @param octaneHttpClient the http client
+     * @param urlDomain        the url of the entity list
+     */
+    public UpdateBuffer(OctaneHttpClient octaneHttpClient, String urlDomain) {
+        this(octaneHttpClient, urlDomain, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_BUFFERED_ENTITIES);
+    }
+
+    /**
+     * Creates a buffer
+     *
+     * @param octaneHttpClient    the http client
+     * @param urlDomain           the url of the entity list
+     * @param maxBatchSize        the maximum number of entities in a PUT, a full batch is sent at once
+     * @param flushIntervalMillis the time after which the pending updates are sent even if the batch is not full
+     * @param maxBufferedEntities the maximum number of entities that are pending or in flight before updates of other
+     *                            entities block
+     */
+    public UpdateBuffer(OctaneHttpClient octaneHttpClient, String urlDomain, int maxBatchSize, long flushIntervalMillis, int maxBufferedEntities) {
+        if (maxBatchSize <= 0 || flushIntervalMillis <= 0 || maxBufferedEntities <= 0) {
+            throw new IllegalArgumentException("maxBatchSize, flushIntervalMillis and maxBufferedEntities must be positive");
+        }
+        this.octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
+        this.urlDomain = urlDomain;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBufferedEntities = maxBufferedEntities;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "octane-update-buffer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Keep the cache up to date with the updates: once a batch completes the cached versions of its entities are
+     * replaced by the updated entities or removed
+     *
+     * @param entityCache The cache, null for none
+     * @return this
+     */
+    public synchronized UpdateBuffer cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    /**
+     * Merges the changed fields of the entity into the pending update of the entity with the same id.  Blocks if the
+     * entity has no pending update and the buffer is full
+     *
+     * @param entityModel the changed entity, must have an id
+     * @return a future that is completed with the updated entity once its update has been sent.  Every update of the
+     * entity that is merged into the same PUT returns the same future
+     */
+    public synchronized CompletableFuture<EntityModel> update(EntityModel entityModel) {
+        final String id = entityModel.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("Only entities with an id can be updated");
+        }
+        PendingUpdate pendingUpdate = pendingUpdates.get(id);
+        while (pendingUpdate == null && bufferedEntities >= maxBufferedEntities && !closed) {
+            send(true);
+            // a batch that completed while it was sent has already notified
+            if (bufferedEntities >= maxBufferedEntities) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            pendingUpdate = pendingUpdates.get(id);
+        }
+        if (closed) {
+            throw new IllegalStateException("The update buffer is closed");
+        }
+        if (pendingUpdate == null) {
+            pendingUpdate = new PendingUpdate();
+            pendingUpdates.put(id, pendingUpdate);
+            bufferedEntities++;
+        }
+        pendingUpdate.entityModel.mergeChanges(entityModel);
+        send(false);
+        return pendingUpdate.future;
+    }
+
+    /**
+     * Sends all of the pending updates now, except those of entities that are already in flight.  These are sent
+     * with the next full batch once their batch completes, or by the next flush
+     */
+    public synchronized void flush() {
+        send(true);
+    }
+
+    /**
+     * Sends the remaining updates and waits until every update has been sent.  Later updates are rejected
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+        try {
+            while (bufferedEntities > 0) {
+                send(true);
+                if (bufferedEntities > 0) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Sends the full batches of pending updates whose entities are not in flight
+     *
+     * @param partialBatch whether the last batch is sent even if it is not full
+     */
+    private void send(boolean partialBatch) {
+        while (true) {
+            final List<String> ids = new ArrayList<>(maxBatchSize);
+            for (String id : pendingUpdates.keySet()) {
+                if (!inFlightIds.contains(id)) {
+                    ids.add(id);
+                    if (ids.size() == maxBatchSize) {
+                        break;
+                    }
+                }
+            }
+            if (ids.isEmpty() || (ids.size() < maxBatchSize && !partialBatch)) {
+                return;
+            }
+            sendBatch(ids);
+        }
+    }
+
+    private void sendBatch(List<String> ids) {
+        final List<EntityModel> entityModels = new ArrayList<>(ids.size());
+        final List<CompletableFuture<EntityModel>> futures = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            final PendingUpdate pendingUpdate = pendingUpdates.remove(id);
+            entityModels.add(pendingUpdate.entityModel);
+            futures.add(pendingUpdate.future);
+            inFlightIds.add(id);
+        }
+        CompletableFuture<OctaneCollection<EntityModel>> batch;
+        try {
+            batch = UpdateHelper.getInstance().updateEntityModelsAsync(entityModels, octaneRequest, null);
+        } catch (RuntimeException e) {
+            batch = new CompletableFuture<>();
+            batch.completeExceptionally(e);
+        }
+        batch.whenComplete((updatedEntities, throwable) -> {
+            final Throwable failure = throwable == null ? null : FanOut.unwrap(throwable);
+            synchronized (this) {
+                // before the entities leave the flight, so that a later batch of the same entities refreshes the cache last
+                updateCache(entityModels, failure instanceof OctanePartialException
+                        ? ((OctanePartialException) failure).getEntitiesModels() : updatedEntities);
+                inFlightIds.removeAll(ids);
+                bufferedEntities -= ids.size();
+                notifyAll();
+                // the updates that were held back while their entities were in flight may fill a batch now
+                send(false);
+            }
+            complete(entityModels, futures, updatedEntities, failure);
+        });
+    }
+
+    /**
+     * Replaces the cached versions of the entities by the entities returned by the server, and removes the cached
+     * versions of the entities that the server did not return
+     */
+    private void updateCache(List<EntityModel> entityModels, Collection<EntityModel> updatedEntities) {
+        if (entityCache == null) {
+            return;
+        }
+        final Set<String> refreshedIds = new HashSet<>();
+        if (updatedEntities != null) {
+            for (EntityModel updatedEntity : updatedEntities) {
+                if (updatedEntity.getId() != null) {
+                    entityCache.refresh(urlDomain, updatedEntity);
+                    refreshedIds.add(updatedEntity.getId());
+                }
+            }
+        }
+        for (EntityModel entityModel : entityModels) {
+            if (!refreshedIds.contains(entityModel.getId())) {
+                entityCache.invalidate(urlDomain, entityModel.getId());
+            }
+        }
+    }
+
+    /**
+     * Completes the future of each entity with the entity returned by the server, or with the error of the entity.  When
+     * every error of a partial failure has the index of its entity, the other entities were updated even if the server
+     * did not return them
+     */
+    private static void complete(List<EntityModel> entityModels, List<CompletableFuture<EntityModel>> futures,
+                                 OctaneCollection<EntityModel> updatedEntities, Throwable failure) {
+        final Map<String, EntityModel> updatedById = new HashMap<>();
+        final Map<Integer, ErrorModel> errorsByIndex = new HashMap<>();
+        boolean errorsIndexed = false;
+        if (updatedEntities != null) {
+            updatedEntities.forEach(updatedEntity -> updatedById.put(updatedEntity.getId(), updatedEntity));
+        } else if (failure instanceof OctanePartialException) {
+            final OctanePartialException partialException = (OctanePartialException) failure;
+            if (partialException.getEntitiesModels() != null) {
+                partialException.getEntitiesModels().forEach(updatedEntity -> updatedById.put(updatedEntity.getId(), updatedEntity));
+            }
+            errorsIndexed = true;
+            for (ErrorModel errorModel : partialException.getErrorModels()) {
+                final Integer index = errorModel.getIndex();
+                if (index != null && index >= 0 && index < entityModels.size()) {
+                    errorsByIndex.put(index, errorModel);
+                } else {
+                    errorsIndexed = false;
+                }
+            }
+        }
+        for (int i = 0; i < entityModels.size(); i++) {
+            final EntityModel updatedEntity = updatedById.get(entityModels.get(i).getId());
+            if (errorsByIndex.containsKey(i)) {
+                futures.get(i).completeExceptionally(new OctaneException(errorsByIndex.get(i)));
+            } else if (updatedEntity != null) {
+                futures.get(i).complete(updatedEntity);
+            } else if (failure == null || errorsIndexed) {
+                futures.get(i).complete(entityModels.get(i));
+            } else {
+                futures.get(i).completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * The merged changes of an entity that have not been sent yet
+     */
+    private static final class PendingUpdate {
+        private final EntityModel entityModel = new EntityModel();
+        private final CompletableFuture<EntityModel> future = new CompletableFuture<>();
+    }
+}
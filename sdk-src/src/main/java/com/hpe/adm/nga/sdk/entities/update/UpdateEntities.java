@@ -13,13 +13,19 @@
  */
 package com.hpe.adm.nga.sdk.entities.update;
 
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 import com.hpe.adm.nga.sdk.query.Query;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * This class hold the UpdateEntities objects and serve all functions concern to
@@ -29,9 +35,13 @@ public class UpdateEntities {
 
     private Collection<EntityModel> entityModels = null;
     private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private boolean hasQuery = false;
+    private EntityCache entityCache;
 
     public UpdateEntities(OctaneHttpClient octaneHttpClient, String urlDomain) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain);
+        this.urlDomain = urlDomain;
     }
 
     /**
@@ -40,7 +50,32 @@ public class UpdateEntities {
      * @return a collection of entities models that have been updated
      */
     public OctaneCollection<EntityModel> execute()  {
-        return UpdateHelper.getInstance().updateEntityModels(entityModels, octaneRequest);
+        OctaneCollection<EntityModel> updatedEntities = null;
+        try {
+            updatedEntities = UpdateHelper.getInstance().updateEntityModels(entityModels, octaneRequest);
+            return updatedEntities;
+        } finally {
+            updateCache(updatedEntities);
+        }
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the updated entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the updated entities
+     */
+    public CompletableFuture<OctaneCollection<EntityModel>> executeAsync(Executor executor) {
+        return UpdateHelper.getInstance().updateEntityModelsAsync(entityModels, octaneRequest, executor)
+                .whenComplete((updatedEntities, throwable) -> updateCache(throwable == null ? updatedEntities : null));
     }
 
     /**
@@ -51,6 +86,7 @@ public class UpdateEntities {
      */
     public UpdateEntities query(Query query) {
         octaneRequest.getOctaneUrl().setDqlQueryParam(query);
+        hasQuery = true;
         return this;
     }
 
@@ -65,4 +101,53 @@ public class UpdateEntities {
         return this;
     }
 
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return UpdateEntities object with the write mode
+     */
+    public UpdateEntities referenceWriteMode(ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return this;
+    }
+
+    /**
+     * Keep the cache up to date with the update: the cached versions of the entities are replaced by the updated
+     * entities or removed.  An update by query removes the cached entities of the collection
+     *
+     * @param entityCache The cache, null for none
+     * @return UpdateEntities object with the cache
+     */
+    public UpdateEntities cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    private void updateCache(Collection<EntityModel> updatedEntities) {
+        if (entityCache == null) {
+            return;
+        }
+        if (hasQuery) {
+            entityCache.invalidateAll(urlDomain);
+            return;
+        }
+        final Set<String> refreshedIds = new HashSet<>();
+        if (updatedEntities != null) {
+            for (EntityModel updatedEntity : updatedEntities) {
+                if (updatedEntity.getId() != null) {
+                    entityCache.refresh(urlDomain, updatedEntity);
+                    refreshedIds.add(updatedEntity.getId());
+                }
+            }
+        }
+        if (entityModels != null) {
+            for (EntityModel entity : entityModels) {
+                if (entity.getId() != null && !refreshedIds.contains(entity.getId())) {
+                    entityCache.invalidate(urlDomain, entity.getId());
+                }
+            }
+        }
+    }
 }
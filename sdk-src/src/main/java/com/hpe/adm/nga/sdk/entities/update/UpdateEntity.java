@@ -13,10 +13,15 @@
  */
 package com.hpe.adm.nga.sdk.entities.update;
 
+import com.hpe.adm.nga.sdk.entities.EntityCache;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * This class hold the UpdateEntities object of one entity
  */
@@ -24,9 +29,14 @@ public class UpdateEntity {
 
     private EntityModel entityModel;
     private final OctaneRequest octaneRequest;
+    private final String urlDomain;
+    private final String entityId;
+    private EntityCache entityCache;
 
     public UpdateEntity(OctaneHttpClient octaneHttpClient, String urlDomain, String entityId) {
         octaneRequest = new OctaneRequest(octaneHttpClient, urlDomain, entityId);
+        this.urlDomain = urlDomain;
+        this.entityId = entityId;
     }
 
     /**
@@ -35,7 +45,32 @@ public class UpdateEntity {
      * @return the updated entity model from the server
      */
     public EntityModel execute() {
-        return UpdateHelper.getInstance().updateEntityModel(entityModel, octaneRequest);
+        EntityModel updatedEntity = null;
+        try {
+            updatedEntity = UpdateHelper.getInstance().updateEntityModel(entityModel, octaneRequest);
+            return updatedEntity;
+        } finally {
+            updateCache(updatedEntity);
+        }
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @return a future that is completed with the updated entity
+     */
+    public CompletableFuture<EntityModel> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the updated entity
+     */
+    public CompletableFuture<EntityModel> executeAsync(Executor executor) {
+        return UpdateHelper.getInstance().updateEntityModelAsync(entityModel, octaneRequest, executor)
+                .whenComplete((updatedEntity, throwable) -> updateCache(throwable == null ? updatedEntity : null));
     }
 
     /**
@@ -48,4 +83,39 @@ public class UpdateEntity {
         this.entityModel = entityModel;
         return this;
     }
+
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return an update object with the write mode
+     */
+    public UpdateEntity referenceWriteMode(ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return this;
+    }
+
+    /**
+     * Keep the cache up to date with the update: the cached versions of the entity are replaced by the updated entity or
+     * removed
+     *
+     * @param entityCache The cache, null for none
+     * @return an update object with the cache
+     */
+    public UpdateEntity cache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    private void updateCache(EntityModel updatedEntity) {
+        if (entityCache == null) {
+            return;
+        }
+        if (updatedEntity != null && entityId.equals(updatedEntity.getId())) {
+            entityCache.refresh(urlDomain, updatedEntity);
+        } else {
+            entityCache.invalidate(urlDomain, entityId);
+        }
+    }
 }
@@ -18,9 +18,10 @@ import com.hpe.adm.nga.sdk.model.EntityModel;
 import com.hpe.adm.nga.sdk.model.ModelParser;
 import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
-import org.json.JSONObject;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A helper for updating entities
@@ -44,16 +45,18 @@ final class UpdateHelper {
      * @param octaneRequest the octane request
      */
     EntityModel updateEntityModel(EntityModel entityModel, OctaneRequest octaneRequest) {
-        JSONObject objBase = ModelParser.getInstance().getEntityJSONObject(entityModel, true);
-        String jsonEntityModel = objBase.toString();
-
-        OctaneHttpRequest octaneHttpRequest =
-                new OctaneHttpRequest.PutOctaneHttpRequest(octaneRequest.getFinalRequestUrl(),
-                        OctaneHttpRequest.JSON_CONTENT_TYPE,
-                        jsonEntityModel)
-                        .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
+        return octaneRequest.getEntityResponse(createPutRequest(entityModel, octaneRequest));
+    }
 
-        return octaneRequest.getEntityResponse(octaneHttpRequest);
+    /**
+     * Same as {@link #updateEntityModel(EntityModel, OctaneRequest)} but does not block the calling thread
+     *
+     * @param entityModel the entitymodel
+     * @param octaneRequest the octane request
+     * @param executor the executor to use, can be null
+     */
+    CompletableFuture<EntityModel> updateEntityModelAsync(EntityModel entityModel, OctaneRequest octaneRequest, Executor executor) {
+        return octaneRequest.getEntityResponseAsync(createPutRequest(entityModel, octaneRequest), executor);
     }
 
     /**
@@ -65,18 +68,37 @@ final class UpdateHelper {
      */
     OctaneCollection<EntityModel> updateEntityModels(Collection<EntityModel> entityModels, OctaneRequest octaneRequest)  {
         OctaneCollection<EntityModel> newEntityModels;
-        JSONObject objBase = ModelParser.getInstance().getEntitiesJSONObject(entityModels, true);
-        String jsonEntityModel = objBase.toString();
-
-        OctaneHttpRequest octaneHttpRequest = new OctaneHttpRequest.PutOctaneHttpRequest(
-                octaneRequest.getFinalRequestUrl(),
-                OctaneHttpRequest.JSON_CONTENT_TYPE, jsonEntityModel)
-                .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
-        newEntityModels = octaneRequest.getEntitiesResponse(octaneHttpRequest);
+        newEntityModels = octaneRequest.getEntitiesResponse(createPutRequest(entityModels, octaneRequest));
 
         //TODO: partial support exception handling
 
         return newEntityModels;
     }
 
+    /**
+     * Same as {@link #updateEntityModels(Collection, OctaneRequest)} but does not block the calling thread
+     *
+     * @param entityModels the entitymodel
+     * @param octaneRequest the octane request
+     * @param executor the executor to use, can be null
+     */
+    CompletableFuture<OctaneCollection<EntityModel>> updateEntityModelsAsync(Collection<EntityModel> entityModels, OctaneRequest octaneRequest, Executor executor) {
+        return octaneRequest.getEntitiesResponseAsync(createPutRequest(entityModels, octaneRequest), executor);
+    }
+
+    private OctaneHttpRequest createPutRequest(EntityModel entityModel, OctaneRequest octaneRequest) {
+        return new OctaneHttpRequest.PutOctaneHttpRequest(octaneRequest.getFinalRequestUrl(),
+                OctaneHttpRequest.JSON_CONTENT_TYPE,
+                outputStream -> ModelParser.getInstance().writeEntity(entityModel, true, octaneRequest.getReferenceWriteMode(), outputStream))
+                .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
+    }
+
+    private OctaneHttpRequest createPutRequest(Collection<EntityModel> entityModels, OctaneRequest octaneRequest) {
+        return new OctaneHttpRequest.PutOctaneHttpRequest(
+                octaneRequest.getFinalRequestUrl(),
+                OctaneHttpRequest.JSON_CONTENT_TYPE,
+                outputStream -> ModelParser.getInstance().writeEntities(entityModels, true, octaneRequest.getReferenceWriteMode(), outputStream))
+                .setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
+    }
+
 }
\ No newline at end of file
@@ -16,7 +16,7 @@ package com.hpe.adm.nga.sdk.entities.update;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
 import com.hpe.adm.nga.sdk.model.EntityModel;
-import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
@@ -24,6 +24,8 @@ import com.hpe.adm.nga.sdk.query.Query;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -52,11 +54,28 @@ public abstract class UpdateTypedEntities <T extends TypedEntityModel, E extends
      */
     public final OctaneCollection<T> execute()  {
         final List<EntityModel> convertedEntityModels = entityModels.stream().map(T::getWrappedEntityModel).collect(Collectors.toList());
-        final OctaneCollection<EntityModel> updatedEntities = UpdateHelper.getInstance().updateEntityModels(convertedEntityModels, octaneRequest);
-        return updatedEntities
-                .stream()
-                .map(this::getEntityInstance)
-                .collect(Collectors.toCollection(new OctaneCollectionSupplier<>(updatedEntities)));
+        return getEntityInstances(UpdateHelper.getInstance().updateEntityModels(convertedEntityModels, octaneRequest));
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the updated entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the updated entities
+     */
+    public final CompletableFuture<OctaneCollection<T>> executeAsync(final Executor executor) {
+        final List<EntityModel> convertedEntityModels = entityModels.stream().map(T::getWrappedEntityModel).collect(Collectors.toList());
+        return UpdateHelper.getInstance().updateEntityModelsAsync(convertedEntityModels, octaneRequest, executor).thenApply(this::getEntityInstances);
     }
 
     /**
@@ -80,4 +99,16 @@ public abstract class UpdateTypedEntities <T extends TypedEntityModel, E extends
         return (E) this;
     }
 
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E referenceWriteMode(final ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return (E) this;
+    }
 }
@@ -14,10 +14,14 @@
 package com.hpe.adm.nga.sdk.entities.update;
 
 import com.hpe.adm.nga.sdk.entities.TypedEntityList;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import com.hpe.adm.nga.sdk.model.TypedEntityModel;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * The generic super class for the context of get for typed entities.
  *
@@ -46,6 +50,26 @@ public abstract class UpdateTypedEntity<T extends TypedEntityModel, E extends Up
         return getEntityInstance(UpdateHelper.getInstance().updateEntityModel(entityModel.getWrappedEntityModel(), octaneRequest));
     }
 
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @return a future that is completed with the updated entity
+     */
+    public final CompletableFuture<T> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * Same as {@link #execute()} but does not block the calling thread
+     *
+     * @param executor the executor used for any blocking work and for parsing the response. If null the
+     *                 {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} decides where the work is done
+     * @return a future that is completed with the updated entity
+     */
+    public final CompletableFuture<T> executeAsync(final Executor executor) {
+        return UpdateHelper.getInstance().updateEntityModelAsync(entityModel.getWrappedEntityModel(), octaneRequest, executor).thenApply(this::getEntityInstance);
+    }
+
     /**
      * set a new entity for updating
      *
@@ -57,4 +81,17 @@ public abstract class UpdateTypedEntity<T extends TypedEntityModel, E extends Up
         this.entityModel = entityModel;
         return (E) this;
     }
+
+    /**
+     * Write the entities that are the values of reference fields as given by the write mode.  By default they are written
+     * with their type, id and changed fields only, see {@link ReferenceWriteMode}
+     *
+     * @param referenceWriteMode How the referenced entities are written
+     * @return this instance
+     */
+    @SuppressWarnings("unchecked")
+    public final E referenceWriteMode(final ReferenceWriteMode referenceWriteMode) {
+        octaneRequest.setReferenceWriteMode(referenceWriteMode);
+        return (E) this;
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.exception;
+
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * An {@link OctanePartialException} of a request that was sent in several batches, some of which failed.  Besides the
+ * created entities and the errors of all the batches it maps each error back to the position of its entity in the
+ * input.  An error that applies to a whole batch, for example when the server could not be reached, is mapped to
+ * every entity of the batch
+ */
+public class OctaneBatchException extends OctanePartialException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<EntityModel> inputEntities;
+    private final SortedMap<Integer, ErrorModel> errorsByIndex;
+
+    /**
+     * Creates a new OctaneBatchException object
+     *
+     * @param errorModels   the errors of all the batches
+     * @param entities      the entities that were created, in the order of the input
+     * @param inputEntities the entities that were sent
+     * @param errorsByIndex the errors keyed by the index of their entity in the input
+     */
+    public OctaneBatchException(Collection<ErrorModel> errorModels, Collection<EntityModel> entities,
+                                List<EntityModel> inputEntities, SortedMap<Integer, ErrorModel> errorsByIndex) {
+        super(errorModels, entities);
+        this.inputEntities = Collections.unmodifiableList(inputEntities);
+        this.errorsByIndex = Collections.unmodifiableSortedMap(errorsByIndex);
+    }
+
+    /**
+     * @return the entities that were sent, in their original order
+     */
+    public List<EntityModel> getInputEntities() {
+        return inputEntities;
+    }
+
+    /**
+     * @return the errors keyed by the index of their entity in {@link #getInputEntities()}.  Errors that the server
+     * returned without the index of their entity are only in {@link #getErrorModels()}
+     */
+    public SortedMap<Integer, ErrorModel> getErrorsByIndex() {
+        return errorsByIndex;
+    }
+
+    @Override
+    public String getMessage() {
+        return errorsByIndex.size() + " of " + inputEntities.size() + " entities failed";
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.exception;
+
+import com.hpe.adm.nga.sdk.model.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.hpe.adm.nga.sdk.network.OctaneHttpClient.LWSSO_COOKIE_KEY;
+
+/**
+ * Converts unsuccessful Octane HTTP responses into {@link OctaneException} or {@link OctanePartialException} objects.
+ * <br>
+ * This is shared by the {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} implementations so that every
+ * implementation classifies server errors (and detects expired sessions) in the same way
+ */
+public final class OctaneExceptionFactory {
+
+    /**
+     * Error code returned by Octane when the session has been idle for too long
+     */
+    public static final String ERROR_CODE_TOKEN_EXPIRED = "VALIDATION_TOKEN_EXPIRED_IDLE_TIME_OUT";
+
+    /**
+     * Error code returned by Octane when the session has reached its maximum lifetime
+     */
+    public static final String ERROR_CODE_GLOBAL_TOKEN_EXPIRED = "VALIDATION_TOKEN_EXPIRED_GLOBAL_TIME_OUT";
+
+    private static final String ERROR_CODE_FIELD_NAME = "errorCode";
+    private static final String DESCRIPTION_FIELD_NAME = "description";
+
+    private OctaneExceptionFactory() {
+    }
+
+    /**
+     * Creates the exception that represents an unsuccessful response
+     *
+     * @param statusCode    HTTP status code of the response
+     * @param statusMessage HTTP status message of the response, can be null
+     * @param content       content of the response, can be null
+     * @param requestCookie the cookie header that was sent with the request, can be null
+     * @return the parsed exception or null if neither the status message nor the content could be parsed
+     */
+    public static RuntimeException fromResponse(int statusCode, String statusMessage, String content, String requestCookie) {
+        return fromResponse(statusCode, statusMessage, content, requestCookie, null);
+    }
+
+    /**
+     * Same as {@link #fromResponse(int, String, String, String)} but also keeps the Retry-After header of the response
+     * in the {@link ErrorModel#RETRY_AFTER_PROPERTY_NAME} field of the error, in seconds.  A response that says that the
+     * server is unavailable (status 429, 502, 503 or 504) is converted to an {@link OctaneException} with its status
+     * code even if its content cannot be parsed, since such responses often come from a proxy
+     *
+     * @param statusCode    HTTP status code of the response
+     * @param statusMessage HTTP status message of the response, can be null
+     * @param content       content of the response, can be null
+     * @param requestCookie the cookie header that was sent with the request, can be null
+     * @param retryAfter    the Retry-After header of the response, either seconds or an HTTP date, can be null
+     * @return the parsed exception or null if neither the status message nor the content could be parsed
+     */
+    public static RuntimeException fromResponse(int statusCode, String statusMessage, String content, String requestCookie, String retryAfter) {
+        RuntimeException exception = parse(statusCode, statusMessage, content, requestCookie);
+        if (exception == null && isUnavailableStatusCode(statusCode)) {
+            final ErrorModel errorModel = new ErrorModel(new HashSet<>());
+            errorModel.setValue(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) statusCode));
+            if (statusMessage != null) {
+                errorModel.setValue(new StringFieldModel(DESCRIPTION_FIELD_NAME, statusMessage));
+            }
+            exception = new OctaneException(errorModel);
+        }
+        final Long retryAfterSeconds = parseRetryAfter(retryAfter);
+        if (exception instanceof OctaneException && retryAfterSeconds != null) {
+            ((OctaneException) exception).getError().setValue(new LongFieldModel(ErrorModel.RETRY_AFTER_PROPERTY_NAME, retryAfterSeconds));
+        }
+        return exception;
+    }
+
+    /**
+     * The error of a failed request, for the results that report errors by entity instead of throwing them
+     *
+     * @param failure the failure of the request
+     * @return the error of an {@link OctaneException}, or an error whose description is the failure
+     */
+    public static ErrorModel toErrorModel(Throwable failure) {
+        if (failure instanceof OctaneException) {
+            return ((OctaneException) failure).getError();
+        }
+        return new ErrorModel(Collections.singleton(new StringFieldModel(DESCRIPTION_FIELD_NAME, String.valueOf(failure))));
+    }
+
+    /**
+     * @param statusCode HTTP status code of a response
+     * @return whether the status says that the server is overloaded or could not be reached by a gateway, so that the
+     * same request may succeed later
+     */
+    public static boolean isUnavailableStatusCode(long statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    private static RuntimeException parse(int statusCode, String statusMessage, String content, String requestCookie) {
+
+        // It seems that Octane returns a message in 401 but this is swallowed by the HttpConnection as expected by the HTTP spec
+        // So the only way to know if this should be re-authenticated is to see if there is a cookie in the request.  If so - we can fake the error and
+        // ensure re-authentication
+        if (statusCode == 401 && requestCookie != null) {
+            for (String splitCookie : requestCookie.split(";")) {
+                if (splitCookie.startsWith(LWSSO_COOKIE_KEY)) {
+                    final LongFieldModel statusFieldModel = new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) statusCode);
+                    final ErrorModel errorModel = new ErrorModel(Collections.singleton(statusFieldModel));
+                    // assuming that we have a cookie and therefore can go for re-authentication...
+                    errorModel.setValue(new StringFieldModel(ERROR_CODE_FIELD_NAME, ERROR_CODE_TOKEN_EXPIRED));
+                    return new OctaneException(errorModel);
+                }
+            }
+        }
+
+        List<String> exceptionContentList = new ArrayList<>();
+        exceptionContentList.add(statusMessage);
+        exceptionContentList.add(content);
+
+        for (String exceptionContent : exceptionContentList) {
+            try {
+                if (ModelParser.getInstance().hasErrorModels(exceptionContent)) {
+                    Collection<ErrorModel> errorModels = ModelParser.getInstance().getErrorModels(exceptionContent);
+                    Collection<EntityModel> entities = ModelParser.getInstance().getEntities(exceptionContent);
+                    return new OctanePartialException(errorModels, entities);
+                } else if (ModelParser.getInstance().hasErrorModel(exceptionContent)) {
+                    ErrorModel errorModel = ModelParser.getInstance().getErrorModelFromjson(exceptionContent);
+                    errorModel.setValue(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) statusCode));
+                    return new OctaneException(errorModel);
+                } else if (ModelParser.getInstance().hasServletError(exceptionContent)) {
+                    ErrorModel errorModel = ModelParser.getInstance().getErrorModelFromServletJson(exceptionContent);
+                    errorModel.setValue(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) statusCode));
+                    return new OctaneException(errorModel);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds or the HTTP date after which to retry
+     *
+     * @return the seconds to wait, or null if the header is missing or invalid
+     */
+    private static Long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return null;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            try {
+                final ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(Instant.now(), date.toInstant()).getSeconds());
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the exception signals that the Octane session expired and that the request can be retried after
+     * re-authenticating
+     *
+     * @param exception the exception thrown while executing a request
+     * @return true if the session expired, false otherwise
+     */
+    public static boolean isSessionExpired(RuntimeException exception) {
+        if (!(exception instanceof OctaneException)) {
+            return false;
+        }
+        final ErrorModel errorModel = ((OctaneException) exception).getError();
+        final FieldModel errorCodeFieldModel = errorModel.getValue(ERROR_CODE_FIELD_NAME);
+        final FieldModel httpStatusCode = errorModel.getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME);
+
+        return errorCodeFieldModel != null && httpStatusCode != null &&
+                Long.valueOf(401).equals(httpStatusCode.getValue()) &&
+                (ERROR_CODE_TOKEN_EXPIRED.equals(errorCodeFieldModel.getValue()) || ERROR_CODE_GLOBAL_TOKEN_EXPIRED.equals(errorCodeFieldModel.getValue()));
+    }
+}
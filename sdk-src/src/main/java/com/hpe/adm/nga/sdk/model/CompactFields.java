@@ -0,0 +1,44 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import java.util.Set;
+
+/**
+ * The values of a compact entity, stored in the slots given by its {@link EntityShape}
+ */
+final class CompactFields implements EntityFields {
+
+    private final EntityShape shape;
+    private final long[] primitives;
+    private final Object[] objects;
+
+    CompactFields(EntityShape shape, long[] primitives, Object[] objects) {
+        this.shape = shape;
+        this.primitives = primitives;
+        this.objects = objects;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public FieldModel getValue(String name) {
+        return shape.getValue(name, primitives, objects);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<FieldModel> getValues() {
+        return shape.getValues(primitives, objects);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import java.util.Set;
+
+/**
+ * The fields of an entity that has been read from a response and not changed since, stored as given by the
+ * {@link EntityStorageMode}.  {@link EntityModel} converts them to its map of fields on the first change
+ */
+interface EntityFields {
+
+    /**
+     * @param name the name of the field
+     * @return the field or null if the entity does not have it
+     */
+    @SuppressWarnings("rawtypes")
+    FieldModel getValue(String name);
+
+    /**
+     * @return all the fields of the entity
+     */
+    @SuppressWarnings("rawtypes")
+    Set<FieldModel> getValues();
+}
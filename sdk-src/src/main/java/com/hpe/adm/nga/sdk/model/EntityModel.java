@@ -42,6 +42,11 @@ public class EntityModel implements Entity{
      */
     public static final String CLIENT_LOCK_STAMP_FIELD_NAME = "client_lock_stamp";
 
+    /**
+     * Type field, always sent to the server when the entity is the value of a reference
+     */
+    private static final String TYPE_FIELD_NAME = "type";
+
     /**
      * Represents the state of the entity.  In most cases it will be DIRTY.  However - when an entity is retrieved from the
      * server then the initial state will be CLEAN (all those fields will not be updated unless changed)
@@ -112,12 +117,35 @@ public class EntityModel implements Entity{
                             .map(Entry::getValue)
                             .collect(Collectors.toSet());
         }
+
+        /**
+         * Returns the values that identify the entity and the values that were changed
+         *
+         * @return Reference values
+         */
+        private Collection<FieldModel> referenceValues() {
+            return
+                    entrySet()
+                            .stream()
+                            .filter(entry ->
+                                    entry.getKey().equals(ID_FIELD_NAME) ||
+                                    entry.getKey().equals(TYPE_FIELD_NAME) ||
+                                    dirtyFields.contains(entry.getKey()))
+                            .map(Entry::getValue)
+                            .collect(Collectors.toSet());
+        }
     }
 
     /**
-     * The internal map of data that this entity represents
+     * The internal map of data that this entity represents, null while the fields are stored by {@link #storedFields}
+     */
+    private DirtyHashMap data;
+
+    /**
+     * The fields of an entity read with a {@link EntityStorageMode} other than the standard one.  Null once the entity
+     * has been changed
      */
-    private final DirtyHashMap data;
+    private EntityFields storedFields;
 
     /**
      * Creates a new EntityModel object
@@ -155,6 +183,15 @@ public class EntityModel implements Entity{
         data.entityState = EntityState.DIRTY;
     }
 
+    /**
+     * Creates a clean entity whose fields are stored as given by a {@link EntityStorageMode}
+     *
+     * @param storedFields the fields of the entity
+     */
+    EntityModel(EntityFields storedFields) {
+        this.storedFields = storedFields;
+    }
+
     /**
      * Creates a new EntityModel object with solo string field
      * The entity will be considered dirty and thus these fields will be updated
@@ -174,6 +211,9 @@ public class EntityModel implements Entity{
      * @return a collection of field models
      */
     public Set<FieldModel> getValues() {
+        if (storedFields != null) {
+            return storedFields.getValues();
+        }
         return new HashSet<>(data.values());
     }
 
@@ -184,9 +224,44 @@ public class EntityModel implements Entity{
      * @return a collection of field models
      */
     Collection<FieldModel> getDirtyValues() {
+        if (storedFields != null) {
+            // the stored fields have not been changed
+            final Collection<FieldModel> dirtyValues = new HashSet<>();
+            final FieldModel id = storedFields.getValue(ID_FIELD_NAME);
+            if (id != null) {
+                dirtyValues.add(id);
+            }
+            final FieldModel clientLockStamp = storedFields.getValue(CLIENT_LOCK_STAMP_FIELD_NAME);
+            if (clientLockStamp != null) {
+                dirtyValues.add(clientLockStamp);
+            }
+            return dirtyValues;
+        }
         return data.dirtyValues();
     }
 
+    /**
+     * Returns the type, the id and the changed values.
+     * Used when the entity is sent as the value of a reference, see {@link ReferenceWriteMode#MINIMAL}
+     *
+     * @return a collection of field models
+     */
+    Collection<FieldModel> getReferenceValues() {
+        if (storedFields != null) {
+            final Collection<FieldModel> referenceValues = new HashSet<>();
+            final FieldModel type = storedFields.getValue(TYPE_FIELD_NAME);
+            if (type != null) {
+                referenceValues.add(type);
+            }
+            final FieldModel id = storedFields.getValue(ID_FIELD_NAME);
+            if (id != null) {
+                referenceValues.add(id);
+            }
+            return referenceValues;
+        }
+        return data.referenceValues();
+    }
+
     /**
      * getter of single field
      *
@@ -194,6 +269,9 @@ public class EntityModel implements Entity{
      * @return the field of specified field name
      */
     public FieldModel getValue(String key) {
+        if (storedFields != null) {
+            return storedFields.getValue(key);
+        }
         return data.get(key);
     }
 
@@ -203,7 +281,7 @@ public class EntityModel implements Entity{
      * @param key the fieldName
      */
     public void removeValue(String key) {
-        data.remove(key);
+        mutableData().remove(key);
     }
 
     /**
@@ -213,6 +291,7 @@ public class EntityModel implements Entity{
      */
     public EntityModel setValues(Set<FieldModel> values) {
         if (values != null) {
+            final DirtyHashMap data = mutableData();
             data.clear();
             values.forEach(field -> data.put(field.getName(), field));
         }
@@ -225,13 +304,82 @@ public class EntityModel implements Entity{
      * @return EntityModel with the field model set as a value
      */
     public EntityModel setValue(FieldModel fieldModel) {
-        data.put(fieldModel.getName(), fieldModel);
+        mutableData().put(fieldModel.getName(), fieldModel);
+        return this;
+    }
+
+    /**
+     * @return whether fields of this entity were changed, other than the id and the client lock stamp
+     */
+    public boolean hasChanges() {
+        if (storedFields != null) {
+            return false;
+        }
+        return data.dirtyFields.stream().anyMatch(key -> !key.equals(ID_FIELD_NAME) && !key.equals(CLIENT_LOCK_STAMP_FIELD_NAME));
+    }
+
+    /**
+     * Marks all of the fields of this entity as unchanged, for example once the changes have been sent to the server
+     *
+     * @return this entity
+     */
+    public EntityModel clearChanges() {
+        if (data != null) {
+            data.dirtyFields.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the changed fields of the other entity on this entity, where they are changed as well.  Fields of this
+     * entity that the other entity did not change are kept, so several updates of the same entity can be merged into one
+     *
+     * @param changes the entity whose changed fields are set
+     * @return this entity
+     */
+    public EntityModel mergeChanges(EntityModel changes) {
+        final DirtyHashMap data = mutableData();
+        changes.getDirtyValues().forEach(field -> data.put(field.getName(), field));
         return this;
     }
 
+    /**
+     * Adds the fields of the loaded entity that this entity does not have, without marking them as changed.  Used to
+     * fill in a reference that only has its type and id, see {@link com.hpe.adm.nga.sdk.entities.get.ReferenceLoader}
+     *
+     * @param loadedEntity the entity with the same type and id that was fetched from the server
+     */
+    public void addLoadedValues(EntityModel loadedEntity) {
+        final DirtyHashMap data = mutableData();
+        final EntityState entityState = data.entityState;
+        data.entityState = EntityState.CLEAN;
+        loadedEntity.getValues().forEach(field -> {
+            if (!data.containsKey(field.getName())) {
+                data.put(field.getName(), field);
+            }
+        });
+        data.entityState = entityState;
+    }
+
+    /**
+     * Converts the stored fields to a clean map of its fields before the first change
+     *
+     * @return the internal map of data
+     */
+    private DirtyHashMap mutableData() {
+        if (storedFields != null) {
+            final DirtyHashMap inflatedData = new DirtyHashMap(EntityState.CLEAN);
+            storedFields.getValues().forEach(field -> inflatedData.put(field.getName(), field));
+            inflatedData.entityState = EntityState.DIRTY;
+            data = inflatedData;
+            storedFields = null;
+        }
+        return data;
+    }
+
     @Override
     public final String getType() {
-        final StringFieldModel type = (StringFieldModel) getValue("type");
+        final StringFieldModel type = (StringFieldModel) getValue(TYPE_FIELD_NAME);
         return type == null ? null : type.getValue();
     }
 
@@ -0,0 +1,62 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import com.hpe.adm.nga.sdk.metadata.FieldMetadata;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The declared types of the fields of an entity, used by {@link ModelParser} to decode each field with its type instead
+ * of guessing the type from the json value.
+ * <br>
+ * Create it once from the field metadata of the entity and reuse it for every request:
+ * <pre>
+ * EntitySchema defectSchema = new EntitySchema(octane.metadata().fields("defect").execute());
+ * octane.entityList("defects").get().schema(defectSchema).execute();
+ * </pre>
+ * Fields that are not in the schema, or whose value does not match the declared type, are decoded as without a schema
+ */
+public final class EntitySchema {
+
+    private final Map<String, FieldMetadata.FieldType> fieldTypes = new HashMap<>();
+
+    /**
+     * @param fieldMetadata the metadata of the fields of the entity.  If it contains the fields of several entities, a
+     *                      field name that is declared with different types is left out of the schema
+     */
+    public EntitySchema(Collection<FieldMetadata> fieldMetadata) {
+        final Set<String> ambiguousFields = new HashSet<>();
+        fieldMetadata.forEach(field -> {
+            final FieldMetadata.FieldType existing = fieldTypes.putIfAbsent(field.getName(), field.getFieldType());
+            if (existing != null && existing != field.getFieldType()) {
+                ambiguousFields.add(field.getName());
+            }
+        });
+        fieldTypes.keySet().removeAll(ambiguousFields);
+        fieldTypes.values().removeIf(fieldType -> fieldType == null);
+    }
+
+    /**
+     * @param fieldName the name of the field
+     * @return the declared type of the field or null if it is not known
+     */
+    public FieldMetadata.FieldType getFieldType(String fieldName) {
+        return fieldTypes.get(fieldName);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The field names and the kind of value of each field, shared by the compact entities that have the same fields.
+ * <br>
+ * Each field has a slot in one of the two value arrays of an entity: numbers, booleans and date times are stored in a
+ * long array, everything else in an object array.  See {@link EntityStorageMode#COMPACT}
+ */
+final class EntityShape {
+
+    static final byte EMPTY = 0;
+    static final byte LONG = 1;
+    static final byte FLOAT = 2;
+    static final byte BOOLEAN = 3;
+    static final byte DATE_TIME = 4;
+    static final byte STRING = 5;
+    static final byte OBJECT = 6;
+    static final byte REFERENCE = 7;
+    static final byte MULTI_REFERENCE = 8;
+    // any other field model, kept as it is
+    static final byte FIELD = 9;
+
+    private final String[] names;
+    private final byte[] kinds;
+    private final int[] slots;
+    private final int primitiveCount;
+    private final int objectCount;
+    private final Map<String, Integer> indexes;
+
+    EntityShape(String[] names, byte[] kinds) {
+        this.names = names;
+        this.kinds = kinds;
+        this.slots = new int[names.length];
+        this.indexes = new HashMap<>(names.length * 2);
+        int primitives = 0;
+        int objects = 0;
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+            if (isPrimitive(kinds[i])) {
+                slots[i] = primitives++;
+            } else if (kinds[i] != EMPTY) {
+                slots[i] = objects++;
+            }
+        }
+        this.primitiveCount = primitives;
+        this.objectCount = objects;
+    }
+
+    /**
+     * @return the kind used to store the field
+     */
+    @SuppressWarnings("rawtypes")
+    static byte kindOf(FieldModel fieldModel) {
+        final Class<? extends FieldModel> fieldClass = fieldModel.getClass();
+        if (fieldClass == EmptyFieldModel.class) {
+            return EMPTY;
+        } else if (fieldClass == StringFieldModel.class) {
+            return STRING;
+        } else if (fieldClass == ReferenceFieldModel.class) {
+            return REFERENCE;
+        } else if (fieldClass == MultiReferenceFieldModel.class) {
+            return MULTI_REFERENCE;
+        } else if (fieldClass == ObjectFieldModel.class) {
+            return OBJECT;
+        } else if (fieldModel.getValue() == null) {
+            return FIELD;
+        } else if (fieldClass == LongFieldModel.class) {
+            return LONG;
+        } else if (fieldClass == FloatFieldModel.class) {
+            return FLOAT;
+        } else if (fieldClass == BooleanFieldModel.class) {
+            return BOOLEAN;
+        } else if (fieldClass == DateFieldModel.class && ((ZonedDateTime) fieldModel.getValue()).getNano() == 0) {
+            return DATE_TIME;
+        }
+        return FIELD;
+    }
+
+    private static boolean isPrimitive(byte kind) {
+        return kind == LONG || kind == FLOAT || kind == BOOLEAN || kind == DATE_TIME;
+    }
+
+    /**
+     * Stores the values of the fields in the arrays of an entity of this shape
+     *
+     * @param fieldModels the fields, in the order of the names of the shape
+     */
+    @SuppressWarnings("rawtypes")
+    CompactFields compact(FieldModel[] fieldModels) {
+        final long[] primitives = primitiveCount == 0 ? null : new long[primitiveCount];
+        final Object[] objects = objectCount == 0 ? null : new Object[objectCount];
+        for (int i = 0; i < fieldModels.length; i++) {
+            final Object value = fieldModels[i].getValue();
+            switch (kinds[i]) {
+                case EMPTY:
+                    break;
+                case LONG:
+                    primitives[slots[i]] = (Long) value;
+                    break;
+                case FLOAT:
+                    primitives[slots[i]] = Float.floatToRawIntBits((Float) value);
+                    break;
+                case BOOLEAN:
+                    primitives[slots[i]] = ((Boolean) value) ? 1 : 0;
+                    break;
+                case DATE_TIME:
+                    primitives[slots[i]] = ((ZonedDateTime) value).toEpochSecond();
+                    break;
+                case FIELD:
+                    objects[slots[i]] = fieldModels[i];
+                    break;
+                default:
+                    objects[slots[i]] = value;
+            }
+        }
+        return new CompactFields(this, primitives, objects);
+    }
+
+    /**
+     * @return the field with the name or null if the shape does not have it
+     */
+    @SuppressWarnings("rawtypes")
+    FieldModel getValue(String name, long[] primitives, Object[] objects) {
+        final Integer index = indexes.get(name);
+        return index == null ? null : fieldModel(index, primitives, objects);
+    }
+
+    @SuppressWarnings("rawtypes")
+    Set<FieldModel> getValues(long[] primitives, Object[] objects) {
+        final Set<FieldModel> fieldModels = new HashSet<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            fieldModels.add(fieldModel(i, primitives, objects));
+        }
+        return fieldModels;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private FieldModel fieldModel(int index, long[] primitives, Object[] objects) {
+        final String name = names[index];
+        final int slot = slots[index];
+        switch (kinds[index]) {
+            case EMPTY:
+                return new EmptyFieldModel(name);
+            case LONG:
+                return new LongFieldModel(name, primitives[slot]);
+            case FLOAT:
+                return new FloatFieldModel(name, Float.intBitsToFloat((int) primitives[slot]));
+            case BOOLEAN:
+                return new BooleanFieldModel(name, primitives[slot] != 0);
+            case DATE_TIME:
+                return new DateFieldModel(name, ZonedDateTime.ofInstant(Instant.ofEpochSecond(primitives[slot]), ZoneOffset.UTC));
+            case STRING:
+                return new StringFieldModel(name, (String) objects[slot]);
+            case OBJECT:
+                return new ObjectFieldModel(name, (String) objects[slot]);
+            case REFERENCE:
+                return new ReferenceFieldModel(name, (EntityModel) objects[slot]);
+            case MULTI_REFERENCE:
+                return new MultiReferenceFieldModel(name, (Collection<EntityModel>) objects[slot]);
+            default:
+                return (FieldModel) objects[slot];
+        }
+    }
+
+    boolean hasShape(String[] names, byte[] kinds) {
+        return Arrays.equals(this.names, names) && Arrays.equals(this.kinds, kinds);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The shapes of the compact entities read from one response.  Entities with the same field names and kinds share one
+ * {@link EntityShape}.  Not thread safe, a table is used by a single parse
+ */
+final class EntityShapeTable {
+
+    private final Map<ShapeKey, EntityShape> shapes = new HashMap<>();
+    private EntityShape lastShape;
+
+    /**
+     * @param fieldModels the fields of an entity
+     * @return the fields stored in the shape of the entity
+     */
+    @SuppressWarnings("rawtypes")
+    CompactFields compact(Collection<FieldModel> fieldModels) {
+        final FieldModel[] fields = fieldModels.toArray(new FieldModel[0]);
+        Arrays.sort(fields, (first, second) -> first.getName().compareTo(second.getName()));
+        final String[] names = new String[fields.length];
+        final byte[] kinds = new byte[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+            kinds[i] = EntityShape.kindOf(fields[i]);
+        }
+        // the entities of a response usually have the same fields
+        if (lastShape == null || !lastShape.hasShape(names, kinds)) {
+            lastShape = shapes.computeIfAbsent(new ShapeKey(names, kinds), key -> new EntityShape(key.names, key.kinds));
+        }
+        return lastShape.compact(fields);
+    }
+
+    private static final class ShapeKey {
+
+        private final String[] names;
+        private final byte[] kinds;
+        private final int hashCode;
+
+        private ShapeKey(String[] names, byte[] kinds) {
+            this.names = names;
+            this.kinds = kinds;
+            this.hashCode = 31 * Arrays.hashCode(names) + Arrays.hashCode(kinds);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ShapeKey)) {
+                return false;
+            }
+            final ShapeKey shapeKey = (ShapeKey) other;
+            return Arrays.equals(names, shapeKey.names) && Arrays.equals(kinds, shapeKey.kinds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+/**
+ * How the fields of the {@link EntityModel}s that are read from a response are stored in memory.  Every mode returns the
+ * same values through the {@link EntityModel} API
+ */
+public enum EntityStorageMode {
+
+    /**
+     * Every field is a {@link FieldModel} in a map of the entity
+     */
+    STANDARD,
+
+    /**
+     * The entities of a response share their field names and types (their shape) and each entity only keeps its values
+     * in flat arrays, with numbers, booleans and dates unboxed.  A {@link FieldModel} is created each time a field is read,
+     * so changes to a returned field model are not kept; use {@link EntityModel#setValue(FieldModel)} instead.  The first
+     * change to an entity converts it to the standard storage.
+     * <br>
+     * Use it to keep large result sets in memory
+     */
+    COMPACT,
+
+    /**
+     * Each entity keeps the raw json values of its fields and decodes a field to a {@link FieldModel} the first time it is
+     * read; nested entities and object values are kept as json text until then.  The decoded field is kept, so changes
+     * to it are kept as with the standard storage.  The first change to an entity converts it to the standard storage.
+     * <br>
+     * Use it when only a few of the returned fields are read
+     */
+    LAZY
+}
@@ -26,6 +26,16 @@ public class ErrorModel extends EntityModel{
 
 	public static final String HTTP_STATUS_CODE_PROPERTY_NAME = "http_status_code";
 
+	/**
+	 * The position of the failed entity in the request, set on the errors of a partially successful request
+	 */
+	public static final String INDEX_PROPERTY_NAME = "index";
+
+	/**
+	 * The seconds to wait before sending the request again, set from the Retry-After header of the response
+	 */
+	public static final String RETRY_AFTER_PROPERTY_NAME = "retry_after";
+
 	/**
 	 * Creates a new ErrorModel object with given field models
 	 * 
@@ -36,6 +46,27 @@ public class ErrorModel extends EntityModel{
 		super(value);
 	}
 
+	/**
+	 * Returns the position of the failed entity in the request.  The parser keeps the index as it is in the json, so
+	 * both a number and a string holding a number are accepted
+	 *
+	 * @return the index or null if the error has no valid index
+	 */
+	public Integer getIndex() {
+		final FieldModel index = getValue(INDEX_PROPERTY_NAME);
+		if (index == null || index.getValue() == null) {
+			return null;
+		}
+		if (index.getValue() instanceof Number) {
+			return ((Number) index.getValue()).intValue();
+		}
+		try {
+			return Integer.valueOf(index.getValue().toString().trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
 	@Override
 	public String toString() {
 		JSONObject jsonObject = ModelParser.getInstance().getEntityJSONObject(this);
@@ -0,0 +1,96 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * The raw json values of the fields of an entity, each decoded to a {@link FieldModel} the first time it is read.
+ * See {@link EntityStorageMode#LAZY}
+ */
+final class LazyFields implements EntityFields {
+
+    /**
+     * The text of a json object value, parsed when the field is decoded
+     */
+    static final class RawJson {
+
+        private final String json;
+
+        RawJson(String json) {
+            this.json = json;
+        }
+
+        String getJson() {
+            return json;
+        }
+    }
+
+    private final String[] names;
+    // the raw value of each field, replaced by its field model once decoded
+    private final Object[] values;
+    @SuppressWarnings("rawtypes")
+    private final BiFunction<String, Object, FieldModel> decoder;
+
+    /**
+     * @param names   the names of the fields
+     * @param values  the raw values of the fields, in the order of the names
+     * @param decoder creates the field model of a name and a raw value
+     */
+    @SuppressWarnings("rawtypes")
+    LazyFields(String[] names, Object[] values, BiFunction<String, Object, FieldModel> decoder) {
+        this.names = names;
+        this.values = values;
+        this.decoder = decoder;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public synchronized FieldModel getValue(String name) {
+        // entities have a few dozen fields at most, a scan is cheaper than a map per entity
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return decode(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public synchronized Set<FieldModel> getValues() {
+        final Set<FieldModel> fieldModels = new HashSet<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            final FieldModel fieldModel = decode(i);
+            if (fieldModel != null) {
+                fieldModels.add(fieldModel);
+            }
+        }
+        return fieldModels;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private FieldModel decode(int index) {
+        if (values[index] instanceof FieldModel) {
+            return (FieldModel) values[index];
+        }
+        final FieldModel fieldModel = decoder.apply(names[index], values[index]);
+        if (fieldModel != null) {
+            values[index] = fieldModel;
+        }
+        return fieldModel;
+    }
+}
@@ -13,15 +13,34 @@
  */
 package com.hpe.adm.nga.sdk.model;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.metadata.FieldMetadata;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 
 public final class ModelParser {
@@ -29,7 +48,9 @@ public final class ModelParser {
     private static final String JSON_ERRORS_NAME = "errors";
     private static final String JSON_TOTAL_COUNT_NAME = "total_count";
     private static final String JSON_EXCEEDS_TOTAL_COUNT_NAME = "exceeds_total_count";
-    private static final String REGEX_DATE_FORMAT = "\\d{4}-\\d{1,2}-\\d{1,2}T\\d{1,2}:\\d{1,2}:\\d{1,2}Z";
+    // the separators that follow each group of digits in a date time such as 2016-04-13T10:03:12Z
+    private static final char[] DATE_TIME_SEPARATORS = {'-', '-', 'T', ':', ':', 'Z'};
+    private static final int ISO_LOCAL_DATE_LENGTH = 10;
     private static final String LOGGER_INVALID_FIELD_SCHEME_FORMAT = " field scheme is invalid";
 
     private final Logger logger = LoggerFactory.getLogger(ModelParser.class.getName());
@@ -54,18 +75,34 @@ public final class ModelParser {
     }
 
     /**
-     * get a new json object based on a given EntityModel object
+     * get a new json object based on a given EntityModel object, referenced entities are written as given by
+     * {@link ReferenceWriteMode#MINIMAL}
      *
      * @param entityModel the given entity model object
      * @param onlyDirty   Return only dirty fields (used for updates)
      * @return new json object based on a given EntityModel object
      */
-    @SuppressWarnings("rawtypes")
     public final JSONObject getEntityJSONObject(EntityModel entityModel, boolean onlyDirty) {
+        return getEntityJSONObject(entityModel, onlyDirty, ReferenceWriteMode.MINIMAL);
+    }
+
+    /**
+     * get a new json object based on a given EntityModel object
+     *
+     * @param entityModel        the given entity model object
+     * @param onlyDirty          Return only dirty fields (used for updates)
+     * @param referenceWriteMode how the referenced entities are written
+     * @return new json object based on a given EntityModel object
+     */
+    public final JSONObject getEntityJSONObject(EntityModel entityModel, boolean onlyDirty, ReferenceWriteMode referenceWriteMode) {
+        return getEntityJSONObject(onlyDirty ? entityModel.getDirtyValues() : entityModel.getValues(), referenceWriteMode);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private JSONObject getEntityJSONObject(Collection<FieldModel> fieldModels, ReferenceWriteMode referenceWriteMode) {
 
-        Collection<FieldModel> fieldModels = onlyDirty ? entityModel.getDirtyValues() : entityModel.getValues();
         JSONObject objField = new JSONObject();
-        fieldModels.forEach((i) -> objField.put(i.getName(), getFieldValue(i)));
+        fieldModels.forEach((i) -> objField.put(i.getName(), getFieldValue(i, referenceWriteMode)));
 
         return objField;
     }
@@ -81,32 +118,176 @@ public final class ModelParser {
     }
 
     /**
-     * get a new json object based on a given EntityModel list
+     * get a new json object based on a given EntityModel list, referenced entities are written as given by
+     * {@link ReferenceWriteMode#MINIMAL}
      *
      * @param entitiesModels - Collection of entities models
      * @param onlyDirty      Converts only dirty fields (relevant for updating entity)
      * @return new json object conatin entities data
      */
     public final JSONObject getEntitiesJSONObject(Collection<EntityModel> entitiesModels, boolean onlyDirty) {
+        return getEntitiesJSONObject(entitiesModels, onlyDirty, ReferenceWriteMode.MINIMAL);
+    }
+
+    /**
+     * get a new json object based on a given EntityModel list
+     *
+     * @param entitiesModels     - Collection of entities models
+     * @param onlyDirty          Converts only dirty fields (relevant for updating entity)
+     * @param referenceWriteMode how the referenced entities are written
+     * @return new json object conatin entities data
+     */
+    public final JSONObject getEntitiesJSONObject(Collection<EntityModel> entitiesModels, boolean onlyDirty, ReferenceWriteMode referenceWriteMode) {
+        return getEntitiesJSONObject(entitiesModels, fieldsToWrite(onlyDirty), referenceWriteMode);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private JSONObject getEntitiesJSONObject(Collection<EntityModel> entitiesModels, Function<EntityModel, Collection<FieldModel>> fieldsToWrite,
+                                             ReferenceWriteMode referenceWriteMode) {
 
         JSONObject objBase = new JSONObject();
         JSONArray objEntities = new JSONArray();
         objBase.put(JSON_DATA_NAME, objEntities);
         objBase.put(JSON_TOTAL_COUNT_NAME, entitiesModels.size());
         objBase.put(JSON_EXCEEDS_TOTAL_COUNT_NAME, false);
-        entitiesModels.forEach((i) -> objEntities.put(getEntityJSONObject(i, onlyDirty)));
+        entitiesModels.forEach((i) -> objEntities.put(getEntityJSONObject(fieldsToWrite.apply(i), referenceWriteMode)));
 
         return objBase;
     }
 
+    /**
+     * Writes the json of an entity straight to a stream, without building a json object or a string.  The json is the
+     * same as the one of {@link #getEntityJSONObject(EntityModel, boolean)}
+     *
+     * @param entityModel  the given entity model object
+     * @param onlyDirty    Write only dirty fields (used for updates)
+     * @param outputStream the stream the UTF-8 encoded json is written to, it is flushed but not closed
+     * @throws IOException if writing to the stream fails
+     */
+    public final void writeEntity(EntityModel entityModel, boolean onlyDirty, OutputStream outputStream) throws IOException {
+        writeEntity(entityModel, onlyDirty, ReferenceWriteMode.MINIMAL, outputStream);
+    }
+
+    /**
+     * Writes the json of an entity straight to a stream, see {@link #writeEntity(EntityModel, boolean, OutputStream)}
+     *
+     * @param entityModel        the given entity model object
+     * @param onlyDirty          Write only dirty fields (used for updates)
+     * @param referenceWriteMode how the referenced entities are written
+     * @param outputStream       the stream the UTF-8 encoded json is written to, it is flushed but not closed
+     * @throws IOException if writing to the stream fails
+     */
+    public final void writeEntity(EntityModel entityModel, boolean onlyDirty, ReferenceWriteMode referenceWriteMode, OutputStream outputStream) throws IOException {
+        final JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        writeEntity(jsonWriter, fieldsToWrite(onlyDirty).apply(entityModel), referenceWriteMode);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writes the json of a collection of entities straight to a stream, without building a json object or a string.  The
+     * json is the same as the one of {@link #getEntitiesJSONObject(Collection, boolean)}
+     *
+     * @param entitiesModels - Collection of entities models
+     * @param onlyDirty      Writes only dirty fields (relevant for updating entity)
+     * @param outputStream   the stream the UTF-8 encoded json is written to, it is flushed but not closed
+     * @throws IOException if writing to the stream fails
+     */
+    public final void writeEntities(Collection<EntityModel> entitiesModels, boolean onlyDirty, OutputStream outputStream) throws IOException {
+        writeEntities(entitiesModels, onlyDirty, ReferenceWriteMode.MINIMAL, outputStream);
+    }
+
+    /**
+     * Writes the json of a collection of entities straight to a stream, see
+     * {@link #writeEntities(Collection, boolean, OutputStream)}
+     *
+     * @param entitiesModels     - Collection of entities models
+     * @param onlyDirty          Writes only dirty fields (relevant for updating entity)
+     * @param referenceWriteMode how the referenced entities are written
+     * @param outputStream       the stream the UTF-8 encoded json is written to, it is flushed but not closed
+     * @throws IOException if writing to the stream fails
+     */
+    public final void writeEntities(Collection<EntityModel> entitiesModels, boolean onlyDirty, ReferenceWriteMode referenceWriteMode,
+                                    OutputStream outputStream) throws IOException {
+        final JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        writeEntities(jsonWriter, entitiesModels, fieldsToWrite(onlyDirty), referenceWriteMode);
+        jsonWriter.flush();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void writeEntities(JsonWriter jsonWriter, Collection<EntityModel> entitiesModels, Function<EntityModel, Collection<FieldModel>> fieldsToWrite,
+                               ReferenceWriteMode referenceWriteMode) throws IOException {
+        jsonWriter.beginObject();
+        jsonWriter.name(JSON_DATA_NAME).beginArray();
+        for (EntityModel entityModel : entitiesModels) {
+            writeEntity(jsonWriter, fieldsToWrite.apply(entityModel), referenceWriteMode);
+        }
+        jsonWriter.endArray();
+        jsonWriter.name(JSON_TOTAL_COUNT_NAME).value(entitiesModels.size());
+        jsonWriter.name(JSON_EXCEEDS_TOTAL_COUNT_NAME).value(false);
+        jsonWriter.endObject();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void writeEntity(JsonWriter jsonWriter, Collection<FieldModel> fieldModels, ReferenceWriteMode referenceWriteMode) throws IOException {
+        jsonWriter.beginObject();
+        for (FieldModel fieldModel : fieldModels) {
+            if (fieldModel.getClass() == ReferenceFieldModel.class) {
+                EntityModel fieldEntityModel = ((ReferenceFieldModel) fieldModel).getValue();
+                jsonWriter.name(fieldModel.getName());
+                if (fieldEntityModel == null) {
+                    jsonWriter.nullValue();
+                } else {
+                    writeEntity(jsonWriter, referencedFields(referenceWriteMode).apply(fieldEntityModel), referenceWriteMode);
+                }
+            } else if (fieldModel.getClass() == MultiReferenceFieldModel.class) {
+                jsonWriter.name(fieldModel.getName());
+                writeEntities(jsonWriter, ((MultiReferenceFieldModel) fieldModel).getValue(), referencedFields(referenceWriteMode), referenceWriteMode);
+            } else {
+                final Object value = fieldModel.getValue();
+                // a null value is left out, as it is by JSONObject.put
+                if (value == null) {
+                    continue;
+                }
+                jsonWriter.name(fieldModel.getName());
+                if (value instanceof String) {
+                    jsonWriter.value((String) value);
+                } else if (value instanceof Boolean) {
+                    jsonWriter.value((Boolean) value);
+                } else if (value instanceof Number) {
+                    jsonWriter.value((Number) value);
+                } else {
+                    jsonWriter.jsonValue(JSONObject.valueToString(value));
+                }
+            }
+        }
+        jsonWriter.endObject();
+    }
+
+    /**
+     * @return the fields of the entities that are sent
+     */
+    @SuppressWarnings("rawtypes")
+    private static Function<EntityModel, Collection<FieldModel>> fieldsToWrite(boolean onlyDirty) {
+        return onlyDirty ? EntityModel::getDirtyValues : EntityModel::getValues;
+    }
+
+    /**
+     * @return the fields of the referenced entities that are sent
+     */
+    @SuppressWarnings("rawtypes")
+    private static Function<EntityModel, Collection<FieldModel>> referencedFields(ReferenceWriteMode referenceWriteMode) {
+        return referenceWriteMode == ReferenceWriteMode.DEEP ? EntityModel::getValues : EntityModel::getReferenceValues;
+    }
+
     /**
      * GetEntities an object that represent a field value based on the Field Model
      *
-     * @param fieldModel the source fieldModel
+     * @param fieldModel         the source fieldModel
+     * @param referenceWriteMode how the referenced entities are written
      * @return field value
      */
     @SuppressWarnings("rawtypes")
-    private Object getFieldValue(FieldModel fieldModel) {
+    private Object getFieldValue(FieldModel fieldModel, ReferenceWriteMode referenceWriteMode) {
 
         Object fieldValue;
 
@@ -115,13 +296,13 @@ public final class ModelParser {
             fieldValue = JSONObject.NULL;
 
             if (fieldEntityModel != null) {
-                fieldValue = getEntityJSONObject(fieldEntityModel, false);
+                fieldValue = getEntityJSONObject(referencedFields(referenceWriteMode).apply(fieldEntityModel), referenceWriteMode);
             }
 
         } else if (fieldModel.getClass() == MultiReferenceFieldModel.class) {
 
             Collection<EntityModel> entities = ((MultiReferenceFieldModel) fieldModel).getValue();
-            fieldValue = getEntitiesJSONObject(entities, false);
+            fieldValue = getEntitiesJSONObject(entities, referencedFields(referenceWriteMode), referenceWriteMode);
 
         } else {
 
@@ -137,62 +318,182 @@ public final class ModelParser {
      * @param jsonEntityObj - json object
      * @return new EntityModel object
      */
-    @SuppressWarnings("rawtypes")
     public EntityModel getEntityModel(JSONObject jsonEntityObj) {
+        return getEntityModel(jsonEntityObj, null);
+    }
+
+    /**
+     * get a new EntityModel object based on json object, decoding the fields with their declared types
+     *
+     * @param jsonEntityObj - json object
+     * @param entitySchema  - the declared types of the fields, null to guess the types from the values
+     * @return new EntityModel object
+     */
+    public EntityModel getEntityModel(JSONObject jsonEntityObj, EntitySchema entitySchema) {
+        return getEntityModel(jsonEntityObj, entitySchema, null);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private EntityModel getEntityModel(JSONObject jsonEntityObj, EntitySchema entitySchema, EntityShapeTable shapes) {
 
         Set<FieldModel> fieldModels = new HashSet<>();
         Iterator<?> keys = jsonEntityObj.keys();
-        EntityModel entityModel;
 
         while (keys.hasNext()) {
-
-            FieldModel fldModel;
             String strKey = (String) keys.next();
-            Object aObj = jsonEntityObj.get(strKey);
-            if (aObj == JSONObject.NULL) {
-                fldModel = new EmptyFieldModel(strKey);
-            } else if (aObj instanceof Long || aObj instanceof Integer) {
-                fldModel = new LongFieldModel(strKey, Long.parseLong(aObj.toString()));
-            } else if (aObj instanceof Double || aObj instanceof Float) {
-                fldModel = new FloatFieldModel(strKey, Float.parseFloat(aObj.toString()));
-            } else if (aObj instanceof Boolean) {
-                fldModel = new BooleanFieldModel(strKey, Boolean.parseBoolean(aObj.toString()));
-            } else if (aObj instanceof JSONObject) {
+            FieldModel fldModel = getFieldModel(strKey, jsonEntityObj.get(strKey), entitySchema, shapes);
+            if (fldModel != null) {
+                fieldModels.add(fldModel);
+            }
+        }
 
-                JSONObject fieldObject = jsonEntityObj.getJSONObject(strKey);
+        return newEntityModel(fieldModels, shapes);
+    }
 
-                if (!fieldObject.isNull(JSON_DATA_NAME)) {
+    /**
+     * @param shapes the shapes of the compact entities of the response, null to create standard entities
+     * @return a clean entity with the fields
+     */
+    @SuppressWarnings("rawtypes")
+    private static EntityModel newEntityModel(Set<FieldModel> fieldModels, EntityShapeTable shapes) {
+        return shapes == null ? new EntityModel(fieldModels, EntityModel.EntityState.CLEAN) : new EntityModel(shapes.compact(fieldModels));
+    }
 
-                    Collection<EntityModel> entities = getEntities(aObj.toString());
-                    fldModel = new MultiReferenceFieldModel(strKey, entities);
-                } else if (!fieldObject.isNull("type") && !fieldObject.isNull("id")) {
-                    EntityModel ref = getEntityModel(jsonEntityObj.getJSONObject(strKey));
-                    fldModel = new ReferenceFieldModel(strKey, ref);
-                } else {
-                    fldModel = new ObjectFieldModel(strKey, aObj.toString());
-                }
+    /**
+     * get a new field model based on a json value
+     *
+     * @param strKey       - the name of the field
+     * @param aObj         - the json value of the field as returned by org.json
+     * @param entitySchema - the declared types of the fields, can be null
+     * @param shapes       - the shapes of the compact entities, null for standard referenced entities
+     * @return new field model or null if the value cannot be represented by a field model
+     */
+    @SuppressWarnings("rawtypes")
+    private FieldModel getFieldModel(String strKey, Object aObj, EntitySchema entitySchema, EntityShapeTable shapes) {
 
-            } else if (aObj instanceof String) {
+        final FieldMetadata.FieldType fieldType = entitySchema == null ? null : entitySchema.getFieldType(strKey);
+        if (fieldType != null && aObj != JSONObject.NULL) {
+            final FieldModel typedFieldModel = getTypedFieldModel(strKey, aObj, fieldType);
+            if (typedFieldModel != null) {
+                return typedFieldModel;
+            }
+        }
 
-                boolean isMatch = aObj.toString().matches(REGEX_DATE_FORMAT);
-                if (isMatch) {
+        FieldModel fldModel;
+        if (aObj == JSONObject.NULL) {
+            fldModel = new EmptyFieldModel(strKey);
+        } else if (aObj instanceof Long || aObj instanceof Integer) {
+            fldModel = new LongFieldModel(strKey, ((Number) aObj).longValue());
+        } else if (aObj instanceof Double || aObj instanceof Float) {
+            fldModel = new FloatFieldModel(strKey, Float.parseFloat(aObj.toString()));
+        } else if (aObj instanceof Boolean) {
+            fldModel = new BooleanFieldModel(strKey, Boolean.parseBoolean(aObj.toString()));
+        } else if (aObj instanceof JSONObject) {
+
+            JSONObject fieldObject = (JSONObject) aObj;
+
+            if (!fieldObject.isNull(JSON_DATA_NAME)) {
+
+                Collection<EntityModel> entities = getEntities(fieldObject, null, shapes);
+                fldModel = new MultiReferenceFieldModel(strKey, entities);
+            } else if (!fieldObject.isNull("type") && !fieldObject.isNull("id")) {
+                EntityModel ref = getEntityModel(fieldObject, null, shapes);
+                fldModel = new ReferenceFieldModel(strKey, ref);
+            } else {
+                fldModel = new ObjectFieldModel(strKey, aObj.toString());
+            }
 
-                    final ZonedDateTime zonedDateTime = ZonedDateTime.parse(aObj.toString());
-                    fldModel = new DateFieldModel(strKey, zonedDateTime);
+        } else if (aObj instanceof String) {
 
-                } else {
-                    fldModel = new StringFieldModel(strKey, aObj.toString());
-                }
+            final ZonedDateTime zonedDateTime = isDateTime((String) aObj) ? parseDateTime((String) aObj) : null;
+            if (zonedDateTime != null) {
+                fldModel = new DateFieldModel(strKey, zonedDateTime);
             } else {
-                logger.debug(strKey + LOGGER_INVALID_FIELD_SCHEME_FORMAT);
-                continue; //do not put it inside the model object to avoid a null pointer exception
+                fldModel = new StringFieldModel(strKey, (String) aObj);
             }
+        } else {
+            logger.debug(strKey + LOGGER_INVALID_FIELD_SCHEME_FORMAT);
+            fldModel = null; //do not put it inside the model object to avoid a null pointer exception
+        }
 
-            fieldModels.add(fldModel);
+        return fldModel;
+    }
+
+    /**
+     * get a new field model for a json value according to the declared type of the field
+     *
+     * @return new field model or null if the value does not match the declared type
+     */
+    @SuppressWarnings("rawtypes")
+    private FieldModel getTypedFieldModel(String strKey, Object aObj, FieldMetadata.FieldType fieldType) {
+        switch (fieldType) {
+            case Integer:
+                return aObj instanceof Long || aObj instanceof Integer ? new LongFieldModel(strKey, ((Number) aObj).longValue()) : null;
+            case Float:
+                return aObj instanceof Number ? new FloatFieldModel(strKey, ((Number) aObj).floatValue()) : null;
+            case Boolean:
+                return aObj instanceof Boolean ? new BooleanFieldModel(strKey, (Boolean) aObj) : null;
+            case DateTime:
+            case Date:
+                final ZonedDateTime zonedDateTime = aObj instanceof String ? parseDateTime((String) aObj) : null;
+                return zonedDateTime == null ? null : new DateFieldModel(strKey, zonedDateTime);
+            case String:
+            case Memo:
+                return aObj instanceof String ? new StringFieldModel(strKey, (String) aObj) : null;
+            case Object:
+                return new ObjectFieldModel(strKey, aObj.toString());
+            default:
+                // references are recognised by their structure
+                return null;
+        }
+    }
+
+    /**
+     * Recognises a date time such as 2016-04-13T10:03:12Z without compiling a regular expression or allocating
+     *
+     * @param value the string value
+     * @return whether the value has the date time format used by Octane
+     */
+    static boolean isDateTime(String value) {
+        final int length = value.length();
+        int position = 4;
+        if (length != 20 || !isDigits(value, 0, position)) {
+            return false;
+        }
+        for (int i = 0; i < DATE_TIME_SEPARATORS.length; i++) {
+            if (value.charAt(position) != DATE_TIME_SEPARATORS[i]) {
+                return false;
+            }
+            if (i < DATE_TIME_SEPARATORS.length - 1 && !isDigits(value, position + 1, position + 3)) {
+                return false;
+            }
+            position += 3;
         }
+        return true;
+    }
+
+    private static boolean isDigits(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        entityModel = new EntityModel(fieldModels, EntityModel.EntityState.CLEAN);
-        return entityModel;
+    /**
+     * @return the parsed date time or null if the value is not a valid date time.  Dates without a time are at the start
+     * of the day in UTC
+     */
+    private static ZonedDateTime parseDateTime(String value) {
+        try {
+            return value.length() == ISO_LOCAL_DATE_LENGTH
+                    ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC)
+                    : ZonedDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
     }
 
     /**
@@ -202,8 +503,64 @@ public final class ModelParser {
      * @return entity model collection based on a given json string
      */
     public OctaneCollection<EntityModel> getEntities(String json) {
+        return getEntities(json, null);
+    }
+
+    /**
+     * get a entity model collection based on a given json string, decoding the fields with their declared types
+     *
+     * @param json         The JSON to parse
+     * @param entitySchema the declared types of the fields of the entities, null to guess the types from the values
+     * @return entity model collection based on a given json string
+     */
+    public OctaneCollection<EntityModel> getEntities(String json, EntitySchema entitySchema) {
         JSONTokener tokener = new JSONTokener(json);
-        JSONObject jsonObj = new JSONObject(tokener);
+        return getEntities(new JSONObject(tokener), entitySchema);
+    }
+
+    /**
+     * get a entity model collection based on a given json object, nested collections are read from the same json
+     * object without being parsed again
+     *
+     * @param jsonObj The json object that contains the data array
+     * @return entity model collection based on a given json object
+     */
+    public OctaneCollection<EntityModel> getEntities(JSONObject jsonObj) {
+        return getEntities(jsonObj, null);
+    }
+
+    /**
+     * get a entity model collection based on a given json object, decoding the fields with their declared types
+     *
+     * @param jsonObj      The json object that contains the data array
+     * @param entitySchema the declared types of the fields of the entities, null to guess the types from the values
+     * @return entity model collection based on a given json object
+     */
+    public OctaneCollection<EntityModel> getEntities(JSONObject jsonObj, EntitySchema entitySchema) {
+        return getEntities(jsonObj, entitySchema, EntityStorageMode.STANDARD);
+    }
+
+    /**
+     * get a entity model collection based on a given json object, decoding the fields with their declared types and
+     * storing them as given by the storage mode
+     *
+     * @param jsonObj      The json object that contains the data array
+     * @param entitySchema the declared types of the fields of the entities, null to guess the types from the values
+     * @param storageMode  how the fields of the entities are stored in memory
+     * @return entity model collection based on a given json object
+     */
+    public OctaneCollection<EntityModel> getEntities(JSONObject jsonObj, EntitySchema entitySchema, EntityStorageMode storageMode) {
+        if (storageMode == EntityStorageMode.LAZY) {
+            final JSONArray jsonDataArr = jsonObj.getJSONArray(JSON_DATA_NAME);
+            final OctaneCollection<EntityModel> entityModels = newCollection(jsonObj.opt(JSON_TOTAL_COUNT_NAME), jsonObj.opt(JSON_EXCEEDS_TOTAL_COUNT_NAME));
+            final BiFunction<String, Object, FieldModel> decoder = lazyDecoder(entitySchema);
+            IntStream.range(0, jsonDataArr.length()).forEach((i) -> entityModels.add(getLazyEntityModel(jsonDataArr.getJSONObject(i), decoder)));
+            return entityModels;
+        }
+        return getEntities(jsonObj, entitySchema, newShapeTable(storageMode));
+    }
+
+    private OctaneCollection<EntityModel> getEntities(JSONObject jsonObj, EntitySchema entitySchema, EntityShapeTable shapes) {
         JSONArray jsonDataArr = jsonObj.getJSONArray(JSON_DATA_NAME);
 
         final OctaneCollection<EntityModel> entityModels;
@@ -214,11 +571,290 @@ public final class ModelParser {
         } else {
             entityModels = new OctaneCollectionImpl<>();
         }
-        IntStream.range(0, jsonDataArr.length()).forEach((i) -> entityModels.add(getEntityModel(jsonDataArr.getJSONObject(i))));
+        IntStream.range(0, jsonDataArr.length()).forEach((i) -> entityModels.add(getEntityModel(jsonDataArr.getJSONObject(i), entitySchema, shapes)));
 
         return entityModels;
     }
 
+    /**
+     * get a entity model collection by reading the json from a stream.
+     * <br>
+     * The entities are built while the json is read, the content is never held in memory as a whole.  The result is the
+     * same as {@link #getEntities(String)} for the same json.  The stream is closed
+     *
+     * @param inputStream the stream of the json to parse
+     * @param charset     the charset of the stream
+     * @return entity model collection based on the json
+     */
+    public OctaneCollection<EntityModel> getEntities(InputStream inputStream, Charset charset) {
+        return getEntities(inputStream, charset, null);
+    }
+
+    /**
+     * get a entity model collection by reading the json from a stream, decoding the fields with their declared types
+     *
+     * @param inputStream  the stream of the json to parse
+     * @param charset      the charset of the stream
+     * @param entitySchema the declared types of the fields of the entities, null to guess the types from the values
+     * @return entity model collection based on the json
+     */
+    public OctaneCollection<EntityModel> getEntities(InputStream inputStream, Charset charset, EntitySchema entitySchema) {
+        return getEntities(inputStream, charset, entitySchema, EntityStorageMode.STANDARD);
+    }
+
+    /**
+     * get a entity model collection by reading the json from a stream, decoding the fields with their declared types and
+     * storing them as given by the storage mode
+     *
+     * @param inputStream  the stream of the json to parse
+     * @param charset      the charset of the stream
+     * @param entitySchema the declared types of the fields of the entities, null to guess the types from the values
+     * @param storageMode  how the fields of the entities are stored in memory
+     * @return entity model collection based on the json
+     */
+    public OctaneCollection<EntityModel> getEntities(InputStream inputStream, Charset charset, EntitySchema entitySchema, EntityStorageMode storageMode) {
+        final EntityShapeTable shapes = newShapeTable(storageMode);
+        final BiFunction<String, Object, FieldModel> decoder = storageMode == EntityStorageMode.LAZY ? lazyDecoder(entitySchema) : null;
+        try (JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, charset))) {
+            List<EntityModel> entities = null;
+            Object totalCount = null;
+            Object exceedsTotalCount = null;
+
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if (JSON_DATA_NAME.equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    entities = new ArrayList<>();
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        entities.add(decoder == null ? readEntityModel(jsonReader, entitySchema, shapes) : readLazyEntityModel(jsonReader, decoder));
+                    }
+                    jsonReader.endArray();
+                } else if (JSON_TOTAL_COUNT_NAME.equals(name)) {
+                    totalCount = readValue(jsonReader);
+                } else if (JSON_EXCEEDS_TOTAL_COUNT_NAME.equals(name)) {
+                    exceedsTotalCount = readValue(jsonReader);
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+
+            if (entities == null) {
+                throw new JSONException("JSONObject[" + JSONObject.quote(JSON_DATA_NAME) + "] is not a JSONArray.");
+            }
+            final OctaneCollection<EntityModel> entityModels = newCollection(totalCount, exceedsTotalCount);
+            entityModels.addAll(entities);
+            return entityModels;
+        } catch (IOException | IllegalStateException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * get a new EntityModel object by reading a json object from a stream, see {@link #getEntities(InputStream, Charset)}
+     *
+     * @param inputStream the stream of the json to parse
+     * @param charset     the charset of the stream
+     * @return new EntityModel object
+     */
+    public EntityModel getEntityModel(InputStream inputStream, Charset charset) {
+        return getEntityModel(inputStream, charset, null);
+    }
+
+    /**
+     * get a new EntityModel object by reading a json object from a stream, decoding the fields with their declared types
+     *
+     * @param inputStream  the stream of the json to parse
+     * @param charset      the charset of the stream
+     * @param entitySchema the declared types of the fields, null to guess the types from the values
+     * @return new EntityModel object
+     */
+    public EntityModel getEntityModel(InputStream inputStream, Charset charset, EntitySchema entitySchema) {
+        try (JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, charset))) {
+            return readEntityModel(jsonReader, entitySchema, null);
+        } catch (IOException | IllegalStateException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Reads an entity field by field.  Only the values of fields that are json objects are read into an org.json object
+     * before being converted
+     */
+    @SuppressWarnings("rawtypes")
+    private EntityModel readEntityModel(JsonReader jsonReader, EntitySchema entitySchema, EntityShapeTable shapes) throws IOException {
+        final Set<FieldModel> fieldModels = new HashSet<>();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            final String strKey = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                // arrays are not valid field values
+                logger.debug(strKey + LOGGER_INVALID_FIELD_SCHEME_FORMAT);
+                jsonReader.skipValue();
+                continue;
+            }
+            final FieldModel fldModel = getFieldModel(strKey, readValue(jsonReader), entitySchema, shapes);
+            if (fldModel != null) {
+                fieldModels.add(fldModel);
+            }
+        }
+        jsonReader.endObject();
+        return newEntityModel(fieldModels, shapes);
+    }
+
+    private static EntityShapeTable newShapeTable(EntityStorageMode storageMode) {
+        return storageMode == EntityStorageMode.COMPACT ? new EntityShapeTable() : null;
+    }
+
+    private static OctaneCollection<EntityModel> newCollection(Object totalCount, Object exceedsTotalCount) {
+        if (totalCount instanceof Number && exceedsTotalCount instanceof Boolean) {
+            return new OctaneCollectionImpl<>(((Number) totalCount).intValue(), (Boolean) exceedsTotalCount);
+        }
+        return new OctaneCollectionImpl<>();
+    }
+
+    /**
+     * @return the decoder of the raw values of lazy entities, it creates the same field models as an eager parse
+     */
+    @SuppressWarnings("rawtypes")
+    private BiFunction<String, Object, FieldModel> lazyDecoder(EntitySchema entitySchema) {
+        return (strKey, rawValue) -> getFieldModel(strKey,
+                rawValue instanceof LazyFields.RawJson ? new JSONObject(((LazyFields.RawJson) rawValue).getJson()) : rawValue,
+                entitySchema, null);
+    }
+
+    /**
+     * Creates an entity that keeps the values of the json object and decodes each of them when it is first read
+     */
+    @SuppressWarnings("rawtypes")
+    private EntityModel getLazyEntityModel(JSONObject jsonEntityObj, BiFunction<String, Object, FieldModel> decoder) {
+        final List<String> names = new ArrayList<>(jsonEntityObj.length());
+        final List<Object> values = new ArrayList<>(jsonEntityObj.length());
+        final Iterator<String> keys = jsonEntityObj.keys();
+        while (keys.hasNext()) {
+            final String strKey = keys.next();
+            final Object value = jsonEntityObj.get(strKey);
+            if (value instanceof JSONArray) {
+                // arrays are not valid field values
+                logger.debug(strKey + LOGGER_INVALID_FIELD_SCHEME_FORMAT);
+                continue;
+            }
+            names.add(strKey);
+            values.add(value);
+        }
+        return new EntityModel(new LazyFields(names.toArray(new String[0]), values.toArray(), decoder));
+    }
+
+    /**
+     * Reads an entity keeping the json scalar values and the text of the json object values, which are decoded when
+     * the field is first read
+     */
+    @SuppressWarnings("rawtypes")
+    private EntityModel readLazyEntityModel(JsonReader jsonReader, BiFunction<String, Object, FieldModel> decoder) throws IOException {
+        final List<String> names = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            final String strKey = jsonReader.nextName();
+            final JsonToken token = jsonReader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                // arrays are not valid field values
+                logger.debug(strKey + LOGGER_INVALID_FIELD_SCHEME_FORMAT);
+                jsonReader.skipValue();
+                continue;
+            }
+            names.add(strKey);
+            if (token == JsonToken.BEGIN_OBJECT) {
+                final StringWriter json = new StringWriter();
+                copyValue(jsonReader, new JsonWriter(json));
+                values.add(new LazyFields.RawJson(json.toString()));
+            } else {
+                values.add(readValue(jsonReader));
+            }
+        }
+        jsonReader.endObject();
+        return new EntityModel(new LazyFields(names.toArray(new String[0]), values.toArray(), decoder));
+    }
+
+    /**
+     * Copies the next json value token by token, numbers are copied as they are written
+     */
+    private static void copyValue(JsonReader jsonReader, JsonWriter jsonWriter) throws IOException {
+        switch (jsonReader.peek()) {
+            case BEGIN_OBJECT:
+                jsonReader.beginObject();
+                jsonWriter.beginObject();
+                while (jsonReader.hasNext()) {
+                    jsonWriter.name(jsonReader.nextName());
+                    copyValue(jsonReader, jsonWriter);
+                }
+                jsonReader.endObject();
+                jsonWriter.endObject();
+                break;
+            case BEGIN_ARRAY:
+                jsonReader.beginArray();
+                jsonWriter.beginArray();
+                while (jsonReader.hasNext()) {
+                    copyValue(jsonReader, jsonWriter);
+                }
+                jsonReader.endArray();
+                jsonWriter.endArray();
+                break;
+            case STRING:
+                jsonWriter.value(jsonReader.nextString());
+                break;
+            case NUMBER:
+                jsonWriter.jsonValue(jsonReader.nextString());
+                break;
+            case BOOLEAN:
+                jsonWriter.value(jsonReader.nextBoolean());
+                break;
+            case NULL:
+                jsonReader.nextNull();
+                jsonWriter.nullValue();
+                break;
+            default:
+                throw new JSONException("Unexpected json token " + jsonReader.peek());
+        }
+    }
+
+    /**
+     * Reads the next json value into the same types that org.json would use
+     */
+    private static Object readValue(JsonReader jsonReader) throws IOException {
+        switch (jsonReader.peek()) {
+            case BEGIN_OBJECT:
+                final JSONObject jsonObject = new JSONObject();
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    final String name = jsonReader.nextName();
+                    jsonObject.put(name, readValue(jsonReader));
+                }
+                jsonReader.endObject();
+                return jsonObject;
+            case BEGIN_ARRAY:
+                final JSONArray jsonArray = new JSONArray();
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    jsonArray.put(readValue(jsonReader));
+                }
+                jsonReader.endArray();
+                return jsonArray;
+            case STRING:
+                return jsonReader.nextString();
+            case NUMBER:
+                return JSONObject.stringToValue(jsonReader.nextString());
+            case BOOLEAN:
+                return jsonReader.nextBoolean();
+            case NULL:
+                jsonReader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected json token " + jsonReader.peek());
+        }
+    }
+
     /**
      * Checks the message for a list of errors
      *
@@ -267,7 +903,7 @@ public final class ModelParser {
         JSONObject jsonObj = new JSONObject(tokener);
         JSONArray jsonErrArr = jsonObj.getJSONArray(JSON_ERRORS_NAME);
         Collection<ErrorModel> ErrModels = new ArrayList<>();
-        IntStream.range(0, jsonErrArr.length()).forEach((i) -> ErrModels.add(getErrorModelFromjson(jsonErrArr.getJSONObject(i).toString())));
+        IntStream.range(0, jsonErrArr.length()).forEach((i) -> ErrModels.add(getErrorModel(jsonErrArr.getJSONObject(i))));
 
         return ErrModels;
     }
@@ -278,11 +914,14 @@ public final class ModelParser {
      * @param json - json string with error information
      * @return error model
      */
-    @SuppressWarnings("rawtypes")
     public ErrorModel getErrorModelFromjson(String json) {
 
         JSONTokener tokener = new JSONTokener(json);
-        JSONObject jsonErrObj = new JSONObject(tokener);
+        return getErrorModel(new JSONObject(tokener));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ErrorModel getErrorModel(JSONObject jsonErrObj) {
 
         Set<FieldModel> fieldModels = new HashSet<>();
         Iterator<?> keys = jsonErrObj.keys();
@@ -36,6 +36,16 @@ public final class OctaneCollectionSupplier<T extends Entity> implements Supplie
         exceedsTotalCount = octaneCollection.exceedsTotalCount();
     }
 
+    /**
+     * The parameters of the collections that will be returned
+     * @param totalCount The total count of the collection
+     * @param exceedsTotalCount Whether the total count exceeds the entities that were returned
+     */
+    public OctaneCollectionSupplier(final int totalCount, final boolean exceedsTotalCount) {
+        this.totalCount = totalCount;
+        this.exceedsTotalCount = exceedsTotalCount;
+    }
+
     @Override
     public OctaneCollection<T> get() {
         return new OctaneCollectionImpl<>(totalCount, exceedsTotalCount);
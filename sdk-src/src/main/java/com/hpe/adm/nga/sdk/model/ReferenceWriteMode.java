@@ -0,0 +1,32 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+/**
+ * How the entities that are the values of {@link ReferenceFieldModel}s and {@link MultiReferenceFieldModel}s are written
+ * when an entity is sent to the server
+ */
+public enum ReferenceWriteMode {
+
+    /**
+     * A referenced entity is written with its type and id and with the fields that were changed on it.  The fields that
+     * it was read with from the server are left out, so that a fetched entity can be reused as a reference value
+     */
+    MINIMAL,
+
+    /**
+     * A referenced entity is written with all its fields
+     */
+    DEEP
+}
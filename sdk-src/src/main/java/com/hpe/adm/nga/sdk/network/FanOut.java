@@ -0,0 +1,96 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Sends a list of requests with a bounded number of them in flight.
+ * <br>
+ * The requests are spread over at most {@code parallelism} lanes and each lane sends its requests one after the other,
+ * so that no thread is blocked while a request is in flight
+ */
+public final class FanOut {
+
+    private FanOut() {
+    }
+
+    /**
+     * Sends a request for each task with at most {@code parallelism} requests in flight.  A request that fails fails the
+     * returned future, and the later tasks of its lane are not sent
+     *
+     * @param tasks       the tasks to send a request for
+     * @param parallelism the maximum number of requests in flight
+     * @param send        sends the request of a task
+     * @param <T>         the type of the tasks
+     * @param <R>         the type of the results
+     * @return a future of the results in the order of the tasks
+     */
+    public static <T, R> CompletableFuture<List<R>> inLanes(final List<T> tasks, final int parallelism,
+                                                            final Function<? super T, CompletableFuture<R>> send) {
+        final List<R> results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        final int lanes = Math.max(1, Math.min(parallelism, tasks.size()));
+        final CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> laneFuture = CompletableFuture.completedFuture(null);
+            for (int i = lane; i < tasks.size(); i += lanes) {
+                final int index = i;
+                laneFuture = laneFuture
+                        .thenCompose(ignored -> send.apply(tasks.get(index)))
+                        .thenAccept(result -> {
+                            synchronized (results) {
+                                results.set(index, result);
+                            }
+                        });
+            }
+            laneFutures[lane] = laneFuture;
+        }
+        return CompletableFuture.allOf(laneFutures).thenApply(ignored -> {
+            synchronized (results) {
+                return new ArrayList<>(results);
+            }
+        });
+    }
+
+    /**
+     * Waits for the future and throws its failure as it is instead of wrapped in a {@link CompletionException}
+     *
+     * @param future the future to wait for
+     * @param <T>    the type of the result
+     * @return the result of the future
+     */
+    public static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param throwable the failure of a future, can be wrapped in a {@link CompletionException}
+     * @return the failure without the {@link CompletionException}
+     */
+    public static Throwable unwrap(final Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+}
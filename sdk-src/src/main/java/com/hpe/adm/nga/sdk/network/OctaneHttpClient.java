@@ -15,6 +15,9 @@ package com.hpe.adm.nga.sdk.network;
 
 import com.hpe.adm.nga.sdk.authentication.Authentication;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  *
  * HTTP Client
@@ -42,4 +45,75 @@ public interface OctaneHttpClient {
     void signOut();
 
     OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest);
+
+    /**
+     * Executes the request and returns a response whose content can be read from the connection while it is received,
+     * see {@link OctaneHttpResponse#streamed(int, java.io.InputStream, java.nio.charset.Charset)}.
+     * <br>
+     * The caller must read the content or close the stream returned by {@link OctaneHttpResponse#getInputStream()}.
+     * Errors are reported in the same way as by {@link #execute(OctaneHttpRequest)}.  The default implementation
+     * calls {@link #execute(OctaneHttpRequest)}
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return the response
+     */
+    default OctaneHttpResponse executeStreaming(OctaneHttpRequest octaneHttpRequest) {
+        return execute(octaneHttpRequest);
+    }
+
+    /**
+     * Same as {@link #executeStreaming(OctaneHttpRequest)} without blocking the calling thread.  The future is completed
+     * once the response has started to arrive, its content is read by the caller.
+     * <br>
+     * The default implementation runs {@link #executeStreaming(OctaneHttpRequest)} on the common fork join pool
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return a future that is completed with the streamed response
+     */
+    default CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest) {
+        return CompletableFuture.supplyAsync(() -> executeStreaming(octaneHttpRequest));
+    }
+
+    /**
+     * Same as {@link #executeStreamingAsync(OctaneHttpRequest)}, using the given executor for any blocking work.
+     * <br>
+     * The default implementation runs {@link #executeStreaming(OctaneHttpRequest)} on the executor
+     *
+     * @param octaneHttpRequest the request to execute
+     * @param executor          executor used to run blocking work
+     * @return a future that is completed with the streamed response
+     */
+    default CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> executeStreaming(octaneHttpRequest), executor);
+    }
+
+    /**
+     * Executes the request without blocking the calling thread.
+     * <br>
+     * The default implementation runs {@link #execute(OctaneHttpRequest)} on the common fork join pool, which only has as
+     * many threads as there are cores.  Implementations with a blocking transport should override this method to run the
+     * requests on their own threads, implementations backed by a non-blocking transport to send them directly.
+     * Errors are propagated by completing the returned future exceptionally with the same exceptions that
+     * {@link #execute(OctaneHttpRequest)} would throw
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return a future that is completed with the response
+     */
+    default CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest) {
+        return CompletableFuture.supplyAsync(() -> execute(octaneHttpRequest));
+    }
+
+    /**
+     * Executes the request without blocking the calling thread, using the given executor for any blocking work.
+     * <br>
+     * The default implementation runs {@link #execute(OctaneHttpRequest)} on the executor.  Implementations backed by a
+     * non-blocking transport do not need the executor to send the request and can ignore it
+     *
+     * @param octaneHttpRequest the request to execute
+     * @param executor          executor used to run blocking work
+     * @return a future that is completed with the response
+     */
+    default CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> execute(octaneHttpRequest), executor);
+    }
 }
@@ -13,7 +13,11 @@
  */
 package com.hpe.adm.nga.sdk.network;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
@@ -31,6 +35,18 @@ public abstract class OctaneHttpRequest {
         POST_BINARY
     }
 
+    /**
+     * Writes the content of a request straight into the outgoing stream when the request is sent, so that the content
+     * does not have to be held in memory as a string.  The content is written UTF-8 encoded.
+     * <br>
+     * The writer can be called more than once, for example when the request is retried, and must write the same content
+     * every time
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
     public static final String JSON_CONTENT_TYPE = "application/json";
     public static final String OCTET_STREAM_CONTENT_TYPE = "application/octet-stream";
 
@@ -98,19 +114,62 @@ public abstract class OctaneHttpRequest {
     private static abstract class HasContentOctaneHttpRequest<F extends HasContentOctaneHttpRequest> extends HasAcceptOctaneHttpRequest<F> {
         private final String contentType;
         private final String content;
+        private final ContentWriter contentWriter;
 
         private HasContentOctaneHttpRequest(final String url, OctaneRequestMethod octaneRequestMethod, String contentType, String content) {
             super(url, octaneRequestMethod);
             this.contentType = contentType;
             this.content = content;
+            this.contentWriter = null;
+        }
+
+        private HasContentOctaneHttpRequest(final String url, OctaneRequestMethod octaneRequestMethod, String contentType, ContentWriter contentWriter) {
+            super(url, octaneRequestMethod);
+            this.contentType = contentType;
+            this.content = null;
+            this.contentWriter = contentWriter;
         }
 
         public final String getContentType() {
             return contentType;
         }
 
+        /**
+         * @return the content.  Content that is written by a {@link ContentWriter} is written into a new string, use
+         * {@link #writeContent(OutputStream)} to avoid that
+         */
         public final String getContent() {
-            return content;
+            if (contentWriter == null) {
+                return content;
+            }
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try {
+                contentWriter.writeTo(outputStream);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return whether the content is written by a {@link ContentWriter} when the request is sent
+         */
+        public final boolean hasContentWriter() {
+            return contentWriter != null;
+        }
+
+        /**
+         * Writes the content UTF-8 encoded to the stream
+         *
+         * @param outputStream the stream the content is written to, it is not closed
+         * @throws IOException if writing to the stream fails
+         */
+        public final void writeContent(OutputStream outputStream) throws IOException {
+            if (contentWriter != null) {
+                contentWriter.writeTo(outputStream);
+            } else if (content != null) {
+                outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+            }
         }
     }
 
@@ -118,12 +177,20 @@ public abstract class OctaneHttpRequest {
         public PutOctaneHttpRequest(final String url, String contentType, String content) {
             super(url, OctaneRequestMethod.PUT, contentType, content);
         }
+
+        public PutOctaneHttpRequest(final String url, String contentType, ContentWriter contentWriter) {
+            super(url, OctaneRequestMethod.PUT, contentType, contentWriter);
+        }
     }
 
     public static class PostOctaneHttpRequest extends HasContentOctaneHttpRequest<PostOctaneHttpRequest> {
         public PostOctaneHttpRequest(final String url, String contentType, String content) {
             super(url, OctaneRequestMethod.POST, contentType, content);
         }
+
+        public PostOctaneHttpRequest(final String url, String contentType, ContentWriter contentWriter) {
+            super(url, OctaneRequestMethod.POST, contentType, contentWriter);
+        }
     }
 
     public static class PostBinaryOctaneHttpRequest extends HasContentOctaneHttpRequest<PostBinaryOctaneHttpRequest> {
@@ -32,7 +32,9 @@ import java.nio.charset.Charset;
 public class OctaneHttpResponse {
 
     private final int statusCode;
-    private final byte[] content;
+    private byte[] content;
+    // content of a streamed response that has not been read yet
+    private InputStream contentStream;
 
     private static final Logger logger = LoggerFactory.getLogger(OctaneHttpResponse.class.getName());
     private final Charset responseCharset;
@@ -40,13 +42,76 @@ public class OctaneHttpResponse {
     public OctaneHttpResponse(int statusCode, InputStream inputStream, Charset responseCharset) {
         this.statusCode = statusCode;
         this.responseCharset = responseCharset;
-        final ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            IOUtils.copy(inputStream, out);
-        } catch (IOException e) {
-            logger.error("Cannot create output stream", e);
+        content = readContent(inputStream);
+    }
+
+    /**
+     * Creates a response from content that has already been read
+     *
+     * @param statusCode      HTTP status code
+     * @param content         the complete content of the response, not copied
+     * @param responseCharset the charset used to decode the content
+     */
+    public OctaneHttpResponse(int statusCode, byte[] content, Charset responseCharset) {
+        this.statusCode = statusCode;
+        this.responseCharset = responseCharset;
+        this.content = content;
+    }
+
+    private OctaneHttpResponse(int statusCode, Charset responseCharset, InputStream contentStream) {
+        this.statusCode = statusCode;
+        this.responseCharset = responseCharset;
+        this.contentStream = contentStream;
+    }
+
+    /**
+     * Creates a response whose content is read from the stream only when it is needed.
+     * <br>
+     * The first call to {@link #getInputStream()} returns the stream itself, so that the content can be parsed while it
+     * is received without being copied into memory.  After that the content cannot be read again.  Any other method
+     * that needs the content reads the rest of the stream into memory and closes it
+     *
+     * @param statusCode      HTTP status code
+     * @param inputStream     the content of the response, null for no content
+     * @param responseCharset the charset used to decode the content
+     * @return the response
+     */
+    public static OctaneHttpResponse streamed(int statusCode, InputStream inputStream, Charset responseCharset) {
+        return new OctaneHttpResponse(statusCode, responseCharset, inputStream == null ? new ByteArrayInputStream(new byte[0]) : inputStream);
+    }
+
+    /**
+     * @return - the HTTP status code of the response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return - the charset used to decode the content
+     */
+    public Charset getResponseCharset() {
+        return responseCharset;
+    }
+
+    /**
+     * Returns the raw content of the response.  This is not a copy and must not be modified
+     *
+     * @return - the content bytes
+     */
+    public synchronized byte[] getContentBytes() {
+        if (content == null) {
+            if (contentStream == null) {
+                throw new IllegalStateException("The streamed content of the response has already been read");
+            }
+            try (InputStream inputStream = contentStream) {
+                contentStream = null;
+                content = readContent(inputStream);
+            } catch (IOException e) {
+                logger.error("Cannot close input stream", e);
+            }
         }
-        content = out.toByteArray();
+        return content;
     }
 
     /**
@@ -65,7 +130,7 @@ public class OctaneHttpResponse {
      * @return - parsed string or "" for no content
      */
     public String getContent() {
-        return new String(content, responseCharset);
+        return new String(getContentBytes(), responseCharset);
     }
 
     /**
@@ -73,10 +138,28 @@ public class OctaneHttpResponse {
      * The result is cached, so subsequent calls will be fast.
      * Callers should call InputStream.close() after the returned InputStream is no longer needed.
      * disconnect() does not have to be called if the content is closed.
+     * <br>
+     * For a {@link #streamed(int, InputStream, Charset)} response that has not been read yet this is the stream of the
+     * connection, which can only be read once.
      *
      * @return - input stream content of the HTTP response or null for none
      */
-    public InputStream getInputStream() {
-        return new ByteArrayInputStream(content);
+    public synchronized InputStream getInputStream() {
+        if (content == null && contentStream != null) {
+            final InputStream inputStream = contentStream;
+            contentStream = null;
+            return inputStream;
+        }
+        return new ByteArrayInputStream(getContentBytes());
+    }
+
+    private static byte[] readContent(InputStream inputStream) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            IOUtils.copy(inputStream, out);
+        } catch (IOException e) {
+            logger.error("Cannot create output stream", e);
+        }
+        return out.toByteArray();
     }
 }
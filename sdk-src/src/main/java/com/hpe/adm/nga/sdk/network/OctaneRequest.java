@@ -15,12 +15,24 @@ package com.hpe.adm.nga.sdk.network;
 
 import com.hpe.adm.nga.sdk.entities.OctaneCollection;
 import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntitySchema;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
 import com.hpe.adm.nga.sdk.model.ModelParser;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import com.hpe.adm.nga.sdk.model.ReferenceWriteMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
 /**
  * An abstract representation of a request
  */
@@ -30,9 +42,14 @@ public final class OctaneRequest {
 
     private final OctaneUrl octaneUrl;
     protected final OctaneHttpClient octaneHttpClient;
+    private EntitySchema entitySchema;
+    private EntityStorageMode entityStorageMode = EntityStorageMode.STANDARD;
+    private ReferenceWriteMode referenceWriteMode = ReferenceWriteMode.MINIMAL;
 
     // constant
     private static final String LOGGER_RESPONSE_JSON_FORMAT = "Response_Json: %s";
+    private static final String LOGGER_TRUNCATED_RESPONSE_JSON_FORMAT = "Response_Json: %s... (%d bytes)";
+    private static final int LOGGED_CONTENT_MAX_BYTES = 4096;
 
     public OctaneRequest(final OctaneHttpClient octaneHttpClient, final String urlDomain) {
         octaneUrl = new OctaneUrl(urlDomain);
@@ -44,6 +61,20 @@ public final class OctaneRequest {
         octaneUrl.addPaths(entityId);
     }
 
+    /**
+     * Creates a copy of the request with its own {@link OctaneUrl} so that the parameters of the copy can be changed
+     * without affecting the original request
+     *
+     * @param octaneRequest the request to copy
+     */
+    public OctaneRequest(final OctaneRequest octaneRequest) {
+        octaneUrl = new OctaneUrl(octaneRequest.octaneUrl);
+        this.octaneHttpClient = octaneRequest.octaneHttpClient;
+        this.entitySchema = octaneRequest.entitySchema;
+        this.entityStorageMode = octaneRequest.entityStorageMode;
+        this.referenceWriteMode = octaneRequest.referenceWriteMode;
+    }
+
     public final OctaneUrl getOctaneUrl() {
         return octaneUrl;
     }
@@ -52,27 +83,67 @@ public final class OctaneRequest {
         return octaneUrl.toString();
     }
 
+    public final EntitySchema getEntitySchema() {
+        return entitySchema;
+    }
+
     /**
-     * get entities result based on Http Request
+     * Sets the declared types of the fields that are used to decode the entities of the response
      *
-     * @param octaneHttpRequest - http request
-     * @return entities ased on Http Request
+     * @param entitySchema the schema or null to guess the types of the fields from their values
      */
-    public final OctaneCollection<EntityModel> getEntitiesResponse(OctaneHttpRequest octaneHttpRequest) {
+    public final void setEntitySchema(EntitySchema entitySchema) {
+        this.entitySchema = entitySchema;
+    }
 
-        OctaneCollection<EntityModel> newEntityModels = null;
+    public final EntityStorageMode getEntityStorageMode() {
+        return entityStorageMode;
+    }
 
-        OctaneHttpResponse response = octaneHttpClient.execute(octaneHttpRequest);
+    /**
+     * Sets how the fields of the entities of the response are stored in memory
+     *
+     * @param entityStorageMode the storage mode, see {@link EntityStorageMode}
+     */
+    public final void setEntityStorageMode(EntityStorageMode entityStorageMode) {
+        this.entityStorageMode = entityStorageMode == null ? EntityStorageMode.STANDARD : entityStorageMode;
+    }
 
-        String json = response.getContent();
-        logger.debug(String.format(LOGGER_RESPONSE_JSON_FORMAT, json));
+    public final ReferenceWriteMode getReferenceWriteMode() {
+        return referenceWriteMode;
+    }
 
-        if (response.isSuccessStatusCode() && json != null && !json.isEmpty()) {
-            newEntityModels = ModelParser.getInstance().getEntities(json);
+    /**
+     * Sets how the referenced entities of the entities that are sent with the request are written
+     *
+     * @param referenceWriteMode the write mode, see {@link ReferenceWriteMode}
+     */
+    public final void setReferenceWriteMode(ReferenceWriteMode referenceWriteMode) {
+        this.referenceWriteMode = referenceWriteMode == null ? ReferenceWriteMode.MINIMAL : referenceWriteMode;
+    }
 
-        }
+    /**
+     * get entities result based on Http Request
+     *
+     * @param octaneHttpRequest - http request
+     * @return entities ased on Http Request
+     */
+    public final OctaneCollection<EntityModel> getEntitiesResponse(OctaneHttpRequest octaneHttpRequest) {
+        return parseEntitiesResponse(octaneHttpClient.executeStreaming(octaneHttpRequest));
+    }
 
-        return newEntityModels;
+    /**
+     * get entities result based on Http Request without blocking the calling thread
+     *
+     * @param octaneHttpRequest - http request
+     * @param executor          - executor used for blocking work and parsing, if null the http client decides where the
+     *                          work is done
+     * @return future of the entities based on Http Request
+     */
+    public final CompletableFuture<OctaneCollection<EntityModel>> getEntitiesResponseAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return executor == null
+                ? octaneHttpClient.executeStreamingAsync(octaneHttpRequest).thenApply(this::parseEntitiesResponse)
+                : octaneHttpClient.executeStreamingAsync(octaneHttpRequest, executor).thenApplyAsync(this::parseEntitiesResponse, executor);
     }
 
     /**
@@ -82,22 +153,100 @@ public final class OctaneRequest {
      * @return EntityModel
      */
     public EntityModel getEntityResponse(OctaneHttpRequest octaneHttpRequest) {
+        return parseEntityResponse(octaneHttpClient.executeStreaming(octaneHttpRequest));
+    }
 
-        EntityModel newEntityModel = null;
+    /**
+     * get entity result based on Http Request without blocking the calling thread
+     *
+     * @param octaneHttpRequest the request object
+     * @param executor          executor used for blocking work and parsing, if null the http client decides where the
+     *                          work is done
+     * @return future of the EntityModel
+     */
+    public CompletableFuture<EntityModel> getEntityResponseAsync(OctaneHttpRequest octaneHttpRequest, Executor executor) {
+        return executor == null
+                ? octaneHttpClient.executeStreamingAsync(octaneHttpRequest).thenApply(this::parseEntityResponse)
+                : octaneHttpClient.executeStreamingAsync(octaneHttpRequest, executor).thenApplyAsync(this::parseEntityResponse, executor);
+    }
 
-        OctaneHttpResponse response = octaneHttpClient.execute(octaneHttpRequest);
+    private OctaneCollection<EntityModel> parseEntitiesResponse(OctaneHttpResponse response) {
+        return parseResponse(response, (inputStream, charset) -> ModelParser.getInstance().getEntities(inputStream, charset, entitySchema, entityStorageMode));
+    }
 
-        String json = response.getContent();
-        logger.debug(String.format(LOGGER_RESPONSE_JSON_FORMAT, json));
-        if (response.isSuccessStatusCode() && (json != null && !json.isEmpty())) {
+    private EntityModel parseEntityResponse(OctaneHttpResponse response) {
+        return parseResponse(response, (inputStream, charset) -> ModelParser.getInstance().getEntityModel(inputStream, charset, entitySchema));
+    }
 
-            JSONTokener tokener = new JSONTokener(json);
-            JSONObject jsonObj = new JSONObject(tokener);
-            newEntityModel = ModelParser.getInstance().getEntityModel(jsonObj);
+    /**
+     * Parses the json content of a successful response straight from its stream, so that a streamed response is never
+     * held in memory as a whole.  When debug logging is enabled the first bytes of the content are captured while it is
+     * parsed and logged afterwards
+     *
+     * @return the parsed content or null if the response was not successful or has no content
+     */
+    private <T> T parseResponse(OctaneHttpResponse response, BiFunction<InputStream, Charset, T> parser) {
+        final LoggedInputStream loggedInputStream = logger.isDebugEnabled() ? new LoggedInputStream(response.getInputStream()) : null;
+        try (PushbackInputStream inputStream = new PushbackInputStream(loggedInputStream == null ? response.getInputStream() : loggedInputStream)) {
+            if (!response.isSuccessStatusCode()) {
+                return null;
+            }
+            final int firstByte = inputStream.read();
+            if (firstByte == -1) {
+                return null;
+            }
+            inputStream.unread(firstByte);
+            return parser.apply(inputStream, response.getResponseCharset());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (loggedInputStream != null) {
+                loggedInputStream.log(response.getResponseCharset());
+            }
+        }
+    }
+
+    /**
+     * Keeps a copy of the first {@link #LOGGED_CONTENT_MAX_BYTES} bytes that are read and counts the rest
+     */
+    private final class LoggedInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        private long byteCount = 0;
+
+        private LoggedInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read != -1) {
+                capture(new byte[]{(byte) read}, 0, 1);
+            }
+            return read;
         }
 
-        return newEntityModel;
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                capture(buffer, offset, read);
+            }
+            return read;
+        }
 
+        private void capture(byte[] buffer, int offset, int length) {
+            final int captured = (int) Math.min(length, Math.max(0, LOGGED_CONTENT_MAX_BYTES - byteCount));
+            prefix.write(buffer, offset, captured);
+            byteCount += length;
+        }
+
+        private void log(Charset charset) {
+            final String content = new String(prefix.toByteArray(), charset == null ? StandardCharsets.UTF_8 : charset);
+            logger.debug(byteCount > LOGGED_CONTENT_MAX_BYTES
+                    ? String.format(LOGGER_TRUNCATED_RESPONSE_JSON_FORMAT, content, byteCount)
+                    : String.format(LOGGER_RESPONSE_JSON_FORMAT, content));
+        }
     }
 
 }
\ No newline at end of file
@@ -32,6 +32,11 @@ public final class OctaneUrl {
 
     private static final String PATH_SEPARATOR = "/";
 
+    /**
+     * The default maximum length of an encoded url, the requests whose query would make the url longer are split
+     */
+    public static final int DEFAULT_MAX_LENGTH = 4096;
+
     private String baseUrl;
     private Map<String, String> queryParams = new HashMap<>();
     private List<String> paths = new ArrayList<>();
@@ -44,6 +49,16 @@ public final class OctaneUrl {
         this.baseUrl = baseUrl;
     }
 
+    /**
+     * Create a copy of the url, changes made to the copy do not affect the original
+     * @param octaneUrl the url to copy
+     */
+    OctaneUrl(OctaneUrl octaneUrl){
+        this.baseUrl = octaneUrl.baseUrl;
+        this.queryParams = new HashMap<>(octaneUrl.queryParams);
+        this.paths = new ArrayList<>(octaneUrl.paths);
+    }
+
     /**
      * Add a path or more paths to the url, paths are concatenated into the final url
      * @param paths string or a list of strings representing the path from the base url
@@ -139,6 +154,45 @@ public final class OctaneUrl {
         setParam(OctaneUrl.QUERY_PARAM_NAME, '"' + query.getQueryString() + '"');
     }
 
+    /**
+     * The maximum encoded length of a query set with {@link #setDqlQueryParam(Query)} for which the url is not longer
+     * than the given length
+     * @param maxLength the maximum length of the encoded url
+     * @return the maximum encoded length of the query, negative if the url is too long even with an empty query
+     */
+    public int getMaxQueryLength(int maxLength) {
+        final OctaneUrl emptyQueryUrl = new OctaneUrl(this);
+        emptyQueryUrl.setParam(QUERY_PARAM_NAME, "\"\"");
+        return maxLength - encodedLength(emptyQueryUrl.toString());
+    }
+
+    /**
+     * The length of a string once it is percent encoded in a url.  Every character other than the unreserved characters
+     * of RFC 3986 is counted as encoded, so the length is an upper bound
+     * @param value the string to measure
+     * @return the encoded length
+     */
+    public static int encodedLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~') {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c)) {
+                // the pair is encoded as four bytes
+                length += 12;
+                i++;
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+
     /**
      * Concatenate the query params for the url builder
      * @return String of form: queryParamName1=queryParamValue1&queryParamName2=queryParamValue2
@@ -0,0 +1,88 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+/**
+ * An immutable snapshot of the statistics of a {@link ResponseCache}
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expiredCount;
+    private final long entryCount;
+    private final long weight;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long expiredCount, long entryCount, long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expiredCount = expiredCount;
+        this.entryCount = entryCount;
+        this.weight = weight;
+    }
+
+    /**
+     * @return number of lookups that found a valid response
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups that did not find a valid response, including expired ones
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of responses that were removed to keep the cache within its size
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of responses that were removed because they outlived their time to live
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * @return number of responses currently cached
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return approximate number of bytes used by the cached responses
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", expiredCount=" + expiredCount +
+                ", entryCount=" + entryCount +
+                ", weight=" + weight + "}";
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+
+import java.nio.charset.Charset;
+
+/**
+ * An immutable cached response together with its ETag and the time it was last known to be valid
+ */
+public final class CachedResponse {
+
+    /**
+     * Estimate of the memory used by an entry besides its content and strings
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final String eTag;
+    private final int statusCode;
+    private final byte[] content;
+    private final Charset charset;
+    private final long validatedAtMillis;
+
+    /**
+     * @param eTag              the ETag returned by the server
+     * @param statusCode        the status code of the response
+     * @param content           the content of the response, not copied
+     * @param charset           the charset of the content
+     * @param validatedAtMillis the time the response was received or last revalidated
+     */
+    public CachedResponse(String eTag, int statusCode, byte[] content, Charset charset, long validatedAtMillis) {
+        this.eTag = eTag;
+        this.statusCode = statusCode;
+        this.content = content;
+        this.charset = charset;
+        this.validatedAtMillis = validatedAtMillis;
+    }
+
+    /**
+     * Creates a cached response from a response that has just been received
+     *
+     * @param eTag     the ETag returned by the server
+     * @param response the response
+     * @return the cached response
+     */
+    public static CachedResponse of(String eTag, OctaneHttpResponse response) {
+        return new CachedResponse(eTag, response.getStatusCode(), response.getContentBytes(), response.getResponseCharset(), System.currentTimeMillis());
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the content, this is not a copy and must not be modified
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public long getValidatedAtMillis() {
+        return validatedAtMillis;
+    }
+
+    /**
+     * @return approximate number of bytes of memory used by this response
+     */
+    public long getWeight() {
+        return content.length + 2L * eTag.length() + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * @return a copy of this response marked as valid now, used when the server answered 304 Not Modified
+     */
+    public CachedResponse revalidated() {
+        return new CachedResponse(eTag, statusCode, content, charset, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the response to return to the caller
+     */
+    public OctaneHttpResponse toOctaneHttpResponse() {
+        return new OctaneHttpResponse(statusCode, content, charset);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings request urls into a canonical form so that urls that only differ by the order of their query parameters or by
+ * the way they are percent encoded share one cache entry.
+ * <br>
+ * The scheme and host are lower cased, the query parameters are sorted by name (parameters with the same name keep their
+ * order) and every name and value is decoded and encoded again, escaping everything except the unreserved characters.
+ * A url that cannot be decoded is used as it is
+ */
+final class CanonicalUrl {
+
+    private static final String HEX_DIGITS = "0123456789ABCDEF";
+
+    private CanonicalUrl() {
+    }
+
+    static String of(String url) {
+        final int queryStart = url.indexOf('?');
+        final int fragmentStart = url.indexOf('#');
+        final int queryEnd = fragmentStart < 0 ? url.length() : fragmentStart;
+        if (queryStart < 0 || queryStart > queryEnd) {
+            return normalizeAuthority(url.substring(0, queryEnd));
+        }
+
+        final List<String[]> parameters = new ArrayList<>();
+        for (String parameter : url.substring(queryStart + 1, queryEnd).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            final int separator = parameter.indexOf('=');
+            final String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            final String value = separator < 0 ? null : parameter.substring(separator + 1);
+            final String decodedName = decode(name);
+            final String decodedValue = value == null ? null : decode(value);
+            if (decodedName == null || (value != null && decodedValue == null)) {
+                return url;
+            }
+            parameters.add(new String[]{decodedName, decodedValue});
+        }
+        parameters.sort(Comparator.comparing(parameter -> parameter[0]));
+
+        final StringBuilder canonical = new StringBuilder(normalizeAuthority(url.substring(0, queryStart)));
+        char separator = '?';
+        for (String[] parameter : parameters) {
+            canonical.append(separator);
+            encode(parameter[0], canonical);
+            if (parameter[1] != null) {
+                canonical.append('=');
+                encode(parameter[1], canonical);
+            }
+            separator = '&';
+        }
+        return canonical.toString();
+    }
+
+    private static String normalizeAuthority(String url) {
+        final int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return url;
+        }
+        final int pathStart = url.indexOf('/', schemeEnd + 3);
+        final int authorityEnd = pathStart < 0 ? url.length() : pathStart;
+        return url.substring(0, authorityEnd).toLowerCase(Locale.ROOT) + url.substring(authorityEnd);
+    }
+
+    /**
+     * Decodes the percent escapes, a '+' is kept as it is since Octane urls encode spaces as %20
+     *
+     * @return the decoded string or null if an escape is invalid
+     */
+    private static String decode(String encoded) {
+        if (encoded.indexOf('%') < 0) {
+            return encoded;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(encoded.length());
+        for (int i = 0; i < encoded.length(); i++) {
+            final char c = encoded.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= encoded.length()) {
+                    return null;
+                }
+                final int high = Character.digit(encoded.charAt(i + 1), 16);
+                final int low = Character.digit(encoded.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes.write(high << 4 | low);
+                i += 2;
+            } else {
+                final int codePoint = encoded.codePointAt(i);
+                final byte[] charBytes = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+                bytes.write(charBytes, 0, charBytes.length);
+                i += Character.charCount(codePoint) - 1;
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void encode(String decoded, StringBuilder target) {
+        for (byte b : decoded.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~') {
+                target.append(c);
+            } else {
+                target.append('%').append(HEX_DIGITS.charAt(c >> 4)).append(HEX_DIGITS.charAt(c & 0xF));
+            }
+        }
+    }
+}
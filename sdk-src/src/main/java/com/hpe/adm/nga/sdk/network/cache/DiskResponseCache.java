@@ -0,0 +1,534 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link ResponseCache} that stores the responses on disk so that they survive a restart of the process.
+ * <br>
+ * Responses are appended to fixed size, memory-mapped segment files in the given directory.  The index from the key
+ * (canonical url plus accept type) to the position of the response is kept in memory and rebuilt by scanning the segments
+ * when the cache is opened; a later record of the same key replaces an earlier one.  Every record carries a checksum so
+ * that a record that was only partly written when the process stopped is ignored.
+ * <br>
+ * When all segments are full the oldest segment is deleted together with the responses it contains.  Responses on disk do
+ * not expire by time: they are only returned to be revalidated with their ETag, so the server decides whether they are
+ * still current.
+ * <br>
+ * The writes are not forced to the storage device one by one: a segment is forced once it is full, on {@link #flush()}
+ * and on {@link #close()}.  The written pages are kept by the operating system, so the responses survive a crash of the
+ * process.  A crash of the machine may lose the latest responses, and the records that were only partly written are
+ * ignored thanks to their checksum.
+ * <br>
+ * The cache is thread safe.  The content of a response is copied out of its segment without holding the lock of the
+ * cache.  Only one instance (and one process) should use a directory at a time.  It is usually combined with an in memory
+ * cache using {@link TieredResponseCache}
+ */
+public class DiskResponseCache implements ResponseCache, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskResponseCache.class.getName());
+
+    /**
+     * The size of a segment file used by the default constructor: 16MB
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The maximum number of segment files used by the default constructor
+     */
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".cache";
+    private static final int RECORD_MAGIC = 0x4F435243;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int TOMBSTONE_CONTENT_LENGTH = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private long weight = 0;
+
+    /**
+     * Opens the cache in the directory with {@link #DEFAULT_SEGMENT_SIZE} and {@link #DEFAULT_MAX_SEGMENTS}
+     *
+     * @param directory directory of the segment files, created if it does not exist
+     */
+    public DiskResponseCache(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Opens the cache in the directory, loading the responses that were stored by a previous instance
+     *
+     * @param directory   directory of the segment files, created if it does not exist
+     * @param segmentSize size in bytes of each segment file, responses larger than a segment are not cached
+     * @param maxSegments maximum number of segment files, the disk usage is bounded by segmentSize * maxSegments
+     */
+    public DiskResponseCache(Path directory, int segmentSize, int maxSegments) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small");
+        }
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public CachedResponse get(String key) {
+        final Location location;
+        synchronized (this) {
+            location = index.get(key);
+            if (location == null || !location.segment.acquire()) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        // the segment cannot be unmapped while it is acquired, even if it is evicted meanwhile
+        try {
+            final byte[] content = new byte[location.contentLength];
+            final ByteBuffer buffer = location.segment.buffer.duplicate();
+            buffer.position(location.contentOffset);
+            buffer.get(content);
+            return new CachedResponse(location.eTag, location.statusCode, content, location.charset, location.validatedAtMillis);
+        } finally {
+            location.segment.release();
+        }
+    }
+
+    @Override
+    public void put(String key, CachedResponse response) {
+        final Segment full;
+        synchronized (this) {
+            final Location existing = index.get(key);
+            // a revalidated response only differs by its timestamp, which is not used on disk
+            if (existing != null && existing.eTag.equals(response.getETag()) && existing.contentLength == response.getContent().length) {
+                return;
+            }
+            try {
+                full = append(key, response);
+            } catch (IOException e) {
+                logger.warn("Failed to write response to the disk cache", e);
+                return;
+            }
+        }
+        force(full);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        final Segment full;
+        synchronized (this) {
+            if (!index.containsKey(key)) {
+                return;
+            }
+            try {
+                full = append(key, null);
+            } catch (IOException e) {
+                logger.warn("Failed to write to the disk cache", e);
+                return;
+            }
+        }
+        force(full);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        while (!segments.isEmpty()) {
+            deleteSegment(segments.pollFirst());
+        }
+        index.clear();
+        weight = 0;
+    }
+
+    @Override
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hitCount, missCount, evictionCount, 0, index.size(), weight);
+    }
+
+    /**
+     * Forces the responses that were written since the last flush to the storage device, so that they survive a crash
+     * of the machine
+     */
+    public void flush() {
+        final Segment newest;
+        synchronized (this) {
+            newest = segments.peekLast();
+        }
+        force(newest);
+    }
+
+    /**
+     * Forces and closes the segment files, the content of the cache stays on disk
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.retire(false);
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private void load() throws IOException {
+        final List<Path> segmentFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_SUFFIX)) {
+            stream.forEach(segmentFiles::add);
+        }
+        segmentFiles.sort(null);
+        for (Path segmentFile : segmentFiles) {
+            final long segmentId;
+            try {
+                final String fileName = segmentFile.getFileName().toString();
+                segmentId = Long.parseLong(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (Files.size(segmentFile) != segmentSize) {
+                // written with a different segment size, cannot be reused
+                Files.delete(segmentFile);
+                continue;
+            }
+            final Segment segment = new Segment(segmentId, segmentFile);
+            segments.addLast(segment);
+            scan(segment);
+        }
+        while (segments.size() > maxSegments) {
+            evictOldestSegment();
+        }
+    }
+
+    /**
+     * Reads the records of the segment into the index, stopping at the first record that is missing or corrupt
+     */
+    private void scan(Segment segment) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            buffer.position(position);
+            final int magic = buffer.getInt();
+            final int payloadLength = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (magic != RECORD_MAGIC || payloadLength <= 0 || position + RECORD_HEADER_SIZE + payloadLength > segmentSize) {
+                break;
+            }
+            final byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            indexRecord(segment, position + RECORD_HEADER_SIZE, ByteBuffer.wrap(payload));
+            position += RECORD_HEADER_SIZE + payloadLength;
+        }
+        segment.writePosition = position;
+    }
+
+    private void indexRecord(Segment segment, int payloadOffset, ByteBuffer payload) {
+        final String key = readString(payload);
+        final String eTag = readString(payload);
+        final String charsetName = readString(payload);
+        final int statusCode = payload.getInt();
+        final long validatedAtMillis = payload.getLong();
+        final int contentLength = payload.getInt();
+
+        removeFromIndex(key);
+        if (contentLength != TOMBSTONE_CONTENT_LENGTH) {
+            final Charset charset = charsetName.isEmpty() ? null : Charset.forName(charsetName);
+            final Location location = new Location(segment, payloadOffset + payload.position(), contentLength, eTag, charset, statusCode, validatedAtMillis);
+            index.put(key, location);
+            weight += contentLength;
+        }
+    }
+
+    /**
+     * Appends the record to the newest segment, or to a new segment if the newest one is full
+     *
+     * @return the segment that became full, to be forced outside of the lock, or null if the record fit in the newest
+     * segment or is too large to be stored
+     */
+    private Segment append(String key, CachedResponse response) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] eTagBytes = response == null ? new byte[0] : response.getETag().getBytes(StandardCharsets.UTF_8);
+        final byte[] charsetBytes = response == null || response.getCharset() == null ? new byte[0] : response.getCharset().name().getBytes(StandardCharsets.UTF_8);
+        final byte[] content = response == null ? new byte[0] : response.getContent();
+
+        final int payloadLength = 4 + keyBytes.length + 4 + eTagBytes.length + 4 + charsetBytes.length + 4 + 8 + 4 + content.length;
+        if (RECORD_HEADER_SIZE + payloadLength > segmentSize) {
+            removeFromIndex(key);
+            return null;
+        }
+
+        final ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.putInt(keyBytes.length).put(keyBytes);
+        payload.putInt(eTagBytes.length).put(eTagBytes);
+        payload.putInt(charsetBytes.length).put(charsetBytes);
+        payload.putInt(response == null ? 0 : response.getStatusCode());
+        payload.putLong(response == null ? 0 : response.getValidatedAtMillis());
+        payload.putInt(response == null ? TOMBSTONE_CONTENT_LENGTH : content.length);
+        payload.put(content);
+
+        Segment segment = segments.peekLast();
+        Segment full = null;
+        if (segment == null || segment.writePosition + RECORD_HEADER_SIZE + payloadLength > segmentSize) {
+            full = segment;
+            segment = newSegment();
+        }
+
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(segment.writePosition);
+        buffer.putInt(RECORD_MAGIC).putInt(payloadLength).putInt(checksum(payload.array()));
+        buffer.put(payload.array());
+
+        final int payloadOffset = segment.writePosition + RECORD_HEADER_SIZE;
+        segment.writePosition += RECORD_HEADER_SIZE + payloadLength;
+        payload.rewind();
+        indexRecord(segment, payloadOffset, payload);
+        return full;
+    }
+
+    /**
+     * Writes the modified pages of the segment to the storage device.  Runs outside of the lock of the cache, a segment
+     * that has been deleted or closed meanwhile is skipped
+     */
+    private static void force(Segment segment) {
+        if (segment != null && segment.acquire()) {
+            try {
+                segment.buffer.force();
+            } finally {
+                segment.release();
+            }
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        final long segmentId = segments.isEmpty() ? 1 : segments.peekLast().id + 1;
+        final Path segmentFile = directory.resolve(String.format("%s%012d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+        Files.deleteIfExists(segmentFile);
+        final Segment segment = new Segment(segmentId, segmentFile);
+        segments.addLast(segment);
+        while (segments.size() > maxSegments) {
+            evictOldestSegment();
+        }
+        return segment;
+    }
+
+    private void evictOldestSegment() {
+        final Segment oldest = segments.pollFirst();
+        index.entrySet().removeIf(entry -> {
+            if (entry.getValue().segment == oldest) {
+                weight -= entry.getValue().contentLength;
+                evictionCount++;
+                return true;
+            }
+            return false;
+        });
+        deleteSegment(oldest);
+    }
+
+    private void deleteSegment(Segment segment) {
+        segment.retire(true);
+    }
+
+    private void removeFromIndex(String key) {
+        final Location removed = index.remove(key);
+        if (removed != null) {
+            weight -= removed.contentLength;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] payload) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * Tries to release the mapping of the buffer right away instead of when it is garbage collected.  This is best effort
+     * and only used when a segment file cannot be deleted while it is mapped, as on Windows: the JDK has no public api
+     * for it, so the cleaner is invoked through {@code sun.misc.Unsafe} on Java 9 and later and through the buffer itself
+     * on Java 8.  Any failure is ignored and the mapping is left to the garbage collector
+     *
+     * @return true if the buffer was unmapped
+     */
+    private static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            logger.debug("Could not unmap disk cache segment, it is unmapped once it is garbage collected", e);
+            return false;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     * <br>
+     * The segment is reference counted: the cache holds one reference until the segment is retired and every read or
+     * force holds one while it accesses the buffer.  The file is closed, and deleted if requested, when the last
+     * reference is released, so that a reader never accesses a buffer that may have been unmapped to delete its file
+     */
+    private final class Segment {
+        private final long id;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile boolean deleteOnRelease = false;
+        private int writePosition = 0;
+
+        private Segment(long id, Path file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        /**
+         * @return true if the buffer can be accessed until {@link #release()} is called, false if the segment was retired
+         */
+        private boolean acquire() {
+            while (true) {
+                final int current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                close();
+            }
+        }
+
+        /**
+         * Drops the reference of the cache, the segment is closed once the last reader has released it
+         *
+         * @param delete whether the file is deleted once the segment has been closed
+         */
+        private void retire(boolean delete) {
+            deleteOnRelease = delete;
+            release();
+        }
+
+        private void close() {
+            try {
+                if (!deleteOnRelease) {
+                    buffer.force();
+                }
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close disk cache segment {}", file, e);
+            }
+            if (deleteOnRelease) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // a file cannot be deleted while it is mapped on some platforms
+                    try {
+                        if (!unmap(buffer)) {
+                            throw e;
+                        }
+                        Files.deleteIfExists(file);
+                    } catch (IOException retryException) {
+                        logger.warn("Failed to delete disk cache segment {}", file, retryException);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Where the content of a response is stored, together with the rest of the response
+     */
+    private static final class Location {
+        private final Segment segment;
+        private final int contentOffset;
+        private final int contentLength;
+        private final String eTag;
+        private final Charset charset;
+        private final int statusCode;
+        private final long validatedAtMillis;
+
+        private Location(Segment segment, int contentOffset, int contentLength, String eTag, Charset charset, int statusCode, long validatedAtMillis) {
+            this.segment = segment;
+            this.contentOffset = contentOffset;
+            this.contentLength = contentLength;
+            this.eTag = eTag;
+            this.charset = charset;
+            this.statusCode = statusCode;
+            this.validatedAtMillis = validatedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe in memory {@link ResponseCache} that is bounded by the total size of the cached content.
+ * <br>
+ * When adding a response would exceed the maximum size the responses that were not used recently are evicted.  Responses that
+ * have not been received or revalidated within the time to live are treated as missing.  Responses larger than the
+ * maximum size are not cached at all.
+ * <br>
+ * Lookups do not take a lock: the entries are kept in a {@link ConcurrentHashMap} and a hit only marks the entry as
+ * referenced.  The recency is approximated with a clock: the entries are queued in the order they were put, and when a
+ * {@link #put(String, CachedResponse) put} exceeds the maximum size the eldest entries are taken from the queue, a
+ * referenced one gets a second chance at the end of the queue and the others are evicted.  An eviction does constant
+ * work on average and its cost is paid by the writers
+ */
+public class LruResponseCache implements ResponseCache {
+
+    /**
+     * The maximum size used by the default constructor: 32MB
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * The time to live used by the default constructor: 1 hour
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+
+    private final long maxBytes;
+    private final long timeToLiveMillis;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // the entries in the order they were put, including the ones that were removed or replaced since
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final Object evictionLock = new Object();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_BYTES} and {@link #DEFAULT_TIME_TO_LIVE}
+     */
+    public LruResponseCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxBytes   maximum approximate number of bytes used by the cached responses
+     * @param timeToLive how long a response is kept after it was received or last revalidated
+     */
+    public LruResponseCache(long maxBytes, Duration timeToLive) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.timeToLiveMillis = timeToLive.toMillis();
+    }
+
+    @Override
+    public CachedResponse get(String key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (isExpired(entry.response)) {
+            if (remove(key, entry)) {
+                expiredCount.increment();
+            }
+            missCount.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hitCount.increment();
+        return entry.response;
+    }
+
+    @Override
+    public void put(String key, CachedResponse response) {
+        final long entryWeight = weightOf(key, response);
+        if (entryWeight > maxBytes) {
+            invalidate(key);
+            return;
+        }
+        final Entry entry = new Entry(key, response, entryWeight);
+        final Entry replaced = entries.put(key, entry);
+        weight.addAndGet(replaced == null ? entryWeight : entryWeight - replaced.weight);
+        clock.add(entry);
+        clockSize.incrementAndGet();
+        if (weight.get() > maxBytes || clockSize.get() > 2 * entries.size()) {
+            evict();
+        }
+    }
+
+    @Override
+    public void invalidate(String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight.addAndGet(-removed.weight);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        entries.keySet().forEach(this::invalidate);
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), expiredCount.sum(), entries.size(), weight.get());
+    }
+
+    /**
+     * Removes entries that were not referenced recently until the cache is within its maximum size again, and drops
+     * the entries of the clock that are no longer cached.  The clock is bounded to twice the number of entries, so that
+     * the entries removed by invalidations do not pile up in it.  Only one thread evicts at a time, the others keep
+     * reading and writing meanwhile
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            Entry entry;
+            while ((weight.get() > maxBytes || clockSize.get() > 2 * entries.size()) && (entry = clock.poll()) != null) {
+                clockSize.decrementAndGet();
+                if (entries.get(entry.key) != entry) {
+                    continue;
+                }
+                final boolean full = weight.get() > maxBytes;
+                if (!full || entry.referenced) {
+                    // a second chance, which is only used up when an entry has to be evicted
+                    entry.referenced = entry.referenced && !full;
+                    clock.add(entry);
+                    clockSize.incrementAndGet();
+                } else if (remove(entry.key, entry)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(CachedResponse response) {
+        return System.currentTimeMillis() - response.getValidatedAtMillis() > timeToLiveMillis;
+    }
+
+    /**
+     * Removes the entry only if it has not been replaced meanwhile
+     */
+    private boolean remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private static long weightOf(String key, CachedResponse response) {
+        return 2L * key.length() + response.getWeight();
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final CachedResponse response;
+        private final long weight;
+        private volatile boolean referenced = false;
+
+        private Entry(String key, CachedResponse response, long weight) {
+            this.key = key;
+            this.response = response;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+
+/**
+ * A cache of GET responses that carried an ETag.  The {@link com.hpe.adm.nga.sdk.network.OctaneHttpClient} implementations
+ * use it to send conditional requests (If-None-Match) and to answer a 304 Not Modified with the cached content.
+ * <br>
+ * Implementations must be thread safe since the same http client is used from many threads
+ *
+ * @see LruResponseCache
+ */
+public interface ResponseCache {
+
+    /**
+     * Returns the cached response for the key
+     *
+     * @param key the key, see {@link #keyOf(OctaneHttpRequest)}
+     * @return the response or null if it is not cached (or has expired)
+     */
+    CachedResponse get(String key);
+
+    /**
+     * Caches a response, replacing any response that is cached with the same key
+     *
+     * @param key      the key, see {@link #keyOf(OctaneHttpRequest)}
+     * @param response the response to cache
+     */
+    void put(String key, CachedResponse response);
+
+    /**
+     * Removes the cached response for the key if there is one
+     *
+     * @param key the key
+     */
+    void invalidate(String key);
+
+    /**
+     * Removes all cached responses
+     */
+    void invalidateAll();
+
+    /**
+     * @return a snapshot of the statistics of the cache
+     */
+    CacheStats getStats();
+
+    /**
+     * The key under which the response to a request is cached.  The content of a response depends on both the url and
+     * the accepted content type.  The url is brought into a canonical form first: the query parameters are sorted and
+     * their percent encoding is normalized
+     *
+     * @param octaneHttpRequest the GET request
+     * @return the key or null if the request is not a GET request and therefore cannot be cached
+     */
+    static String keyOf(OctaneHttpRequest octaneHttpRequest) {
+        if (!(octaneHttpRequest instanceof OctaneHttpRequest.GetOctaneHttpRequest)) {
+            return null;
+        }
+        final String acceptType = ((OctaneHttpRequest.GetOctaneHttpRequest) octaneHttpRequest).getAcceptType();
+        final String url = CanonicalUrl.of(octaneHttpRequest.getRequestUrl());
+        return acceptType == null ? url : url + " " + acceptType;
+    }
+}
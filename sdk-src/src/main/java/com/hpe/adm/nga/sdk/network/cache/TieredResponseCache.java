@@ -0,0 +1,93 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ResponseCache} made of a fast first tier, usually a {@link LruResponseCache}, backed by a larger second tier,
+ * usually a {@link DiskResponseCache}.
+ * <br>
+ * Lookups go to the second tier only when the first tier misses, a response found in the second tier is promoted into
+ * the first tier so that the next lookup does not read it again.  Responses are written to both tiers.  For example:
+ * <pre>
+ * new GoogleHttpClient(url, new TieredResponseCache(new LruResponseCache(), new DiskResponseCache(directory)))
+ * </pre>
+ */
+public class TieredResponseCache implements ResponseCache {
+
+    private final ResponseCache firstTier;
+    private final ResponseCache secondTier;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param firstTier  the cache that is looked up first
+     * @param secondTier the cache that is looked up when the first tier misses
+     */
+    public TieredResponseCache(ResponseCache firstTier, ResponseCache secondTier) {
+        this.firstTier = firstTier;
+        this.secondTier = secondTier;
+    }
+
+    @Override
+    public CachedResponse get(String key) {
+        CachedResponse response = firstTier.get(key);
+        if (response == null) {
+            response = secondTier.get(key);
+            if (response != null) {
+                firstTier.put(key, response);
+            }
+        }
+        (response == null ? missCount : hitCount).incrementAndGet();
+        return response;
+    }
+
+    @Override
+    public void put(String key, CachedResponse response) {
+        firstTier.put(key, response);
+        secondTier.put(key, response);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        firstTier.invalidate(key);
+        secondTier.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        firstTier.invalidateAll();
+        secondTier.invalidateAll();
+    }
+
+    /**
+     * @return hits and misses of the tiered cache as a whole, the rest is taken from the second tier that holds all the
+     * responses.  The statistics of each tier are available from the tiers themselves
+     */
+    @Override
+    public CacheStats getStats() {
+        final CacheStats secondTierStats = secondTier.getStats();
+        return new CacheStats(hitCount.get(), missCount.get(), secondTierStats.getEvictionCount(), secondTierStats.getExpiredCount(),
+                secondTierStats.getEntryCount(), secondTierStats.getWeight());
+    }
+
+    public ResponseCache getFirstTier() {
+        return firstTier;
+    }
+
+    public ResponseCache getSecondTier() {
+        return secondTier;
+    }
+}
@@ -17,16 +17,19 @@ import com.google.api.client.http.*;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.hpe.adm.nga.sdk.authentication.Authentication;
 import com.hpe.adm.nga.sdk.exception.OctaneException;
-import com.hpe.adm.nga.sdk.exception.OctanePartialException;
-import com.hpe.adm.nga.sdk.model.*;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
 import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
 import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
 import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.network.cache.CachedResponse;
+import com.hpe.adm.nga.sdk.network.cache.LruResponseCache;
+import com.hpe.adm.nga.sdk.network.cache.ResponseCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpCookie;
 import java.net.Proxy;
 import java.net.ProxySelector;
@@ -34,6 +37,12 @@ import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HTTP Client using Google's API
@@ -47,6 +56,7 @@ public class GoogleHttpClient implements OctaneHttpClient {
     private static final String LOGGER_RESPONSE_FORMAT = "Response: {} - {} - {}";
 
     private static final String SET_COOKIE = "set-cookie";
+    private static final String RETRY_AFTER = "Retry-After";
     private static final String HTTP_MEDIA_TYPE_MULTIPART_NAME = "multipart/form-data";
     private static final String HTTP_MULTIPART_BOUNDARY_NAME = "boundary";
     private static final String HTTP_MULTIPART_BOUNDARY_VALUE = "---------------------------92348603315617859231724135434";
@@ -55,10 +65,13 @@ public class GoogleHttpClient implements OctaneHttpClient {
     private static final String HTTP_MULTIPART_PART1_DISPOSITION_ENTITY_VALUE = "entity";
     private static final String HTTP_MULTIPART_PART2_DISPOSITION_FORMAT = "form-data; name=\"content\"; filename=\"%s\"";
 
-    private static final String ERROR_CODE_TOKEN_EXPIRED = "VALIDATION_TOKEN_EXPIRED_IDLE_TIME_OUT";
-    private static final String ERROR_CODE_GLOBAL_TOKEN_EXPIRED = "VALIDATION_TOKEN_EXPIRED_GLOBAL_TIME_OUT";
-
     private static final int HTTP_REQUEST_RETRY_COUNT = 1;
+    private static final long ASYNC_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * The default number of threads that run the requests of {@link #executeAsync(OctaneHttpRequest)}
+     */
+    public static final int DEFAULT_ASYNC_THREADS = 16;
 
     protected HttpRequestFactory requestFactory;
     protected String lwssoValue = "";
@@ -66,8 +79,8 @@ public class GoogleHttpClient implements OctaneHttpClient {
     protected final String urlDomain;
     protected Authentication lastUsedAuthentication;
     protected Date lastSuccessfulAuthTimestamp;
-    private final Map<OctaneHttpRequest, OctaneHttpResponse> cachedRequestToResponse = new HashMap<>();
-    private final Map<OctaneHttpRequest, String> requestToEtagMap = new HashMap<>();
+    private final ResponseCache responseCache;
+    private final ExecutorService asyncExecutor;
 
     /**
      * Request initializer called on every request made by the requestFactory
@@ -98,7 +111,34 @@ public class GoogleHttpClient implements OctaneHttpClient {
     };
 
     public GoogleHttpClient(final String urlDomain) {
+        this(urlDomain, new LruResponseCache());
+    }
+
+    /**
+     * Creates a client that caches GET responses that have an ETag in the given cache
+     *
+     * @param urlDomain     base url of the octane server
+     * @param responseCache cache used for conditional GET requests, null to disable caching
+     */
+    public GoogleHttpClient(final String urlDomain, final ResponseCache responseCache) {
+        this(urlDomain, responseCache, DEFAULT_ASYNC_THREADS);
+    }
+
+    /**
+     * Creates a client that runs at most {@code asyncThreads} requests of {@link #executeAsync(OctaneHttpRequest)} at the
+     * same time, further requests are queued
+     *
+     * @param urlDomain     base url of the octane server
+     * @param responseCache cache used for conditional GET requests, null to disable caching
+     * @param asyncThreads  number of threads that run the asynchronous requests
+     */
+    public GoogleHttpClient(final String urlDomain, final ResponseCache responseCache, final int asyncThreads) {
+        if (asyncThreads <= 0) {
+            throw new IllegalArgumentException("asyncThreads must be positive");
+        }
         this.urlDomain = urlDomain;
+        this.responseCache = responseCache;
+        this.asyncExecutor = createAsyncExecutor(asyncThreads);
 
         logProxySystemProperties();
         logSystemProxyForUrlDomain(urlDomain);
@@ -173,16 +213,12 @@ public class GoogleHttpClient implements OctaneHttpClient {
                     GenericUrl domain = new GenericUrl(octaneHttpRequest.getRequestUrl());
                     httpRequest = requestFactory.buildGetRequest(domain);
                     httpRequest.getHeaders().setAccept(((OctaneHttpRequest.GetOctaneHttpRequest) octaneHttpRequest).getAcceptType());
-                    final String eTagHeader = requestToEtagMap.get(octaneHttpRequest);
-                    if (eTagHeader != null) {
-                        httpRequest.getHeaders().setETag(eTagHeader);
-                    }
                     break;
                 }
                 case POST: {
                     OctaneHttpRequest.PostOctaneHttpRequest postOctaneHttpRequest = (OctaneHttpRequest.PostOctaneHttpRequest) octaneHttpRequest;
                     GenericUrl domain = new GenericUrl(octaneHttpRequest.getRequestUrl());
-                    httpRequest = requestFactory.buildPostRequest(domain, ByteArrayContent.fromString(null, postOctaneHttpRequest.getContent()));
+                    httpRequest = requestFactory.buildPostRequest(domain, createContent(postOctaneHttpRequest));
                     httpRequest.getHeaders().setAccept(postOctaneHttpRequest.getAcceptType());
                     httpRequest.getHeaders().setContentType(postOctaneHttpRequest.getContentType());
                     break;
@@ -194,7 +230,7 @@ public class GoogleHttpClient implements OctaneHttpClient {
                 case PUT: {
                     OctaneHttpRequest.PutOctaneHttpRequest putHttpOctaneHttpRequest = (OctaneHttpRequest.PutOctaneHttpRequest) octaneHttpRequest;
                     GenericUrl domain = new GenericUrl(octaneHttpRequest.getRequestUrl());
-                    httpRequest = requestFactory.buildPutRequest(domain, ByteArrayContent.fromString(null, putHttpOctaneHttpRequest.getContent()));
+                    httpRequest = requestFactory.buildPutRequest(domain, createContent(putHttpOctaneHttpRequest));
                     httpRequest.getHeaders().setAccept(putHttpOctaneHttpRequest.getAcceptType());
                     httpRequest.getHeaders().setContentType(putHttpOctaneHttpRequest.getContentType());
                     break;
@@ -214,6 +250,46 @@ public class GoogleHttpClient implements OctaneHttpClient {
         return httpRequest;
     }
 
+    /**
+     * Content of a request that has a {@link OctaneHttpRequest.ContentWriter} is written straight into the connection
+     * with chunked transfer encoding, other content is sent from a byte array
+     */
+    private static HttpContent createContent(OctaneHttpRequest.PostOctaneHttpRequest octaneHttpRequest) {
+        return octaneHttpRequest.hasContentWriter()
+                ? new ContentWriterHttpContent(octaneHttpRequest::writeContent)
+                : ByteArrayContent.fromString(null, octaneHttpRequest.getContent());
+    }
+
+    private static HttpContent createContent(OctaneHttpRequest.PutOctaneHttpRequest octaneHttpRequest) {
+        return octaneHttpRequest.hasContentWriter()
+                ? new ContentWriterHttpContent(octaneHttpRequest::writeContent)
+                : ByteArrayContent.fromString(null, octaneHttpRequest.getContent());
+    }
+
+    /**
+     * {@link HttpContent} of unknown length that is written by a {@link OctaneHttpRequest.ContentWriter}
+     */
+    private static final class ContentWriterHttpContent extends AbstractHttpContent {
+        private final OctaneHttpRequest.ContentWriter contentWriter;
+
+        private ContentWriterHttpContent(OctaneHttpRequest.ContentWriter contentWriter) {
+            super((String) null);
+            this.contentWriter = contentWriter;
+        }
+
+        @Override
+        public long getLength() {
+            // unknown, so that the content is not written once more to compute its length
+            return -1;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            contentWriter.writeTo(out);
+            out.flush();
+        }
+    }
+
     /**
      * Convert google implementation of {@link HttpResponse} to an implementation abstract {@link OctaneHttpResponse}
      *
@@ -225,16 +301,77 @@ public class GoogleHttpClient implements OctaneHttpClient {
             // According to the {@link https://tools.ietf.org/html/rfc2616#section-3.7.1} spec the correct encoding should be returned.
             // Currently Octane does not return UTF-8 for the REST API even though that is the encoding.  Manually changing here to fix some encoding issues
             // {@See https://github.com/MicroFocus/ALMOctaneJavaRESTSDK/issues/79}
-            final Charset charset = (httpResponse.getContentType().equals("application/json")) ? StandardCharsets.UTF_8 : httpResponse.getContentCharset();
-            return new OctaneHttpResponse(httpResponse.getStatusCode(), httpResponse.getContent(), charset);
+            return new OctaneHttpResponse(httpResponse.getStatusCode(), httpResponse.getContent(), getResponseCharset(httpResponse));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static OctaneHttpResponse convertHttpResponseToStreamedOctaneHttpResponse(HttpResponse httpResponse) {
+        try {
+            return OctaneHttpResponse.streamed(httpResponse.getStatusCode(), httpResponse.getContent(), getResponseCharset(httpResponse));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The threads are daemon threads that time out when idle, so a client that is not used any more does not keep
+     * threads alive or prevent the JVM from exiting
+     */
+    private static ExecutorService createAsyncExecutor(int threads) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, ASYNC_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "octane-http-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Charset getResponseCharset(HttpResponse httpResponse) {
+        return (httpResponse.getContentType().equals("application/json")) ? StandardCharsets.UTF_8 : httpResponse.getContentCharset();
+    }
+
     @Override
     public OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest) {
-        return execute(octaneHttpRequest, HTTP_REQUEST_RETRY_COUNT);
+        return execute(octaneHttpRequest, HTTP_REQUEST_RETRY_COUNT, false);
+    }
+
+    /**
+     * The request is run on a thread of this client, the blocking transport would otherwise occupy the threads of the
+     * common fork join pool and limit the number of concurrent requests to the number of cores
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return a future that is completed with the response
+     */
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest) {
+        return CompletableFuture.supplyAsync(() -> execute(octaneHttpRequest), asyncExecutor);
+    }
+
+    /**
+     * The content is streamed unless the response has an ETag and has to be stored in the response cache
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return the response
+     */
+    @Override
+    public OctaneHttpResponse executeStreaming(OctaneHttpRequest octaneHttpRequest) {
+        return execute(octaneHttpRequest, HTTP_REQUEST_RETRY_COUNT, true);
+    }
+
+    /**
+     * The request is run on a thread of this client, see {@link #executeAsync(OctaneHttpRequest)}
+     *
+     * @param octaneHttpRequest the request to execute
+     * @return a future that is completed with the streamed response
+     */
+    @Override
+    public CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest) {
+        return CompletableFuture.supplyAsync(() -> executeStreaming(octaneHttpRequest), asyncExecutor);
     }
 
     /**
@@ -243,67 +380,69 @@ public class GoogleHttpClient implements OctaneHttpClient {
      *
      * @param octaneHttpRequest abstract request, has to be converted into a specific implementation of http request
      * @param retryCount        number of times the method should retry the request if it encounters an HttpResponseException
+     * @param streaming         whether the content of the response can be streamed
      * @return OctaneHttpResponse
      */
-    private OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest, int retryCount) {
+    private OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest, int retryCount, boolean streaming) {
+
+        final String cacheKey = responseCache == null ? null : ResponseCache.keyOf(octaneHttpRequest);
+        final CachedResponse cachedResponse = cacheKey == null ? null : responseCache.get(cacheKey);
 
         final HttpRequest httpRequest = convertOctaneRequestToGoogleHttpRequest(octaneHttpRequest);
+        if (cachedResponse != null) {
+            httpRequest.getHeaders().setETag(cachedResponse.getETag());
+            httpRequest.getHeaders().setIfNoneMatch(cachedResponse.getETag());
+        }
         final HttpResponse httpResponse;
 
         try {
             httpResponse = executeRequest(httpRequest);
 
-            final OctaneHttpResponse octaneHttpResponse = convertHttpResponseToOctaneHttpResponse(httpResponse);
             final String eTag = httpResponse.getHeaders().getETag();
-            if (eTag != null) {
-                requestToEtagMap.put(octaneHttpRequest, eTag);
-                cachedRequestToResponse.put(octaneHttpRequest, octaneHttpResponse);
+            if (streaming && (eTag == null || cacheKey == null)) {
+                return convertHttpResponseToStreamedOctaneHttpResponse(httpResponse);
+            }
+
+            final OctaneHttpResponse octaneHttpResponse = convertHttpResponseToOctaneHttpResponse(httpResponse);
+            if (eTag != null && cacheKey != null) {
+                responseCache.put(cacheKey, CachedResponse.of(eTag, octaneHttpResponse));
             }
             return octaneHttpResponse;
 
         } catch (RuntimeException exception) {
 
             //Return cached response
-            if (exception.getCause() instanceof HttpResponseException) {
+            if (exception.getCause() instanceof HttpResponseException && cachedResponse != null) {
                 HttpResponseException httpResponseException = (HttpResponseException) exception.getCause();
                 final int statusCode = httpResponseException.getStatusCode();
                 if (statusCode == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
-                    return cachedRequestToResponse.get(octaneHttpRequest);
+                    responseCache.put(cacheKey, cachedResponse.revalidated());
+                    return cachedResponse.toOctaneHttpResponse();
                 }
             }
 
             //Handle session timeout exception
-            if (retryCount > 0 && exception instanceof OctaneException) {
-                OctaneException octaneException = (OctaneException) exception;
-                StringFieldModel errorCodeFieldModel = (StringFieldModel) octaneException.getError().getValue("errorCode");
-                LongFieldModel httpStatusCode = (LongFieldModel) octaneException.getError().getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME);
-
-
-                //Handle session timeout
-                if (errorCodeFieldModel != null && httpStatusCode.getValue() == 401 &&
-                        (ERROR_CODE_TOKEN_EXPIRED.equals(errorCodeFieldModel.getValue()) || ERROR_CODE_GLOBAL_TOKEN_EXPIRED.equals(errorCodeFieldModel.getValue())) &&
-                        lastUsedAuthentication != null) {
-
-                    Date currentTimestamp = new Date();
-
-                    // The same http client should not attempt re-auth from multiple threads
-                    synchronized (this) {
-
-                        // If another thread already handled session timeout, skip the re-auth and just retry the request
-                        if (lastSuccessfulAuthTimestamp.getTime() < currentTimestamp.getTime()) {
-                            logger.debug("Auth token expired, trying to re-authenticate");
-                            try {
-                                authenticate(lastUsedAuthentication);
-                            } catch (OctaneException ex) {
-                                logger.debug("Exception while retrying authentication: {}", ex.getMessage());
-                            }
-                        } else {
-                            logger.debug("Auth token expired, but re-authentication was handled by another thread, will not re-authenticate");
-                        }
+            if (retryCount > 0 && OctaneExceptionFactory.isSessionExpired(exception) && lastUsedAuthentication != null) {
 
-                        logger.debug("Retrying request, retries left: {}", retryCount);
-                        return execute(octaneHttpRequest, --retryCount);
+                Date currentTimestamp = new Date();
+
+                // The same http client should not attempt re-auth from multiple threads
+                synchronized (this) {
+
+                    // If another thread already handled session timeout, skip the re-auth and just retry the request
+                    if (lastSuccessfulAuthTimestamp.getTime() < currentTimestamp.getTime()) {
+                        logger.debug("Auth token expired, trying to re-authenticate");
+                        try {
+                            authenticate(lastUsedAuthentication);
+                        } catch (OctaneException ex) {
+                            logger.debug("Exception while retrying authentication: {}", ex.getMessage());
+                        }
+                    } else {
+                        logger.debug("Auth token expired, but re-authentication was handled by another thread, will not re-authenticate");
                     }
+
+                    logger.debug("Retrying request, retries left: {}", retryCount);
+                    return execute(octaneHttpRequest, --retryCount, streaming);
                 }
             }
 
@@ -338,49 +477,15 @@ public class GoogleHttpClient implements OctaneHttpClient {
             HttpResponseException httpResponseException = (HttpResponseException) exception;
             logger.debug(LOGGER_RESPONSE_FORMAT, httpResponseException.getStatusCode(), httpResponseException.getStatusMessage(), httpResponseException.getHeaders().toString());
 
-            // It seems that Octane returns a message in 401 but this is swallowed by the HttpConnection as expected by the HTTP spec
-            // So the only way to know if this should be re-authenticated is to see if there is a cookie in the request.  If so - we can fake the error and
-            // ensure re-authentication
-            if (httpResponseException.getStatusCode() == 401) {
-                try {
-                    final String cookie = httpRequest.getHeaders().getCookie();
-                    if (cookie != null) {
-                        for (String splitCookie : cookie.split(";")) {
-                            if (splitCookie.startsWith(LWSSO_COOKIE_KEY)) {
-                                final LongFieldModel statusFieldModel = new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) httpResponseException.getStatusCode());
-                                final ErrorModel errorModel = new ErrorModel(Collections.singleton(statusFieldModel));
-                                // assuming that we have a cookie and therefore can go for re-authentication...
-                                errorModel.setValue(new StringFieldModel("errorCode", ERROR_CODE_TOKEN_EXPIRED));
-                                return new OctaneException(errorModel);
-                            }
-                        }
-                    }
-                } catch (NullPointerException e) {
-                    // do nothing
-                }
-            }
-
-            List<String> exceptionContentList = new ArrayList<>();
-            exceptionContentList.add(httpResponseException.getStatusMessage());
-            exceptionContentList.add(httpResponseException.getContent());
-
-            for (String exceptionContent : exceptionContentList) {
-                try {
-                    if (ModelParser.getInstance().hasErrorModels(exceptionContent)) {
-                        Collection<ErrorModel> errorModels = ModelParser.getInstance().getErrorModels(exceptionContent);
-                        Collection<EntityModel> entities = ModelParser.getInstance().getEntities(exceptionContent);
-                        return new OctanePartialException(errorModels, entities);
-                    } else if (ModelParser.getInstance().hasErrorModel(exceptionContent)) {
-                        ErrorModel errorModel = ModelParser.getInstance().getErrorModelFromjson(exceptionContent);
-                        errorModel.setValue(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) httpResponseException.getStatusCode()));
-                        return new OctaneException(errorModel);
-                    } else if (ModelParser.getInstance().hasServletError(exceptionContent)) {
-                        ErrorModel errorModel = ModelParser.getInstance().getErrorModelFromServletJson(exceptionContent);
-                        errorModel.setValue(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, (long) httpResponseException.getStatusCode()));
-                        return new OctaneException(errorModel);
-                    }
-                } catch (Exception ignored) {
-                }
+            final String cookie = httpRequest == null ? null : httpRequest.getHeaders().getCookie();
+            final RuntimeException octaneException = OctaneExceptionFactory.fromResponse(
+                    httpResponseException.getStatusCode(),
+                    httpResponseException.getStatusMessage(),
+                    httpResponseException.getContent(),
+                    cookie,
+                    httpResponseException.getHeaders().getFirstHeaderStringValue(RETRY_AFTER));
+            if (octaneException != null) {
+                return octaneException;
             }
         }
 
@@ -494,6 +599,13 @@ public class GoogleHttpClient implements OctaneHttpClient {
         return renewed;
     }
 
+    /**
+     * @return the cache used for conditional GET requests, null if caching is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     public static int getHttpRequestRetryCount() {
         return HTTP_REQUEST_RETRY_COUNT;
     }
@@ -0,0 +1,89 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Builds the queries of requests that select entities by their ids
+ */
+public final class IdQueries {
+
+    /**
+     * The default number of ids in a request that selects entities by their ids
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    private static final String ID_FIELD_NAME = "id";
+
+    private IdQueries() {
+    }
+
+    /**
+     * Ids are numeric in Octane so they are compared as numbers when possible
+     *
+     * @param id the id of an entity
+     * @return the id as a number, or the id itself if it is not a number
+     */
+    public static Object toIdValue(final String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return id;
+        }
+    }
+
+    /**
+     * @param ids the ids of the entities
+     * @return the query of the entities with the ids
+     */
+    public static Query in(final Collection<String> ids) {
+        return Query.statement(ID_FIELD_NAME, QueryMethod.In, ids.toArray()).build();
+    }
+
+    /**
+     * Splits the ids into chunks of at most {@code chunkSize} ids.  A chunk whose {@link #in(Collection)} query is longer
+     * than the maximum length is split further with {@link QuerySplitter}, a single id that is too long is kept in a
+     * chunk of its own
+     *
+     * @param ids       the ids of the entities, in the order of the chunks
+     * @param chunkSize the maximum number of ids in a chunk
+     * @param maxLength the maximum length of the DQL of the query of a chunk
+     * @param measure   the length of a part of the DQL, for example the length once it is encoded in a url
+     * @return the chunks of ids in the order of the ids
+     */
+    public static List<List<String>> chunk(final Collection<String> ids, final int chunkSize, final int maxLength,
+                                           final ToIntFunction<String> measure) {
+        final List<List<String>> chunks = new ArrayList<>();
+        final List<String> chunk = new ArrayList<>(chunkSize);
+        for (Iterator<String> iterator = ids.iterator(); iterator.hasNext(); ) {
+            chunk.add(iterator.next());
+            if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                for (Query splitQuery : QuerySplitter.split(in(chunk), maxLength, measure)) {
+                    final List<String> splitChunk = new ArrayList<>();
+                    for (Object id : (Object[]) ((QueryNode.Statement) splitQuery.getNode()).getFieldValue()) {
+                        splitChunk.add((String) id);
+                    }
+                    chunks.add(splitChunk);
+                }
+                chunk.clear();
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A query template with {@link QueryParameter}s that is compiled once and bound to values on each execution.
+ * <br>
+ * The parts of the query without parameters are compiled to text when the template is prepared, binding only renders
+ * the statements that have parameters:
+ * <pre>
+ * PreparedQuery byOwnerAndPhase = Query.statement("owner", QueryMethod.EqualTo,
+ *             Query.statement("id", QueryMethod.EqualTo, Query.parameter("owner")))
+ *         .and("phase", QueryMethod.In, Query.parameter("phases"))
+ *         .prepare();
+ * Map&lt;String, Object&gt; values = new HashMap&lt;&gt;();
+ * values.put("owner", "1001");
+ * values.put("phases", Arrays.asList("phase.defect.new", "phase.defect.opened"));
+ * Query query = byOwnerAndPhase.bind(values);
+ * </pre>
+ * A value that is bound to a parameter of {@link QueryMethod#In} can be an array or a collection.
+ * The template is immutable and can be bound from several threads
+ */
+public final class PreparedQuery {
+
+    // the text of the parts without parameters and the statements with parameters, in order
+    private final List<Object> segments = new ArrayList<>();
+    private final Map<QueryNode, PreparedQuery> crossFilters = new IdentityHashMap<>();
+    private final Set<String> parameterNames = new LinkedHashSet<>();
+
+    PreparedQuery(QueryNode node) {
+        final StringBuilder text = new StringBuilder();
+        compile(node, text);
+        if (text.length() > 0) {
+            segments.add(text.toString());
+        }
+    }
+
+    /**
+     * @return the names of the parameters, in the order in which they first appear in the query
+     */
+    public Set<String> getParameterNames() {
+        return Collections.unmodifiableSet(parameterNames);
+    }
+
+    /**
+     * Creates the query with the parameters replaced by their values
+     *
+     * @param values the values of the parameters by name
+     * @return the query
+     * @throws IllegalArgumentException if a parameter has no value
+     */
+    public Query bind(Map<String, ?> values) {
+        return new Query(new QueryNode.Text(bindToString(values)));
+    }
+
+    private String bindToString(Map<String, ?> values) {
+        final Bindings bindings = new Bindings(values);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                stringBuilder.append((String) segment);
+            } else {
+                stringBuilder.append(((QueryNode.Statement) segment).bind(bindings));
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private void compile(QueryNode node, StringBuilder text) {
+        if (!node.hasParameters()) {
+            node.appendTo(text);
+        } else if (node instanceof QueryNode.Junction) {
+            final List<QueryNode.Junction> chain = ((QueryNode.Junction) node).leftChain();
+            compile(chain.get(chain.size() - 1).getLeft(), text);
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                text.append(chain.get(i).getOperator().getDql());
+                compile(chain.get(i).getRight(), text);
+            }
+        } else if (node instanceof QueryNode.Not) {
+            text.append('!');
+            compile(((QueryNode.Not) node).getNode(), text);
+        } else if (node instanceof QueryNode.Group) {
+            text.append('(');
+            compile(((QueryNode.Group) node).getNode(), text);
+            text.append(')');
+        } else {
+            final QueryNode.Statement statement = (QueryNode.Statement) node;
+            addParameters(statement.getFieldValue());
+            if (text.length() > 0) {
+                segments.add(text.toString());
+                text.setLength(0);
+            }
+            segments.add(statement);
+        }
+    }
+
+    private void addParameters(Object fieldValue) {
+        if (fieldValue instanceof QueryParameter) {
+            parameterNames.add(((QueryParameter) fieldValue).getName());
+        } else if (fieldValue instanceof Object[]) {
+            for (Object value : (Object[]) fieldValue) {
+                addParameters(value);
+            }
+        } else if (fieldValue instanceof QueryNode && ((QueryNode) fieldValue).hasParameters()) {
+            final PreparedQuery crossFilter = new PreparedQuery((QueryNode) fieldValue);
+            crossFilters.put((QueryNode) fieldValue, crossFilter);
+            parameterNames.addAll(crossFilter.parameterNames);
+        }
+    }
+
+    /**
+     * The values of one binding of the template
+     */
+    final class Bindings {
+
+        private final Map<String, ?> values;
+
+        private Bindings(Map<String, ?> values) {
+            this.values = values;
+        }
+
+        /**
+         * @return the value of the statement with the parameters replaced by their values
+         */
+        Object bindValue(QueryMethod method, Object fieldValue) {
+            if (fieldValue instanceof QueryParameter) {
+                final Object value = valueOf((QueryParameter) fieldValue);
+                return method == QueryMethod.In && value instanceof Collection ? ((Collection<?>) value).toArray() : value;
+            } else if (fieldValue instanceof Object[]) {
+                final Object[] boundValues = ((Object[]) fieldValue).clone();
+                for (int i = 0; i < boundValues.length; i++) {
+                    if (boundValues[i] instanceof QueryParameter) {
+                        boundValues[i] = valueOf((QueryParameter) boundValues[i]);
+                    }
+                }
+                return boundValues;
+            } else if (fieldValue instanceof QueryNode) {
+                final PreparedQuery crossFilter = crossFilters.get(fieldValue);
+                return Query.QueryBuilder.of(new QueryNode.Text(crossFilter.bindToString(values)));
+            }
+            return fieldValue;
+        }
+
+        private Object valueOf(QueryParameter parameter) {
+            if (!values.containsKey(parameter.getName())) {
+                throw new IllegalArgumentException("No value for the query parameter " + parameter.getName());
+            }
+            return values.get(parameter.getName());
+        }
+    }
+}
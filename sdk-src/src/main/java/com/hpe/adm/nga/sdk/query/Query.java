@@ -44,21 +44,18 @@ package com.hpe.adm.nga.sdk.query;
  *       <br>
  *       {@link QueryBuilder#build()} should be called once the entire query has been built
  *   </p>
+ *   <p>
+ *       A query that is executed many times with different values can be built once as a template, using {@link #parameter(String)}
+ *       as the values, and compiled with {@link QueryBuilder#prepare()}.  See {@link PreparedQuery}
+ *   </p>
  */
 public class Query {
 
     protected String queryString = "";
 
-    protected Query() {}
+    private QueryNode node;
 
-    /**
-     * Negates the given query string
-     * @param queryString - input query string
-     * @return resulting string after negation
-     */
-    private static String negate(String queryString) {
-        return "!" + queryString;
-    }
+    protected Query() {}
 
     /**
      * QueryBuilder Statement
@@ -68,7 +65,7 @@ public class Query {
      * @return The new object that can be used to build the query
      */
     public static QueryBuilder statement(String fieldName, QueryMethod method, Object fieldValue) {
-        return new QueryBuilder(method.getAction().apply(fieldName, fieldValue));
+        return new QueryBuilder(new QueryNode.Statement(fieldName, method, fieldValue));
     }
 
     /**
@@ -79,23 +76,46 @@ public class Query {
      * @return The new object that can be used to build the query
      */
     public static QueryBuilder not(String fieldName, QueryMethod method, Object fieldValue) {
-        return new QueryBuilder(negate(method.getAction().apply(fieldName, fieldValue)));
+        return new QueryBuilder(new QueryNode.Not(new QueryNode.Statement(fieldName, method, fieldValue)));
+    }
+
+    /**
+     * A named parameter that is used as a value in a query template, see {@link QueryBuilder#prepare()}
+     * @param name - the name of the parameter
+     * @return the parameter
+     */
+    public static QueryParameter parameter(String name) {
+        return new QueryParameter(name);
     }
 
     /**
      * Constructor
-     * @param builder - the query builder to use for building the query
+     * @param node - the tree of the query
      */
-    private Query(QueryBuilder builder) {
-        queryString = builder.queryString;
+    Query(QueryNode node) {
+        this.node = node;
+        queryString = null;
     }
 
     /**
-     * Accessor method of query string
+     * Accessor method of query string.  The query string of a built query is compiled the first time it is needed
      * @return query string
      */
     public String getQueryString() {
-        return queryString;
+        String compiled = queryString;
+        if (compiled == null) {
+            compiled = node.toDql();
+            queryString = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Accessor method of the tree of the query
+     * @return the tree of the query, or a {@link QueryNode.Text} node if the query was not built by a builder
+     */
+    public QueryNode getNode() {
+        return node != null ? node : new QueryNode.Text(getQueryString());
     }
 
     /**
@@ -103,27 +123,33 @@ public class Query {
      */
     @Override
     public String toString() {
-        return queryString;
+        return getQueryString();
     }
 
     /**
      * Object that is used to build {@link Query} objects.
+     * The builder keeps an immutable tree of the query, each operation replaces the tree with a new one that shares the
+     * previous tree, so that long chains are built in linear time
      * @see Query for more information
      */
     public static class QueryBuilder {
 
-        private String queryString = "";
+        private QueryNode node;
+
+        private QueryBuilder(QueryNode node) {
+            this.node = node;
+        }
 
-        private QueryBuilder(String queryString) {
-            this.queryString = queryString;
+        static QueryBuilder of(QueryNode node) {
+            return new QueryBuilder(node);
         }
 
         /**
-         * Accessor method for the query builder string.
-         * @return query builder's string
+         * Accessor method for the query builder tree.
+         * @return query builder's tree
          */
-        private String getQueryString() {
-            return queryString;
+        QueryNode getNode() {
+            return node;
         }
 
         /**
@@ -131,10 +157,21 @@ public class Query {
          * @return builded query
          */
         public Query build() {
-            return new Query(this);
+            return new Query(node);
         }
 
+        /**
+         * Compiles the current builder to a template whose {@link QueryParameter}s are bound to values on each execution
+         * @return the template
+         */
+        public PreparedQuery prepare() {
+            return new PreparedQuery(node);
+        }
 
+        private QueryBuilder join(QueryNode.Junction.Operator operator, QueryNode right) {
+            node = new QueryNode.Junction(node, operator, right);
+            return this;
+        }
 
         /**
          * Generates a builder by applying the logical "and" operator between the current builder and the resulting operation of the input values.
@@ -144,9 +181,17 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder and(String fieldName, QueryMethod method, Object fieldValue) {
-            String rightQueryString = method.getAction().apply(fieldName, fieldValue);
-            queryString += ";" + rightQueryString;
-            return this;
+            return join(QueryNode.Junction.Operator.AND, new QueryNode.Statement(fieldName, method, fieldValue));
+        }
+
+        /**
+         * Generates a builder by applying the logical "and" operator between the current builder and an already built query.
+         * The query is wrapped in parentheses so that any "or" operator it contains only applies within the query.
+         * @param query - built query
+         * @return resulting builder
+         */
+        public QueryBuilder and(Query query) {
+            return join(QueryNode.Junction.Operator.AND, new QueryNode.Group(query.getNode()));
         }
 
         /**
@@ -157,8 +202,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder andNot(String fieldName, QueryMethod method, Object fieldValue) {
-            queryString += ";" + negate(method.getAction().apply(fieldName, fieldValue));
-            return this;
+            return join(QueryNode.Junction.Operator.AND, new QueryNode.Not(new QueryNode.Statement(fieldName, method, fieldValue)));
         }
 
         /**
@@ -167,8 +211,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder and(QueryBuilder qb) {
-            queryString += ";" + qb.getQueryString();
-            return this;
+            return join(QueryNode.Junction.Operator.AND, qb.node);
         }
 
         /**
@@ -177,8 +220,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder andNot(QueryBuilder qb) {
-            queryString += ";" + negate(qb.getQueryString());
-            return this;
+            return join(QueryNode.Junction.Operator.AND, new QueryNode.Not(qb.node));
         }
 
         /**
@@ -189,9 +231,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder or(String fieldName, QueryMethod method, Object fieldValue) {
-            String rightQueryString = method.getAction().apply(fieldName, fieldValue);
-            queryString += "||" + rightQueryString;
-            return this;
+            return join(QueryNode.Junction.Operator.OR, new QueryNode.Statement(fieldName, method, fieldValue));
         }
 
         /**
@@ -202,8 +242,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder orNot(String fieldName, QueryMethod method, Object fieldValue) {
-            queryString += "||" + negate(method.getAction().apply(fieldName, fieldValue));
-            return this;
+            return join(QueryNode.Junction.Operator.OR, new QueryNode.Not(new QueryNode.Statement(fieldName, method, fieldValue)));
         }
 
         /**
@@ -212,8 +251,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder or(QueryBuilder qb) {
-            queryString += "||" + qb.getQueryString();
-            return this;
+            return join(QueryNode.Junction.Operator.OR, qb.node);
         }
 
         /**
@@ -222,8 +260,7 @@ public class Query {
          * @return resulting builder
          */
         public QueryBuilder orNot(QueryBuilder qb) {
-            queryString += "||" + negate(qb.getQueryString());
-            return this;
+            return join(QueryNode.Junction.Operator.OR, new QueryNode.Not(qb.node));
         }
 
         /**
@@ -231,7 +268,7 @@ public class Query {
          * @return with parentheses
          */
         private QueryBuilder parenthesis() {
-            queryString = "(" + queryString + ")";
+            node = new QueryNode.Group(node);
             return this;
         }
 
@@ -244,4 +281,4 @@ public class Query {
             return queryBuilder.parenthesis();
         }
     }
-}
\ No newline at end of file
+}
@@ -13,12 +13,11 @@
  */
 package com.hpe.adm.nga.sdk.query;
 
-import java.text.SimpleDateFormat;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
@@ -36,8 +35,7 @@ public enum QueryMethod {
     Between(QueryMethod::between);
 
     // constant
-    private static final String DATE_TIME_ISO_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-    private static final String DATE_TIME_UTC_ZONE_NAME = "UTC";
+    private static final DateTimeFormatter DATE_TIME_ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
 
     private static final String COMPARISON_OPERATOR_EQUALS = "EQ";
     private static final String COMPARISON_OPERATOR_LESS = "LT";
@@ -156,13 +154,10 @@ public enum QueryMethod {
         if (value == null) {
             return "{null}";
         } else if (value.getClass() == ZonedDateTime.class) {
-            ZonedDateTime zonedDateTime = ((ZonedDateTime) value).withZoneSameInstant(ZoneId.of("Z"));
+            ZonedDateTime zonedDateTime = ((ZonedDateTime) value).withZoneSameInstant(ZoneOffset.UTC);
             return "'" + zonedDateTime + "'";
         } else if (value.getClass() == Date.class) {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_TIME_ISO_FORMAT);
-            TimeZone utc = TimeZone.getTimeZone(DATE_TIME_UTC_ZONE_NAME);
-            sdf.setTimeZone(utc);
-            return "'" + sdf.format(value) + "'";
+            return "'" + DATE_TIME_ISO_FORMATTER.format(((Date) value).toInstant()) + "'";
         } else if (value.getClass() == String.class) {
             return "'" + value.toString() + "'";
         } else if (value.getClass() == Query.QueryBuilder.class) {
@@ -180,6 +175,14 @@ public enum QueryMethod {
             this.lower = lower;
             this.upper = upper;
         }
+
+        public Object getLower() {
+            return lower;
+        }
+
+        public Object getUpper() {
+            return upper;
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable node of the tree of a query that is built by {@link Query.QueryBuilder}.  The tree can be inspected with
+ * {@link Query#getNode()} and is compiled to the DQL string once, the string is then kept by the node.
+ * <br>
+ * The nodes are:
+ * <ul>
+ *     <li>{@link Statement} - a comparison of a field with a value.  The value can be a further query builder (a cross filter)</li>
+ *     <li>{@link Junction} - two nodes joined by "and" or "or"</li>
+ *     <li>{@link Not} - a negated node</li>
+ *     <li>{@link Group} - a node in parentheses</li>
+ *     <li>{@link Text} - a query string that is used as it is</li>
+ * </ul>
+ */
+public abstract class QueryNode {
+
+    private final boolean parameterized;
+    private String dql;
+
+    private QueryNode(boolean parameterized) {
+        this.parameterized = parameterized;
+    }
+
+    /**
+     * @return true if the node contains a {@link QueryParameter} that must be bound, see {@link PreparedQuery}
+     */
+    public final boolean hasParameters() {
+        return parameterized;
+    }
+
+    /**
+     * Compiles the node to its DQL string, the string is compiled once
+     *
+     * @return the DQL string of the node
+     * @throws IllegalStateException if the node contains parameters
+     */
+    public final String toDql() {
+        String compiled = dql;
+        if (compiled == null) {
+            final StringBuilder stringBuilder = new StringBuilder();
+            render(stringBuilder);
+            compiled = stringBuilder.toString();
+            dql = compiled;
+        }
+        return compiled;
+    }
+
+    @Override
+    public String toString() {
+        return parameterized ? getClass().getSimpleName() + " with parameters" : toDql();
+    }
+
+    final void appendTo(StringBuilder stringBuilder) {
+        final String compiled = dql;
+        if (compiled != null) {
+            stringBuilder.append(compiled);
+        } else {
+            render(stringBuilder);
+        }
+    }
+
+    abstract void render(StringBuilder stringBuilder);
+
+    /**
+     * A comparison of a field with a value using a {@link QueryMethod}
+     */
+    public static final class Statement extends QueryNode {
+
+        private final String fieldName;
+        private final QueryMethod method;
+        private final Object fieldValue;
+        private final String text;
+
+        Statement(String fieldName, QueryMethod method, Object fieldValue) {
+            super(isParameterized(fieldValue));
+            this.fieldName = fieldName;
+            this.method = method;
+            // the text is created at once, as it was before, so that later changes to a mutable value such as a Date
+            // are not seen
+            this.fieldValue = fieldValue instanceof Query.QueryBuilder ? ((Query.QueryBuilder) fieldValue).getNode() : fieldValue;
+            this.text = hasParameters() ? null : method.getAction().apply(fieldName, fieldValue);
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public QueryMethod getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the value that the field is compared with.  A cross filter is returned as its {@link QueryNode}
+         */
+        public Object getFieldValue() {
+            return fieldValue;
+        }
+
+        @Override
+        void render(StringBuilder stringBuilder) {
+            if (text == null) {
+                throw new IllegalStateException("The statement of " + fieldName + " has parameters, use Query.QueryBuilder#prepare()");
+            }
+            stringBuilder.append(text);
+        }
+
+        /**
+         * Renders the statement with the parameters replaced by their values
+         */
+        String bind(PreparedQuery.Bindings bindings) {
+            return method.getAction().apply(fieldName, bindings.bindValue(method, fieldValue));
+        }
+
+        private static boolean isParameterized(Object fieldValue) {
+            if (fieldValue instanceof QueryParameter) {
+                return true;
+            } else if (fieldValue instanceof Query.QueryBuilder) {
+                return ((Query.QueryBuilder) fieldValue).getNode().hasParameters();
+            } else if (fieldValue instanceof Object[]) {
+                return Arrays.stream((Object[]) fieldValue).anyMatch(QueryParameter.class::isInstance);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Two nodes joined by "and" or "or".  A chain of statements is a left-deep tree of junctions, so that a builder can
+     * add a statement without copying the chain
+     */
+    public static final class Junction extends QueryNode {
+
+        /**
+         * The logical operators
+         */
+        public enum Operator {
+            AND(";"), OR("||");
+
+            private final String dql;
+
+            Operator(String dql) {
+                this.dql = dql;
+            }
+
+            public String getDql() {
+                return dql;
+            }
+        }
+
+        private final QueryNode left;
+        private final Operator operator;
+        private final QueryNode right;
+
+        Junction(QueryNode left, Operator operator, QueryNode right) {
+            super(left.hasParameters() || right.hasParameters());
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        public QueryNode getLeft() {
+            return left;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public QueryNode getRight() {
+            return right;
+        }
+
+        @Override
+        void render(StringBuilder stringBuilder) {
+            // long chains are rendered without recursion
+            final List<Junction> chain = leftChain();
+            chain.get(chain.size() - 1).left.appendTo(stringBuilder);
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                stringBuilder.append(chain.get(i).operator.dql);
+                chain.get(i).right.appendTo(stringBuilder);
+            }
+        }
+
+        /**
+         * @return this junction and the junctions on its left, from the last to the first
+         */
+        List<Junction> leftChain() {
+            final List<Junction> chain = new ArrayList<>();
+            QueryNode node = this;
+            while (node instanceof Junction) {
+                chain.add((Junction) node);
+                node = ((Junction) node).left;
+            }
+            return chain;
+        }
+    }
+
+    /**
+     * A negated node, rendered as {@code !} followed by the node
+     */
+    public static final class Not extends QueryNode {
+
+        private final QueryNode node;
+
+        Not(QueryNode node) {
+            super(node.hasParameters());
+            this.node = node;
+        }
+
+        public QueryNode getNode() {
+            return node;
+        }
+
+        @Override
+        void render(StringBuilder stringBuilder) {
+            stringBuilder.append('!');
+            node.appendTo(stringBuilder);
+        }
+    }
+
+    /**
+     * A node in parentheses
+     */
+    public static final class Group extends QueryNode {
+
+        private final QueryNode node;
+
+        Group(QueryNode node) {
+            super(node.hasParameters());
+            this.node = node;
+        }
+
+        public QueryNode getNode() {
+            return node;
+        }
+
+        @Override
+        void render(StringBuilder stringBuilder) {
+            stringBuilder.append('(');
+            node.appendTo(stringBuilder);
+            stringBuilder.append(')');
+        }
+    }
+
+    /**
+     * A query string that is used as it is, for example the one of a {@link Query} that was not built by a builder
+     */
+    public static final class Text extends QueryNode {
+
+        private final String text;
+
+        Text(String text) {
+            super(false);
+            this.text = text;
+        }
+
+        @Override
+        void render(StringBuilder stringBuilder) {
+            stringBuilder.append(text);
+        }
+    }
+}
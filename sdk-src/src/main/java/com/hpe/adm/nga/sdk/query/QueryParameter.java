@@ -0,0 +1,40 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.query;
+
+/**
+ * A named placeholder for the value of a statement in a query template, see {@link PreparedQuery}.  It can be used as
+ * the value of a statement, as an element of the values of {@link QueryMethod#In} or inside a cross filter.
+ * Create it with {@link Query#parameter(String)}
+ */
+public final class QueryParameter {
+
+    private final String name;
+
+    QueryParameter(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("The parameter must have a name");
+        }
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return ":" + name;
+    }
+}
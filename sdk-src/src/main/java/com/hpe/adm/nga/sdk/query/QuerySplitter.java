@@ -0,0 +1,152 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Splits a query that is too long to be sent into smaller queries whose results together are the results of the query.
+ * <br>
+ * Two forms of queries can be split:
+ * <ul>
+ *     <li>an "or" chain of statements, for example {@code (id EQ 1)||(id EQ 2)||...}, is split into shorter "or" chains</li>
+ *     <li>a statement with {@link QueryMethod#In}, alone or in an "and" chain, is split into statements with fewer values
+ *     that keep the rest of the chain</li>
+ * </ul>
+ * Other queries, and queries with parameters, are not split
+ */
+public final class QuerySplitter {
+
+    private QuerySplitter() {
+    }
+
+    /**
+     * Splits the query into queries whose length is at most the maximum length.  A single statement or value that is
+     * longer than the maximum length is put in a query of its own
+     *
+     * @param query     the query to split
+     * @param maxLength the maximum length of the DQL of a query
+     * @param measure   the length of a part of the DQL, for example the length once it is encoded in a url
+     * @return the queries, or a list with the query itself if it is not longer than the maximum length or cannot be split
+     */
+    public static List<Query> split(Query query, int maxLength, ToIntFunction<String> measure) {
+        final QueryNode node = query.getNode();
+        if (node.hasParameters() || measure.applyAsInt(node.toDql()) <= maxLength) {
+            return Collections.singletonList(query);
+        }
+
+        final List<QueryNode> terms = new ArrayList<>();
+        QueryNode.Junction.Operator operator = null;
+        if (node instanceof QueryNode.Junction) {
+            final List<QueryNode.Junction> chain = ((QueryNode.Junction) node).leftChain();
+            terms.add(chain.get(chain.size() - 1).getLeft());
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                if (operator != null && operator != chain.get(i).getOperator()) {
+                    // the meaning of a chain that mixes "and" and "or" depends on the precedence of the server
+                    return Collections.singletonList(query);
+                }
+                operator = chain.get(i).getOperator();
+                terms.add(chain.get(i).getRight());
+            }
+        } else {
+            terms.add(node);
+        }
+
+        if (operator == QueryNode.Junction.Operator.OR) {
+            return splitOr(terms, maxLength, measure);
+        }
+        return splitIn(query, terms, maxLength, measure);
+    }
+
+    private static List<Query> splitOr(List<QueryNode> terms, int maxLength, ToIntFunction<String> measure) {
+        final int separatorLength = measure.applyAsInt(QueryNode.Junction.Operator.OR.getDql());
+        final List<Query> queries = new ArrayList<>();
+        QueryNode chunk = null;
+        int chunkLength = 0;
+        for (QueryNode term : terms) {
+            final int termLength = measure.applyAsInt(term.toDql());
+            if (chunk != null && chunkLength + separatorLength + termLength > maxLength) {
+                queries.add(new Query(chunk));
+                chunk = null;
+            }
+            if (chunk == null) {
+                chunk = term;
+                chunkLength = termLength;
+            } else {
+                chunk = new QueryNode.Junction(chunk, QueryNode.Junction.Operator.OR, term);
+                chunkLength += separatorLength + termLength;
+            }
+        }
+        queries.add(new Query(chunk));
+        return queries;
+    }
+
+    private static List<Query> splitIn(Query query, List<QueryNode> terms, int maxLength, ToIntFunction<String> measure) {
+        int inIndex = -1;
+        int inLength = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            final QueryNode term = terms.get(i);
+            if (term instanceof QueryNode.Statement && ((QueryNode.Statement) term).getMethod() == QueryMethod.In
+                    && ((QueryNode.Statement) term).getFieldValue() instanceof Object[]) {
+                final int termLength = measure.applyAsInt(term.toDql());
+                if (termLength > inLength) {
+                    inIndex = i;
+                    inLength = termLength;
+                }
+            }
+        }
+        if (inIndex < 0) {
+            return Collections.singletonList(query);
+        }
+
+        final QueryNode.Statement in = (QueryNode.Statement) terms.get(inIndex);
+        final String fieldName = in.getFieldName();
+        final Object[] values = (Object[]) in.getFieldValue();
+        final int emptyInLength = measure.applyAsInt(QueryMethod.In.<Object[]>getAction().apply(fieldName, new Object[0]));
+        final int separatorLength = measure.applyAsInt(",");
+        // the length of the query without the values of the statement
+        final int budget = maxLength - (measure.applyAsInt(query.getNode().toDql()) - inLength + emptyInLength);
+
+        final List<Query> queries = new ArrayList<>();
+        final List<Object> chunk = new ArrayList<>();
+        int chunkLength = 0;
+        for (Object value : values) {
+            final int valueLength = measure.applyAsInt(QueryMethod.In.<Object[]>getAction().apply(fieldName, new Object[]{value})) - emptyInLength;
+            if (!chunk.isEmpty() && chunkLength + separatorLength + valueLength > budget) {
+                queries.add(withTerm(terms, inIndex, new QueryNode.Statement(fieldName, QueryMethod.In, chunk.toArray())));
+                chunk.clear();
+            }
+            chunkLength = chunk.isEmpty() ? valueLength : chunkLength + separatorLength + valueLength;
+            chunk.add(value);
+        }
+        if (!chunk.isEmpty()) {
+            queries.add(withTerm(terms, inIndex, new QueryNode.Statement(fieldName, QueryMethod.In, chunk.toArray())));
+        }
+        return queries;
+    }
+
+    /**
+     * @return the "and" chain of the terms with the term at the index replaced
+     */
+    private static Query withTerm(List<QueryNode> terms, int index, QueryNode term) {
+        QueryNode node = index == 0 ? term : terms.get(0);
+        for (int i = 1; i < terms.size(); i++) {
+            node = new QueryNode.Junction(node, QueryNode.Junction.Operator.AND, i == index ? term : terms.get(i));
+        }
+        return new Query(node);
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.entities.get.KeysetIterator;
+import com.hpe.adm.nga.sdk.model.DateFieldModel;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An incremental feed of the changes to the entities of some collections of an {@link Octane} context.
+ * <br>
+ * Every {@link #poll()} gets the entities of each collection that were modified after its {@link Watermark} and emits
+ * them to the {@link ChangeListener}.  The entities are requested ordered by {@code last_modified} and then by
+ * {@code id}, with a keyset clause that continues after the last emitted entity, so entities that share a modification
+ * time are neither skipped nor emitted twice.  The watermark is saved in the {@link WatermarkStore} after every page, so
+ * a feed that is restarted with the same store only gets the changes it did not emit yet.
+ * <br>
+ * The modification time has a precision of one second and a change becomes visible when its transaction commits, which
+ * can be after a change with a later modification time or a greater id was already read.  The keyset would then skip it
+ * for good, so a poll only reads the changes that are older than the {@link #lag(Duration) lag}, by which time every
+ * change of that second is expected to be visible.  The changes are therefore emitted with a delay of the lag, which
+ * must also cover the difference between the clocks of the client and the server.
+ * <br>
+ * The modification time of a deleted entity cannot be queried, so deletions are found by reconciling the ids of each
+ * collection: every id that the feed emitted or saw in an earlier reconciliation and that is no longer returned is
+ * emitted as deleted.  Reconciliations read all the ids of a collection so they are only done every
+ * {@link #reconcileEvery(int) few polls}.  The ids are kept in memory, a feed that is restarted can be given the ids that
+ * the mirror already has with {@link #knownIds(String, Collection)}.
+ * <br>
+ * A feed is not thread safe.  Create it with {@link Octane#changeFeed(WatermarkStore, ChangeListener)}
+ */
+public class ChangeFeed {
+
+    /**
+     * The default number of entities in a request
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * The default age that a change must have before it is emitted
+     */
+    public static final Duration DEFAULT_LAG = Duration.ofSeconds(5);
+
+    private static final String ID_FIELD_NAME = "id";
+    private static final String LAST_MODIFIED_FIELD_NAME = "last_modified";
+
+    private final Octane octane;
+    private final WatermarkStore watermarkStore;
+    private final ChangeListener changeListener;
+    private final Map<String, FeedCollection> collections = new LinkedHashMap<>();
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private Duration lag = DEFAULT_LAG;
+    private EntityStorageMode entityStorageMode = EntityStorageMode.STANDARD;
+    private int reconcileInterval = 0;
+    private int polls = 0;
+
+    public ChangeFeed(Octane octane, WatermarkStore watermarkStore, ChangeListener changeListener) {
+        this.octane = octane;
+        this.watermarkStore = watermarkStore;
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Adds a collection to the feed
+     *
+     * @param collectionName the collection name, for example {@code defects}
+     * @param fields         the fields of the emitted entities, all the default fields if none are given
+     * @return this
+     */
+    public ChangeFeed collection(String collectionName, String... fields) {
+        collections.put(collectionName, new FeedCollection(collectionName, fields));
+        return this;
+    }
+
+    /**
+     * Sets the number of entities in a request, {@link #DEFAULT_PAGE_SIZE} by default
+     *
+     * @param pageSize the page size
+     * @return this
+     */
+    public ChangeFeed pageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Sets the age that a change must have before it is emitted, {@link #DEFAULT_LAG} by default.  The watermark never
+     * passes the time of the poll minus the lag, so a change that commits late within the lag is not skipped
+     *
+     * @param lag the lag, zero to emit the changes as soon as they are visible
+     * @return this
+     */
+    public ChangeFeed lag(Duration lag) {
+        if (lag.isNegative()) {
+            throw new IllegalArgumentException("lag must not be negative");
+        }
+        this.lag = lag;
+        return this;
+    }
+
+    /**
+     * Sets how the fields of the emitted entities are stored in memory, {@link EntityStorageMode#STANDARD} by default.
+     * Use {@link EntityStorageMode#COMPACT} when the listener keeps the entities
+     *
+     * @param entityStorageMode the storage mode
+     * @return this
+     */
+    public ChangeFeed storageMode(EntityStorageMode entityStorageMode) {
+        this.entityStorageMode = entityStorageMode;
+        return this;
+    }
+
+    /**
+     * Reconciles the ids of the collections after every given number of polls.  By default the ids are only reconciled
+     * when {@link #reconcile()} is called
+     *
+     * @param polls the number of polls between reconciliations, 0 to never reconcile on poll
+     * @return this
+     */
+    public ChangeFeed reconcileEvery(int polls) {
+        if (polls < 0) {
+            throw new IllegalArgumentException("polls must not be negative");
+        }
+        this.reconcileInterval = polls;
+        return this;
+    }
+
+    /**
+     * Adds ids to the ids of a collection that are known to exist, so that the next reconciliation emits the ones that
+     * were deleted.  Use it to give a restarted feed the ids that the mirror already has
+     *
+     * @param collectionName the collection name, it must have been added to the feed
+     * @param ids            the ids
+     * @return this
+     */
+    public ChangeFeed knownIds(String collectionName, Collection<String> ids) {
+        getCollection(collectionName).knownIds.addAll(ids);
+        return this;
+    }
+
+    /**
+     * The watermark of a collection
+     *
+     * @param collectionName the collection name, it must have been added to the feed
+     * @return the watermark or null if nothing was emitted from the collection yet
+     */
+    public Watermark getWatermark(String collectionName) {
+        return getCollection(collectionName).getWatermark();
+    }
+
+    /**
+     * Emits the changes of every collection since its watermark, and reconciles the ids if it is time to
+     *
+     * @return the number of emitted changes and deletions
+     */
+    public int poll() {
+        int emitted = 0;
+        for (FeedCollection collection : collections.values()) {
+            emitted += collection.pollChanges();
+        }
+        polls++;
+        if (reconcileInterval > 0 && polls % reconcileInterval == 0) {
+            emitted += reconcile();
+        }
+        return emitted;
+    }
+
+    /**
+     * Reads all the ids of every collection and emits the known ids that are missing as deleted
+     *
+     * @return the number of emitted deletions
+     */
+    public int reconcile() {
+        int emitted = 0;
+        for (FeedCollection collection : collections.values()) {
+            emitted += collection.reconcile();
+        }
+        return emitted;
+    }
+
+    private FeedCollection getCollection(String collectionName) {
+        final FeedCollection collection = collections.get(collectionName);
+        if (collection == null) {
+            throw new IllegalArgumentException("The collection " + collectionName + " was not added to the change feed");
+        }
+        return collection;
+    }
+
+    /**
+     * The state of a collection of the feed
+     */
+    private final class FeedCollection {
+
+        private final String collectionName;
+        private final String[] fields;
+        private final Set<String> knownIds = new HashSet<>();
+        private Watermark watermark;
+        private boolean watermarkLoaded = false;
+
+        private FeedCollection(String collectionName, String[] fields) {
+            this.collectionName = collectionName;
+            if (fields.length == 0) {
+                this.fields = fields;
+            } else {
+                final Set<String> allFields = new LinkedHashSet<>(Arrays.asList(fields));
+                allFields.add(ID_FIELD_NAME);
+                allFields.add(LAST_MODIFIED_FIELD_NAME);
+                this.fields = allFields.toArray(new String[0]);
+            }
+        }
+
+        private Watermark getWatermark() {
+            if (!watermarkLoaded) {
+                watermark = watermarkStore.load(collectionName);
+                watermarkLoaded = true;
+            }
+            return watermark;
+        }
+
+        private int pollChanges() {
+            // the same cutoff for all the pages so that the poll reads one window of changes
+            final ZonedDateTime cutoff = lag.isZero() ? null : ZonedDateTime.now(ZoneOffset.UTC).minus(lag);
+            int emitted = 0;
+            boolean lastPageReached = false;
+            while (!lastPageReached) {
+                final OctaneCollection<EntityModel> page = createPageRequest(getWatermark(), cutoff).execute();
+                lastPageReached = page == null || page.size() < pageSize;
+                if (page == null) {
+                    break;
+                }
+                final Watermark pageStart = watermark;
+                if (!page.isEmpty() && pageStart != null && isAtOrBefore(page.iterator().next(), pageStart)) {
+                    // a server that ignores the keyset clause would return the same page forever
+                    throw new IllegalStateException("The changes of " + collectionName + " were returned from before the watermark " + pageStart);
+                }
+                try {
+                    for (EntityModel entityModel : page) {
+                        final Watermark next = new Watermark(getLastModified(entityModel), entityModel.getId());
+                        changeListener.onChange(collectionName, entityModel);
+                        knownIds.add(entityModel.getId());
+                        watermark = next;
+                        emitted++;
+                    }
+                } finally {
+                    // the watermark is saved even if the listener failed so that the emitted changes are not emitted again
+                    if (watermark != null && !watermark.equals(pageStart)) {
+                        watermarkStore.save(collectionName, watermark);
+                    }
+                }
+            }
+            return emitted;
+        }
+
+        private int reconcile() {
+            final GetEntities getEntities = octane.entityList(collectionName).get().addFields(ID_FIELD_NAME);
+            final Set<String> currentIds = new HashSet<>();
+            for (KeysetIterator<EntityModel> iterator = getEntities.keysetIterator(pageSize); iterator.hasNext(); ) {
+                currentIds.add(iterator.next().getId());
+            }
+            int emitted = 0;
+            for (Iterator<String> iterator = knownIds.iterator(); iterator.hasNext(); ) {
+                final String id = iterator.next();
+                if (!currentIds.contains(id)) {
+                    changeListener.onDelete(collectionName, id);
+                    iterator.remove();
+                    emitted++;
+                }
+            }
+            // entities that were created since the last poll are known from now on
+            knownIds.addAll(currentIds);
+            return emitted;
+        }
+
+        /**
+         * @param after  the watermark to continue after, null for the first poll
+         * @param cutoff the modification time before which the changes are read, null for all of them
+         */
+        private GetEntities createPageRequest(Watermark after, ZonedDateTime cutoff) {
+            final GetEntities getEntities = octane.entityList(collectionName).get()
+                    .addOrderBy(LAST_MODIFIED_FIELD_NAME + "," + ID_FIELD_NAME, true)
+                    .limit(pageSize)
+                    .storageMode(entityStorageMode);
+            if (fields.length > 0) {
+                getEntities.addFields(fields);
+            }
+            Query.QueryBuilder query = null;
+            if (after != null) {
+                query = Query.statement(LAST_MODIFIED_FIELD_NAME, QueryMethod.GreaterThan, after.getLastModified())
+                        .or(Query.QueryBuilder.parenthesis(Query.statement(LAST_MODIFIED_FIELD_NAME, QueryMethod.EqualTo, after.getLastModified())
+                                .and(ID_FIELD_NAME, QueryMethod.GreaterThan, IdQueries.toIdValue(after.getId()))));
+            }
+            if (cutoff != null) {
+                final Query.QueryBuilder beforeCutoff = Query.statement(LAST_MODIFIED_FIELD_NAME, QueryMethod.LessThan, cutoff);
+                query = query == null ? beforeCutoff : beforeCutoff.and(Query.QueryBuilder.parenthesis(query));
+            }
+            if (query != null) {
+                getEntities.query(query.build());
+            }
+            return getEntities;
+        }
+
+        private boolean isAtOrBefore(EntityModel entityModel, Watermark watermark) {
+            final int compared = getLastModified(entityModel).toInstant().compareTo(watermark.getLastModified().toInstant());
+            if (compared != 0) {
+                return compared < 0;
+            }
+            final Object id = IdQueries.toIdValue(entityModel.getId());
+            final Object watermarkId = IdQueries.toIdValue(watermark.getId());
+            return id instanceof Long && watermarkId instanceof Long
+                    ? (Long) id <= (Long) watermarkId
+                    : entityModel.getId().compareTo(watermark.getId()) <= 0;
+        }
+
+        private ZonedDateTime getLastModified(EntityModel entityModel) {
+            final FieldModel fieldModel = entityModel.getValue(LAST_MODIFIED_FIELD_NAME);
+            if (!(fieldModel instanceof DateFieldModel) || ((DateFieldModel) fieldModel).getValue() == null) {
+                throw new IllegalStateException("The entity " + entityModel.getId() + " of " + collectionName + " has no " + LAST_MODIFIED_FIELD_NAME);
+            }
+            return ((DateFieldModel) fieldModel).getValue();
+        }
+    }
+}
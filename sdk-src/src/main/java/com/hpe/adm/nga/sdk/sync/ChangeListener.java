@@ -0,0 +1,40 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.model.EntityModel;
+
+/**
+ * Receives the changes that are found by a {@link ChangeFeed}.  The methods are called on the thread that polls the feed
+ */
+public interface ChangeListener {
+
+    /**
+     * Called once for every entity that was created or modified since the last emitted change of its collection.  If the
+     * method throws, the feed stops and the entity is emitted again by the next poll
+     *
+     * @param collectionName the collection name of the entity
+     * @param entityModel    the entity with the fields of the feed
+     */
+    void onChange(String collectionName, EntityModel entityModel);
+
+    /**
+     * Called once for every entity that was found to be deleted when the ids of a collection were reconciled
+     *
+     * @param collectionName the collection name of the entity
+     * @param id             the id of the deleted entity
+     */
+    default void onDelete(String collectionName, String id) {
+    }
+}
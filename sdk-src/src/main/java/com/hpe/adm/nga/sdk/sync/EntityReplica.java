@@ -0,0 +1,479 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.model.OctaneCollectionSupplier;
+import com.hpe.adm.nga.sdk.query.IdQueries;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.query.QueryNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A local replica of the entities of some collections of an {@link Octane} context, for services that read the same
+ * entities much more often than they change.
+ * <br>
+ * The replica is kept fresh with a {@link ChangeFeed}: every {@link #refresh()} only gets the entities that were modified
+ * since the previous one, and deleted entities are removed when the ids are {@link #reconcileEvery(int) reconciled}.  The
+ * entities are kept with the {@link EntityStorageMode#COMPACT compact} storage.
+ * <br>
+ * Queries on the explicitly kept fields are answered from memory, see {@link #canServe(String, Query)}.  Secondary
+ * {@link #index(String, String...) indexes} on fields such as {@code phase}, {@code owner}, {@code release} or
+ * {@code parent} map the values of the field, or the ids of the referenced entities, to the entities, so that a query
+ * that compares an indexed field with a value only reads the matching entities.  {@link #getEntities(String, Query)}
+ * sends the queries that cannot be answered from memory to the server.
+ * <br>
+ * The entities are kept in the heap.  The memory-mapped segments of
+ * {@link com.hpe.adm.nga.sdk.network.cache.DiskResponseCache} are not used: they drop their oldest segment when they are
+ * full and are never compacted, so entities that did not change would be lost from the replica while the watermark of
+ * the feed tells that they were read.  A replica that is created again gets all the entities on its first refresh.
+ * <br>
+ * The replica can be read from several threads while it is refreshed.  The returned entities are shared, they must not
+ * be changed.  Create it with {@link Octane#replica()}
+ */
+public class EntityReplica {
+
+    private static final String ID_FIELD_NAME = "id";
+    private static final String LAST_MODIFIED_FIELD_NAME = "last_modified";
+
+    /**
+     * The key of the entities whose indexed field has no value
+     */
+    private static final Object NO_VALUE_KEY = new Object();
+
+    private final Octane octane;
+    private final ChangeFeed changeFeed;
+    private final Map<String, ReplicaCollection> collections = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public EntityReplica(Octane octane) {
+        this.octane = octane;
+        final Map<String, Watermark> watermarks = new ConcurrentHashMap<>();
+        // the entities are kept in memory so the watermarks are too
+        final WatermarkStore watermarkStore = new WatermarkStore() {
+            @Override
+            public Watermark load(String collectionName) {
+                return watermarks.get(collectionName);
+            }
+
+            @Override
+            public void save(String collectionName, Watermark watermark) {
+                watermarks.put(collectionName, watermark);
+            }
+        };
+        changeFeed = new ChangeFeed(octane, watermarkStore, new ReplicaListener()).storageMode(EntityStorageMode.COMPACT);
+    }
+
+    /**
+     * Adds a collection to the replica
+     *
+     * @param collectionName the collection name, for example {@code work_items}
+     * @param fields         the fields to keep, all the default fields if none are given.  Only queries on the given
+     *                       fields are answered from memory, since the default fields of a collection are not known
+     * @return this
+     */
+    public EntityReplica collection(String collectionName, String... fields) {
+        synchronized (changeFeed) {
+            changeFeed.collection(collectionName, fields);
+        }
+        collections.put(collectionName, new ReplicaCollection(fields));
+        return this;
+    }
+
+    /**
+     * Adds secondary indexes on fields of a collection
+     *
+     * @param collectionName the collection name, it must have been added to the replica
+     * @param fieldNames     the fields to index
+     * @return this
+     */
+    public EntityReplica index(String collectionName, String... fieldNames) {
+        final ReplicaCollection collection = getCollection(collectionName);
+        lock.writeLock().lock();
+        try {
+            for (String fieldName : fieldNames) {
+                collection.addIndex(fieldName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of entities in a request of a refresh, {@link ChangeFeed#DEFAULT_PAGE_SIZE} by default
+     *
+     * @param pageSize the page size
+     * @return this
+     */
+    public EntityReplica pageSize(int pageSize) {
+        synchronized (changeFeed) {
+            changeFeed.pageSize(pageSize);
+        }
+        return this;
+    }
+
+    /**
+     * Reconciles the ids of the collections after every given number of refreshes, see
+     * {@link ChangeFeed#reconcileEvery(int)}.  By default deleted entities are only removed by {@link #reconcile()}
+     *
+     * @param refreshes the number of refreshes between reconciliations, 0 to never reconcile on refresh
+     * @return this
+     */
+    public EntityReplica reconcileEvery(int refreshes) {
+        synchronized (changeFeed) {
+            changeFeed.reconcileEvery(refreshes);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the entities that were created or modified since the previous refresh, the first refresh gets all of them
+     *
+     * @return the number of created, modified and deleted entities
+     */
+    public int refresh() {
+        synchronized (changeFeed) {
+            return changeFeed.poll();
+        }
+    }
+
+    /**
+     * Removes the entities that were deleted
+     *
+     * @return the number of deleted entities
+     */
+    public int reconcile() {
+        synchronized (changeFeed) {
+            return changeFeed.reconcile();
+        }
+    }
+
+    /**
+     * @param collectionName the collection name, it must have been added to the replica
+     * @param id             the id of the entity
+     * @return the entity or null if the replica does not have it
+     */
+    public EntityModel get(String collectionName, String id) {
+        final ReplicaCollection collection = getCollection(collectionName);
+        lock.readLock().lock();
+        try {
+            return collection.entities.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param collectionName the collection name, it must have been added to the replica
+     * @return the number of entities of the collection in the replica
+     */
+    public int size(String collectionName) {
+        final ReplicaCollection collection = getCollection(collectionName);
+        lock.readLock().lock();
+        try {
+            return collection.entities.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether a query can be answered from memory.  It can if it only compares the fields that were given to
+     * {@link #collection(String, String...)} with strings without wildcards, numbers, booleans, dates or null, or the
+     * referenced entities with their ids, and joins the comparisons with and, or and not.  A field that is not kept
+     * would have no value in memory, so when the collection keeps the default fields only the query for all the
+     * entities is answered from memory
+     *
+     * @param collectionName the collection name
+     * @param query          the query, null for all the entities
+     * @return whether the query can be answered from memory
+     */
+    public boolean canServe(String collectionName, Query query) {
+        final ReplicaCollection collection = collections.get(collectionName);
+        return collection != null
+                && (query == null || (collection.fields != null && QueryEvaluator.canEvaluate(query.getNode(), collection.fields)));
+    }
+
+    /**
+     * Answers a query from memory
+     *
+     * @param collectionName the collection name, it must have been added to the replica
+     * @param query          the query, null for all the entities
+     * @return the entities that answer to the query ordered by id
+     * @throws IllegalArgumentException if the query {@link #canServe(String, Query) cannot be answered} from memory
+     */
+    public OctaneCollection<EntityModel> query(String collectionName, Query query) {
+        final ReplicaCollection collection = getCollection(collectionName);
+        if (!canServe(collectionName, query)) {
+            throw new IllegalArgumentException("The query cannot be answered by the replica: " + query);
+        }
+        final List<EntityModel> entityModels = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            final Set<String> candidates = query == null ? null : collection.getCandidates(query.getNode());
+            final Collection<String> ids = candidates == null ? collection.entities.keySet() : candidates;
+            for (String id : ids) {
+                final EntityModel entityModel = collection.entities.get(id);
+                if (entityModel != null && (query == null || QueryEvaluator.matches(query.getNode(), entityModel))) {
+                    entityModels.add(entityModel);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        entityModels.sort(Comparator.comparing(EntityModel::getId, EntityReplica::compareIds));
+        final OctaneCollection<EntityModel> result = new OctaneCollectionSupplier<EntityModel>(entityModels.size(), false).get();
+        result.addAll(entityModels);
+        return result;
+    }
+
+    /**
+     * Answers a query from memory if it {@link #canServe(String, Query) can}, and otherwise gets the kept fields of the
+     * entities that answer to it from the server
+     *
+     * @param collectionName the collection name, it must have been added to the replica
+     * @param query          the query, null for all the entities
+     * @return the entities that answer to the query
+     */
+    public OctaneCollection<EntityModel> getEntities(String collectionName, Query query) {
+        final ReplicaCollection collection = getCollection(collectionName);
+        if (canServe(collectionName, query)) {
+            return query(collectionName, query);
+        }
+        final GetEntities getEntities = octane.entityList(collectionName).get().query(query);
+        if (collection.fields != null) {
+            getEntities.addFields(collection.fields.toArray(new String[0]));
+        }
+        return getEntities.execute();
+    }
+
+    private ReplicaCollection getCollection(String collectionName) {
+        final ReplicaCollection collection = collections.get(collectionName);
+        if (collection == null) {
+            throw new IllegalArgumentException("The collection " + collectionName + " was not added to the replica");
+        }
+        return collection;
+    }
+
+    /**
+     * Ids are numeric in Octane so they are ordered as numbers when possible
+     */
+    private static int compareIds(final String left, final String right) {
+        final Object leftValue = IdQueries.toIdValue(left);
+        final Object rightValue = IdQueries.toIdValue(right);
+        return leftValue instanceof Long && rightValue instanceof Long
+                ? Long.compare((Long) leftValue, (Long) rightValue)
+                : left.compareTo(right);
+    }
+
+    /**
+     * Applies the changes of the feed to the replica
+     */
+    private final class ReplicaListener implements ChangeListener {
+
+        @Override
+        public void onChange(String collectionName, EntityModel entityModel) {
+            final ReplicaCollection collection = getCollection(collectionName);
+            lock.writeLock().lock();
+            try {
+                collection.put(entityModel);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void onDelete(String collectionName, String id) {
+            final ReplicaCollection collection = getCollection(collectionName);
+            lock.writeLock().lock();
+            try {
+                collection.remove(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The entities and the indexes of a collection, guarded by the lock of the replica
+     */
+    private static final class ReplicaCollection {
+
+        private final Set<String> fields;
+        private final Map<String, EntityModel> entities = new HashMap<>();
+        private final Map<String, Map<Object, Set<String>>> indexes = new HashMap<>();
+
+        private ReplicaCollection(String[] fields) {
+            if (fields.length == 0) {
+                this.fields = null;
+            } else {
+                final Set<String> keptFields = new LinkedHashSet<>(Arrays.asList(fields));
+                keptFields.add(ID_FIELD_NAME);
+                keptFields.add(LAST_MODIFIED_FIELD_NAME);
+                this.fields = Collections.unmodifiableSet(keptFields);
+            }
+        }
+
+        private void addIndex(String fieldName) {
+            if (indexes.containsKey(fieldName)) {
+                return;
+            }
+            final Map<Object, Set<String>> index = new HashMap<>();
+            indexes.put(fieldName, index);
+            for (EntityModel entityModel : entities.values()) {
+                addToIndex(index, fieldName, entityModel);
+            }
+        }
+
+        private void put(EntityModel entityModel) {
+            remove(entityModel.getId());
+            entities.put(entityModel.getId(), entityModel);
+            for (Map.Entry<String, Map<Object, Set<String>>> index : indexes.entrySet()) {
+                addToIndex(index.getValue(), index.getKey(), entityModel);
+            }
+        }
+
+        private void remove(String id) {
+            final EntityModel previous = entities.remove(id);
+            if (previous == null) {
+                return;
+            }
+            for (Map.Entry<String, Map<Object, Set<String>>> index : indexes.entrySet()) {
+                for (Object key : getKeys(previous, index.getKey())) {
+                    final Set<String> ids = index.getValue().get(key);
+                    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                        index.getValue().remove(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The ids of the entities that may answer to the query according to the indexes
+         *
+         * @return the ids, or null if the indexes cannot narrow the query
+         */
+        private Set<String> getCandidates(QueryNode node) {
+            if (node instanceof QueryNode.Statement) {
+                final QueryNode.Statement statement = (QueryNode.Statement) node;
+                final Map<Object, Set<String>> index = indexes.get(statement.getFieldName());
+                final Collection<Object> keys = index == null ? null : getKeys(statement);
+                if (keys == null) {
+                    return null;
+                }
+                final Set<String> candidates = new HashSet<>();
+                for (Object key : keys) {
+                    candidates.addAll(index.getOrDefault(key, Collections.emptySet()));
+                }
+                return candidates;
+            } else if (node instanceof QueryNode.Group) {
+                return getCandidates(((QueryNode.Group) node).getNode());
+            } else if (node instanceof QueryNode.Junction) {
+                final QueryNode.Junction junction = (QueryNode.Junction) node;
+                final Set<String> left = getCandidates(junction.getLeft());
+                final Set<String> right = getCandidates(junction.getRight());
+                if (junction.getOperator() == QueryNode.Junction.Operator.AND) {
+                    if (left == null || right == null) {
+                        return left == null ? right : left;
+                    }
+                    left.retainAll(right);
+                    return left;
+                }
+                if (left == null || right == null) {
+                    return null;
+                }
+                left.addAll(right);
+                return left;
+            }
+            return null;
+        }
+
+        /**
+         * The keys of the values of an equality statement, or of the ids of its cross filter
+         *
+         * @return the keys, or null if the statement is not an equality
+         */
+        private static Collection<Object> getKeys(QueryNode.Statement statement) {
+            final Object value = statement.getFieldValue();
+            if (statement.getMethod() == QueryMethod.In) {
+                final List<Object> keys = new ArrayList<>();
+                for (Object element : (Object[]) value) {
+                    keys.add(element == null ? NO_VALUE_KEY : QueryEvaluator.toKey(element));
+                }
+                return keys;
+            } else if (statement.getMethod() != QueryMethod.EqualTo) {
+                return null;
+            } else if (value == null) {
+                return Collections.singletonList(NO_VALUE_KEY);
+            } else if (value instanceof QueryNode) {
+                QueryNode crossFilter = (QueryNode) value;
+                while (crossFilter instanceof QueryNode.Group) {
+                    crossFilter = ((QueryNode.Group) crossFilter).getNode();
+                }
+                return crossFilter instanceof QueryNode.Statement && ID_FIELD_NAME.equals(((QueryNode.Statement) crossFilter).getFieldName())
+                        ? getKeys((QueryNode.Statement) crossFilter)
+                        : null;
+            }
+            return Collections.singletonList(QueryEvaluator.toKey(value));
+        }
+
+        private static void addToIndex(Map<Object, Set<String>> index, String fieldName, EntityModel entityModel) {
+            for (Object key : getKeys(entityModel, fieldName)) {
+                index.computeIfAbsent(key, ignored -> new HashSet<>()).add(entityModel.getId());
+            }
+        }
+
+        /**
+         * The keys of the value of a field: the value, the id of the referenced entity or the ids of the referenced
+         * entities
+         */
+        private static Collection<Object> getKeys(EntityModel entityModel, String fieldName) {
+            final FieldModel fieldModel = entityModel.getValue(fieldName);
+            final Object value = fieldModel == null ? null : fieldModel.getValue();
+            if (value instanceof Collection) {
+                final Collection<?> values = (Collection<?>) value;
+                if (values.isEmpty()) {
+                    return Collections.singletonList(NO_VALUE_KEY);
+                }
+                final List<Object> keys = new ArrayList<>(values.size());
+                for (Object element : values) {
+                    keys.add(QueryEvaluator.toKey(element));
+                }
+                return keys;
+            }
+            return Collections.singletonList(value == null ? NO_VALUE_KEY : QueryEvaluator.toKey(value));
+        }
+    }
+}
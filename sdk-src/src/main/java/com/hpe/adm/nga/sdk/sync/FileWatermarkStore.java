@@ -0,0 +1,94 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.Properties;
+
+/**
+ * A {@link WatermarkStore} that keeps the watermarks in a properties file, one line per collection.  The file is
+ * rewritten on every save by writing a temporary file next to it and moving it over the old file, so a feed that is
+ * stopped in the middle of a save finds either the old or the new watermarks
+ */
+public class FileWatermarkStore implements WatermarkStore {
+
+    private static final char SEPARATOR = ' ';
+
+    private final Path file;
+    private Properties properties;
+
+    /**
+     * @param file the file of the watermarks, it is created on the first save
+     */
+    public FileWatermarkStore(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized Watermark load(String collectionName) {
+        final String value = getProperties().getProperty(collectionName);
+        if (value == null) {
+            return null;
+        }
+        final int separator = value.indexOf(SEPARATOR);
+        return new Watermark(ZonedDateTime.parse(value.substring(0, separator)), value.substring(separator + 1));
+    }
+
+    @Override
+    public synchronized void save(String collectionName, Watermark watermark) {
+        getProperties().setProperty(collectionName, watermark.getLastModified().toString() + SEPARATOR + watermark.getId());
+        try {
+            final Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+                    properties.store(outputStream, "Change feed watermarks");
+                }
+                try {
+                    Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Properties getProperties() {
+        if (properties == null) {
+            final Properties loaded = new Properties();
+            if (Files.exists(file)) {
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    loaded.load(inputStream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            properties = loaded;
+        }
+        return properties;
+    }
+}
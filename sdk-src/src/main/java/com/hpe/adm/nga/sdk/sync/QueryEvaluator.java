@@ -0,0 +1,242 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.query.QueryNode;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Evaluates the tree of a {@link com.hpe.adm.nga.sdk.query.Query} against entities that are kept in memory.
+ * <br>
+ * Only the queries whose outcome is certain are evaluated: statements that compare a field with a string, a number, a
+ * boolean, a date or null, joined by and, or and not, and cross filters on the id of a referenced entity.  Strings are
+ * compared exactly, so a string with a wildcard is not evaluated.  Numbers are compared by value, and a string that
+ * holds a number, such as an id, is compared with a number as a number
+ */
+final class QueryEvaluator {
+
+    private static final String ID_FIELD_NAME = "id";
+    private static final Set<String> CROSS_FILTER_FIELDS = Collections.singleton(ID_FIELD_NAME);
+
+    private QueryEvaluator() {
+    }
+
+    /**
+     * @param node   the tree of the query
+     * @param fields the fields that the entities are known to have
+     * @return whether the query can be evaluated in memory
+     */
+    static boolean canEvaluate(final QueryNode node, final Set<String> fields) {
+        if (node instanceof QueryNode.Statement) {
+            final QueryNode.Statement statement = (QueryNode.Statement) node;
+            if (!fields.contains(statement.getFieldName())) {
+                return false;
+            }
+            final Object value = statement.getFieldValue();
+            switch (statement.getMethod()) {
+                case In:
+                    if (!(value instanceof Object[])) {
+                        return false;
+                    }
+                    for (Object element : (Object[]) value) {
+                        if (!isScalar(element)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case Between:
+                    return value instanceof QueryMethod.Between
+                            && isScalar(((QueryMethod.Between) value).getLower()) && isScalar(((QueryMethod.Between) value).getUpper());
+                case EqualTo:
+                    return value instanceof QueryNode ? canEvaluate((QueryNode) value, CROSS_FILTER_FIELDS) : isScalar(value);
+                default:
+                    return value != null && isScalar(value);
+            }
+        } else if (node instanceof QueryNode.Junction) {
+            return canEvaluate(((QueryNode.Junction) node).getLeft(), fields) && canEvaluate(((QueryNode.Junction) node).getRight(), fields);
+        } else if (node instanceof QueryNode.Not) {
+            return canEvaluate(((QueryNode.Not) node).getNode(), fields);
+        } else if (node instanceof QueryNode.Group) {
+            return canEvaluate(((QueryNode.Group) node).getNode(), fields);
+        }
+        return false;
+    }
+
+    /**
+     * @param node        the tree of a query that {@link #canEvaluate(QueryNode, Set) can be evaluated}
+     * @param entityModel the entity
+     * @return whether the entity answers to the query
+     */
+    static boolean matches(final QueryNode node, final EntityModel entityModel) {
+        if (node instanceof QueryNode.Statement) {
+            return matches((QueryNode.Statement) node, entityModel);
+        } else if (node instanceof QueryNode.Junction) {
+            final QueryNode.Junction junction = (QueryNode.Junction) node;
+            return junction.getOperator() == QueryNode.Junction.Operator.AND
+                    ? matches(junction.getLeft(), entityModel) && matches(junction.getRight(), entityModel)
+                    : matches(junction.getLeft(), entityModel) || matches(junction.getRight(), entityModel);
+        } else if (node instanceof QueryNode.Not) {
+            return !matches(((QueryNode.Not) node).getNode(), entityModel);
+        } else if (node instanceof QueryNode.Group) {
+            return matches(((QueryNode.Group) node).getNode(), entityModel);
+        }
+        throw new IllegalArgumentException("The query cannot be evaluated: " + node);
+    }
+
+    /**
+     * The key of a value in an index, so that values that are equal for a query have the same key
+     *
+     * @param value the value of a field or of a query, null for no value
+     * @return the key
+     */
+    static Object toKey(final Object value) {
+        if (value instanceof EntityModel) {
+            return toKey(((EntityModel) value).getId());
+        } else if (value instanceof Number) {
+            return toNumber(value).stripTrailingZeros().toPlainString();
+        } else if (value instanceof String) {
+            final BigDecimal number = toNumber(value);
+            return number == null ? value : number.stripTrailingZeros().toPlainString();
+        } else if (value instanceof ZonedDateTime || value instanceof Date) {
+            return toInstant(value);
+        }
+        return value;
+    }
+
+    private static boolean matches(final QueryNode.Statement statement, final EntityModel entityModel) {
+        final FieldModel fieldModel = ID_FIELD_NAME.equals(statement.getFieldName()) ? null : entityModel.getValue(statement.getFieldName());
+        final Object fieldValue = ID_FIELD_NAME.equals(statement.getFieldName())
+                ? entityModel.getId()
+                : fieldModel == null ? null : fieldModel.getValue();
+        final Object value = statement.getFieldValue();
+        switch (statement.getMethod()) {
+            case EqualTo:
+                if (value instanceof QueryNode) {
+                    return matchesCrossFilter((QueryNode) value, fieldValue);
+                }
+                return isEqual(fieldValue, value);
+            case In:
+                for (Object element : (Object[]) value) {
+                    if (isEqual(fieldValue, element)) {
+                        return true;
+                    }
+                }
+                return false;
+            case Between:
+                final Integer lower = compare(fieldValue, ((QueryMethod.Between) value).getLower());
+                final Integer upper = compare(fieldValue, ((QueryMethod.Between) value).getUpper());
+                return lower != null && upper != null && lower >= 0 && upper <= 0;
+            default:
+                final Integer compared = compare(fieldValue, value);
+                if (compared == null) {
+                    return false;
+                }
+                switch (statement.getMethod()) {
+                    case LessThan:
+                        return compared < 0;
+                    case GreaterThan:
+                        return compared > 0;
+                    case LessThanOrEqualTo:
+                        return compared <= 0;
+                    default:
+                        return compared >= 0;
+                }
+        }
+    }
+
+    private static boolean matchesCrossFilter(final QueryNode crossFilter, final Object fieldValue) {
+        if (fieldValue instanceof EntityModel) {
+            return matches(crossFilter, (EntityModel) fieldValue);
+        } else if (fieldValue instanceof Collection) {
+            for (Object element : (Collection<?>) fieldValue) {
+                if (element instanceof EntityModel && matches(crossFilter, (EntityModel) element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEqual(final Object fieldValue, final Object value) {
+        if (value == null) {
+            return fieldValue == null || fieldValue instanceof Collection && ((Collection<?>) fieldValue).isEmpty();
+        }
+        final Integer compared = compare(fieldValue, value);
+        return compared != null && compared == 0;
+    }
+
+    /**
+     * @return the comparison of the values or null if they cannot be compared
+     */
+    private static Integer compare(final Object fieldValue, final Object value) {
+        if (fieldValue == null || value == null) {
+            return null;
+        }
+        if (fieldValue instanceof ZonedDateTime) {
+            return value instanceof ZonedDateTime || value instanceof Date ? toInstant(fieldValue).compareTo(toInstant(value)) : null;
+        }
+        if (fieldValue instanceof Boolean) {
+            return value instanceof Boolean ? Boolean.compare((Boolean) fieldValue, (Boolean) value) : null;
+        }
+        if (fieldValue instanceof Number || value instanceof Number) {
+            final BigDecimal left = toNumber(fieldValue);
+            final BigDecimal right = toNumber(value);
+            return left == null || right == null ? null : left.compareTo(right);
+        }
+        if (fieldValue instanceof String && value instanceof String) {
+            return ((String) fieldValue).compareTo((String) value);
+        }
+        return null;
+    }
+
+    private static boolean isScalar(final Object value) {
+        return value == null
+                || value instanceof String && ((String) value).indexOf('*') < 0
+                || value instanceof Number
+                || value instanceof Boolean
+                || value instanceof ZonedDateTime
+                || value instanceof Date;
+    }
+
+    private static BigDecimal toNumber(final Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof Float || value instanceof Double) {
+            return new BigDecimal(value.toString());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof String) {
+            try {
+                return new BigDecimal((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Instant toInstant(final Object value) {
+        return value instanceof Date ? ((Date) value).toInstant() : ((ZonedDateTime) value).toInstant();
+    }
+}
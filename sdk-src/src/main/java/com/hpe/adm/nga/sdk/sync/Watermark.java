@@ -0,0 +1,69 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * The position of a {@link ChangeFeed} in a collection: the last modification time and the id of the last entity that was
+ * emitted.  Entities are emitted ordered by their last modification time and then by their id, so every entity that was
+ * modified after the watermark, or at the same time but has a greater id, has not been emitted yet
+ */
+public final class Watermark {
+
+    private final ZonedDateTime lastModified;
+    private final String id;
+
+    public Watermark(ZonedDateTime lastModified, String id) {
+        this.lastModified = Objects.requireNonNull(lastModified, "lastModified");
+        this.id = Objects.requireNonNull(id, "id");
+    }
+
+    /**
+     * @return the last modification time of the last emitted entity
+     */
+    public ZonedDateTime getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the id of the last emitted entity
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Watermark watermark = (Watermark) o;
+        return lastModified.toInstant().equals(watermark.lastModified.toInstant()) && id.equals(watermark.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModified.toInstant(), id);
+    }
+
+    @Override
+    public String toString() {
+        return lastModified + "/" + id;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+/**
+ * Keeps the {@link Watermark watermarks} of a {@link ChangeFeed} so that a feed that is restarted continues where it
+ * stopped.  The default store is the {@link FileWatermarkStore}
+ */
+public interface WatermarkStore {
+
+    /**
+     * Loads the watermark of a collection
+     *
+     * @param collectionName the collection name, for example {@code defects}
+     * @return the watermark or null if nothing was emitted from the collection yet
+     */
+    Watermark load(String collectionName);
+
+    /**
+     * Saves the watermark of a collection, replacing the previous one
+     *
+     * @param collectionName the collection name, for example {@code defects}
+     * @param watermark      the watermark
+     */
+    void save(String collectionName, Watermark watermark);
+}
@@ -0,0 +1,93 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.create.CreateEntities;
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.entities.get.GetEntity;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the executeAsync methods of the entity request builders
+ */
+public class TestAsyncExecution {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+    private static final String ENTITIES_JSON = "{\"total_count\":1,\"data\":[{\"type\":\"defect\",\"id\":\"1001\",\"name\":\"first\"}],\"exceeds_total_count\":false}";
+    private static final String ENTITY_JSON = "{\"type\":\"defect\",\"id\":\"1001\",\"name\":\"first\"}";
+
+    @Test
+    public void testGetEntitiesAsync() {
+        final FakeOctaneHttpClient httpClient = FakeOctaneHttpClient.returning(ENTITIES_JSON);
+        final OctaneCollection<EntityModel> entities = new GetEntities(httpClient, DOMAIN).executeAsync().join();
+
+        assertEquals(1, entities.size());
+        assertEquals(1, entities.getTotalCount());
+        assertEquals("1001", entities.iterator().next().getId());
+    }
+
+    @Test
+    public void testGetEntityAsyncOnExecutor() throws InterruptedException {
+        final FakeOctaneHttpClient httpClient = FakeOctaneHttpClient.returning(ENTITY_JSON);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "async-test"));
+        try {
+            final EntityModel entityModel = new GetEntity(httpClient, DOMAIN, "1001").executeAsync(executor).join();
+            assertEquals("first", entityModel.getValue("name").getValue());
+            assertEquals(Collections.singletonList("async-test"), httpClient.getExecutingThreads());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testCreateEntitiesAsyncSendsBody() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> FakeOctaneHttpClient.jsonResponse(201, ENTITIES_JSON));
+        final EntityModel entityModel = new EntityModel("name", "first");
+
+        final CompletableFuture<OctaneCollection<EntityModel>> future =
+                new CreateEntities(httpClient, DOMAIN).entities(Collections.singletonList(entityModel)).executeAsync();
+
+        assertEquals(1, future.join().size());
+        assertTrue(httpClient.getRequests().get(0) instanceof OctaneHttpRequest.PostOctaneHttpRequest);
+        assertTrue(((OctaneHttpRequest.PostOctaneHttpRequest) httpClient.getRequests().get(0)).getContent().contains("\"first\""));
+    }
+
+    @Test
+    public void testAsyncFailureCompletesExceptionally() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> {
+            throw new OctaneException(new ErrorModel(Collections.emptySet()));
+        });
+        try {
+            new GetEntities(httpClient, DOMAIN).executeAsync().join();
+            fail("Expected the future to complete exceptionally");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof OctaneException);
+        }
+    }
+}
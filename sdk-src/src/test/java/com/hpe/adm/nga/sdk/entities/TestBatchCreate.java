@@ -0,0 +1,191 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.create.CreateEntities;
+import com.hpe.adm.nga.sdk.exception.OctaneBatchException;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
+import com.hpe.adm.nga.sdk.exception.OctanePartialException;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ErrorModel;
+import com.hpe.adm.nga.sdk.model.FieldModel;
+import com.hpe.adm.nga.sdk.model.LongFieldModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for creating entities in batches with {@link CreateEntities#batches(int, int)}
+ */
+public class TestBatchCreate {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+
+    private final AtomicInteger unavailableResponses = new AtomicInteger(1);
+
+    // creates each entity with the id in its name; fails the entities named "bad", answers 503 once to a batch with an
+    // entity named "flaky", answers 429 with a Retry-After of one second once to a batch with an entity named "busy",
+    // answers 502 once to a batch with an entity named "gateway", cannot reach the server for a batch with an entity
+    // named "down" and times out for a batch with one named "timeout"
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(this::create);
+
+    @Test
+    public void testEntitiesAreCreatedInBatches() {
+        final OctaneCollection<EntityModel> createdEntities = new CreateEntities(httpClient, DOMAIN)
+                .entities(entities(IntStream.range(0, 250).mapToObj(String::valueOf).toArray(String[]::new)))
+                .batches(100, 2)
+                .execute();
+
+        assertEquals(3, httpClient.getRequests().size());
+        assertEquals(IntStream.range(0, 250).mapToObj(String::valueOf).collect(Collectors.toList()),
+                createdEntities.stream().map(EntityModel::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testErrorsAreMappedToTheirInput() {
+        final List<EntityModel> entities = entities("0", "bad", "2", "3", "flaky", "5", "down", "7");
+        try {
+            new CreateEntities(httpClient, DOMAIN).entities(entities).batches(2, 3).retries(1).executeAsync().join();
+            fail("The failed entities should be reported");
+        } catch (CompletionException e) {
+            final OctaneBatchException batchException = (OctaneBatchException) e.getCause();
+            assertTrue(batchException instanceof OctanePartialException);
+            assertEquals(entities, batchException.getInputEntities());
+            assertEquals(new HashSet<>(Arrays.asList(1, 6, 7)), batchException.getErrorsByIndex().keySet());
+            assertEquals("bad", batchException.getErrorsByIndex().get(1).getValue("description").getValue());
+            assertSame(batchException.getErrorsByIndex().get(6), batchException.getErrorsByIndex().get(7));
+            assertEquals(2, batchException.getErrorModels().size());
+            assertEquals(Arrays.asList("0", "2", "3", "4", "5"),
+                    batchException.getEntitiesModels().stream().map(EntityModel::getId).collect(Collectors.toList()));
+        }
+        // the batch with the flaky entity is sent again, the one that cannot reach the server as well
+        assertEquals(6, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testTransientErrorsAreNotRetriedByDefault() {
+        try {
+            new CreateEntities(httpClient, DOMAIN).entities(entities("flaky", "1")).batches(1, 1).execute();
+            fail("The failed entity should be reported");
+        } catch (OctaneBatchException e) {
+            assertEquals(1, e.getErrorsByIndex().size());
+            assertEquals(Long.valueOf(503), e.getErrorsByIndex().get(0).getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME).getValue());
+            assertEquals(1, e.getEntitiesModels().size());
+        }
+    }
+
+    @Test
+    public void testRetryWaitsForRetryAfter() {
+        final long start = System.nanoTime();
+        final OctaneCollection<EntityModel> createdEntities = new CreateEntities(httpClient, DOMAIN)
+                .entities(entities("busy")).batches(1, 1).retries(1).execute();
+
+        assertEquals(1, createdEntities.size());
+        assertEquals(2, httpClient.getRequests().size());
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testGatewayErrorsAreOnlyRetriedWhenAsked() {
+        // the gateway may have passed the batch on to the server, which created the entity
+        try {
+            new CreateEntities(httpClient, DOMAIN).entities(entities("gateway")).batches(1, 1).retries(1).execute();
+            fail("The failed entity should be reported");
+        } catch (OctaneBatchException e) {
+            assertEquals(Long.valueOf(502), e.getErrorsByIndex().get(0).getValue(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME).getValue());
+        }
+        assertEquals(1, httpClient.getRequests().size());
+
+        unavailableResponses.set(1);
+        final OctaneCollection<EntityModel> createdEntities = new CreateEntities(httpClient, DOMAIN)
+                .entities(entities("gateway")).batches(1, 1).retries(1).retryGatewayErrors().execute();
+        assertEquals(1, createdEntities.size());
+        assertEquals(3, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testReadTimeoutIsNotRetried() {
+        // the server may have created the entities before the response timed out
+        try {
+            new CreateEntities(httpClient, DOMAIN).entities(entities("timeout")).batches(1, 1).retries(3).execute();
+            fail("The failed entity should be reported");
+        } catch (OctaneBatchException e) {
+            assertEquals(1, e.getErrorsByIndex().size());
+        }
+        assertEquals(1, httpClient.getRequests().size());
+    }
+
+    private OctaneHttpResponse create(OctaneHttpRequest request) {
+        final JSONArray data = new JSONObject(((OctaneHttpRequest.PostOctaneHttpRequest) request).getContent()).getJSONArray("data");
+        final List<String> names = IntStream.range(0, data.length()).mapToObj(i -> data.getJSONObject(i).getString("name")).collect(Collectors.toList());
+        if (names.contains("down")) {
+            throw new RuntimeException(new ConnectException("Connection refused"));
+        }
+        if (names.contains("timeout")) {
+            throw new RuntimeException(new SocketTimeoutException("Read timed out"));
+        }
+        if (names.contains("busy") && unavailableResponses.getAndDecrement() > 0) {
+            throw OctaneExceptionFactory.fromResponse(429, "Too Many Requests", "<html>busy</html>", null, "1");
+        }
+        if (names.contains("gateway") && unavailableResponses.getAndDecrement() > 0) {
+            throw OctaneExceptionFactory.fromResponse(502, "Bad Gateway", "<html>bad gateway</html>", null, null);
+        }
+        if (names.contains("flaky") && unavailableResponses.getAndDecrement() > 0) {
+            throw new OctaneException(error(new LongFieldModel(ErrorModel.HTTP_STATUS_CODE_PROPERTY_NAME, 503L)));
+        }
+        final List<String> createdEntities = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equals("bad")) {
+                errors.add("{\"index\":" + i + ",\"error_code\":\"platform.missing_required_field\",\"description\":\"bad\"}");
+            } else {
+                final String id = names.get(i).equals("flaky") ? "4" : names.get(i);
+                createdEntities.add("{\"type\":\"defect\",\"id\":\"" + id + "\"}");
+            }
+        }
+        final String json = "{\"total_count\":" + createdEntities.size() + ",\"data\":[" + String.join(",", createdEntities) + "]" +
+                (errors.isEmpty() ? "" : ",\"errors\":[" + String.join(",", errors) + "]") + "}";
+        if (!errors.isEmpty()) {
+            // the partial failure is parsed from the json like the http clients do
+            throw OctaneExceptionFactory.fromResponse(409, null, json, null);
+        }
+        return FakeOctaneHttpClient.jsonResponse(201, json);
+    }
+
+    private static ErrorModel error(FieldModel... fields) {
+        return new ErrorModel(new HashSet<>(Arrays.asList(fields)));
+    }
+
+    private static List<EntityModel> entities(String... names) {
+        return Arrays.stream(names).map(name -> new EntityModel("name", name)).collect(Collectors.toList());
+    }
+}
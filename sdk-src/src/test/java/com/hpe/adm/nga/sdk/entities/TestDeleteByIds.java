@@ -0,0 +1,92 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.delete.DeleteResult;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for deleting entities by their ids with {@link EntityList#deleteByIds}
+ */
+public class TestDeleteByIds {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+
+    // deletes the requested entities except those whose id is a multiple of 10, and fails a request with the id 555
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> {
+        if (FakeOctaneHttpClient.requestedIds(request.getRequestUrl()).contains("555")) {
+            throw new RuntimeException("Connection reset");
+        }
+        return FakeOctaneHttpClient.entitiesByRequestedIds(request, id ->
+                Integer.parseInt(id) % 10 == 0 ? null : FakeOctaneHttpClient.entity("defect", id));
+    });
+
+    @Test
+    public void testIdsAreDeletedInChunks() {
+        final List<String> ids = IntStream.range(1, 1001).mapToObj(String::valueOf).collect(Collectors.toList());
+
+        final DeleteResult result = new EntityList(httpClient, DOMAIN).deleteByIds(ids).parallelism(3).execute();
+
+        assertEquals(10, httpClient.getRequests().size());
+        for (OctaneHttpRequest request : httpClient.getRequests()) {
+            assertTrue(request instanceof OctaneHttpRequest.DeleteOctaneHttpRequest);
+        }
+        final Set<String> failedIds = IntStream.range(501, 601).mapToObj(String::valueOf).collect(Collectors.toSet());
+        assertEquals(failedIds, result.getFailedIds().keySet());
+        assertEquals("java.lang.RuntimeException: Connection reset", result.getFailedIds().get("555").getValue("description").getValue());
+        assertEquals(90, result.getMissingIds().size());
+        assertEquals(810, result.getDeletedIds().size());
+        assertEquals("1", result.getDeletedIds().iterator().next());
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void testLongChunksAreSplitToFitTheUrl() {
+        final List<String> ids = IntStream.range(0, 1000).mapToObj(i -> String.valueOf(1_000_000_001L + i)).collect(Collectors.toList());
+
+        final DeleteResult result = new EntityList(httpClient, DOMAIN).deleteByIds(ids).chunkSize(1000).executeAsync().join();
+
+        assertTrue(httpClient.getRequests().size() > 1);
+        final List<String> requestedIds = new ArrayList<>();
+        for (OctaneHttpRequest request : httpClient.getRequests()) {
+            assertTrue(OctaneUrl.encodedLength(request.getRequestUrl()) <= 4096);
+            requestedIds.addAll(FakeOctaneHttpClient.requestedIds(request.getRequestUrl()));
+        }
+        assertEquals(new HashSet<>(ids), new HashSet<>(requestedIds));
+        assertEquals(1000, requestedIds.size());
+        assertEquals(900, result.getDeletedIds().size());
+    }
+
+    @Test
+    public void testDuplicateIdsAreDeletedOnce() {
+        final DeleteResult result = new EntityList(httpClient, DOMAIN).deleteByIds(Arrays.asList("1", "2", "1", null)).execute();
+
+        assertEquals(1, httpClient.getRequests().size());
+        assertEquals(Arrays.asList("1", "2"), new ArrayList<>(result.getDeletedIds()));
+        assertTrue(result.isComplete());
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.entities.update.UpdateBuffer;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.StringFieldModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the read-through {@link EntityCache} of the entity lists
+ */
+public class TestEntityCache {
+
+    private final CountDownLatch releaseGets = new CountDownLatch(1);
+    private volatile boolean blockGets = false;
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(this::handle);
+
+    @Test
+    public void testEntitiesAreCachedByIdAndFields() {
+        final EntityCache entityCache = new EntityCache();
+        final EntityList defects = octane(entityCache).entityList("defects");
+
+        final EntityModel defect = defects.at("1").get().addFields("name").execute();
+        defect.setValue(new StringFieldModel("name", "changed locally"));
+        assertEquals("defect 1", defects.at("1").get().addFields("name").execute().getValue("name").getValue());
+        assertEquals(1, httpClient.getRequests().size());
+
+        defects.at("1").get().addFields("name", "owner").execute();
+        defects.at("2").get().addFields("name").execute();
+        assertEquals(3, httpClient.getRequests().size());
+
+        // the referenced entities are copied too
+        final EntityModel owner = (EntityModel) defects.at("1").get().addFields("name").execute().getValue("owner").getValue();
+        owner.setValue(new StringFieldModel("name", "loaded by a reference loader"));
+        final EntityModel cachedOwner = (EntityModel) defects.at("1").get().addFields("name").execute().getValue("owner").getValue();
+        assertNull(cachedOwner.getValue("name"));
+        assertEquals(3, httpClient.getRequests().size());
+
+        final EntityCache.Stats stats = entityCache.getStats();
+        assertEquals(3, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(3, stats.getLoadCount());
+        assertEquals(3, entityCache.size());
+    }
+
+    @Test
+    public void testConcurrentMissesSendOneRequest() throws Exception {
+        final EntityCache entityCache = new EntityCache();
+        final EntityList defects = octane(entityCache).entityList("defects");
+        blockGets = true;
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<EntityModel>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> defects.at("1").get().execute()));
+            }
+            while (entityCache.getStats().getMissCount() < 8) {
+                Thread.sleep(5);
+            }
+            releaseGets.countDown();
+            for (Future<EntityModel> future : futures) {
+                assertEquals("1", future.get(5, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, httpClient.getRequests().size());
+        assertEquals(1, entityCache.getStats().getLoadCount());
+    }
+
+    @Test
+    public void testChangeOnlyDiscardsTheLoadOfTheChangedEntity() throws Exception {
+        final EntityCache entityCache = new EntityCache();
+        final EntityList defects = octane(entityCache).entityList("defects");
+        blockGets = true;
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final Future<EntityModel> first = executorService.submit(() -> defects.at("1").get().execute());
+            final Future<EntityModel> second = executorService.submit(() -> defects.at("2").get().execute());
+            while (entityCache.getStats().getLoadCount() < 2) {
+                Thread.sleep(5);
+            }
+            defects.at("2").delete().execute();
+            releaseGets.countDown();
+            assertEquals("1", first.get(5, TimeUnit.SECONDS).getId());
+            assertEquals("2", second.get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // the load of 2 may have read the entity before it was deleted
+        assertEquals(1, entityCache.size());
+        httpClient.getRequests().clear();
+        defects.at("1").get().execute();
+        assertEquals(0, httpClient.getRequests().size());
+        defects.at("2").get().execute();
+        assertEquals(1, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testWritesInvalidateOrRefreshTheCache() {
+        final EntityCache entityCache = new EntityCache();
+        final EntityList defects = octane(entityCache).entityList("defects");
+        defects.at("1").get().addFields("name").execute();
+        defects.at("1").get().execute();
+
+        // the response of the update has the name so it replaces the entity with the name, the other one is removed
+        defects.at("1").update().entity(new EntityModel("name", "renamed")).execute();
+        assertEquals(1, entityCache.size());
+        assertEquals("renamed", defects.at("1").get().addFields("name").execute().getValue("name").getValue());
+
+        defects.at("2").get().addFields("owner").execute();
+        final EntityModel update = new EntityModel("name", "renamed");
+        update.setValue(new StringFieldModel("id", "2"));
+        defects.update().entities(Collections.singletonList(update)).execute();
+        assertEquals(1, entityCache.size());
+
+        defects.at("1").delete().execute();
+        assertEquals(0, entityCache.size());
+        httpClient.getRequests().clear();
+        defects.at("1").get().addFields("name").execute();
+        assertEquals(1, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testBufferedUpdatesRefreshTheCache() {
+        final EntityCache entityCache = new EntityCache();
+        final EntityList defects = octane(entityCache).entityList("defects");
+        defects.at("1").get().addFields("name").execute();
+        defects.at("2").get().addFields("name", "owner").execute();
+
+        try (UpdateBuffer updateBuffer = defects.updateBuffer()) {
+            for (String id : new String[]{"1", "2"}) {
+                final EntityModel update = new EntityModel("name", "buffered " + id);
+                update.setValue(new StringFieldModel("id", id));
+                updateBuffer.update(update);
+            }
+        }
+
+        // the response has the name of 1 but not the owner of 2
+        assertEquals(1, entityCache.size());
+        httpClient.getRequests().clear();
+        assertEquals("buffered 1", defects.at("1").get().addFields("name").execute().getValue("name").getValue());
+        assertEquals(0, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testChangesInvalidateTheEntityInEveryCollection() {
+        final EntityCache entityCache = new EntityCache();
+        final Octane octane = octane(entityCache);
+        octane.entityList("defects").at("1").get().addFields("name").execute();
+        octane.entityList("work_items").at("1").get().addFields("name").execute();
+        octane.entityList("work_items").at("2").get().addFields("name").execute();
+        assertEquals(3, entityCache.size());
+
+        // the work item has another type so it cannot be replaced by the updated defect
+        octane.entityList("defects").at("1").update().entity(new EntityModel("name", "renamed")).execute();
+        assertEquals(2, entityCache.size());
+        httpClient.getRequests().clear();
+        assertEquals("renamed", octane.entityList("defects").at("1").get().addFields("name").execute().getValue("name").getValue());
+        assertEquals("defect 1", octane.entityList("work_items").at("1").get().addFields("name").execute().getValue("name").getValue());
+        assertEquals(1, httpClient.getRequests().size());
+
+        octane.entityList("defects").at("2").delete().execute();
+        assertEquals(2, entityCache.size());
+        octane.entityList("defects").delete().query(Query.statement("id", QueryMethod.EqualTo, 1).build()).execute();
+        assertEquals(0, entityCache.size());
+    }
+
+    @Test
+    public void testEntitiesAreEvictedWhenFullOrExpired() throws Exception {
+        final EntityCache entityCache = new EntityCache(2, 100, TimeUnit.MILLISECONDS);
+        final EntityList defects = octane(entityCache).entityList("defects");
+        defects.at("1").get().execute();
+        defects.at("2").get().execute();
+        defects.at("1").get().execute();
+        defects.at("3").get().execute();
+        assertEquals(2, entityCache.size());
+        assertEquals(1, entityCache.getStats().getEvictionCount());
+
+        // 2 was the least recently used
+        httpClient.getRequests().clear();
+        defects.at("1").get().execute();
+        assertEquals(0, httpClient.getRequests().size());
+        defects.at("2").get().execute();
+        assertEquals(1, httpClient.getRequests().size());
+
+        Thread.sleep(150);
+        defects.at("2").get().execute();
+        assertEquals(2, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testReferencedEntitiesSurviveTheEviction() {
+        final EntityCache entityCache = new EntityCache(10, 1, TimeUnit.MINUTES);
+        final EntityList defects = octane(entityCache).entityList("defects");
+        for (int id = 1; id <= 100; id++) {
+            defects.at(String.valueOf(id)).get().execute();
+            // 1 is read between every load
+            defects.at("1").get().execute();
+        }
+        assertEquals(10, entityCache.size());
+        assertEquals(90, entityCache.getStats().getEvictionCount());
+
+        httpClient.getRequests().clear();
+        defects.at("1").get().execute();
+        defects.at("100").get().execute();
+        assertEquals(0, httpClient.getRequests().size());
+    }
+
+    private Octane octane(EntityCache entityCache) {
+        return FakeOctaneHttpClient.octaneBuilder(httpClient).entityCache(entityCache).build();
+    }
+
+    private OctaneHttpResponse handle(OctaneHttpRequest request) {
+        final String url = request.getRequestUrl();
+        if (request instanceof OctaneHttpRequest.PutOctaneHttpRequest) {
+            // the updated entity is returned as it was sent, with its id
+            final JSONObject content = new JSONObject(((OctaneHttpRequest.PutOctaneHttpRequest) request).getContent());
+            if (content.has("data")) {
+                return FakeOctaneHttpClient.jsonResponse(200, new JSONObject().put("total_count", 1).put("data", content.getJSONArray("data")).toString());
+            }
+            return FakeOctaneHttpClient.jsonResponse(200, content.put("type", "defect").put("id", id(url)).toString());
+        } else if (request instanceof OctaneHttpRequest.DeleteOctaneHttpRequest) {
+            return FakeOctaneHttpClient.jsonResponse(200, "");
+        }
+        if (blockGets) {
+            try {
+                releaseGets.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final String id = id(url);
+        return FakeOctaneHttpClient.jsonResponse(200, new JSONObject()
+                .put("type", url.contains("/work_items/") ? "work_item" : "defect")
+                .put("id", id)
+                .put("name", "defect " + id)
+                .put("owner", new JSONObject().put("type", "workspace_user").put("id", "10"))
+                .toString());
+    }
+
+    private static String id(String url) {
+        final String path = url.contains("?") ? url.substring(0, url.indexOf('?')) : url;
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
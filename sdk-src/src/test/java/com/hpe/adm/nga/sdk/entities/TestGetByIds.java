@@ -0,0 +1,86 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.get.EntitiesById;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for getting entities by their ids with {@link EntityList#getByIds}
+ */
+public class TestGetByIds {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+
+    // returns the requested entities in reverse order, except the ones whose id is a multiple of 7
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> {
+        final List<String> ids = FakeOctaneHttpClient.requestedIds(request.getRequestUrl());
+        ids.removeIf(id -> Integer.parseInt(id) % 7 == 0);
+        Collections.reverse(ids);
+        return FakeOctaneHttpClient.entitiesResponse(ids.stream().map(id -> FakeOctaneHttpClient.entity("defect", id)).collect(Collectors.toList()));
+    });
+
+    @Test
+    public void testEntitiesAreKeyedInRequestOrderWithMissingIds() {
+        final List<String> ids = IntStream.rangeClosed(1, 2000).mapToObj(String::valueOf).collect(Collectors.toList());
+        Collections.shuffle(ids);
+
+        final EntitiesById<EntityModel> entities = new EntityList(httpClient, DOMAIN).getByIds(ids, "name").execute();
+
+        assertEquals(20, httpClient.getRequests().size());
+        for (OctaneHttpRequest request : httpClient.getRequests()) {
+            assertTrue(request.getRequestUrl().contains("fields=name"));
+            assertTrue(request.getRequestUrl().contains("limit=100"));
+        }
+        final List<String> expectedIds = ids.stream().filter(id -> Integer.parseInt(id) % 7 != 0).collect(Collectors.toList());
+        final List<String> expectedMissingIds = ids.stream().filter(id -> Integer.parseInt(id) % 7 == 0).collect(Collectors.toList());
+        assertEquals(expectedIds, new ArrayList<>(entities.getEntities().keySet()));
+        assertEquals(expectedMissingIds, new ArrayList<>(entities.getMissingIds()));
+        assertFalse(entities.isComplete());
+        assertEquals("1", entities.get("1").getId());
+        assertNull(entities.get("7"));
+    }
+
+    @Test
+    public void testDuplicateIdsAreRequestedOnce() {
+        final EntitiesById<EntityModel> entities = new EntityList(httpClient, DOMAIN).getByIds(Arrays.asList("1", "2", "1", null, "3", "2"))
+                .chunkSize(2)
+                .parallelism(1)
+                .executeAsync()
+                .join();
+
+        assertEquals(2, httpClient.getRequests().size());
+        assertEquals(Arrays.asList("1", "2", "3"), new ArrayList<>(entities.getEntities().keySet()));
+        assertTrue(entities.isComplete());
+        assertTrue(httpClient.getRequests().get(0).getRequestUrl().contains("limit=2"));
+    }
+
+    @Test
+    public void testNoIdsSendNoRequest() {
+        assertTrue(new EntityList(httpClient, DOMAIN).getByIds(Collections.emptyList()).execute().getEntities().isEmpty());
+        assertTrue(httpClient.getRequests().isEmpty());
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.OctaneSession;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
+import com.hpe.adm.nga.sdk.exception.OctanePartialException;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.ReferenceFieldModel;
+import com.hpe.adm.nga.sdk.model.StringFieldModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the unit of work of {@link OctaneSession}
+ */
+public class TestOctaneSession {
+
+    private final AtomicInteger nextId = new AtomicInteger(100);
+    private final AtomicBoolean failDeletes = new AtomicBoolean();
+    private final List<JSONArray> sentUpdates = new CopyOnWriteArrayList<>();
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(this::handle);
+    private final Octane octane = FakeOctaneHttpClient.octane(httpClient);
+
+    @Test
+    public void testChangesAreFlushedWithOneRequestPerKind() {
+        final OctaneSession session = octane.session();
+        final List<EntityModel> defects = new ArrayList<>(session.load("defects", Query.statement("id", QueryMethod.LessThan, 5).build(), "name"));
+        assertFalse(session.hasChanges());
+
+        defects.get(0).setValue(new StringFieldModel("name", "changed 1"));
+        defects.get(1).setValue(new StringFieldModel("name", "changed 2"));
+        final EntityModel newDefect = new EntityModel("name", "new");
+        session.create("defects", newDefect)
+                .create("stories", new EntityModel("name", "new story"))
+                .delete("defects", "3")
+                .delete("defects", "4");
+        assertTrue(session.hasChanges());
+        httpClient.getRequests().clear();
+
+        session.flush();
+
+        assertEquals(4, httpClient.getRequests().size());
+        // the content of a request is written when it is sent
+        final JSONArray updated = sentUpdates.get(0);
+        assertEquals(2, updated.length());
+        assertEquals("changed 1", updated.getJSONObject(0).getString("name"));
+        assertFalse(updated.getJSONObject(0).has("type"));
+        final OctaneHttpRequest delete = request(OctaneHttpRequest.DeleteOctaneHttpRequest.class);
+        assertTrue(delete.getRequestUrl().contains("'3'") && delete.getRequestUrl().contains("'4'"));
+        // the deletes are only sent once the creates and updates are done
+        assertTrue(httpClient.getRequests().get(3) instanceof OctaneHttpRequest.DeleteOctaneHttpRequest);
+
+        assertNotNull(newDefect.getId());
+        assertSame(newDefect, session.get("defects", newDefect.getId()));
+        assertNull(session.get("defects", "3"));
+        assertFalse(session.hasChanges());
+
+        httpClient.getRequests().clear();
+        session.flush();
+        assertTrue(httpClient.getRequests().isEmpty());
+    }
+
+    @Test
+    public void testChangedEntityCanReferenceAnEntityCreatedInTheSameFlush() {
+        final OctaneSession session = octane.session();
+        session.getByIds("defects", Arrays.asList("1", "2"));
+        final EntityModel newStory = new EntityModel("type", "story");
+        newStory.setValue(new StringFieldModel("name", "new story"));
+        session.create("stories", newStory);
+        session.get("defects", "1").setValue(new ReferenceFieldModel("story", newStory));
+        httpClient.getRequests().clear();
+
+        session.flush();
+
+        assertEquals(2, httpClient.getRequests().size());
+        assertTrue(httpClient.getRequests().get(0) instanceof OctaneHttpRequest.PostOctaneHttpRequest);
+        assertTrue(httpClient.getRequests().get(1) instanceof OctaneHttpRequest.PutOctaneHttpRequest);
+        // the update is sent once the story has the id given by the server
+        final JSONObject story = sentUpdates.get(0).getJSONObject(0).getJSONObject("story");
+        assertEquals("100", story.getString("id"));
+        assertEquals(newStory.getId(), story.getString("id"));
+        assertFalse(session.hasChanges());
+    }
+
+    @Test
+    public void testFailedChangesAreKeptForTheNextFlush() {
+        final OctaneSession session = octane.session();
+        session.getByIds("defects", IntStream.range(1, 3).mapToObj(String::valueOf).collect(Collectors.toList()));
+        session.get("defects", "1").setValue(new StringFieldModel("name", "changed"));
+        session.delete("defects", "2");
+        failDeletes.set(true);
+
+        try {
+            session.flush();
+            fail("The delete failed");
+        } catch (OctaneException e) {
+            assertTrue(session.hasChanges());
+        }
+
+        failDeletes.set(false);
+        httpClient.getRequests().clear();
+        session.flush();
+        assertEquals(1, httpClient.getRequests().size());
+        assertTrue(httpClient.getRequests().get(0) instanceof OctaneHttpRequest.DeleteOctaneHttpRequest);
+        assertFalse(session.hasChanges());
+    }
+
+    @Test
+    public void testOnlyFailedEntitiesAreCreatedAgain() {
+        final OctaneSession session = octane.session();
+        final EntityModel first = new EntityModel("name", "first");
+        final EntityModel invalid = new EntityModel("name", "invalid");
+        final EntityModel third = new EntityModel("name", "third");
+        session.create("defects", first).create("defects", invalid).create("defects", third);
+
+        try {
+            session.flush();
+            fail("The invalid entity could not be created");
+        } catch (OctanePartialException e) {
+            assertEquals(1, e.getErrorModels().size());
+        }
+        assertEquals("100", first.getId());
+        assertEquals("101", third.getId());
+        assertSame(third, session.get("defects", "101"));
+        assertNull(invalid.getId());
+        assertTrue(session.hasChanges());
+
+        invalid.setValue(new StringFieldModel("name", "valid"));
+        httpClient.getRequests().clear();
+        session.flush();
+        assertEquals(1, content(httpClient.getRequests().get(0)).length());
+        assertEquals("102", invalid.getId());
+        assertFalse(session.hasChanges());
+    }
+
+    private OctaneHttpResponse handle(OctaneHttpRequest request) {
+        if (request instanceof OctaneHttpRequest.PostOctaneHttpRequest) {
+            final JSONArray data = content(request);
+            final List<String> ids = new ArrayList<>();
+            final JSONArray errors = new JSONArray();
+            for (int i = 0; i < data.length(); i++) {
+                if (data.getJSONObject(i).getString("name").equals("invalid")) {
+                    errors.put(new JSONObject().put("index", i).put("error_code", "platform.invalid_field_value").put("description", "invalid name"));
+                } else {
+                    ids.add(String.valueOf(nextId.getAndIncrement()));
+                }
+            }
+            if (errors.length() > 0) {
+                throw OctaneExceptionFactory.fromResponse(409, null, FakeOctaneHttpClient.entities(ids.stream()
+                        .map(id -> FakeOctaneHttpClient.entity("defect", id))
+                        .collect(Collectors.toList())).put("errors", errors).toString(), null);
+            }
+            return entities(ids);
+        } else if (request instanceof OctaneHttpRequest.PutOctaneHttpRequest) {
+            final JSONArray data = content(request);
+            sentUpdates.add(data);
+            return entities(IntStream.range(0, data.length()).mapToObj(i -> data.getJSONObject(i).getString("id")).collect(Collectors.toList()));
+        }
+        final List<String> ids = FakeOctaneHttpClient.requestedIds(request.getRequestUrl());
+        if (request instanceof OctaneHttpRequest.DeleteOctaneHttpRequest && failDeletes.get()) {
+            throw new RuntimeException("Connection reset");
+        }
+        return entities(ids.isEmpty() ? Arrays.asList("1", "2", "3", "4") : ids);
+    }
+
+    private static OctaneHttpResponse entities(List<String> ids) {
+        return FakeOctaneHttpClient.entitiesResponse(ids.stream()
+                .map(id -> FakeOctaneHttpClient.entity("defect", id).put("name", "defect " + id))
+                .collect(Collectors.toList()));
+    }
+
+    private OctaneHttpRequest request(Class<? extends OctaneHttpRequest> requestClass) {
+        return httpClient.getRequests().stream().filter(requestClass::isInstance).findFirst().orElseThrow(AssertionError::new);
+    }
+
+    private static JSONArray content(OctaneHttpRequest request) {
+        final String content = request instanceof OctaneHttpRequest.PostOctaneHttpRequest
+                ? ((OctaneHttpRequest.PostOctaneHttpRequest) request).getContent()
+                : ((OctaneHttpRequest.PutOctaneHttpRequest) request).getContent();
+        return new JSONObject(content).getJSONArray("data");
+    }
+}
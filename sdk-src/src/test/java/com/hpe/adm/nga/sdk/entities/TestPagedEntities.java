@@ -0,0 +1,232 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.entities.get.KeysetIterator;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the paging of {@link GetEntities}
+ */
+public class TestPagedEntities {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+    private static final Pattern OFFSET_PATTERN = Pattern.compile("offset=(\\d+)");
+    private static final Pattern LIMIT_PATTERN = Pattern.compile("limit=(\\d+)");
+
+    @Test
+    public void testStreamReturnsAllPagesInOrder() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(25, true);
+
+        final List<String> ids = new GetEntities(httpClient, DOMAIN).stream(10, 1).map(EntityModel::getId).collect(Collectors.toList());
+
+        assertEquals(IntStream.range(0, 25).mapToObj(String::valueOf).collect(Collectors.toList()), ids);
+        assertEquals(3, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testPagesArePrefetched() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(50, true);
+        final Iterator<EntityModel> iterator = new GetEntities(httpClient, DOMAIN).iterator(10, 2);
+
+        assertEquals(0, httpClient.getRequests().size());
+        assertEquals("0", iterator.next().getId());
+        assertEquals(3, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testStopsAtTotalCount() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(20, true);
+
+        assertEquals(20, new GetEntities(httpClient, DOMAIN).stream(10, 3).count());
+        assertEquals(2, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testStopsAtEmptyPageWithoutTotalCount() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(15, false);
+
+        assertEquals(15, new GetEntities(httpClient, DOMAIN).stream(10, 0).count());
+        assertEquals(3, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testPageSizeAboveServerMaximumIsReduced() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(25, true, 4);
+
+        final List<String> ids = new GetEntities(httpClient, DOMAIN).stream(10, 2).map(EntityModel::getId).collect(Collectors.toList());
+
+        assertEquals(IntStream.range(0, 25).mapToObj(String::valueOf).collect(Collectors.toList()), ids);
+        assertTrue(httpClient.getRequests().get(1).getRequestUrl().contains("offset=4"));
+    }
+
+    @Test
+    public void testStartsAtOffset() {
+        final FakeOctaneHttpClient httpClient = new SynchronousHttpClient(25, true);
+
+        final Iterator<EntityModel> iterator = new GetEntities(httpClient, DOMAIN).offset(20).iterator(10, 1);
+        assertEquals("20", iterator.next().getId());
+        assertTrue(httpClient.getRequests().get(0).getRequestUrl().contains("offset=20"));
+    }
+
+    @Test
+    public void testParallelScanIsBoundedAndOrdered() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return SynchronousHttpClient.page(request, 95, true);
+        });
+
+        final List<String> ids;
+        try (Stream<EntityModel> stream = new GetEntities(httpClient, DOMAIN).parallelScan(10, 4)) {
+            ids = stream.map(EntityModel::getId).collect(Collectors.toList());
+        }
+
+        assertEquals(IntStream.range(0, 95).mapToObj(String::valueOf).collect(Collectors.toList()), ids);
+        assertEquals(10, httpClient.getRequests().size());
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 4);
+        assertTrue(httpClient.getExecutingThreads().stream().allMatch(name -> name.startsWith("octane-scan-")));
+    }
+
+    @Test
+    public void testKeysetIteratorSeeksById() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(TestPagedEntities::keysetPage);
+        final Query query = Query.statement("name", QueryMethod.EqualTo, "defect").build();
+
+        final KeysetIterator<EntityModel> iterator = new GetEntities(httpClient, DOMAIN).query(query).keysetIterator(10);
+        assertNull(iterator.getCursor());
+        final List<String> ids = iterator.stream().map(EntityModel::getId).collect(Collectors.toList());
+
+        assertEquals(IntStream.range(0, 25).mapToObj(String::valueOf).collect(Collectors.toList()), ids);
+        assertEquals("24", iterator.getCursor());
+        assertEquals(3, httpClient.getRequests().size());
+        final String secondUrl = httpClient.getRequests().get(1).getRequestUrl();
+        assertTrue(secondUrl.contains("query=\"(id GT 9);((name EQ 'defect'))\""));
+        assertTrue(secondUrl.contains("order_by=id"));
+        assertTrue(secondUrl.contains("offset=0"));
+    }
+
+    @Test
+    public void testKeysetIteratorResumesFromCursor() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(TestPagedEntities::keysetPage);
+        final KeysetIterator<EntityModel> iterator = new GetEntities(httpClient, DOMAIN).keysetIterator(10);
+        for (int i = 0; i < 12; i++) {
+            iterator.next();
+        }
+        assertEquals("11", iterator.getCursor());
+
+        final KeysetIterator<EntityModel> resumed = new GetEntities(httpClient, DOMAIN).keysetIterator(10, iterator.getCursor());
+        assertEquals(IntStream.range(12, 25).mapToObj(String::valueOf).collect(Collectors.toList()),
+                resumed.stream().map(EntityModel::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testKeysetIteratorContinuesAfterPageCappedByServer() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> keysetPage(request, 4));
+
+        final List<String> ids = new GetEntities(httpClient, DOMAIN).keysetIterator(10).stream().map(EntityModel::getId).collect(Collectors.toList());
+
+        assertEquals(IntStream.range(0, 25).mapToObj(String::valueOf).collect(Collectors.toList()), ids);
+        assertEquals(7, httpClient.getRequests().size());
+    }
+
+    /**
+     * Serves the 25 defects with an id greater than the one in the query
+     */
+    private static OctaneHttpResponse keysetPage(OctaneHttpRequest request) {
+        return keysetPage(request, Integer.MAX_VALUE);
+    }
+
+    private static OctaneHttpResponse keysetPage(OctaneHttpRequest request, int maxPageSize) {
+        final Matcher matcher = Pattern.compile("id GT (\\d+)").matcher(request.getRequestUrl());
+        final int firstId = matcher.find() ? Integer.parseInt(matcher.group(1)) + 1 : 0;
+        final int limit = Math.min(SynchronousHttpClient.parameter(LIMIT_PATTERN, request.getRequestUrl()), maxPageSize);
+        final String data = IntStream.range(firstId, Math.min(firstId + limit, 25))
+                .mapToObj(id -> "{\"type\":\"defect\",\"id\":\"" + id + "\"}")
+                .collect(Collectors.joining(","));
+        return FakeOctaneHttpClient.jsonResponse(200, "{\"total_count\":" + (25 - firstId) + ",\"exceeds_total_count\":false,\"data\":[" + data + "]}");
+    }
+
+    /**
+     * Serves a list of numbered defects and completes async requests on the calling thread so that the number of
+     * requests is deterministic
+     */
+    private static final class SynchronousHttpClient extends FakeOctaneHttpClient {
+
+        private SynchronousHttpClient(int entityCount, boolean withTotalCount) {
+            this(entityCount, withTotalCount, Integer.MAX_VALUE);
+        }
+
+        private SynchronousHttpClient(int entityCount, boolean withTotalCount, int maxPageSize) {
+            super(request -> page(request, entityCount, withTotalCount, maxPageSize));
+        }
+
+        @Override
+        public CompletableFuture<OctaneHttpResponse> executeAsync(OctaneHttpRequest octaneHttpRequest) {
+            return CompletableFuture.completedFuture(execute(octaneHttpRequest));
+        }
+
+        @Override
+        public CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest) {
+            return CompletableFuture.completedFuture(executeStreaming(octaneHttpRequest));
+        }
+
+        private static OctaneHttpResponse page(OctaneHttpRequest request, int entityCount, boolean withTotalCount) {
+            return page(request, entityCount, withTotalCount, Integer.MAX_VALUE);
+        }
+
+        private static OctaneHttpResponse page(OctaneHttpRequest request, int entityCount, boolean withTotalCount, int maxPageSize) {
+            final int offset = parameter(OFFSET_PATTERN, request.getRequestUrl());
+            final int limit = Math.min(parameter(LIMIT_PATTERN, request.getRequestUrl()), maxPageSize);
+            final String data = IntStream.range(offset, Math.min(offset + limit, entityCount))
+                    .mapToObj(id -> "{\"type\":\"defect\",\"id\":\"" + id + "\"}")
+                    .collect(Collectors.joining(","));
+            final String totalCount = withTotalCount ? "\"total_count\":" + entityCount + ",\"exceeds_total_count\":false," : "";
+            return jsonResponse(200, "{" + totalCount + "\"data\":[" + data + "]}");
+        }
+
+        private static int parameter(Pattern pattern, String url) {
+            final Matcher matcher = pattern.matcher(url);
+            assertTrue(matcher.find());
+            return Integer.parseInt(matcher.group(1));
+        }
+    }
+}
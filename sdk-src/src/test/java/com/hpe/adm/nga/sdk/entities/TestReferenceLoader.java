@@ -0,0 +1,136 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.entities.get.ReferenceLoader;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.EntityStorageMode;
+import com.hpe.adm.nga.sdk.model.ModelParser;
+import com.hpe.adm.nga.sdk.model.ReferenceFieldModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for filling in references with {@link ReferenceLoader}
+ */
+public class TestReferenceLoader {
+
+    private static final String METADATA_JSON = "{\"total_count\":1,\"data\":[{\"name\":\"release\",\"label\":\"Release\"," +
+            "\"features\":[{\"name\":\"rest\",\"url\":\"releases\",\"methods\":[\"GET\"]}]}]}";
+    private static final String DEFECTS_JSON = "{\"total_count\":3,\"data\":[" +
+            "{\"type\":\"defect\",\"id\":\"1\",\"release\":{\"type\":\"release\",\"id\":\"1001\"},\"owner\":{\"type\":\"workspace_user\",\"id\":\"7\"}}," +
+            "{\"type\":\"defect\",\"id\":\"2\",\"release\":{\"type\":\"release\",\"id\":\"1001\"},\"owner\":null}," +
+            "{\"type\":\"defect\",\"id\":\"3\",\"release\":{\"type\":\"release\",\"id\":\"1002\"}," +
+            "\"users\":{\"total_count\":2,\"data\":[{\"type\":\"workspace_user\",\"id\":\"7\"},{\"type\":\"workspace_user\",\"id\":\"9\"}]}}]}";
+
+    private FakeOctaneHttpClient httpClient;
+    private Octane octane;
+
+    @Before
+    public void setUp() {
+        // returns every requested entity with a name, except the workspace user 9
+        httpClient = new FakeOctaneHttpClient(request -> {
+            final String url = request.getRequestUrl();
+            if (url.contains("/metadata/entities")) {
+                return FakeOctaneHttpClient.jsonResponse(200, METADATA_JSON);
+            }
+            final String type = url.contains("/releases") ? "release" : "workspace_user";
+            return FakeOctaneHttpClient.entitiesByRequestedIds(request, id ->
+                    id.equals("9") ? null : FakeOctaneHttpClient.entity(type, id).put("name", type + " " + id));
+        });
+        octane = FakeOctaneHttpClient.octane(httpClient);
+    }
+
+    @Test
+    public void testReferencesAreLoadedOncePerType() {
+        final OctaneCollection<EntityModel> defects = ModelParser.getInstance().getEntities(DEFECTS_JSON);
+        final ReferenceLoader referenceLoader = octane.referenceLoader()
+                .collectionName("workspace_user", "workspace_users")
+                .fields("release", "name");
+
+        referenceLoader.load(defects);
+
+        // the metadata for the collection of the releases and one bulk request per type
+        assertEquals(3, httpClient.getRequests().size());
+        final String releasesUrl = requestUrl("/releases");
+        assertTrue(releasesUrl.contains("fields=name"));
+        assertTrue(releasesUrl.contains("'1001'") && releasesUrl.contains("'1002'"));
+        final String usersUrl = requestUrl("/workspace_users");
+        assertTrue(usersUrl.contains("'7'") && usersUrl.contains("'9'"));
+
+        final List<EntityModel> entities = new ArrayList<>(defects);
+        assertEquals("release 1001", referenceName(entities.get(0), "release"));
+        assertEquals("release 1001", referenceName(entities.get(1), "release"));
+        assertEquals("release 1002", referenceName(entities.get(2), "release"));
+        assertEquals("workspace_user 7", referenceName(entities.get(0), "owner"));
+        assertNotNull(referenceLoader.get("workspace_user", "7"));
+        assertNull(referenceLoader.get("workspace_user", "9"));
+
+        // the filled in fields are not sent when the entity or its references are written
+        final String json = ModelParser.getInstance().getEntityJSONObject(entities.get(0), false).toString();
+        assertFalse(json.contains("release 1001"));
+
+        // the fetched and the missing entities are not requested again
+        referenceLoader.load(defects);
+        assertEquals(3, httpClient.getRequests().size());
+        referenceLoader.clear();
+        referenceLoader.load(defects, "release");
+        assertEquals(4, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testCompactEntitiesAreFilledIn() {
+        final OctaneCollection<EntityModel> defects = ModelParser.getInstance()
+                .getEntities(new org.json.JSONObject(DEFECTS_JSON), null, EntityStorageMode.COMPACT);
+
+        octane.referenceLoader().collectionName("release", "releases").load(defects, "release");
+
+        assertEquals(1, httpClient.getRequests().size());
+        assertEquals("release 1002", referenceName(new ArrayList<>(defects).get(2), "release"));
+    }
+
+    @Test
+    public void testTypesWithoutCollectionAreSkipped() {
+        final OctaneCollection<EntityModel> defects = ModelParser.getInstance().getEntities(DEFECTS_JSON);
+
+        // the metadata has no collection for the workspace users
+        octane.referenceLoader().load(defects);
+
+        assertEquals(2, httpClient.getRequests().size());
+        final List<EntityModel> entities = new ArrayList<>(defects);
+        assertEquals("release 1001", referenceName(entities.get(0), "release"));
+        assertNull(((ReferenceFieldModel) entities.get(0).getValue("owner")).getValue().getValue("name"));
+    }
+
+    private String requestUrl(String collection) {
+        return httpClient.getRequests().stream()
+                .map(OctaneHttpRequest::getRequestUrl)
+                .filter(url -> url.contains(collection))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private static String referenceName(EntityModel entityModel, String referenceField) {
+        final EntityModel reference = ((ReferenceFieldModel) entityModel.getValue(referenceField)).getValue();
+        return (String) reference.getValue("name").getValue();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.get.GetEntities;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneUrl;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.query.QuerySplitter;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the splitting of oversized queries of {@link GetEntities}
+ */
+public class TestSplitQuery {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+
+    @Test
+    public void testInStatementIsSplitAndKeepsTheChain() {
+        final Object[] ids = IntStream.range(0, 3000).mapToObj(String::valueOf).toArray();
+        final Query query = Query.statement("phase", QueryMethod.EqualTo, "new").and("id", QueryMethod.In, ids).build();
+
+        final List<Query> queries = QuerySplitter.split(query, 2000, OctaneUrl::encodedLength);
+
+        assertTrue(queries.size() > 1);
+        final Set<String> splitIds = new HashSet<>();
+        for (Query splitQuery : queries) {
+            assertTrue(OctaneUrl.encodedLength(splitQuery.getQueryString()) <= 2000);
+            assertTrue(splitQuery.getQueryString().startsWith("(phase EQ 'new');(id IN "));
+            splitIds.addAll(idsOf(splitQuery.getQueryString()));
+        }
+        assertEquals(3000, splitIds.size());
+    }
+
+    @Test
+    public void testOnlyOversizedOrChainsAreSplit() {
+        Query.QueryBuilder queryBuilder = Query.statement("id", QueryMethod.EqualTo, "0");
+        for (int i = 1; i < 500; i++) {
+            queryBuilder = queryBuilder.or("id", QueryMethod.EqualTo, String.valueOf(i));
+        }
+        final List<Query> queries = QuerySplitter.split(queryBuilder.build(), 1000, OctaneUrl::encodedLength);
+        assertTrue(queries.size() > 1);
+        assertEquals(500, queries.stream().mapToInt(splitQuery -> idsOf(splitQuery.getQueryString()).size()).sum());
+
+        final Query mixed = Query.statement("id", QueryMethod.EqualTo, "1").or("id", QueryMethod.EqualTo, "2").and("name", QueryMethod.EqualTo, "a").build();
+        assertEquals(1, QuerySplitter.split(mixed, 10, OctaneUrl::encodedLength).size());
+        assertEquals(1, QuerySplitter.split(Query.statement("id", QueryMethod.EqualTo, "1").build(), 1000, OctaneUrl::encodedLength).size());
+    }
+
+    @Test
+    public void testOversizedQueryIsSentInChunksAndMerged() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request -> {
+            // every response also returns the entity 0, which must only be kept once
+            final Set<String> ids = idsOf(request.getRequestUrl());
+            ids.add("0");
+            return FakeOctaneHttpClient.entitiesResponse(ids.stream().map(id -> FakeOctaneHttpClient.entity("defect", id)).collect(Collectors.toList()));
+        });
+        final Object[] ids = IntStream.range(0, 2000).mapToObj(String::valueOf).toArray();
+
+        final OctaneCollection<EntityModel> entities = new GetEntities(httpClient, DOMAIN)
+                .query(Query.statement("id", QueryMethod.In, ids).build())
+                .splitQuery(4096, 3)
+                .execute();
+
+        assertEquals(2000, entities.size());
+        assertEquals(2000, entities.stream().map(EntityModel::getId).distinct().count());
+        assertTrue(httpClient.getRequests().size() > 1);
+        for (OctaneHttpRequest request : httpClient.getRequests()) {
+            assertTrue(OctaneUrl.encodedLength(request.getRequestUrl()) <= 4096);
+        }
+        // the total count is the sum of the total counts of the chunks, each of which counts the entity 0
+        assertEquals(2000 + httpClient.getRequests().size() - 1, entities.getTotalCount());
+
+        final int requestCount = httpClient.getRequests().size();
+        assertEquals(2000, new GetEntities(httpClient, DOMAIN).query(Query.statement("id", QueryMethod.In, ids).build())
+                .executeAsync().join().size());
+        // splitting is turned off: a single request whose response also has the entity 0
+        assertEquals(2000, new GetEntities(httpClient, DOMAIN).query(Query.statement("id", QueryMethod.In, ids).build())
+                .splitQuery(0, 1).execute().size());
+        assertEquals(2 * requestCount + 1, httpClient.getRequests().size());
+    }
+
+    @Test
+    public void testOrderedQueryIsNotSplit() {
+        final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(request ->
+                FakeOctaneHttpClient.jsonResponse(200, "{\"total_count\":1,\"data\":[{\"type\":\"defect\",\"id\":\"1999\"}]}"));
+        final Object[] ids = IntStream.range(0, 2000).mapToObj(String::valueOf).toArray();
+
+        // the top entity of one chunk is not the top entity of the whole query
+        final OctaneCollection<EntityModel> entities = new GetEntities(httpClient, DOMAIN)
+                .query(Query.statement("id", QueryMethod.In, ids).build())
+                .addOrderBy("id", false)
+                .limit(1)
+                .splitQuery(4096, 3)
+                .execute();
+
+        assertEquals(1, entities.size());
+        assertEquals(1, httpClient.getRequests().size());
+        assertTrue(httpClient.getRequests().get(0).getRequestUrl().contains("order_by=-id"));
+    }
+
+    private static Set<String> idsOf(String text) {
+        return new HashSet<>(FakeOctaneHttpClient.requestedIds(text));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.entities;
+
+import com.hpe.adm.nga.sdk.entities.update.UpdateBuffer;
+import com.hpe.adm.nga.sdk.exception.OctaneException;
+import com.hpe.adm.nga.sdk.exception.OctaneExceptionFactory;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.model.StringFieldModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the write-behind {@link UpdateBuffer}
+ */
+public class TestUpdateBuffer {
+
+    private static final String DOMAIN = "http://octane/api/shared_spaces/1/workspaces/1002/defects";
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(TestUpdateBuffer::update);
+
+    @Test
+    public void testUpdatesOfAnEntityAreMerged() throws Exception {
+        final List<CompletableFuture<EntityModel>> futures = new ArrayList<>();
+        try (UpdateBuffer updateBuffer = new EntityList(httpClient, DOMAIN).updateBuffer(100, NEVER, 1000)) {
+            for (int round = 0; round < 10; round++) {
+                for (int id = 0; id < 50; id++) {
+                    futures.add(updateBuffer.update(change(id, "field" + round % 3, String.valueOf(round))));
+                }
+            }
+            assertTrue(httpClient.getRequests().isEmpty());
+        }
+
+        assertEquals(1, httpClient.getRequests().size());
+        final JSONArray data = content(httpClient.getRequests().get(0));
+        assertEquals(50, data.length());
+        final JSONObject entity = data.getJSONObject(0);
+        assertEquals("0", entity.getString("id"));
+        assertEquals("9", entity.getString("field0"));
+        assertEquals("7", entity.getString("field1"));
+        assertEquals("8", entity.getString("field2"));
+        assertSame(futures.get(0), futures.get(50));
+        assertEquals("0", futures.get(0).get().getId());
+    }
+
+    @Test
+    public void testFullBatchesAreSentAtOnce() {
+        try (UpdateBuffer updateBuffer = new EntityList(httpClient, DOMAIN).updateBuffer(10, NEVER, 1000)) {
+            final List<CompletableFuture<EntityModel>> futures = IntStream.range(0, 25)
+                    .mapToObj(id -> updateBuffer.update(change(id, "name", "name")))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(futures.subList(0, 20).toArray(new CompletableFuture<?>[0])).join();
+            assertEquals(2, httpClient.getRequests().size());
+            assertFalse(futures.get(24).isDone());
+        }
+        assertEquals(3, httpClient.getRequests().size());
+        assertEquals(5, content(httpClient.getRequests().get(2)).length());
+    }
+
+    @Test
+    public void testPendingUpdatesAreSentAfterTheInterval() throws Exception {
+        try (UpdateBuffer updateBuffer = new EntityList(httpClient, DOMAIN).updateBuffer(10, 50, 1000)) {
+            assertEquals("1", updateBuffer.update(change(1, "name", "name")).get(10, TimeUnit.SECONDS).getId());
+        }
+    }
+
+    @Test
+    public void testUpdatesBlockWhenTheBufferIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeOctaneHttpClient blockingClient = new FakeOctaneHttpClient(request -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return update(request);
+        });
+        try (UpdateBuffer updateBuffer = new EntityList(blockingClient, DOMAIN).updateBuffer(1, NEVER, 2)) {
+            updateBuffer.update(change(1, "name", "name"));
+            updateBuffer.update(change(2, "name", "name"));
+            final CompletableFuture<CompletableFuture<EntityModel>> blockedUpdate =
+                    CompletableFuture.supplyAsync(() -> updateBuffer.update(change(3, "name", "name")));
+            Thread.sleep(100);
+            assertFalse(blockedUpdate.isDone());
+            release.countDown();
+            assertEquals("3", blockedUpdate.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS).getId());
+        }
+        assertEquals(3, blockingClient.getRequests().size());
+    }
+
+    @Test
+    public void testHeldBackUpdatesAreSentWhenTheirBatchCompletes() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeOctaneHttpClient blockingClient = new FakeOctaneHttpClient(request -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return update(request);
+        });
+        try (UpdateBuffer updateBuffer = new EntityList(blockingClient, DOMAIN).updateBuffer(1, NEVER, 10)) {
+            final CompletableFuture<EntityModel> first = updateBuffer.update(change(1, "name", "first"));
+            // the entity is in flight, so the second update is held back even though it fills a batch
+            final CompletableFuture<EntityModel> second = updateBuffer.update(change(1, "name", "second"));
+            assertNotSame(first, second);
+            release.countDown();
+            assertEquals("1", second.get(10, TimeUnit.SECONDS).getId());
+            assertEquals("second", content(blockingClient.getRequests().get(1)).getJSONObject(0).getString("name"));
+        }
+        assertEquals(2, blockingClient.getRequests().size());
+    }
+
+    @Test(timeout = 10_000)
+    public void testBatchesThatCompleteWhileSentDoNotBlock() throws Exception {
+        // the response is there before the buffer waits for it
+        final FakeOctaneHttpClient synchronousClient = new FakeOctaneHttpClient(TestUpdateBuffer::update) {
+            @Override
+            public CompletableFuture<OctaneHttpResponse> executeStreamingAsync(OctaneHttpRequest octaneHttpRequest) {
+                return CompletableFuture.completedFuture(executeStreaming(octaneHttpRequest));
+            }
+        };
+        final CompletableFuture<EntityModel> last;
+        try (UpdateBuffer updateBuffer = new EntityList(synchronousClient, DOMAIN).updateBuffer(10, NEVER, 1)) {
+            updateBuffer.update(change(1, "name", "name"));
+            last = updateBuffer.update(change(2, "name", "name"));
+        }
+        assertEquals("2", last.get().getId());
+        assertEquals(2, synchronousClient.getRequests().size());
+    }
+
+    @Test
+    public void testErrorsCompleteTheFutureOfTheirEntity() throws Exception {
+        // the server only returns the first entity, the third was updated as well since the only error is the second's
+        final FakeOctaneHttpClient failingClient = new FakeOctaneHttpClient(request -> {
+            throw OctaneExceptionFactory.fromResponse(409, null, "{\"total_count\":1,\"data\":[{\"type\":\"defect\",\"id\":\"1\"}]," +
+                    "\"errors\":[{\"index\":1,\"error_code\":\"platform.invalid_field_value\",\"description\":\"invalid\"}]}", null);
+        });
+        final CompletableFuture<EntityModel> first;
+        final CompletableFuture<EntityModel> second;
+        final CompletableFuture<EntityModel> third;
+        try (UpdateBuffer updateBuffer = new EntityList(failingClient, DOMAIN).updateBuffer()) {
+            first = updateBuffer.update(change(1, "name", "name"));
+            second = updateBuffer.update(change(2, "name", "name"));
+            third = updateBuffer.update(change(3, "name", "name"));
+        }
+        assertEquals("1", first.get().getId());
+        assertEquals("3", third.get().getId());
+        try {
+            second.get();
+            fail("The update of the second entity failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof OctaneException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdatesAfterCloseAreRejected() {
+        final UpdateBuffer updateBuffer = new EntityList(httpClient, DOMAIN).updateBuffer();
+        updateBuffer.close();
+        updateBuffer.update(change(1, "name", "name"));
+    }
+
+    private static OctaneHttpResponse update(OctaneHttpRequest request) {
+        final JSONArray data = content(request);
+        final String entities = IntStream.range(0, data.length())
+                .mapToObj(i -> "{\"type\":\"defect\",\"id\":\"" + data.getJSONObject(i).getString("id") + "\"}")
+                .collect(Collectors.joining(","));
+        return FakeOctaneHttpClient.jsonResponse(200, "{\"total_count\":" + data.length() + ",\"data\":[" + entities + "]}");
+    }
+
+    private static JSONArray content(OctaneHttpRequest request) {
+        return new JSONObject(((OctaneHttpRequest.PutOctaneHttpRequest) request).getContent()).getJSONArray("data");
+    }
+
+    private static EntityModel change(int id, String field, String value) {
+        return new EntityModel("id", String.valueOf(id)).setValue(new StringFieldModel(field, value));
+    }
+}
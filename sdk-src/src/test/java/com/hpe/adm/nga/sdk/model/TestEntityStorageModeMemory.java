@@ -0,0 +1,84 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the heap used by a large result set read with each {@link EntityStorageMode}.  The compact entities keep
+ * about a quarter and the lazy entities about half of the heap of the standard entities, the bounds leave room for
+ * the differences between the JVMs
+ */
+public class TestEntityStorageModeMemory {
+
+    private static final int ENTITY_COUNT = 10_000;
+
+    @Test
+    public void testCompactAndLazyEntitiesUseLessHeap() {
+        final byte[] json = entitiesJson(ENTITY_COUNT);
+        final long standard = retainedMemory(json, EntityStorageMode.STANDARD);
+        final long compact = retainedMemory(json, EntityStorageMode.COMPACT);
+        final long lazy = retainedMemory(json, EntityStorageMode.LAZY);
+
+        assertTrue("compact " + compact + " bytes, standard " + standard + " bytes", compact < standard / 2);
+        assertTrue("lazy " + lazy + " bytes, standard " + standard + " bytes", lazy < standard * 3 / 4);
+    }
+
+    private static long retainedMemory(byte[] json, EntityStorageMode storageMode) {
+        // warm up the parser before measuring
+        read(json, storageMode);
+        final long before = usedMemory();
+        final OctaneCollection<EntityModel> entities = read(json, storageMode);
+        final long used = usedMemory() - before;
+        assertEquals(ENTITY_COUNT, entities.size());
+        return used;
+    }
+
+    private static OctaneCollection<EntityModel> read(byte[] json, EntityStorageMode storageMode) {
+        return ModelParser.getInstance().getEntities(new ByteArrayInputStream(json), StandardCharsets.UTF_8, null, storageMode);
+    }
+
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static byte[] entitiesJson(int entityCount) {
+        final StringBuilder json = new StringBuilder("{\"total_count\":").append(entityCount).append(",\"data\":[");
+        for (int i = 0; i < entityCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"defect\",\"id\":\"").append(1000 + i)
+                    .append("\",\"name\":\"defect ").append(i)
+                    .append("\",\"story_points\":").append(i % 13)
+                    .append(",\"estimate\":").append(i % 7).append(".5")
+                    .append(",\"blocked\":").append(i % 2 == 0)
+                    .append(",\"creation_time\":\"2016-04-13T10:03:12Z\",\"last_modified\":\"2016-05-01T08:00:00Z\"")
+                    .append(",\"description\":null,\"client_lock_stamp\":").append(i)
+                    .append(",\"phase\":{\"type\":\"phase\",\"id\":\"phase.defect.new\"}")
+                    .append(",\"severity\":{\"type\":\"list_node\",\"id\":\"list_node.severity.high\"}}");
+        }
+        return json.append("],\"exceeds_total_count\":false}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.model;
+
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.entities.update.UpdateEntity;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.network.OctaneRequest;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import com.google.gson.Gson;
+import com.hpe.adm.nga.sdk.metadata.FieldMetadata;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the streaming parse of {@link ModelParser}
+ */
+public class TestModelParser {
+
+    private static final String ENTITIES_JSON = "{\"total_count\":2,\"data\":[" +
+            "{\"type\":\"defect\",\"id\":\"1001\",\"name\":\"first\",\"story_points\":3,\"estimate\":1.5,\"blocked\":false," +
+            "\"creation_time\":\"2016-04-13T10:03:12Z\",\"description\":null,\"tags\":[\"a\",\"b\"],\"big\":123456789012345678901234567890," +
+            "\"phase\":{\"type\":\"phase\",\"id\":\"phase.defect.new\"}," +
+            "\"user_tags\":{\"total_count\":1,\"data\":[{\"type\":\"user_tag\",\"id\":\"5\",\"name\":\"tag\"}]}," +
+            "\"settings\":{\"color\":\"red\"}}," +
+            "{\"type\":\"defect\",\"id\":\"1002\",\"name\":\"second \\u00e9\"}" +
+            "],\"exceeds_total_count\":false}";
+
+    @Test
+    public void testStreamingParseMatchesStringParse() {
+        final OctaneCollection<EntityModel> expected = ModelParser.getInstance().getEntities(ENTITIES_JSON);
+        final OctaneCollection<EntityModel> actual = ModelParser.getInstance().getEntities(stream(ENTITIES_JSON), StandardCharsets.UTF_8);
+
+        assertEquals(2, actual.getTotalCount());
+        assertFalse(actual.exceedsTotalCount());
+        assertEntitiesEqual(expected, actual);
+        assertEquals("second \u00e9", secondName(actual));
+    }
+
+    @Test
+    public void testNestedMultiReferenceFields() {
+        final JSONObject json = new JSONObject("{\"data\":[{\"type\":\"defect\",\"id\":\"1001\",\"linked_items\":{\"data\":[" +
+                "{\"type\":\"story\",\"id\":\"2001\",\"user_tags\":{\"total_count\":2,\"exceeds_total_count\":false,\"data\":[" +
+                "{\"type\":\"user_tag\",\"id\":\"1\"},{\"type\":\"user_tag\",\"id\":\"2\"}]}}]}}]}");
+
+        final EntityModel defect = ModelParser.getInstance().getEntities(json).iterator().next();
+        final EntityModel story = ((MultiReferenceFieldModel) defect.getValue("linked_items")).getValue().iterator().next();
+        assertEquals("2001", story.getId());
+        final OctaneCollection<EntityModel> userTags = (OctaneCollection<EntityModel>) ((MultiReferenceFieldModel) story.getValue("user_tags")).getValue();
+        assertEquals(2, userTags.getTotalCount());
+        assertEquals(2, userTags.size());
+        assertEntitiesEqual(ModelParser.getInstance().getEntities(json.toString()), ModelParser.getInstance().getEntities(json));
+    }
+
+    @Test
+    public void testSchemaDecodesFieldsWithTheirDeclaredTypes() {
+        final Gson gson = new Gson();
+        final EntitySchema entitySchema = new EntitySchema(Arrays.asList(
+                gson.fromJson("{\"name\":\"name\",\"field_type\":\"string\"}", FieldMetadata.class),
+                gson.fromJson("{\"name\":\"estimate\",\"field_type\":\"float\"}", FieldMetadata.class),
+                gson.fromJson("{\"name\":\"closed_on\",\"field_type\":\"date\"}", FieldMetadata.class),
+                gson.fromJson("{\"name\":\"story_points\",\"field_type\":\"integer\"}", FieldMetadata.class)));
+        final String json = "{\"data\":[{\"id\":\"1001\",\"name\":\"2016-04-13T10:03:12Z\",\"estimate\":3,\"closed_on\":\"2016-04-13\"," +
+                "\"story_points\":\"unknown\",\"creation_time\":\"2016-04-13T10:03:12Z\"}]}";
+
+        for (EntityModel entityModel : Arrays.asList(
+                ModelParser.getInstance().getEntities(json, entitySchema).iterator().next(),
+                ModelParser.getInstance().getEntities(stream(json), StandardCharsets.UTF_8, entitySchema).iterator().next())) {
+            assertEquals(StringFieldModel.class, entityModel.getValue("name").getClass());
+            assertEquals(3f, entityModel.getValue("estimate").getValue());
+            assertEquals(ZonedDateTime.of(2016, 4, 13, 0, 0, 0, 0, ZoneOffset.UTC), entityModel.getValue("closed_on").getValue());
+            assertEquals("unknown", entityModel.getValue("story_points").getValue());
+            assertEquals(DateFieldModel.class, entityModel.getValue("creation_time").getClass());
+        }
+    }
+
+    @Test
+    public void testDateTimeRecognizer() {
+        assertTrue(ModelParser.isDateTime("2016-04-13T10:03:12Z"));
+        assertFalse(ModelParser.isDateTime("2016-4-13T10:03:12Z"));
+        assertFalse(ModelParser.isDateTime("2016-04-13 10:03:12Z"));
+        assertFalse(ModelParser.isDateTime("2016-04-13T10:03:12+"));
+        assertFalse(ModelParser.isDateTime("release 2016-04-13"));
+
+        final EntityModel entityModel = ModelParser.getInstance().getEntityModel(new JSONObject("{\"name\":\"2016-13-45T10:03:12Z\"}"));
+        assertEquals(StringFieldModel.class, entityModel.getValue("name").getClass());
+    }
+
+    @Test
+    public void testWrittenJsonMatchesJsonObject() throws Exception {
+        final EntityModel reference = new EntityModel("type", "phase");
+        reference.setValue(new StringFieldModel("id", "phase.defect.new"));
+        final EntityModel entityModel = new EntityModel(new HashSet<>(Arrays.asList(
+                new StringFieldModel("name", "memo <b>\"quoted\"</b> \u00e9"),
+                new LongFieldModel("story_points", 3L),
+                new FloatFieldModel("estimate", 1.5f),
+                new BooleanFieldModel("blocked", true),
+                new DateFieldModel("creation_time", ZonedDateTime.of(2016, 4, 13, 10, 3, 12, 0, ZoneOffset.UTC)),
+                new EmptyFieldModel("description"),
+                new ReferenceFieldModel("phase", reference),
+                new ReferenceFieldModel("owner", null),
+                new MultiReferenceFieldModel("user_tags", Collections.singletonList(new EntityModel("id", "5"))))), EntityModel.EntityState.CLEAN);
+        final Collection<EntityModel> entityModels = Arrays.asList(entityModel, new EntityModel("name", "second"));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ModelParser.getInstance().writeEntities(entityModels, false, outputStream);
+        final JSONObject expected = new JSONObject(ModelParser.getInstance().getEntitiesJSONObject(entityModels).toString());
+        assertTrue(expected.similar(new JSONObject(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))));
+
+        entityModel.setValue(new StringFieldModel("name", "changed"));
+        outputStream.reset();
+        ModelParser.getInstance().writeEntity(entityModel, true, outputStream);
+        assertEquals("{\"name\":\"changed\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamingParseOfSingleEntity() {
+        final EntityModel entityModel = ModelParser.getInstance().getEntityModel(stream("{\"type\":\"defect\",\"id\":\"1001\",\"story_points\":3}"), StandardCharsets.UTF_8);
+        assertEquals("1001", entityModel.getId());
+        assertEquals(3L, entityModel.getValue("story_points").getValue());
+    }
+
+    @Test(expected = JSONException.class)
+    public void testMalformedJsonThrowsJSONException() {
+        ModelParser.getInstance().getEntities(stream("{\"data\":[{\"id\":}]}"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRequestParsesStreamedResponse() {
+        final OctaneHttpResponse response = OctaneHttpResponse.streamed(200, stream(ENTITIES_JSON), StandardCharsets.UTF_8);
+        final FakeOctaneHttpClient octaneHttpClient = new FakeOctaneHttpClient(request -> response);
+        final OctaneRequest octaneRequest = new OctaneRequest(octaneHttpClient, "http://octane/api/shared_spaces/1/workspaces/1002/defects");
+
+        final OctaneCollection<EntityModel> entities = octaneRequest.getEntitiesResponse(new OctaneHttpRequest.GetOctaneHttpRequest(octaneRequest.getFinalRequestUrl()));
+        assertEquals(2, entities.size());
+
+        final OctaneHttpResponse emptyResponse = OctaneHttpResponse.streamed(200, null, StandardCharsets.UTF_8);
+        assertNull(new OctaneRequest(new FakeOctaneHttpClient(request -> emptyResponse), "http://octane")
+                .getEntitiesResponse(new OctaneHttpRequest.GetOctaneHttpRequest("http://octane")));
+    }
+
+    @Test
+    public void testAsyncRequestParsesStreamedResponse() {
+        final AtomicInteger streamedRequests = new AtomicInteger();
+        final FakeOctaneHttpClient octaneHttpClient = new FakeOctaneHttpClient(request -> FakeOctaneHttpClient.jsonResponse(500, "")) {
+            @Override
+            public OctaneHttpResponse executeStreaming(OctaneHttpRequest octaneHttpRequest) {
+                streamedRequests.incrementAndGet();
+                return OctaneHttpResponse.streamed(200, stream(ENTITIES_JSON), StandardCharsets.UTF_8);
+            }
+        };
+        final OctaneRequest octaneRequest = new OctaneRequest(octaneHttpClient, "http://octane/api/shared_spaces/1/workspaces/1002/defects");
+
+        final OctaneHttpRequest request = new OctaneHttpRequest.GetOctaneHttpRequest(octaneRequest.getFinalRequestUrl());
+        assertEquals(2, octaneRequest.getEntitiesResponseAsync(request, null).join().size());
+        assertEquals(2, octaneRequest.getEntitiesResponseAsync(request, Runnable::run).join().size());
+        assertEquals(2, streamedRequests.get());
+    }
+
+    @Test
+    public void testCompactStorageMatchesStandardStorage() {
+        final String json = ENTITIES_JSON.replace("\"name\":\"second \\u00e9\"}",
+                "\"name\":\"second \\u00e9\",\"creation_time\":\"2016-04-13T10:03:12.345Z\",\"estimate\":null}");
+        final OctaneCollection<EntityModel> expected = ModelParser.getInstance().getEntities(json);
+        final OctaneCollection<EntityModel> actual = ModelParser.getInstance().getEntities(stream(json), StandardCharsets.UTF_8, null, EntityStorageMode.COMPACT);
+
+        assertEquals(2, actual.getTotalCount());
+        assertEntitiesEqual(expected, actual);
+        assertEntitiesEqual(expected, ModelParser.getInstance().getEntities(new JSONObject(json), null, EntityStorageMode.COMPACT));
+    }
+
+    @Test
+    public void testCompactEntityKeepsChanges() throws Exception {
+        final String json = "{\"data\":[{\"type\":\"defect\",\"id\":\"1001\",\"name\":\"first\",\"story_points\":3}," +
+                "{\"type\":\"defect\",\"id\":\"1002\",\"name\":\"second\",\"story_points\":5}]}";
+        final Iterator<EntityModel> entities = ModelParser.getInstance().getEntities(stream(json), StandardCharsets.UTF_8, null, EntityStorageMode.COMPACT).iterator();
+        final EntityModel first = entities.next();
+        final EntityModel second = entities.next();
+
+        assertEquals(1, first.getDirtyValues().size());
+        first.setValue(new LongFieldModel("story_points", 8L));
+        first.removeValue("name");
+        assertEquals(8L, first.getValue("story_points").getValue());
+        assertNull(first.getValue("name"));
+        assertEquals(3, first.getValues().size());
+        assertEquals(5L, second.getValue("story_points").getValue());
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ModelParser.getInstance().writeEntity(first, true, outputStream);
+        assertTrue(new JSONObject("{\"id\":\"1001\",\"story_points\":8}").similar(new JSONObject(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))));
+        outputStream.reset();
+        ModelParser.getInstance().writeEntity(second, true, outputStream);
+        assertEquals("{\"id\":\"1002\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLazyStorageMatchesStandardStorage() {
+        final EntitySchema entitySchema = new EntitySchema(Collections.singletonList(
+                new Gson().fromJson("{\"name\":\"story_points\",\"field_type\":\"float\"}", FieldMetadata.class)));
+        final OctaneCollection<EntityModel> expected = ModelParser.getInstance().getEntities(ENTITIES_JSON, entitySchema);
+        final OctaneCollection<EntityModel> actual = ModelParser.getInstance().getEntities(stream(ENTITIES_JSON), StandardCharsets.UTF_8, entitySchema, EntityStorageMode.LAZY);
+
+        assertEquals(2, actual.getTotalCount());
+        assertEntitiesEqual(expected, actual);
+        assertEntitiesEqual(expected, ModelParser.getInstance().getEntities(new JSONObject(ENTITIES_JSON), entitySchema, EntityStorageMode.LAZY));
+
+        final EntityModel first = actual.iterator().next();
+        assertSame(first.getValue("phase"), first.getValue("phase"));
+        assertEquals(3f, first.getValue("story_points").getValue());
+        assertEquals(1, first.getDirtyValues().size());
+        first.setValue(new StringFieldModel("name", "changed"));
+        assertEquals(2, first.getDirtyValues().size());
+        assertEquals(expected.iterator().next().getValues().size(), first.getValues().size());
+    }
+
+    @Test
+    public void testReferencesAreWrittenWithTypeAndId() throws Exception {
+        final EntityModel owner = ModelParser.getInstance().getEntityModel(new JSONObject(
+                "{\"type\":\"workspace_user\",\"id\":\"7\",\"name\":\"user\",\"email\":\"user@example.com\",\"client_lock_stamp\":3}"));
+        final EntityModel userTag = ModelParser.getInstance().getEntityModel(new JSONObject("{\"type\":\"user_tag\",\"id\":\"5\",\"name\":\"tag\"}"));
+        userTag.setValue(new StringFieldModel("name", "renamed"));
+        final EntityModel defect = new EntityModel("id", "1001");
+        defect.setValue(new ReferenceFieldModel("owner", owner));
+        defect.setValue(new MultiReferenceFieldModel("user_tags", Collections.singletonList(userTag)));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ModelParser.getInstance().writeEntity(defect, true, outputStream);
+        final JSONObject expected = new JSONObject("{\"id\":\"1001\",\"owner\":{\"type\":\"workspace_user\",\"id\":\"7\"}," +
+                "\"user_tags\":{\"data\":[{\"type\":\"user_tag\",\"id\":\"5\",\"name\":\"renamed\"}],\"total_count\":1,\"exceeds_total_count\":false}}");
+        assertTrue(expected.similar(new JSONObject(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))));
+        assertTrue(expected.similar(ModelParser.getInstance().getEntityJSONObject(defect, true)));
+
+        final JSONObject deepOwner = ModelParser.getInstance().getEntityJSONObject(defect, true, ReferenceWriteMode.DEEP).getJSONObject("owner");
+        assertEquals("user@example.com", deepOwner.getString("email"));
+
+        final FakeOctaneHttpClient octaneHttpClient = FakeOctaneHttpClient.returning("{\"type\":\"defect\",\"id\":\"1001\"}");
+        new UpdateEntity(octaneHttpClient, "http://octane/api/shared_spaces/1/workspaces/1002/defects", "1001")
+                .entity(defect).referenceWriteMode(ReferenceWriteMode.DEEP).execute();
+        final String content = ((OctaneHttpRequest.PutOctaneHttpRequest) octaneHttpClient.getRequests().get(0)).getContent();
+        assertEquals(3, new JSONObject(content).getJSONObject("owner").getInt("client_lock_stamp"));
+    }
+
+    private static String secondName(OctaneCollection<EntityModel> entities) {
+        final Iterator<EntityModel> iterator = entities.iterator();
+        iterator.next();
+        return (String) iterator.next().getValue("name").getValue();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void assertEntitiesEqual(Iterable<EntityModel> expected, Iterable<EntityModel> actual) {
+        final Iterator<EntityModel> actualIterator = actual.iterator();
+        for (EntityModel expectedEntity : expected) {
+            assertTrue(actualIterator.hasNext());
+            final EntityModel actualEntity = actualIterator.next();
+            assertEquals(expectedEntity.getValues().size(), actualEntity.getValues().size());
+            for (FieldModel expectedField : expectedEntity.getValues()) {
+                final FieldModel actualField = actualEntity.getValue(expectedField.getName());
+                assertNotNull(expectedField.getName(), actualField);
+                assertEquals(expectedField.getName(), expectedField.getClass(), actualField.getClass());
+                if (expectedField instanceof ReferenceFieldModel) {
+                    assertEntitiesEqual(Collections.singleton(((ReferenceFieldModel) expectedField).getValue()),
+                            Collections.singleton(((ReferenceFieldModel) actualField).getValue()));
+                } else if (expectedField instanceof MultiReferenceFieldModel) {
+                    assertEntitiesEqual(((MultiReferenceFieldModel) expectedField).getValue(), ((MultiReferenceFieldModel) actualField).getValue());
+                } else {
+                    assertEquals(expectedField.getName(), expectedField.getValue(), actualField.getValue());
+                }
+            }
+        }
+        assertFalse(actualIterator.hasNext());
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.hpe.adm.nga.sdk.model;
 
+import com.hpe.adm.nga.sdk.query.PreparedQuery;
 import com.hpe.adm.nga.sdk.query.Query;
 import com.hpe.adm.nga.sdk.query.Query.QueryBuilder;
 import com.hpe.adm.nga.sdk.query.QueryMethod;
@@ -20,10 +21,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 public class TestQuery {
 	private static final String DATE_TIME_ISO_FORMAT 		= "yyyy-MM-dd'T'HH:mm:ss'Z'";
 	private static final String DATE_TIME_UTC_ZONE_NAME 	= "UTC";
@@ -84,4 +89,54 @@ public class TestQuery {
         queryBuilder = Query.statement("id", QueryMethod.GreaterThanOrEqualTo, "5028").or(qb);
         assertEquals(expectedResult, queryBuilder.build().getQueryString());
     }
+
+    @Test
+    public void testLongChainAndNestedQueries() {
+        queryBuilder = Query.statement("id", QueryMethod.EqualTo, 0);
+        final StringBuilder expected = new StringBuilder("(id EQ 0)");
+        for (int i = 1; i < 20000; i++) {
+            queryBuilder.or("id", QueryMethod.EqualTo, i);
+            expected.append("||(id EQ ").append(i).append(')');
+        }
+        final Query query = queryBuilder.build();
+        assertEquals(expected.toString(), query.getQueryString());
+        assertSame(query.getQueryString(), query.getQueryString());
+
+        expectedResult = "((phase EQ {(id IN 'new','opened')});!(owner EQ {null}))||!(name EQ 'a');((id LT 5)||(id GT 9))";
+        queryBuilder = Query.QueryBuilder.parenthesis(Query.statement("phase", QueryMethod.EqualTo, Query.statement("id", QueryMethod.In, new Object[]{"new", "opened"}))
+                .andNot("owner", QueryMethod.EqualTo, null))
+                .orNot(Query.statement("name", QueryMethod.EqualTo, "a"))
+                .and(Query.statement("id", QueryMethod.LessThan, 5).or("id", QueryMethod.GreaterThan, 9).build());
+        assertEquals(expectedResult, queryBuilder.build().getQueryString());
+    }
+
+    @Test
+    public void testPreparedQuery() {
+        final PreparedQuery preparedQuery = Query.statement("owner", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, Query.parameter("owner")))
+                .and("phase", QueryMethod.In, Query.parameter("phases"))
+                .andNot("name", QueryMethod.EqualTo, "closed")
+                .or("id", QueryMethod.In, new Object[]{1, Query.parameter("id")})
+                .prepare();
+        assertEquals(Arrays.asList("owner", "phases", "id"), Arrays.asList(preparedQuery.getParameterNames().toArray()));
+
+        final Map<String, Object> values = new HashMap<>();
+        values.put("owner", "1001");
+        values.put("phases", Arrays.asList("new", "opened"));
+        values.put("id", 2);
+        expectedResult = "(owner EQ {(id EQ '1001')});(phase IN 'new','opened');!(name EQ 'closed')||(id IN 1,2)";
+        assertEquals(expectedResult, preparedQuery.bind(values).getQueryString());
+
+        values.put("owner", "1002");
+        assertEquals(expectedResult.replace("1001", "1002"), preparedQuery.bind(values).getQueryString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPreparedQueryWithoutValue() {
+        Query.statement("id", QueryMethod.EqualTo, Query.parameter("id")).prepare().bind(new HashMap<>());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParameterizedQueryMustBePrepared() {
+        Query.statement("id", QueryMethod.EqualTo, Query.parameter("id")).build().getQueryString();
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link DiskResponseCache} and {@link TieredResponseCache}
+ */
+public class TestDiskResponseCache {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testResponsesSurviveReopening() throws Exception {
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 4096, 4);
+        cache.put("metadata", response("\"1\"", "{\"data\":[]}"));
+        cache.put("list_nodes", response("\"2\"", "{\"data\":[{\"id\":\"1001\"}]}"));
+        cache.put("metadata", response("\"3\"", "{\"data\":[{}]}"));
+        cache.invalidate("list_nodes");
+        cache.close();
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 4096, 4);
+        final CachedResponse metadata = reopened.get("metadata");
+        assertEquals("\"3\"", metadata.getETag());
+        assertEquals(200, metadata.getStatusCode());
+        assertEquals(StandardCharsets.UTF_8, metadata.getCharset());
+        assertEquals("{\"data\":[{}]}", new String(metadata.getContent(), StandardCharsets.UTF_8));
+        assertNull(reopened.get("list_nodes"));
+        assertEquals(1, reopened.getStats().getEntryCount());
+        reopened.close();
+    }
+
+    @Test
+    public void testOldestSegmentIsEvicted() throws Exception {
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024, 2);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, response("\"" + i + "\"", new String(new char[300]).replace('\0', 'x')));
+        }
+
+        assertNull(cache.get("k0"));
+        assertNotNull(cache.get("k9"));
+        assertTrue(cache.getStats().getEvictionCount() > 0);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        cache.put("large", response("\"large\"", new String(new char[2000]).replace('\0', 'x')));
+        assertNull(cache.get("large"));
+        cache.close();
+    }
+
+    @Test
+    public void testPartlyWrittenRecordIsIgnored() throws Exception {
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 4096, 4);
+        cache.put("a", response("\"a\"", "first"));
+        cache.put("b", response("\"b\"", "second"));
+        cache.close();
+
+        final Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().get();
+        }
+        // corrupt the last byte of the second record's content
+        final int secondRecordEnd = new String(Files.readAllBytes(segment), StandardCharsets.ISO_8859_1).indexOf("second") + "second".length();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(secondRecordEnd - 1);
+            file.write('X');
+        }
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 4096, 4);
+        assertNotNull(reopened.get("a"));
+        assertNull(reopened.get("b"));
+        reopened.put("c", response("\"c\"", "third"));
+        assertEquals("third", new String(reopened.get("c").getContent(), StandardCharsets.UTF_8));
+        reopened.close();
+    }
+
+    @Test
+    public void testTieredCacheFallsBackToSecondTier() throws Exception {
+        final DiskResponseCache disk = new DiskResponseCache(temporaryFolder.newFolder().toPath(), 4096, 4);
+        final LruResponseCache memory = new LruResponseCache();
+        final TieredResponseCache cache = new TieredResponseCache(memory, disk);
+        disk.put("metadata", response("\"1\"", "{}"));
+
+        assertNotNull(cache.get("metadata"));
+        assertNotNull(memory.get("metadata"));
+        assertNotNull(cache.get("metadata"));
+        assertEquals(1, disk.getStats().getHitCount());
+
+        cache.invalidate("metadata");
+        assertNull(cache.get("metadata"));
+        assertEquals(2, cache.getStats().getHitCount());
+        assertEquals(1, cache.getStats().getMissCount());
+        disk.close();
+    }
+
+    @Test
+    public void testSegmentsAreDeletedWhileOpen() throws Exception {
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024, 2);
+        cache.put("a", response("\"a\"", "first"));
+        cache.invalidateAll();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        cache.put("b", response("\"b\"", "second"));
+        assertEquals("second", new String(cache.get("b").getContent(), StandardCharsets.UTF_8));
+        cache.close();
+    }
+
+    private static CachedResponse response(String eTag, String content) {
+        return new CachedResponse(eTag, 200, content.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, System.currentTimeMillis());
+    }
+}
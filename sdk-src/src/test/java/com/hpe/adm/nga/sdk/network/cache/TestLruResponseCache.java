@@ -0,0 +1,161 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.cache;
+
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link LruResponseCache}
+ */
+public class TestLruResponseCache {
+
+    @Test
+    public void testHitAndMiss() {
+        final LruResponseCache cache = new LruResponseCache();
+        assertNull(cache.get("a"));
+        cache.put("a", response(10, System.currentTimeMillis()));
+
+        assertEquals("etag", cache.get("a").getETag());
+        final CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEntryCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByWeight() {
+        final long entryWeight = 2 + response(1000, 0).getWeight();
+        final LruResponseCache cache = new LruResponseCache(entryWeight * 2, Duration.ofHours(1));
+        final long now = System.currentTimeMillis();
+        cache.put("a", response(1000, now));
+        cache.put("b", response(1000, now));
+        cache.get("a");
+        cache.put("c", response(1000, now));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getStats().getEvictionCount());
+        assertEquals(entryWeight * 2, cache.getStats().getWeight());
+    }
+
+    @Test
+    public void testReplacedAndInvalidatedEntriesDoNotCountForTheEviction() {
+        final long entryWeight = 6 + response(1000, 0).getWeight();
+        final LruResponseCache cache = new LruResponseCache(entryWeight * 10, Duration.ofHours(1));
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            cache.put("k0" + i % 5, response(1000, now));
+            cache.put("x" + i, response(1000, now));
+            cache.invalidate("x" + i);
+        }
+        assertEquals(0, cache.getStats().getEvictionCount());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("k0" + i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(String.format("y%02d", i), response(1000, now));
+            // the referenced entry is kept
+            cache.get("k00");
+        }
+        assertNotNull(cache.get("k00"));
+        assertEquals(10, cache.getStats().getEntryCount());
+        assertEquals(95, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void testDoesNotCacheResponsesLargerThanTheCache() {
+        final LruResponseCache cache = new LruResponseCache(100, Duration.ofHours(1));
+        cache.put("a", response(1000, System.currentTimeMillis()));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStats().getWeight());
+    }
+
+    @Test
+    public void testExpiredResponsesAreRemoved() {
+        final LruResponseCache cache = new LruResponseCache(LruResponseCache.DEFAULT_MAX_BYTES, Duration.ofMinutes(1));
+        cache.put("old", response(10, System.currentTimeMillis() - Duration.ofMinutes(2).toMillis()));
+        cache.put("revalidated", response(10, System.currentTimeMillis() - Duration.ofMinutes(2).toMillis()).revalidated());
+
+        assertNull(cache.get("old"));
+        assertNotNull(cache.get("revalidated"));
+        assertEquals(1, cache.getStats().getExpiredCount());
+        assertEquals(1, cache.getStats().getEntryCount());
+    }
+
+    @Test
+    public void testConcurrentAccessKeepsWeightConsistent() throws Exception {
+        final long entryWeight = 4 + response(100, 0).getWeight();
+        final LruResponseCache cache = new LruResponseCache(entryWeight * 50, Duration.ofHours(1));
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread;
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        final String key = "k" + ((i * 7 + offset) % 100);
+                        if (cache.get(key) == null) {
+                            cache.put(key, response(100, System.currentTimeMillis()));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        final CacheStats stats = cache.getStats();
+        assertTrue(stats.getWeight() <= entryWeight * 50);
+        assertTrue(stats.getEntryCount() <= 50);
+        assertEquals(8000, stats.getHitCount() + stats.getMissCount());
+    }
+
+    @Test
+    public void testKeyOfDependsOnAcceptType() {
+        final OctaneHttpRequest json = new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/defects").setAcceptType(OctaneHttpRequest.JSON_CONTENT_TYPE);
+        final OctaneHttpRequest octetStream = new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/defects").setAcceptType(OctaneHttpRequest.OCTET_STREAM_CONTENT_TYPE);
+        final OctaneHttpRequest delete = new OctaneHttpRequest.DeleteOctaneHttpRequest("http://octane/defects");
+
+        assertNotEquals(ResponseCache.keyOf(json), ResponseCache.keyOf(octetStream));
+        assertNull(ResponseCache.keyOf(delete));
+    }
+
+    @Test
+    public void testKeyOfIsCanonical() {
+        final String key = ResponseCache.keyOf(new OctaneHttpRequest.GetOctaneHttpRequest("HTTP://Octane/api/defects?query=%22name%20EQ%20'a'%22&fields=id,name&limit=10"));
+
+        assertEquals(key, ResponseCache.keyOf(new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/api/defects?limit=10&fields=id%2Cname&query=%22name%20EQ%20%27a%27%22")));
+        assertNotEquals(key, ResponseCache.keyOf(new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/api/defects?limit=20&fields=id,name&query=%22name%20EQ%20'a'%22")));
+        assertEquals("http://octane/api/defects?fields=id%2Cname&limit=10&query=%22name%20EQ%20%27a%27%22", key);
+    }
+
+    private static CachedResponse response(int size, long validatedAtMillis) {
+        return new CachedResponse("etag", 200, new byte[size], StandardCharsets.UTF_8, validatedAtMillis);
+    }
+}
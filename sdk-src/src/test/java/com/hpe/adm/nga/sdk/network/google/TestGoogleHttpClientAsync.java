@@ -0,0 +1,92 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.network.google;
+
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the asynchronous requests of the {@link GoogleHttpClient} run on its own threads
+ */
+public class TestGoogleHttpClientAsync {
+
+    @Test
+    public void testAsyncRequestsRunConcurrentlyOnDedicatedThreads() {
+        final int requests = 12;
+        final CountDownLatch allStarted = new CountDownLatch(requests);
+        final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        final GoogleHttpClient httpClient = new GoogleHttpClient("http://octane", null, requests) {
+            @Override
+            public OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest) {
+                threadNames.add(Thread.currentThread().getName());
+                allStarted.countDown();
+                try {
+                    // every request waits for all the others, which only succeeds if they all run at the same time
+                    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new OctaneHttpResponse(200, "{}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            }
+        };
+
+        final List<CompletableFuture<OctaneHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(httpClient.executeAsync(new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/api/defects")));
+        }
+        futures.forEach(future -> assertEquals(200, future.join().getStatusCode()));
+        assertEquals(requests, threadNames.size());
+        threadNames.forEach(name -> assertTrue(name, name.startsWith("octane-http-async-")));
+    }
+
+    @Test
+    public void testAsyncRequestsAreBounded() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maximum = new AtomicInteger();
+        final GoogleHttpClient httpClient = new GoogleHttpClient("http://octane", null, 2) {
+            @Override
+            public OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest) {
+                maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return new OctaneHttpResponse(200, "{}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            }
+        };
+
+        final List<CompletableFuture<OctaneHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(httpClient.executeAsync(new OctaneHttpRequest.GetOctaneHttpRequest("http://octane/api/defects")));
+        }
+        futures.forEach(CompletableFuture::join);
+        assertEquals(2, maximum.get());
+    }
+}
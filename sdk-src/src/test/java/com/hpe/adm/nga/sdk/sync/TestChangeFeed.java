@@ -0,0 +1,211 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the watermarks, the keyset order and the reconciliation of the {@link ChangeFeed}
+ */
+public class TestChangeFeed {
+
+    private static final Pattern LAST_MODIFIED_PATTERN = Pattern.compile("last_modified GT '([^']+)'");
+    private static final Pattern CUTOFF_PATTERN = Pattern.compile("last_modified LT '([^']+)'");
+    private static final Pattern ID_PATTERN = Pattern.compile("id GT (\\d+)");
+    private static final Pattern LIMIT_PATTERN = Pattern.compile("limit=(\\d+)");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Map<String, Instant> defects = new ConcurrentHashMap<>();
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(this::handle);
+    private final Octane octane = FakeOctaneHttpClient.octane(httpClient);
+    private final List<String> changes = new ArrayList<>();
+    private final List<String> deletes = new ArrayList<>();
+    private final ChangeListener listener = new ChangeListener() {
+        @Override
+        public void onChange(String collectionName, EntityModel entityModel) {
+            changes.add(entityModel.getId());
+        }
+
+        @Override
+        public void onDelete(String collectionName, String id) {
+            deletes.add(id);
+        }
+    };
+
+    @Test
+    public void testChangesAreEmittedOnceInKeysetOrder() throws Exception {
+        defects.put("1", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("4", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("5", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("2", Instant.parse("2020-01-01T11:00:00Z"));
+        defects.put("3", Instant.parse("2020-01-01T09:00:00Z"));
+        final Path file = temporaryFolder.getRoot().toPath().resolve("watermarks.properties");
+        final ChangeFeed changeFeed = octane.changeFeed(new FileWatermarkStore(file), listener).collection("defects", "name").pageSize(2);
+
+        assertEquals(5, changeFeed.poll());
+        assertEquals(Arrays.asList("3", "1", "4", "5", "2"), changes);
+        assertEquals(new Watermark(ZonedDateTime.parse("2020-01-01T11:00:00Z"), "2"), changeFeed.getWatermark("defects"));
+
+        changes.clear();
+        assertEquals(0, changeFeed.poll());
+        defects.put("4", Instant.parse("2020-01-01T12:00:00Z"));
+        assertEquals(1, changeFeed.poll());
+        assertEquals(Collections.singletonList("4"), changes);
+
+        // a feed restarted with the same file continues after the last change
+        changes.clear();
+        final ChangeFeed restartedFeed = octane.changeFeed(new FileWatermarkStore(file), listener).collection("defects", "name");
+        assertEquals(0, restartedFeed.poll());
+        assertEquals(new Watermark(ZonedDateTime.parse("2020-01-01T12:00:00Z"), "4"), restartedFeed.getWatermark("defects"));
+    }
+
+    @Test
+    public void testRecentChangesAreHeldBackForTheLag() {
+        final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        defects.put("1", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("3", now);
+        final ChangeFeed changeFeed = octane.changeFeed(new FileWatermarkStore(temporaryFolder.getRoot().toPath().resolve("w")), listener)
+                .collection("defects")
+                .lag(Duration.ofMinutes(1));
+
+        assertEquals(1, changeFeed.poll());
+        assertEquals(Collections.singletonList("1"), changes);
+
+        // a change of the same second with a lower id that commits late is not skipped
+        defects.put("2", now);
+        changeFeed.lag(Duration.ZERO);
+        assertEquals(2, changeFeed.poll());
+        assertEquals(Arrays.asList("1", "2", "3"), changes);
+    }
+
+    @Test
+    public void testChangeIsEmittedAgainWhenTheListenerFails() {
+        defects.put("1", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("2", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("3", Instant.parse("2020-01-01T10:00:00Z"));
+        final ChangeFeed changeFeed = octane.changeFeed(new FileWatermarkStore(temporaryFolder.getRoot().toPath().resolve("w")), (collectionName, entityModel) -> {
+            if (entityModel.getId().equals("2") && !changes.contains("failed")) {
+                changes.add("failed");
+                throw new IllegalStateException("mirror is down");
+            }
+            changes.add(entityModel.getId());
+        }).collection("defects");
+
+        try {
+            changeFeed.poll();
+            fail("The failure of the listener should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("mirror is down", e.getMessage());
+        }
+        assertEquals("1", changeFeed.getWatermark("defects").getId());
+
+        changeFeed.poll();
+        assertEquals(Arrays.asList("1", "failed", "2", "3"), changes);
+    }
+
+    @Test
+    public void testDeletesAreFoundByReconciliation() {
+        defects.put("1", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("2", Instant.parse("2020-01-01T10:00:00Z"));
+        defects.put("3", Instant.parse("2020-01-01T10:00:00Z"));
+        final ChangeFeed changeFeed = octane.changeFeed(new FileWatermarkStore(temporaryFolder.getRoot().toPath().resolve("w")), listener)
+                .collection("defects")
+                .reconcileEvery(2);
+
+        assertEquals(3, changeFeed.poll());
+        defects.remove("2");
+        httpClient.getRequests().clear();
+
+        // the second poll reconciles the ids
+        assertEquals(1, changeFeed.poll());
+        assertEquals(Collections.singletonList("2"), deletes);
+        assertEquals(2, httpClient.getRequests().size());
+
+        // a deletion is emitted once, and the ids of a restarted feed can be given to it
+        defects.remove("3");
+        final ChangeFeed restartedFeed = octane.changeFeed(new FileWatermarkStore(temporaryFolder.getRoot().toPath().resolve("w")), listener)
+                .collection("defects")
+                .knownIds("defects", Arrays.asList("1", "2", "3"));
+        assertEquals(2, restartedFeed.reconcile());
+        assertEquals(0, restartedFeed.reconcile());
+        assertEquals(Arrays.asList("2", "2", "3"), deletes);
+    }
+
+    private OctaneHttpResponse handle(OctaneHttpRequest request) {
+        final String url = decode(request.getRequestUrl());
+        final Matcher limit = LIMIT_PATTERN.matcher(url);
+        final int pageSize = limit.find() ? Integer.parseInt(limit.group(1)) : Integer.MAX_VALUE;
+        final Matcher idMatcher = ID_PATTERN.matcher(url);
+        final long afterId = idMatcher.find() ? Long.parseLong(idMatcher.group(1)) : 0;
+        final List<Map.Entry<String, Instant>> page;
+        if (url.contains("order_by=last_modified,id")) {
+            final Matcher lastModifiedMatcher = LAST_MODIFIED_PATTERN.matcher(url);
+            final Instant after = lastModifiedMatcher.find() ? ZonedDateTime.parse(lastModifiedMatcher.group(1)).toInstant() : Instant.MIN;
+            final Matcher cutoffMatcher = CUTOFF_PATTERN.matcher(url);
+            final Instant cutoff = cutoffMatcher.find() ? ZonedDateTime.parse(cutoffMatcher.group(1)).toInstant() : Instant.MAX;
+            page = defects.entrySet().stream()
+                    .filter(e -> e.getValue().isAfter(after) || e.getValue().equals(after) && Long.parseLong(e.getKey()) > afterId)
+                    .filter(e -> e.getValue().isBefore(cutoff))
+                    .sorted(Comparator.comparing((Map.Entry<String, Instant> e) -> e.getValue()).thenComparing(e -> Long.parseLong(e.getKey())))
+                    .limit(pageSize)
+                    .collect(Collectors.toList());
+        } else {
+            page = defects.entrySet().stream()
+                    .filter(e -> Long.parseLong(e.getKey()) > afterId)
+                    .sorted(Comparator.comparing(e -> Long.parseLong(e.getKey())))
+                    .limit(pageSize)
+                    .collect(Collectors.toList());
+        }
+        return FakeOctaneHttpClient.jsonResponse(200, "{\"total_count\":" + page.size() + ",\"exceeds_total_count\":false,\"data\":[" + page.stream()
+                .map(e -> "{\"type\":\"defect\",\"id\":\"" + e.getKey() + "\",\"last_modified\":\"" + e.getValue() + "\"}")
+                .collect(Collectors.joining(",")) + "]}");
+    }
+
+    private static String decode(String url) {
+        try {
+            return URLDecoder.decode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
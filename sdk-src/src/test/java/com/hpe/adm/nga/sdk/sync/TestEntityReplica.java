@@ -0,0 +1,175 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.sync;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.entities.OctaneCollection;
+import com.hpe.adm.nga.sdk.model.EntityModel;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import com.hpe.adm.nga.sdk.query.Query;
+import com.hpe.adm.nga.sdk.query.QueryMethod;
+import com.hpe.adm.nga.sdk.unit_tests.common.FakeOctaneHttpClient;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the refresh, the indexes and the queries of the {@link EntityReplica}
+ */
+public class TestEntityReplica {
+
+    private static final Pattern LAST_MODIFIED_PATTERN = Pattern.compile("last_modified GT '([^']+)'");
+    private static final Pattern ID_PATTERN = Pattern.compile("\\(id GT (\\d+)\\)");
+    private static final Pattern LIMIT_PATTERN = Pattern.compile("limit=(\\d+)");
+
+    private final Map<String, JSONObject> defects = new ConcurrentHashMap<>();
+    private final FakeOctaneHttpClient httpClient = new FakeOctaneHttpClient(this::handle);
+    private final Octane octane = FakeOctaneHttpClient.octane(httpClient);
+    private EntityReplica replica;
+
+    @Before
+    public void setUp() {
+        putDefect("1", "login fails", "new", "10", "2020-01-01T10:00:00Z");
+        putDefect("2", "logout fails", "opened", "10", "2020-01-01T10:00:00Z");
+        putDefect("3", "crash", "new", "20", "2020-01-01T11:00:00Z");
+        putDefect("4", "slow", "closed", null, "2020-01-01T09:00:00Z");
+        replica = octane.replica()
+                .collection("defects", "name", "phase", "owner")
+                .index("defects", "phase", "owner");
+        assertEquals(4, replica.refresh());
+        httpClient.getRequests().clear();
+    }
+
+    @Test
+    public void testQueriesAreAnsweredFromMemory() {
+        assertEquals(Arrays.asList("1", "3"), ids(replica.getEntities("defects",
+                Query.statement("phase", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, "phase.defect.new")).build())));
+        assertEquals(Collections.singletonList("3"), ids(replica.getEntities("defects",
+                Query.statement("phase", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, "phase.defect.new"))
+                        .and("owner", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, 20)).build())));
+        assertEquals(Arrays.asList("2", "4"), ids(replica.getEntities("defects",
+                Query.not("phase", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, "phase.defect.new")).build())));
+        assertEquals(Collections.singletonList("4"), ids(replica.getEntities("defects",
+                Query.statement("owner", QueryMethod.EqualTo, null).build())));
+        assertEquals(Arrays.asList("1", "2"), ids(replica.getEntities("defects",
+                Query.statement("id", QueryMethod.LessThan, 3).and("name", QueryMethod.In, new Object[]{"login fails", "logout fails", "crash"}).build())));
+        assertEquals(4, replica.getEntities("defects", null).size());
+        assertTrue(httpClient.getRequests().isEmpty());
+    }
+
+    @Test
+    public void testQueriesThatCannotBeAnsweredAreSentToTheServer() {
+        final Query wildcard = Query.statement("name", QueryMethod.EqualTo, "log*").build();
+        final Query otherField = Query.statement("severity", QueryMethod.EqualTo, "high").build();
+        assertFalse(replica.canServe("defects", wildcard));
+        assertFalse(replica.canServe("defects", otherField));
+        assertFalse(replica.canServe("stories", null));
+
+        // the default fields are not known, so only the query for all the entities is answered from memory
+        replica.collection("stories");
+        assertFalse(replica.canServe("stories", Query.statement("name", QueryMethod.EqualTo, "login").build()));
+        assertTrue(replica.canServe("stories", null));
+
+        replica.getEntities("defects", wildcard);
+        assertEquals(1, httpClient.getRequests().size());
+        assertTrue(decode(httpClient.getRequests().get(0).getRequestUrl()).contains("name EQ 'log*'"));
+    }
+
+    @Test
+    public void testRefreshUpdatesTheEntitiesAndTheIndexes() {
+        final Query newDefects = Query.statement("phase", QueryMethod.EqualTo, Query.statement("id", QueryMethod.EqualTo, "phase.defect.new")).build();
+        putDefect("1", "login fails", "closed", "10", "2020-01-01T12:00:00Z");
+        putDefect("5", "new crash", "new", "10", "2020-01-01T12:00:00Z");
+
+        assertEquals(2, replica.refresh());
+        assertEquals(Arrays.asList("3", "5"), ids(replica.query("defects", newDefects)));
+        assertEquals("new crash", replica.get("defects", "5").getValue("name").getValue());
+
+        defects.remove("3");
+        assertEquals(1, replica.reconcile());
+        assertNull(replica.get("defects", "3"));
+        assertEquals(Collections.singletonList("5"), ids(replica.query("defects", newDefects)));
+        assertEquals(4, replica.size("defects"));
+    }
+
+    private void putDefect(String id, String name, String phase, String owner, String lastModified) {
+        final JSONObject defect = new JSONObject()
+                .put("type", "defect")
+                .put("id", id)
+                .put("name", name)
+                .put("phase", new JSONObject().put("type", "phase").put("id", "phase.defect." + phase))
+                .put("owner", owner == null ? JSONObject.NULL : new JSONObject().put("type", "workspace_user").put("id", owner))
+                .put("last_modified", lastModified);
+        defects.put(id, defect);
+    }
+
+    private OctaneHttpResponse handle(OctaneHttpRequest request) {
+        final String url = decode(request.getRequestUrl());
+        final Matcher limit = LIMIT_PATTERN.matcher(url);
+        final int pageSize = limit.find() ? Integer.parseInt(limit.group(1)) : Integer.MAX_VALUE;
+        final Matcher idMatcher = ID_PATTERN.matcher(url);
+        final long afterId = idMatcher.find() ? Long.parseLong(idMatcher.group(1)) : 0;
+        final List<JSONObject> page;
+        if (url.contains("order_by=last_modified,id")) {
+            final Matcher lastModifiedMatcher = LAST_MODIFIED_PATTERN.matcher(url);
+            final Instant after = lastModifiedMatcher.find() ? ZonedDateTime.parse(lastModifiedMatcher.group(1)).toInstant() : Instant.MIN;
+            page = defects.values().stream()
+                    .filter(defect -> lastModified(defect).isAfter(after)
+                            || lastModified(defect).equals(after) && Long.parseLong(defect.getString("id")) > afterId)
+                    .sorted(Comparator.comparing(TestEntityReplica::lastModified).thenComparing(defect -> Long.parseLong(defect.getString("id"))))
+                    .limit(pageSize)
+                    .collect(Collectors.toList());
+        } else {
+            page = defects.values().stream()
+                    .filter(defect -> Long.parseLong(defect.getString("id")) > afterId)
+                    .sorted(Comparator.comparing(defect -> Long.parseLong(defect.getString("id"))))
+                    .limit(pageSize)
+                    .collect(Collectors.toList());
+        }
+        return FakeOctaneHttpClient.jsonResponse(200, new JSONObject().put("total_count", page.size()).put("exceeds_total_count", false).put("data", page).toString());
+    }
+
+    private static Instant lastModified(JSONObject defect) {
+        return Instant.parse(defect.getString("last_modified"));
+    }
+
+    private static List<String> ids(OctaneCollection<EntityModel> entityModels) {
+        return entityModels.stream().map(EntityModel::getId).collect(Collectors.toList());
+    }
+
+    private static String decode(String url) {
+        try {
+            return URLDecoder.decode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * © Copyright 2016-2020 Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hpe.adm.nga.sdk.unit_tests.common;
+
+import com.hpe.adm.nga.sdk.Octane;
+import com.hpe.adm.nga.sdk.authentication.Authentication;
+import com.hpe.adm.nga.sdk.authentication.SimpleUserAuthentication;
+import com.hpe.adm.nga.sdk.network.OctaneHttpClient;
+import com.hpe.adm.nga.sdk.network.OctaneHttpRequest;
+import com.hpe.adm.nga.sdk.network.OctaneHttpResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * An in memory {@link OctaneHttpClient} that answers every request with the given handler and records the requests
+ * and the threads that executed them
+ */
+public class FakeOctaneHttpClient implements OctaneHttpClient {
+
+    private static final Pattern QUOTED_ID_PATTERN = Pattern.compile("'(\\d+)'");
+
+    private final Function<OctaneHttpRequest, OctaneHttpResponse> handler;
+    private final List<OctaneHttpRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<String> executingThreads = new CopyOnWriteArrayList<>();
+
+    public FakeOctaneHttpClient(Function<OctaneHttpRequest, OctaneHttpResponse> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Creates a client that always returns the same successful json content
+     *
+     * @param content the json content
+     * @return the client
+     */
+    public static FakeOctaneHttpClient returning(String content) {
+        return new FakeOctaneHttpClient(request -> jsonResponse(200, content));
+    }
+
+    public static OctaneHttpResponse jsonResponse(int statusCode, String content) {
+        return new OctaneHttpResponse(statusCode, content.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Answers a request by ids, for example a GET or a DELETE with the query {@code id IN '1','2'}, with the entities
+     * of the requested ids in the order they were requested
+     *
+     * @param request the request
+     * @param entity  the entity of a requested id, null if it is not found
+     * @return the response
+     */
+    public static OctaneHttpResponse entitiesByRequestedIds(OctaneHttpRequest request, Function<String, JSONObject> entity) {
+        return entitiesResponse(requestedIds(request.getRequestUrl()).stream()
+                .map(entity)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param text a url or a query string
+     * @return the quoted numeric ids of the text in the order they appear, for example 1 and 2 of {@code id IN '1','2'}
+     */
+    public static List<String> requestedIds(String text) {
+        final List<String> ids = new ArrayList<>();
+        final Matcher matcher = QUOTED_ID_PATTERN.matcher(text);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    public static JSONObject entity(String type, String id) {
+        return new JSONObject().put("type", type).put("id", id);
+    }
+
+    /**
+     * @param entities the entities
+     * @return the json of a collection of the entities, with the number of the entities as the total count
+     */
+    public static JSONObject entities(Collection<JSONObject> entities) {
+        return new JSONObject().put("total_count", entities.size()).put("data", new JSONArray(entities));
+    }
+
+    public static OctaneHttpResponse entitiesResponse(Collection<JSONObject> entities) {
+        return jsonResponse(200, entities(entities).toString());
+    }
+
+    /**
+     * @param httpClient the http client
+     * @return a builder of an octane context of the shared space 1001 and the workspace 1002 that uses the client
+     */
+    public static Octane.Builder octaneBuilder(OctaneHttpClient httpClient) {
+        return new Octane.Builder(new SimpleUserAuthentication("user", "password"), httpClient)
+                .Server("http://octane")
+                .sharedSpace(1001)
+                .workSpace(1002);
+    }
+
+    public static Octane octane(OctaneHttpClient httpClient) {
+        return octaneBuilder(httpClient).build();
+    }
+
+    @Override
+    public boolean authenticate(Authentication authentication) {
+        return true;
+    }
+
+    @Override
+    public void signOut() {
+    }
+
+    @Override
+    public OctaneHttpResponse execute(OctaneHttpRequest octaneHttpRequest) {
+        requests.add(octaneHttpRequest);
+        executingThreads.add(Thread.currentThread().getName());
+        return handler.apply(octaneHttpRequest);
+    }
+
+    public List<OctaneHttpRequest> getRequests() {
+        return requests;
+    }
+
+    public List<String> getExecutingThreads() {
+        return executingThreads;
+    }
+}